@@ -32,6 +32,7 @@ import org.seerc.fusion.sr.api.xsd.SetupStandardConfigurationResponse;
 import org.seerc.fusion.sr.api.xsd.SetupStandardConfigurationResponse_type0;
 import org.seerc.fusion.sr.core.AdminHandler;
 import org.seerc.fusion.sr.core.PublicationHandler;
+import org.seerc.fusion.sr.core.RegistryConfiguration;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
@@ -155,6 +156,7 @@ public class AdminManagerSkeleton
 		PublicationHandler pubHandler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			pubHandler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -197,6 +199,7 @@ public class AdminManagerSkeleton
 		AdminHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new AdminHandler();
 			
 		}
@@ -283,6 +286,7 @@ public class AdminManagerSkeleton
 		PublicationHandler pubHandler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			pubHandler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -325,6 +329,7 @@ public class AdminManagerSkeleton
 		AdminHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new AdminHandler();
 			
 		}
@@ -404,6 +409,7 @@ public class AdminManagerSkeleton
 		PublicationHandler pubHandler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			pubHandler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -441,6 +447,7 @@ public class AdminManagerSkeleton
 		AdminHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new AdminHandler();
 			
 		}
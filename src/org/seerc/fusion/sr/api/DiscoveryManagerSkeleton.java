@@ -35,6 +35,7 @@ import org.seerc.fusion.sr.api.xsd.GetAllServiceUUIDsResponse_type0;
 import org.seerc.fusion.sr.api.xsd.GetServiceDetailsResponse;
 import org.seerc.fusion.sr.api.xsd.GetServiceProviderDetailsResponse;
 import org.seerc.fusion.sr.core.DiscoveryHandler;
+import org.seerc.fusion.sr.core.RegistryConfiguration;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryException;
@@ -66,6 +67,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -142,6 +144,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -218,6 +221,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -283,6 +287,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -359,6 +364,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -439,6 +445,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -525,6 +532,7 @@ public class DiscoveryManagerSkeleton
 		DiscoveryHandler handler = null;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new DiscoveryHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -148,6 +148,45 @@ public class PublicationManagerMessageReceiverInOut
 					envelope = toEnvelope(getSOAPFactory(msgContext),
 							addServiceWithoutSAWSDLResponse31, false);
 				}
+				else if ("addServices".equals(methodName))
+				{
+					org.seerc.fusion.sr.api.xsd.AddServicesResponse addServicesResponse37 = null;
+					org.seerc.fusion.sr.api.xsd.AddServicesRequest wrappedParam = (org.seerc.fusion.sr.api.xsd.AddServicesRequest) fromOM(
+							msgContext.getEnvelope().getBody().getFirstElement(),
+							org.seerc.fusion.sr.api.xsd.AddServicesRequest.class,
+							getEnvelopeNamespaces(msgContext.getEnvelope()));
+
+					addServicesResponse37 = skel.addServices(wrappedParam);
+
+					envelope = toEnvelope(getSOAPFactory(msgContext),
+							addServicesResponse37, false);
+				}
+				else if ("addServicesWithoutSAWSDL".equals(methodName))
+				{
+					org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse addServicesWithoutSAWSDLResponse39 = null;
+					org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest wrappedParam = (org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest) fromOM(
+							msgContext.getEnvelope().getBody().getFirstElement(),
+							org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest.class,
+							getEnvelopeNamespaces(msgContext.getEnvelope()));
+
+					addServicesWithoutSAWSDLResponse39 = skel.addServicesWithoutSAWSDL(wrappedParam);
+
+					envelope = toEnvelope(getSOAPFactory(msgContext),
+							addServicesWithoutSAWSDLResponse39, false);
+				}
+				else if ("getServiceIndexingStatus".equals(methodName))
+				{
+					org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse getServiceIndexingStatusResponse41 = null;
+					org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest wrappedParam = (org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest) fromOM(
+							msgContext.getEnvelope().getBody().getFirstElement(),
+							org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest.class,
+							getEnvelopeNamespaces(msgContext.getEnvelope()));
+
+					getServiceIndexingStatusResponse41 = skel.getServiceIndexingStatus(wrappedParam);
+
+					envelope = toEnvelope(getSOAPFactory(msgContext),
+							getServiceIndexingStatusResponse41, false);
+				}
 				else if ("modifyService".equals(methodName))
 				{
 					org.seerc.fusion.sr.api.xsd.ModifyServiceResponse modifyServiceResponse33 = null;
@@ -406,6 +445,102 @@ public class PublicationManagerMessageReceiverInOut
 		}
 	}
 
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.AddServicesRequest param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.AddServicesRequest.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.AddServicesResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.AddServicesResponse.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.om.OMElement toOM(
+			org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			return param.getOMElement(
+					org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse.MY_QNAME,
+					org.apache.axiom.om.OMAbstractFactory.getOMFactory());
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
 	private org.apache.axiom.om.OMElement toOM(
 			org.seerc.fusion.sr.api.xsd.AddServiceWithoutSAWSDLRequest param,
 			boolean optimizeContent) throws org.apache.axis2.AxisFault
@@ -627,6 +762,72 @@ public class PublicationManagerMessageReceiverInOut
 		}
 	}
 
+	private org.apache.axiom.soap.SOAPEnvelope toEnvelope(
+			org.apache.axiom.soap.SOAPFactory factory,
+			org.seerc.fusion.sr.api.xsd.AddServicesResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			org.apache.axiom.soap.SOAPEnvelope emptyEnvelope = factory.getDefaultEnvelope();
+
+			emptyEnvelope.getBody().addChild(
+					param.getOMElement(
+							org.seerc.fusion.sr.api.xsd.AddServicesResponse.MY_QNAME,
+							factory));
+
+			return emptyEnvelope;
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.soap.SOAPEnvelope toEnvelope(
+			org.apache.axiom.soap.SOAPFactory factory,
+			org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			org.apache.axiom.soap.SOAPEnvelope emptyEnvelope = factory.getDefaultEnvelope();
+
+			emptyEnvelope.getBody().addChild(
+					param.getOMElement(
+							org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse.MY_QNAME,
+							factory));
+
+			return emptyEnvelope;
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
+	private org.apache.axiom.soap.SOAPEnvelope toEnvelope(
+			org.apache.axiom.soap.SOAPFactory factory,
+			org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse param,
+			boolean optimizeContent) throws org.apache.axis2.AxisFault
+	{
+		try
+		{
+			org.apache.axiom.soap.SOAPEnvelope emptyEnvelope = factory.getDefaultEnvelope();
+
+			emptyEnvelope.getBody().addChild(
+					param.getOMElement(
+							org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse.MY_QNAME,
+							factory));
+
+			return emptyEnvelope;
+		}
+		catch (org.apache.axis2.databinding.ADBException e)
+		{
+			throw org.apache.axis2.AxisFault.makeFault(e);
+		}
+	}
+
 	private org.apache.axiom.soap.SOAPEnvelope toEnvelope(
 			org.apache.axiom.soap.SOAPFactory factory,
 			org.seerc.fusion.sr.api.xsd.AddServiceWithoutSAWSDLResponse param,
@@ -780,6 +981,42 @@ public class PublicationManagerMessageReceiverInOut
 						.parse(param.getXMLStreamReaderWithoutCaching());
 			}
 
+			if (org.seerc.fusion.sr.api.xsd.AddServicesRequest.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.AddServicesRequest.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
+			if (org.seerc.fusion.sr.api.xsd.AddServicesResponse.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.AddServicesResponse.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
+			if (org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
+			if (org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
+			if (org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
+			if (org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse.class.equals(type))
+			{
+				return org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse.Factory
+						.parse(param.getXMLStreamReaderWithoutCaching());
+			}
+
 			if (org.seerc.fusion.sr.api.xsd.AddServiceProviderRequest.class.equals(type))
 			{
 				return org.seerc.fusion.sr.api.xsd.AddServiceProviderRequest.Factory.parse(param
@@ -19,19 +19,30 @@
  
  package org.seerc.fusion.sr.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.xml.namespace.QName;
 
 import org.apache.axis2.AxisFault;
 import org.seerc.fusion.sr.api.xsd.AddServiceProviderResponse;
 import org.seerc.fusion.sr.api.xsd.AddServiceResponse;
 import org.seerc.fusion.sr.api.xsd.AddServiceWithoutSAWSDLResponse;
+import org.seerc.fusion.sr.api.xsd.AddServicesResponse;
+import org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse;
+import org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse;
 import org.seerc.fusion.sr.api.xsd.InitiatePublicationSessionResponse;
 import org.seerc.fusion.sr.api.xsd.ModifyServiceProviderResponse;
 import org.seerc.fusion.sr.api.xsd.ModifyServiceResponse;
 import org.seerc.fusion.sr.api.xsd.RemoveServiceProviderResponse;
 import org.seerc.fusion.sr.api.xsd.RemoveServiceResponse;
+import org.seerc.fusion.sr.api.xsd.ServiceDescriptionType;
+import org.seerc.fusion.sr.api.xsd.ServicePublicationResultType;
 import org.seerc.fusion.sr.api.xsd.TerminatePublicationSessionResponse;
 import org.seerc.fusion.sr.core.PublicationHandler;
+import org.seerc.fusion.sr.core.PublicationIndexer;
+import org.seerc.fusion.sr.core.RegistryConfiguration;
+import org.seerc.fusion.sr.core.ServicePublication;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
@@ -72,6 +83,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -142,6 +154,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -225,6 +238,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -313,6 +327,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -391,6 +406,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -449,7 +465,10 @@ public class PublicationManagerSkeleton
 	 * the input parameters. It stores the service description as a
 	 * BusinessService record in the UDDI server and returns the records UUID
 	 * identifier. If the authentication token is invalid it returns a
-	 * SOAPFaultException.
+	 * SOAPFaultException. When the registry is configured for asynchronous
+	 * indexing, the identifier is returned before the service has been
+	 * semantically classified, and the progress of its classification can be
+	 * followed through getServiceIndexingStatus.
 	 * 
 	 * @param addServiceRequest
 	 * @throws AxisFault 
@@ -477,6 +496,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -590,6 +610,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -662,6 +683,265 @@ public class PublicationManagerSkeleton
 	
 	
 	
+	/**
+	 * Used for creating UDDI records for many enterprise services in a single
+	 * request. Each service description carries the same information as the
+	 * parameters of addService (the URL of the service's SAWSDL document, the
+	 * UUID of the service provider, and optionally a name and a textual
+	 * description). A result is returned for every service description, in
+	 * the same order, holding either the UUID identifier of the new record or
+	 * the reason the service could not be published. If the authentication
+	 * token is invalid it returns a SOAPFaultException.
+	 * 
+	 * @param addServicesRequest
+	 * @throws AxisFault 
+	 */
+	public org.seerc.fusion.sr.api.xsd.AddServicesResponse addServices(
+			org.seerc.fusion.sr.api.xsd.AddServicesRequest addServicesRequest) throws AxisFault
+	{
+		System.out.println("Invoked: addServices");
+
+		// Get the mandatory parameter values from the request message
+		String authToken = addServicesRequest.getAuthenticationToken();
+		ServiceDescriptionType[] serviceDescriptions = addServicesRequest.getServiceDescription();
+
+		System.out.println(
+				"Inputs provided: " + "authToken (" + authToken + "), "
+				+ "serviceDescription array with length (" + serviceDescriptions.length + ")");
+
+		// Create a controller for UDDI publication operations
+		PublicationHandler handler;
+		try
+		{
+			RegistryConfiguration.initialize();
+			handler = new PublicationHandler();
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+
+		// Ask the controller to add the services
+		List<ServicePublication> publications = toServicePublications(serviceDescriptions, true);
+		try
+		{
+			try
+			{
+				handler.addServices(authToken, publications);
+			}
+			catch (SemanticRegistryMatchmakingException e)
+			{
+				throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+						"fusion"), e.getMessage(), e);
+			}
+			catch (SemanticRegistryConfigurationException e)
+			{
+				throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+				"fusion"), e.getMessage(), e);
+			}
+
+			System.out.println("Outputs provided: serviceResult array with length (" + publications.size() + ")");
+
+			// Create response message
+			AddServicesResponse response = new AddServicesResponse();
+
+			// Set the outcome of every service as the content of the response message
+			response.setServiceResult(toServicePublicationResults(publications));
+			return response;
+		}
+		catch (SemanticRegistryMalformedInputException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryCommunicationException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryAuthException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Used for creating UDDI records for many enterprise services in a single
+	 * request, without parsing their SAWSDL documents. Each service
+	 * description carries the same information as the parameters of
+	 * addServiceWithoutSAWSDL, including the category, input and output
+	 * annotations of the service. A result is returned for every service
+	 * description, in the same order, holding either the UUID identifier of
+	 * the new record or the reason the service could not be published. If the
+	 * authentication token is invalid it returns a SOAPFaultException.
+	 * 
+	 * @param addServicesWithoutSAWSDLRequest
+	 * @throws AxisFault 
+	 */
+	public org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLResponse addServicesWithoutSAWSDL(
+			org.seerc.fusion.sr.api.xsd.AddServicesWithoutSAWSDLRequest addServicesWithoutSAWSDLRequest) throws AxisFault
+	{
+		System.out.println("Invoked: addServicesWithoutSAWSDL");
+
+		// Get the mandatory parameter values from the request message
+		String authToken = addServicesWithoutSAWSDLRequest.getAuthenticationToken();
+		ServiceDescriptionType[] serviceDescriptions = addServicesWithoutSAWSDLRequest.getServiceDescription();
+
+		System.out.println(
+				"Inputs provided: " + "authToken (" + authToken + "), "
+				+ "serviceDescription array with length (" + serviceDescriptions.length + ")");
+
+		// Create a controller for UDDI publication operations
+		PublicationHandler handler;
+		try
+		{
+			RegistryConfiguration.initialize();
+			handler = new PublicationHandler();
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+
+		// Ask the controller to add the services
+		List<ServicePublication> publications = toServicePublications(serviceDescriptions, false);
+		try
+		{
+			try
+			{
+				handler.addServicesWithoutSAWSDL(authToken, publications);
+			}
+			catch (SemanticRegistryMatchmakingException e)
+			{
+				throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+						"fusion"), e.getMessage(), e);
+			}
+			catch (SemanticRegistryConfigurationException e)
+			{
+				throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+				"fusion"), e.getMessage(), e);
+			}
+
+			System.out.println("Outputs provided: serviceResult array with length (" + publications.size() + ")");
+
+			// Create response message
+			AddServicesWithoutSAWSDLResponse response = new AddServicesWithoutSAWSDLResponse();
+
+			// Set the outcome of every service as the content of the response message
+			response.setServiceResult(toServicePublicationResults(publications));
+			return response;
+		}
+		catch (SemanticRegistryMalformedInputException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryCommunicationException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryAuthException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+		catch (SemanticRegistryException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(),
+					"fusion"), e.getMessage(), e);
+		}
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Converts the service descriptions of a bulk publication request to the
+	 * ServicePublication objects that the controller works on
+	 * 
+	 * @param serviceDescriptions
+	 * @param withSAWSDL whether the annotations are read from the SAWSDL documents
+	 * @return
+	 */
+	private List<ServicePublication> toServicePublications(
+			ServiceDescriptionType[] serviceDescriptions, boolean withSAWSDL)
+	{
+		List<ServicePublication> publications = new ArrayList<ServicePublication>(serviceDescriptions.length);
+		for (ServiceDescriptionType description : serviceDescriptions)
+		{
+			ServicePublication publication = new ServicePublication(
+					description.getSawsdlURL(),
+					description.getServiceProviderUUID(),
+					description.getServiceName(),
+					description.getServiceFreeTextDescription());
+			
+			if (!withSAWSDL)
+			{
+				publication.setHasCategoryAnnotationURI(description.getHasCategoryAnnotationURI());
+				if (description.getHasInputAnnotationURIList() != null)
+					publication.setHasInputAnnotationURIArray(description.getHasInputAnnotationURIList().getString());
+				if (description.getHasOutputAnnotationURIList() != null)
+					publication.setHasOutputAnnotationURIArray(description.getHasOutputAnnotationURIList().getString());
+			}
+			publications.add(publication);
+		}
+		return publications;
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Converts the outcome of every service in a bulk publication to the
+	 * results returned in the response message
+	 * 
+	 * @param publications
+	 * @return
+	 */
+	private ServicePublicationResultType[] toServicePublicationResults(
+			List<ServicePublication> publications)
+	{
+		ServicePublicationResultType[] results = new ServicePublicationResultType[publications.size()];
+		for (int i = 0; i < results.length; i++)
+		{
+			results[i] = new ServicePublicationResultType();
+			results[i].setServiceUUID(publications.get(i).getServiceUUID());
+			results[i].setErrorMessage(publications.get(i).getErrorMessage());
+		}
+		return results;
+	}
+
+	
+	
+	
+	
+	
+	
+	
 	/**
 	 * Used for updating the name, text-description, or provider of an
 	 * enterprise service that has been published in the UDDI server. The client
@@ -701,6 +981,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -780,6 +1061,7 @@ public class PublicationManagerSkeleton
 		PublicationHandler handler;
 		try
 		{
+			RegistryConfiguration.initialize();
 			handler = new PublicationHandler();
 		}
 		catch (SemanticRegistryConfigurationException e)
@@ -824,4 +1106,70 @@ public class PublicationManagerSkeleton
 			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(), "fusion"), e.getMessage(), e);
 		}
 	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Used for following the semantic classification of a service that was
+	 * published while the registry is configured for asynchronous indexing.
+	 * The UUID identifier of the service must be provided in the input
+	 * parameters. It returns the indexing state of the service (pending,
+	 * indexed, failed, or unknown if the service has not been handed over for
+	 * indexing since the registry started), the reason its indexing failed
+	 * if it did, the number of services waiting to be indexed, and the number
+	 * of milliseconds the oldest of them has been waiting.
+	 * 
+	 * @param getServiceIndexingStatusRequest
+	 * @throws AxisFault 
+	 */
+	public org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusResponse getServiceIndexingStatus(
+			org.seerc.fusion.sr.api.xsd.GetServiceIndexingStatusRequest getServiceIndexingStatusRequest) throws AxisFault
+	{
+		System.out.println("Invoked: getServiceIndexingStatus");
+
+		// Get the (mandatory) UUID from the request message
+		String serviceUUID = getServiceIndexingStatusRequest.getServiceUUID();
+
+		System.out.println("Inputs provided: serviceUUID (" + serviceUUID + ")");
+
+		// Create a controller for UDDI publication operations
+		PublicationHandler handler;
+		try
+		{
+			RegistryConfiguration.initialize();
+			handler = new PublicationHandler();
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(), "fusion"), e.getMessage(), e);
+		}
+		
+		// Ask the controller for the indexing state of the service
+		try
+		{
+			PublicationIndexer.IndexingStatus status = handler.getServiceIndexingStatus(serviceUUID);
+			PublicationIndexer indexer = PublicationIndexer.getInstance();
+			
+			System.out.println("Outputs provided: indexingState (" + status.getState() + ")");
+
+			// Create response message
+			GetServiceIndexingStatusResponse response = new GetServiceIndexingStatusResponse();
+
+			// Set the state of the service and of the indexing queue as the content of the response message
+			response.setServiceUUID(serviceUUID.trim());
+			response.setIndexingState(status.getState());
+			response.setErrorMessage(status.getErrorMessage());
+			response.setIndexingQueueDepth(indexer.getQueueDepth());
+			response.setIndexingLag(indexer.getIndexingLag());
+			return response;
+		}
+		catch (SemanticRegistryMalformedInputException e)
+		{
+			throw new AxisFault(new QName("http://www.seerc.org", e.getClass().getSimpleName(), "fusion"), e.getMessage(), e);
+		}
+	}
 }
@@ -0,0 +1,498 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC), 
+ * The University of Sheffield (http://www.seerc.org)
+ * 
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+ /**
+ * AddServicesResponse.java
+ *
+ * This file was auto-generated from WSDL
+ * by the Apache Axis2 version: 1.3  Built on : Aug 10, 2007 (04:45:58 LKT)
+ */
+package org.seerc.fusion.sr.api.xsd;
+
+
+/**
+ *  AddServicesResponse bean class
+ */
+public class AddServicesResponse implements org.apache.axis2.databinding.ADBBean {
+    public static final javax.xml.namespace.QName MY_QNAME = new javax.xml.namespace.QName("http://api.sr.fusion.seerc.org/xsd",
+            "addServicesResponse", "ns1");
+
+    /**
+     * field for ServiceResult
+     * This was an Array!
+     */
+    protected org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[] localServiceResult;
+
+    private static java.lang.String generatePrefix(java.lang.String namespace) {
+        if (namespace.equals("http://api.sr.fusion.seerc.org/xsd")) {
+            return "ns1";
+        }
+
+        return org.apache.axis2.databinding.utils.BeanUtil.getUniquePrefix();
+    }
+
+    /**
+     * Auto generated getter method
+     * @return org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[]
+     */
+    public org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[] getServiceResult() {
+        return localServiceResult;
+    }
+
+    /**
+     * validate the array for ServiceResult
+     */
+    protected void validateServiceResult(org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[] param) {
+        if ((param != null) && (param.length < 1)) {
+            throw new java.lang.RuntimeException();
+        }
+    }
+
+    /**
+     * Auto generated setter method
+     * @param param ServiceResult
+     */
+    public void setServiceResult(org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[] param) {
+        validateServiceResult(param);
+
+        this.localServiceResult = param;
+    }
+
+    /**
+     * Auto generated add method for the array for convenience
+     * @param param org.seerc.fusion.sr.api.xsd.ServicePublicationResultType
+     */
+    public void addServiceResult(org.seerc.fusion.sr.api.xsd.ServicePublicationResultType param) {
+        if (localServiceResult == null) {
+            localServiceResult = new org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[] {  };
+        }
+
+        java.util.List list = org.apache.axis2.databinding.utils.ConverterUtil.toList(localServiceResult);
+        list.add(param);
+        this.localServiceResult = (org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[]) list.toArray(new org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[list.size()]);
+    }
+
+    /**
+     * isReaderMTOMAware
+     * @return true if the reader supports MTOM
+     */
+    public static boolean isReaderMTOMAware(
+        javax.xml.stream.XMLStreamReader reader) {
+        boolean isReaderMTOMAware = false;
+
+        try {
+            isReaderMTOMAware = java.lang.Boolean.TRUE.equals(reader.getProperty(
+                        org.apache.axiom.om.OMConstants.IS_DATA_HANDLERS_AWARE));
+        } catch (java.lang.IllegalArgumentException e) {
+            isReaderMTOMAware = false;
+        }
+
+        return isReaderMTOMAware;
+    }
+
+    /**
+     *
+     * @param parentQName
+     * @param factory
+     * @return org.apache.axiom.om.OMElement
+     */
+    public org.apache.axiom.om.OMElement getOMElement(
+        final javax.xml.namespace.QName parentQName,
+        final org.apache.axiom.om.OMFactory factory)
+        throws org.apache.axis2.databinding.ADBException {
+        org.apache.axiom.om.OMDataSource dataSource = new org.apache.axis2.databinding.ADBDataSource(this,
+                MY_QNAME) {
+                public void serialize(
+                    org.apache.axis2.databinding.utils.writer.MTOMAwareXMLStreamWriter xmlWriter)
+                    throws javax.xml.stream.XMLStreamException {
+                    AddServicesResponse.this.serialize(MY_QNAME, factory,
+                        xmlWriter);
+                }
+            };
+
+        return new org.apache.axiom.om.impl.llom.OMSourcedElementImpl(MY_QNAME,
+            factory, dataSource);
+    }
+
+    public void serialize(final javax.xml.namespace.QName parentQName,
+        final org.apache.axiom.om.OMFactory factory,
+        org.apache.axis2.databinding.utils.writer.MTOMAwareXMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException,
+            org.apache.axis2.databinding.ADBException {
+        java.lang.String prefix = null;
+        java.lang.String namespace = null;
+
+        prefix = parentQName.getPrefix();
+        namespace = parentQName.getNamespaceURI();
+
+        if (namespace != null) {
+            java.lang.String writerPrefix = xmlWriter.getPrefix(namespace);
+
+            if (writerPrefix != null) {
+                xmlWriter.writeStartElement(namespace,
+                    parentQName.getLocalPart());
+            } else {
+                if (prefix == null) {
+                    prefix = generatePrefix(namespace);
+                }
+
+                xmlWriter.writeStartElement(prefix, parentQName.getLocalPart(),
+                    namespace);
+                xmlWriter.writeNamespace(prefix, namespace);
+                xmlWriter.setPrefix(prefix, namespace);
+            }
+        } else {
+            xmlWriter.writeStartElement(parentQName.getLocalPart());
+        }
+
+        if (localServiceResult != null) {
+            for (int i = 0; i < localServiceResult.length; i++) {
+                if (localServiceResult[i] != null) {
+                    localServiceResult[i].serialize(new javax.xml.namespace.QName(
+                            "http://api.sr.fusion.seerc.org/xsd", "serviceResult"),
+                        factory, xmlWriter);
+                } else {
+                    throw new org.apache.axis2.databinding.ADBException(
+                        "serviceResult cannot be null!!");
+                }
+            }
+        } else {
+            throw new org.apache.axis2.databinding.ADBException(
+                "serviceResult cannot be null!!");
+        }
+
+        xmlWriter.writeEndElement();
+    }
+
+    /**
+     * Util method to write an attribute with the ns prefix
+     */
+    private void writeAttribute(java.lang.String prefix,
+        java.lang.String namespace, java.lang.String attName,
+        java.lang.String attValue, javax.xml.stream.XMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException {
+        if (xmlWriter.getPrefix(namespace) == null) {
+            xmlWriter.writeNamespace(prefix, namespace);
+            xmlWriter.setPrefix(prefix, namespace);
+        }
+
+        xmlWriter.writeAttribute(namespace, attName, attValue);
+    }
+
+    /**
+     * Util method to write an attribute without the ns prefix
+     */
+    private void writeAttribute(java.lang.String namespace,
+        java.lang.String attName, java.lang.String attValue,
+        javax.xml.stream.XMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException {
+        if (namespace.equals("")) {
+            xmlWriter.writeAttribute(attName, attValue);
+        } else {
+            registerPrefix(xmlWriter, namespace);
+            xmlWriter.writeAttribute(namespace, attName, attValue);
+        }
+    }
+
+    /**
+     * Util method to write an attribute without the ns prefix
+     */
+    private void writeQNameAttribute(java.lang.String namespace,
+        java.lang.String attName, javax.xml.namespace.QName qname,
+        javax.xml.stream.XMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException {
+        java.lang.String attributeNamespace = qname.getNamespaceURI();
+        java.lang.String attributePrefix = xmlWriter.getPrefix(attributeNamespace);
+
+        if (attributePrefix == null) {
+            attributePrefix = registerPrefix(xmlWriter, attributeNamespace);
+        }
+
+        java.lang.String attributeValue;
+
+        if (attributePrefix.trim().length() > 0) {
+            attributeValue = attributePrefix + ":" + qname.getLocalPart();
+        } else {
+            attributeValue = qname.getLocalPart();
+        }
+
+        if (namespace.equals("")) {
+            xmlWriter.writeAttribute(attName, attributeValue);
+        } else {
+            registerPrefix(xmlWriter, namespace);
+            xmlWriter.writeAttribute(namespace, attName, attributeValue);
+        }
+    }
+
+    /**
+     *  method to handle Qnames
+     */
+    private void writeQName(javax.xml.namespace.QName qname,
+        javax.xml.stream.XMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException {
+        java.lang.String namespaceURI = qname.getNamespaceURI();
+
+        if (namespaceURI != null) {
+            java.lang.String prefix = xmlWriter.getPrefix(namespaceURI);
+
+            if (prefix == null) {
+                prefix = generatePrefix(namespaceURI);
+                xmlWriter.writeNamespace(prefix, namespaceURI);
+                xmlWriter.setPrefix(prefix, namespaceURI);
+            }
+
+            if (prefix.trim().length() > 0) {
+                xmlWriter.writeCharacters(prefix + ":" +
+                    org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                        qname));
+            } else {
+                // i.e this is the default namespace
+                xmlWriter.writeCharacters(org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                        qname));
+            }
+        } else {
+            xmlWriter.writeCharacters(org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                    qname));
+        }
+    }
+
+    private void writeQNames(javax.xml.namespace.QName[] qnames,
+        javax.xml.stream.XMLStreamWriter xmlWriter)
+        throws javax.xml.stream.XMLStreamException {
+        if (qnames != null) {
+            // we have to store this data until last moment since it is not possible to write any
+            // namespace data after writing the charactor data
+            java.lang.StringBuffer stringToWrite = new java.lang.StringBuffer();
+            java.lang.String namespaceURI = null;
+            java.lang.String prefix = null;
+
+            for (int i = 0; i < qnames.length; i++) {
+                if (i > 0) {
+                    stringToWrite.append(" ");
+                }
+
+                namespaceURI = qnames[i].getNamespaceURI();
+
+                if (namespaceURI != null) {
+                    prefix = xmlWriter.getPrefix(namespaceURI);
+
+                    if ((prefix == null) || (prefix.length() == 0)) {
+                        prefix = generatePrefix(namespaceURI);
+                        xmlWriter.writeNamespace(prefix, namespaceURI);
+                        xmlWriter.setPrefix(prefix, namespaceURI);
+                    }
+
+                    if (prefix.trim().length() > 0) {
+                        stringToWrite.append(prefix).append(":")
+                                     .append(org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                                qnames[i]));
+                    } else {
+                        stringToWrite.append(org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                                qnames[i]));
+                    }
+                } else {
+                    stringToWrite.append(org.apache.axis2.databinding.utils.ConverterUtil.convertToString(
+                            qnames[i]));
+                }
+            }
+
+            xmlWriter.writeCharacters(stringToWrite.toString());
+        }
+    }
+
+    /**
+     * Register a namespace prefix
+     */
+    private java.lang.String registerPrefix(
+        javax.xml.stream.XMLStreamWriter xmlWriter, java.lang.String namespace)
+        throws javax.xml.stream.XMLStreamException {
+        java.lang.String prefix = xmlWriter.getPrefix(namespace);
+
+        if (prefix == null) {
+            prefix = generatePrefix(namespace);
+
+            while (xmlWriter.getNamespaceContext().getNamespaceURI(prefix) != null) {
+                prefix = org.apache.axis2.databinding.utils.BeanUtil.getUniquePrefix();
+            }
+
+            xmlWriter.writeNamespace(prefix, namespace);
+            xmlWriter.setPrefix(prefix, namespace);
+        }
+
+        return prefix;
+    }
+
+    /**
+     * databinding method to get an XML representation of this object
+     *
+     */
+    public javax.xml.stream.XMLStreamReader getPullParser(
+        javax.xml.namespace.QName qName)
+        throws org.apache.axis2.databinding.ADBException {
+        java.util.ArrayList elementList = new java.util.ArrayList();
+        java.util.ArrayList attribList = new java.util.ArrayList();
+
+        if (localServiceResult != null) {
+            for (int i = 0; i < localServiceResult.length; i++) {
+                if (localServiceResult[i] != null) {
+                    elementList.add(new javax.xml.namespace.QName(
+                            "http://api.sr.fusion.seerc.org/xsd", "serviceResult"));
+                    elementList.add(localServiceResult[i]);
+                } else {
+                    throw new org.apache.axis2.databinding.ADBException(
+                        "serviceResult cannot be null !!");
+                }
+            }
+        } else {
+            throw new org.apache.axis2.databinding.ADBException(
+                "serviceResult cannot be null!!");
+        }
+
+        return new org.apache.axis2.databinding.utils.reader.ADBXMLStreamReaderImpl(qName,
+            elementList.toArray(), attribList.toArray());
+    }
+
+    /**
+     *  Factory class that keeps the parse method
+     */
+    public static class Factory {
+        /**
+         * static method to create the object
+         * Precondition:  If this object is an element, the current or next start element starts this object and any intervening reader events are ignorable
+         *                If this object is not an element, it is a complex type and the reader is at the event just after the outer start element
+         * Postcondition: If this object is an element, the reader is positioned at its end element
+         *                If this object is a complex type, the reader is positioned at the end element of its outer element
+         */
+        public static AddServicesResponse parse(
+            javax.xml.stream.XMLStreamReader reader) throws java.lang.Exception {
+            AddServicesResponse object = new AddServicesResponse();
+
+            int event;
+            java.lang.String nillableValue = null;
+            java.lang.String prefix = "";
+            java.lang.String namespaceuri = "";
+
+            try {
+                while (!reader.isStartElement() && !reader.isEndElement())
+                    reader.next();
+
+                if (reader.getAttributeValue(
+                            "http://www.w3.org/2001/XMLSchema-instance", "type") != null) {
+                    java.lang.String fullTypeName = reader.getAttributeValue("http://www.w3.org/2001/XMLSchema-instance",
+                            "type");
+
+                    if (fullTypeName != null) {
+                        java.lang.String nsPrefix = null;
+
+                        if (fullTypeName.indexOf(":") > -1) {
+                            nsPrefix = fullTypeName.substring(0,
+                                    fullTypeName.indexOf(":"));
+                        }
+
+                        nsPrefix = (nsPrefix == null) ? "" : nsPrefix;
+
+                        java.lang.String type = fullTypeName.substring(fullTypeName.indexOf(
+                                    ":") + 1);
+
+                        if (!"addServicesResponse".equals(type)) {
+                            //find namespace for the prefix
+                            java.lang.String nsUri = reader.getNamespaceContext()
+                                                           .getNamespaceURI(nsPrefix);
+
+                            return (AddServicesResponse) org.seerc.fusion.sr.api.xsd.ExtensionMapper.getTypeObject(nsUri,
+                                type, reader);
+                        }
+                    }
+                }
+
+                // Note all attributes that were handled. Used to differ normal attributes
+                // from anyAttributes.
+                java.util.Vector handledAttributes = new java.util.Vector();
+
+                reader.next();
+
+                java.util.ArrayList list0 = new java.util.ArrayList();
+
+                while (!reader.isStartElement() && !reader.isEndElement())
+                    reader.next();
+
+                if (reader.isStartElement() &&
+                        new javax.xml.namespace.QName(
+                            "http://api.sr.fusion.seerc.org/xsd",
+                            "serviceResult").equals(reader.getName())) {
+                    // Process the array and step past its final element's end.
+                    list0.add(org.seerc.fusion.sr.api.xsd.ServicePublicationResultType.Factory.parse(reader));
+
+                    //loop until we find a start element that is not part of this array
+                    boolean loopDone0 = false;
+
+                    while (!loopDone0) {
+                        // We should be at the end element, but make sure
+                        while (!reader.isEndElement())
+                            reader.next();
+
+                        // Step out of this element
+                        reader.next();
+
+                        // Step to next element event.
+                        while (!reader.isStartElement() &&
+                                !reader.isEndElement())
+                            reader.next();
+
+                        if (reader.isEndElement()) {
+                            //two continuous end elements means we are exiting the xml structure
+                            loopDone0 = true;
+                        } else {
+                            if (new javax.xml.namespace.QName(
+                                        "http://api.sr.fusion.seerc.org/xsd",
+                                        "serviceResult").equals(reader.getName())) {
+                                list0.add(org.seerc.fusion.sr.api.xsd.ServicePublicationResultType.Factory.parse(reader));
+                            } else {
+                                loopDone0 = true;
+                            }
+                        }
+                    }
+
+                    // call the converter utility  to convert and set the array
+                    object.setServiceResult((org.seerc.fusion.sr.api.xsd.ServicePublicationResultType[]) org.apache.axis2.databinding.utils.ConverterUtil.convertToArray(
+                            org.seerc.fusion.sr.api.xsd.ServicePublicationResultType.class, list0));
+                } // End of if for expected property start element
+
+                else {
+                    // A start element we are not expecting indicates an invalid parameter was passed
+                    throw new org.apache.axis2.databinding.ADBException(
+                        "Unexpected subelement " + reader.getLocalName());
+                }
+
+                while (!reader.isStartElement() && !reader.isEndElement())
+                    reader.next();
+
+                if (reader.isStartElement()) {
+                    // A start element we are not expecting indicates a trailing invalid property
+                    throw new org.apache.axis2.databinding.ADBException(
+                        "Unexpected subelement " + reader.getLocalName());
+                }
+            } catch (javax.xml.stream.XMLStreamException e) {
+                throw new java.lang.Exception(e);
+            }
+
+            return object;
+        }
+    } //end of factory class
+}
@@ -33,6 +33,16 @@ public class ExtensionMapper {
     public static java.lang.Object getTypeObject(
         java.lang.String namespaceURI, java.lang.String typeName,
         javax.xml.stream.XMLStreamReader reader) throws java.lang.Exception {
+        if ("http://api.sr.fusion.seerc.org/xsd".equals(namespaceURI) &&
+                "ServiceDescriptionType".equals(typeName)) {
+            return org.seerc.fusion.sr.api.xsd.ServiceDescriptionType.Factory.parse(reader);
+        }
+
+        if ("http://api.sr.fusion.seerc.org/xsd".equals(namespaceURI) &&
+                "ServicePublicationResultType".equals(typeName)) {
+            return org.seerc.fusion.sr.api.xsd.ServicePublicationResultType.Factory.parse(reader);
+        }
+
         throw new org.apache.axis2.databinding.ADBException("Unsupported type " +
             namespaceURI + " " + typeName);
     }
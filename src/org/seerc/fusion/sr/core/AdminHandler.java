@@ -27,9 +27,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -38,14 +37,10 @@ import java.util.Vector;
 
 import org.apache.axis2.AxisFault;
 import org.seerc.fusion.sr.api.DiscoveryManagerSkeleton;
-import org.seerc.fusion.sr.api.PublicationManagerSkeleton;
 import org.seerc.fusion.sr.api.xsd.GetAllServiceProviderUUIDsResponse;
 import org.seerc.fusion.sr.api.xsd.GetAllServiceProviderUUIDsResponse_type0;
 import org.seerc.fusion.sr.api.xsd.GetAllServiceUUIDsResponse;
 import org.seerc.fusion.sr.api.xsd.GetAllServiceUUIDsResponse_type0;
-import org.seerc.fusion.sr.api.xsd.InitiatePublicationSessionRequest;
-import org.seerc.fusion.sr.api.xsd.RemoveServiceProviderRequest;
-import org.seerc.fusion.sr.api.xsd.RemoveServiceRequest;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
@@ -54,22 +49,15 @@ import org.seerc.fusion.sr.exceptions.SemanticRegistryMalformedInputException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryNoMatchFoundException;
 import org.seerc.fusion.sr.utils.FileUtils;
-import org.semanticweb.owl.apibinding.OWLManager;
-import org.semanticweb.owl.model.OWLClass;
-import org.semanticweb.owl.model.OWLDataFactory;
-import org.semanticweb.owl.model.OWLDescription;
-import org.semanticweb.owl.model.OWLOntology;
-import org.semanticweb.owl.model.OWLOntologyCreationException;
-import org.semanticweb.owl.model.OWLOntologyManager;
 
 import org.uddi4j.UDDIException;
 import org.uddi4j.client.UDDIProxy;
-import org.uddi4j.datatype.service.BusinessService;
 import org.uddi4j.datatype.tmodel.TModel;
 import org.uddi4j.response.AuthToken;
 import org.uddi4j.response.DispositionReport;
 import org.uddi4j.response.Result;
-import org.uddi4j.response.ServiceDetail;
+import org.uddi4j.response.ServiceInfo;
+import org.uddi4j.response.ServiceList;
 import org.uddi4j.response.TModelDetail;
 import org.uddi4j.response.TModelInfo;
 import org.uddi4j.response.TModelList;
@@ -88,6 +76,10 @@ public class AdminHandler
 	// The UDDI4j proxy object
 	UDDIProxy proxy;
 
+	// The URLs of the UDDI Inquiry and Publish API
+	String inquiryURL;
+	String publishURL;
+
 	// The 5 tModels that need to be pre-registered with the UDDI server
 	String SAWSDL_TMODEL_KEY;
 	String CATEGORY_TMODEL_KEY;
@@ -114,109 +106,78 @@ public class AdminHandler
 	
 	throws SemanticRegistryConfigurationException
 	{						
-		// Specify which of the 3 SOAP transports that UDDI4j supports should
-		// be used to talk to jUDDI (Apache Axis, Apache SOAP 2.2, HP SOAP)
-		System.setProperty("org.uddi4j.TransportClassName",
-				"org.uddi4j.transport.ApacheAxisTransport");
-
-		// Initialise the UDDIProxy object
-		proxy = new UDDIProxy();
-
-		// Create a new properties object to store the settings loaded
-		// from the registry.properties file in WEB-INF/classes
-		Properties properties = new Properties();
+		// Get the settings loaded from the registry.properties file in WEB-INF/classes
+		// (the components shared by all handlers are configured by RegistryConfiguration)
+		Properties properties = RegistryConfiguration.getProperties();
 
-		// Try to obtain an inputstream to the registry.properties file
-		InputStream in = getClass().getClassLoader().getResourceAsStream("registry.properties");
-		
-		if (in == null)
-		{
-			System.out.println("The registry.properties file could not be loaded from the classloader's default directory.");
-			throw new SemanticRegistryConfigurationException("The registry.properties file could not be loaded from the classloader's default directory. " +
-					"Make sure a registry.properties file is placed under the WEB-INF/classes/ directory");
-		}
-		else
+		try
 		{
-			System.out.println("The registry.properties file was loaded from the classloader's default directory.");
+			// Get the URL values for the UDDI Inquiry and Publish API
+			if (properties.getProperty("inquiry_url") != null)
+				inquiryURL = properties.getProperty("inquiry_url");
+			if (properties.getProperty("publish_url") != null)
+				publishURL = properties.getProperty("publish_url");
+
+			// Check the validity of URIs loaded from the
+			// registry.properties file
+			if (!InputValidator.isURIWellFormed(publishURL)) 
+				throw new SemanticRegistryConfigurationException(
+					"publish_url in registry.properties file is not a valid URI");
+			if (!InputValidator.isURIWellFormed(inquiryURL)) 
+				throw new SemanticRegistryConfigurationException(
+					"inquiry_url in registry.properties file is not a valid URI");
+
+			// Get the long-lived proxy of this thread for the UDDI server
+			proxy = UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
+
+			// Set the UUID values of the canonical tModels needed 
+			SAWSDL_TMODEL_KEY = properties.getProperty("SAWSDL_Document_URL_tModel").replace("uuid:", "").replace(" ", "");
+			CATEGORY_TMODEL_KEY = properties.getProperty("Category_Annotation_tModel").replace("uuid:", "").replace(" ", "");
+			INPUT_TMODEL_KEY = properties.getProperty("Input_Annotation_tModel").replace("uuid:", "").replace(" ", "");
+			OUTPUT_TMODEL_KEY = properties.getProperty("Output_Annotation_tModel").replace("uuid:", "").replace(" ", "");
+			INDEXING_TMODEL_KEY = properties.getProperty("Subsumption_Indexing_tModel").replace("uuid:", "").replace(" ", "");
+			
+			// Check if the UUID keys loaded from the registry.properties file are valid
+			if (!InputValidator.isUUIDKeyWellFormed(SAWSDL_TMODEL_KEY))
+				throw new SemanticRegistryConfigurationException("SAWSDL_Document_URL_tModel property in registry.properties file is not a valid UUID");
+			if (!InputValidator.isUUIDKeyWellFormed(CATEGORY_TMODEL_KEY))
+				throw new SemanticRegistryConfigurationException("Category_Annotation_tModel property in registry.properties file is not a valid UUID");
+			if (!InputValidator.isUUIDKeyWellFormed(INPUT_TMODEL_KEY))
+				throw new SemanticRegistryConfigurationException("Input_Annotation_tModel property in registry.properties file is not a valid UUID");
+			if (!InputValidator.isUUIDKeyWellFormed(OUTPUT_TMODEL_KEY))
+				throw new SemanticRegistryConfigurationException("Output_Annotation_tModel property in registry.properties file is not a valid UUID");
+			if (!InputValidator.isUUIDKeyWellFormed(INDEXING_TMODEL_KEY))
+				throw new SemanticRegistryConfigurationException("Subsumption_Indexing_tModel property in registry.properties file is not a valid UUID");
+
+			// Make sure that the tModel keys loaded from registry.properties 
+			// correspond to the ones registered in the UDDI server
 			try
 			{
-				// This will look in the current classloader's context and find the 
-				// registry.properties files that is placed under /WEB-INF/classes/ 
-				// (any file placed in the "src" folder of an Eclipse Dynamic Web 
-				// Project gets deployed to WEB-INF/classes automatically)
-				properties.load(in);
-				
-				String inquiryURL = null;
-				String publishURL = null;
-					
-				// Get the URL values for the UDDI Inquiry and Publish API
-				if (properties.getProperty("inquiry_url") != null)
-					inquiryURL = properties.getProperty("inquiry_url");
-				if (properties.getProperty("publish_url") != null)
-					publishURL = properties.getProperty("publish_url");
-
-				// Check the validity of URIs loaded from the
-				// registry.properties file
-				if (!InputValidator.isURIWellFormed(publishURL)) 
-					throw new SemanticRegistryConfigurationException(
-						"publish_url in registry.properties file is not a valid URI");
-				if (!InputValidator.isURIWellFormed(inquiryURL)) 
-					throw new SemanticRegistryConfigurationException(
-						"inquiry_url in registry.properties file is not a valid URI");
-
-				// Set the values
-				proxy.setInquiryURL(inquiryURL);
-				proxy.setPublishURL(publishURL);
-
-				// Set the UUID values of the canonical tModels needed 
-				SAWSDL_TMODEL_KEY = properties.getProperty("SAWSDL_Document_URL_tModel").replace("uuid:", "").replace(" ", "");
-				CATEGORY_TMODEL_KEY = properties.getProperty("Category_Annotation_tModel").replace("uuid:", "").replace(" ", "");
-				INPUT_TMODEL_KEY = properties.getProperty("Input_Annotation_tModel").replace("uuid:", "").replace(" ", "");
-				OUTPUT_TMODEL_KEY = properties.getProperty("Output_Annotation_tModel").replace("uuid:", "").replace(" ", "");
-				INDEXING_TMODEL_KEY = properties.getProperty("Subsumption_Indexing_tModel").replace("uuid:", "").replace(" ", "");
-				
-				// Check if the UUID keys loaded from the registry.properties file are valid
-				if (!InputValidator.isUUIDKeyWellFormed(SAWSDL_TMODEL_KEY))
-					throw new SemanticRegistryConfigurationException("SAWSDL_Document_URL_tModel property in registry.properties file is not a valid UUID");
-				if (!InputValidator.isUUIDKeyWellFormed(CATEGORY_TMODEL_KEY))
-					throw new SemanticRegistryConfigurationException("Category_Annotation_tModel property in registry.properties file is not a valid UUID");
-				if (!InputValidator.isUUIDKeyWellFormed(INPUT_TMODEL_KEY))
-					throw new SemanticRegistryConfigurationException("Input_Annotation_tModel property in registry.properties file is not a valid UUID");
-				if (!InputValidator.isUUIDKeyWellFormed(OUTPUT_TMODEL_KEY))
-					throw new SemanticRegistryConfigurationException("Output_Annotation_tModel property in registry.properties file is not a valid UUID");
-				if (!InputValidator.isUUIDKeyWellFormed(INDEXING_TMODEL_KEY))
-					throw new SemanticRegistryConfigurationException("Subsumption_Indexing_tModel property in registry.properties file is not a valid UUID");
-
-				// Make sure that the tModel keys loaded from registry.properties 
-				// correspond to the ones registered in the UDDI server
-				try
-				{
-					validateHealthOfCanonicalTModelDeployment();
-				}
-				catch (SemanticRegistryException e)
-				{
-					throw new SemanticRegistryConfigurationException(e.getMessage());
-				}
-
-				// Check the validity of URIs loaded from the
-				// registry.properties file
-				if (!InputValidator.isURIWellFormed(properties
-						.getProperty("srkb_ontology_physical_URI"))) throw new SemanticRegistryConfigurationException(
-						"srkb_ontology_physical_URI in registry.properties file is not a valid URI");
-				if (!InputValidator.isURIWellFormed(properties
-						.getProperty("eai_ontology_physical_URI"))) throw new SemanticRegistryConfigurationException(
-						"eai_ontology_physical_URI in registry.properties file is not a valid URI");
-
-				// Set the locations (physical URIs) for the ontologies needed
-				srkbOntologyPhysicalURI = URI.create(properties.getProperty("srkb_ontology_physical_URI"));
-				eaiOntologyPhysicalURI = URI.create(properties.getProperty("eai_ontology_physical_URI"));
+				validateHealthOfCanonicalTModelDeployment();
 			}
-			catch (IOException e)
+			catch (SemanticRegistryException e)
 			{
-				System.out.println("SemanticRegistryConfigurationException occured!");
-				throw new SemanticRegistryConfigurationException(
-						"Problem loading the registry.properties file");
+				throw new SemanticRegistryConfigurationException(e.getMessage());
 			}
+
+			// Check the validity of URIs loaded from the
+			// registry.properties file
+			if (!InputValidator.isURIWellFormed(properties
+					.getProperty("srkb_ontology_physical_URI"))) throw new SemanticRegistryConfigurationException(
+					"srkb_ontology_physical_URI in registry.properties file is not a valid URI");
+			if (!InputValidator.isURIWellFormed(properties
+					.getProperty("eai_ontology_physical_URI"))) throw new SemanticRegistryConfigurationException(
+					"eai_ontology_physical_URI in registry.properties file is not a valid URI");
+
+			// Set the locations (physical URIs) for the ontologies needed
+			srkbOntologyPhysicalURI = URI.create(properties.getProperty("srkb_ontology_physical_URI"));
+			eaiOntologyPhysicalURI = URI.create(properties.getProperty("eai_ontology_physical_URI"));
+		}
+		catch (IOException e)
+		{
+			System.out.println("SemanticRegistryConfigurationException occured!");
+			throw new SemanticRegistryConfigurationException(
+					"Problem loading the registry.properties file");
 		}
 	}
 	
@@ -239,13 +200,6 @@ public class AdminHandler
 	throws SemanticRegistryMalformedInputException, 
 	SemanticRegistryException
 	{
-		// Specify which of the 3 SOAP transports that UDDI4j supports should
-		// be used to talk to jUDDI (Apache Axis, Apache SOAP 2.2, HP SOAP)
-		System.setProperty("org.uddi4j.TransportClassName", "org.uddi4j.transport.ApacheAxisTransport");
-
-		// Initialise the UDDIProxy object
-		proxy = new UDDIProxy();
-
 		// Check the validity of URIs provided 
 		if (!InputValidator.isURIWellFormed(publishURL)) 
 			throw new SemanticRegistryMalformedInputException("Input parameter value 'publishURL' is not a valid URL");
@@ -254,10 +208,11 @@ public class AdminHandler
 
 		
 		// Set the values
+		this.inquiryURL = inquiryURL;
+		this.publishURL = publishURL;
 		try
 		{
-			proxy.setInquiryURL(inquiryURL);
-			proxy.setPublishURL(publishURL);
+			proxy = UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
 		}
 		catch (MalformedURLException e)
 		{
@@ -1004,6 +959,9 @@ public class AdminHandler
 				throw new SemanticRegistryCommunicationException("Problem occured while attempting to write to the registry.properties file");
 			}
 			
+			// Have the handlers created from now on read the updated tModelKeys
+			RegistryConfiguration.reloadProperties();
+			
 		} // endif input is well-formed
 		else
 		{
@@ -1019,14 +977,19 @@ public class AdminHandler
 	
 	
 	/**
+	 * Removes every service and then every service provider from the UDDI
+	 * server, along with the AFPs of the services, using the bulk removal
+	 * operations of the {@link PublicationHandler}.
+	 * 
 	 * @param authToken
-	 * @return
+	 * @return true if every service provider was removed
 	 * @throws SemanticRegistryMalformedInputException
 	 * @throws SemanticRegistryCommunicationException
 	 * @throws SemanticRegistryNoMatchFoundException
 	 * @throws SemanticRegistryException
 	 * @throws SemanticRegistryMatchmakingException
 	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryConfigurationException
 	 */
 	public boolean removeAllServiceProviders(String authToken)
 	throws SemanticRegistryMalformedInputException,
@@ -1034,13 +997,18 @@ public class AdminHandler
 	SemanticRegistryNoMatchFoundException, 
 	SemanticRegistryException, 
 	SemanticRegistryMatchmakingException, 
-	SemanticRegistryAuthException
+	SemanticRegistryAuthException, 
+	SemanticRegistryConfigurationException
 	{		
 		if (authToken != null) authToken = authToken.trim();
 		boolean success = false;
 		
 		if (InputValidator.isAuthenticationTokenWellFormed(authToken))	
 		{
+			// Remove the services first, since the UDDI server would 
+			// delete them along with their providers but leave their AFPs behind
+			removeAllServices(authToken);
+			
 			DiscoveryManagerSkeleton man = new DiscoveryManagerSkeleton();
 			GetAllServiceProviderUUIDsResponse res = null;
 			GetAllServiceProviderUUIDsResponse_type0 sub = null;
@@ -1051,28 +1019,17 @@ public class AdminHandler
 			catch (AxisFault e)
 			{
 				System.out.println("Problem retrieving the UUIDs of service providers");
+				throw new SemanticRegistryCommunicationException("Problem retrieving the UUIDs of service providers");
 			}
 						
 			sub = res.getGetAllServiceProviderUUIDsResponse();
 			String[] uuids = sub.getString();
+			if (uuids == null || uuids.length == 0)
+				return true;
 			
-			PublicationManagerSkeleton pm = new PublicationManagerSkeleton();
-			InitiatePublicationSessionRequest init = new InitiatePublicationSessionRequest();
-
-			for (int i = 0; i < uuids.length; i++)
-			{
-				RemoveServiceProviderRequest rem = new RemoveServiceProviderRequest();
-				rem.setServiceProviderUUID(uuids[i]);
-				rem.setAuthenticationToken(authToken);
-				try
-				{
-					pm.removeServiceProvider(rem);
-				}
-				catch (AxisFault e)
-				{
-					System.out.println("Problem removing service with UUID: " + uuids[i]);
-				}
-			}
+			// Remove the service providers with batched delete calls
+			PublicationHandler handler = new PublicationHandler();
+			success = handler.removeServiceProviders(authToken, Arrays.asList(uuids)) == uuids.length;
 			
 		} // endif input is well-formed
 		else
@@ -1091,14 +1048,21 @@ public class AdminHandler
 	
 	
 	/**
+	 * Removes every service from the UDDI server, along with its AFP, using
+	 * the bulk removal operation of the {@link PublicationHandler}: the
+	 * services are deleted with batched delete_service calls sent side by
+	 * side, and all AFPs are removed from the SRKB ontology with a single
+	 * change.
+	 * 
 	 * @param authToken
-	 * @return
+	 * @return true if every service was removed
 	 * @throws SemanticRegistryMalformedInputException
 	 * @throws SemanticRegistryCommunicationException
 	 * @throws SemanticRegistryNoMatchFoundException
 	 * @throws SemanticRegistryException
 	 * @throws SemanticRegistryMatchmakingException
 	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryConfigurationException
 	 */
 	public boolean removeAllServices(String authToken)
 	throws SemanticRegistryMalformedInputException,
@@ -1106,7 +1070,8 @@ public class AdminHandler
 	SemanticRegistryNoMatchFoundException, 
 	SemanticRegistryException, 
 	SemanticRegistryMatchmakingException, 
-	SemanticRegistryAuthException
+	SemanticRegistryAuthException, 
+	SemanticRegistryConfigurationException
 	{		
 		if (authToken != null) authToken = authToken.trim();
 		boolean success = false;
@@ -1123,28 +1088,17 @@ public class AdminHandler
 			catch (AxisFault e)
 			{
 				System.out.println("Problem retrieving the UUIDs of published services");
+				throw new SemanticRegistryCommunicationException("Problem retrieving the UUIDs of published services");
 			}
 						
 			sub = res.getGetAllServiceUUIDsResponse();
 			String[] uuids = sub.getString();
+			if (uuids == null || uuids.length == 0)
+				return true;
 			
-			PublicationManagerSkeleton pm = new PublicationManagerSkeleton();
-			InitiatePublicationSessionRequest init = new InitiatePublicationSessionRequest();
-
-			for (int i = 0; i < uuids.length; i++)
-			{
-				RemoveServiceRequest rem = new RemoveServiceRequest();
-				rem.setServiceUUID(uuids[i]);
-				rem.setAuthenticationToken(authToken);
-				try
-				{
-					pm.removeService(rem);
-				}
-				catch (AxisFault e)
-				{
-					System.out.println("Problem removing service with UUID: " + uuids[i]);
-				}
-			}
+			// Remove the services with batched delete calls, and their AFPs with a single change
+			PublicationHandler handler = new PublicationHandler();
+			success = handler.removeServices(authToken, Arrays.asList(uuids)) == uuids.length;
 			
 		} // endif input is well-formed
 		else
@@ -1234,8 +1188,9 @@ public class AdminHandler
 			
 			// Check if the baseURI of the requestedFunctionalProfileURI
 			// coincides with the physicalURI of the SRKB ontology or the EAI ontology
-			if ( rfpBaseURI.equalsIgnoreCase(srkbOntologyBaseURI) 
-					|| rfpBaseURI.equalsIgnoreCase(eaiOntologyBaseURI) )
+			URIDictionary dictionary = URIDictionary.getInstance();
+			if ( dictionary.isSameURI(rfpBaseURI, srkbOntologyBaseURI) 
+					|| dictionary.isSameURI(rfpBaseURI, eaiOntologyBaseURI) )
 			{
 				rfpDefinedInKnownNamespace = true;
 				//System.out.println("The RFP is defined in a known namespace");
@@ -1287,169 +1242,27 @@ public class AdminHandler
 			{
 				System.out.println("There are some changes to be made in the indexing of advertisements");
 
-				List<String> affectedServiceAdvertisements = matchingAFPs.getProfileURIs();
-				URI matchingAFPURI = null;
-				String serviceUUID = "";
-				
-				// for every affected service, retrieve its advertisement
-				// and add a tModelReference to the INDEXING_TMODEL_KEY,
-				// with the provided RFP URI as value
-				for (int i = 0; i < affectedServiceAdvertisements.size(); i++)
+				// Add a tModelReference to the INDEXING_TMODEL_KEY, with the
+				// provided RFP URI as value, to the advertisement of every
+				// affected service that does not already have one
+				IndexingReferenceWriter writer = new IndexingReferenceWriter(inquiryURL, publishURL, INDEXING_TMODEL_KEY);
+				for (String matchingAFPURI : matchingAFPs.getProfileURIs())
 				{
-					matchingAFPURI = URI.create(affectedServiceAdvertisements.get(i));
-					serviceUUID = matchingAFPURI.getFragment();
-					ServiceDetail serviceDetail = null;
-
-					// Try to get the service detail from UDDI using the service
-					// key
-					try
-					{
-						serviceDetail = proxy.get_serviceDetail(serviceUUID);
-					}
-					catch (UDDIException e)
-					{
-						DispositionReport dr = e.getDispositionReport();
-						if (dr != null)
-						{
-							Vector results = dr.getResultVector();
-							for (int k = 0; k < results.size(); k++)
-							{
-								Result r = (Result) results.elementAt(k);
-								if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed")) 
-									System.out.println("The advertisement of service " + serviceUUID + " was not updated (no such UUID)");
-							}
-						}
-					}
-					catch (TransportException e1)
-					{
-						System.out.println("TransportException occured!");
-						throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
-					}
-
-					if (serviceDetail != null)
-					{
-						System.out.println("Preparing to update: " + serviceUUID);
-						
-						// Get the first business entity from the returned vector
-						Vector<BusinessService> businessServiceVector = serviceDetail.getBusinessServiceVector();
-
-						// Get the first and only BusinessService element
-						// from the vector
-						BusinessService businessService = (BusinessService) businessServiceVector.get(0);
-
-						// Get the categoryBag from the BusinessService
-						CategoryBag oldCategoryBag = businessService.getCategoryBag();
-
-						// Get the old keyedReferences vector
-						Vector<KeyedReference> oldKeyedRefVector = oldCategoryBag.getKeyedReferenceVector();
-
-						// Copy the keyedReferences vector from the old
-						// category bag into a new vector
-						Vector<KeyedReference> newKeyedRefVector = oldKeyedRefVector;		
-						
-						// Check if the old keyed reference vector already contains a reference to this RFP
-						if (!newKeyedRefVector.contains(generateKeyedReference(INDEXING_TMODEL_KEY, requestFunctionalProfileURI)))
-						{				
-							// Add a new keyedReference to the keyed reference
-							// vector for the AFP that matches the RFP
-							newKeyedRefVector.add(generateKeyedReference(INDEXING_TMODEL_KEY, requestFunctionalProfileURI));
-
-							// Copy the old category bag into a new one
-							CategoryBag newCategoryBag = oldCategoryBag;
-
-							// Replace the old keyedReferences vector with the
-							// new (enriched) one
-							newCategoryBag.setKeyedReferenceVector(newKeyedRefVector);
-
-							// Replace the old categoryBag with the new one (the
-							// rest of the
-							// attributes in the businessService object should
-							// remain unchanged)
-							businessService.setCategoryBag(newCategoryBag);
-
-							// Empty the businessServiceVector (i.e. remove the
-							// old businessService object)
-							businessServiceVector.clear();
-
-							// Add the old businessService again, which now
-							// contains the new categoryBag
-							businessServiceVector.addElement(businessService);
-
-							// Try to save the service
-							try
-							{
-								serviceDetail = proxy.save_service(authToken, businessServiceVector);
-								System.out.println("The advertisement of service " + serviceUUID + " was updated successfully");
-								updatedAdvertisementUUIDs.add(serviceUUID);
-							}
-							catch (UDDIException e)
-							{
-								DispositionReport dr = e.getDispositionReport();
-								if (dr != null)
-								{
-									Vector results = dr.getResultVector();
-									for (int k = 0; k < results.size(); k++)
-									{
-										Result r = (Result) results.elementAt(k);
-										System.out
-												.println("The UDDI server raised an exception with error number: "
-														+ r.getErrno());
-										if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-										{
-											System.out
-													.println("E_authTokenRequired: (10120) The authentication token is invalid");
-											throw new SemanticRegistryAuthException(
-													"The authentication token is invalid");
-										}
-										if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-										{
-											System.out
-													.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-											throw new SemanticRegistryAuthException(
-													"The authentication token has timed out");
-										}
-										if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-										{
-											System.out
-													.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-											throw new SemanticRegistryException(
-													"One or more UUID keys do not match any known values");
-										}
-										throw new SemanticRegistryException(
-												"UDDI exception with error number: " + r.getErrno());
-									}
-								}
-								else
-								{
-									System.out
-											.println("UDDI exception without Disposition Report -> SemanticRegistryCommunicationException");
-									throw new SemanticRegistryCommunicationException(
-											"Problem communicating with the UDDI server");
-								}
-							}
-							catch (TransportException e)
-							{
-								System.out.println("TransportException occured!");
-								throw new SemanticRegistryCommunicationException(
-										"Problem communicating with the UDDI server");
-							}
-							catch (Exception e)
-							{
-								System.out.println("SemanticRegistryException occured!");
-								throw new SemanticRegistryException(
-										"An exception occured for unspecified reasons");
-							}
-						}// if RFP URI already indexed for this service advertisement
-						else
-						{
-							numberOfServicesAlreadyIndexed ++;
-							System.out.println("The advertisement of service " + serviceUUID + " was not updated (RFP already exists in its index)");
-						}
-					}// end if serviceDetail != null
-				}// end for every affected service
+					writer.addReference(URI.create(matchingAFPURI).getFragment(), requestFunctionalProfileURI);
+				}
+				try
+				{
+					updatedAdvertisementUUIDs.addAll(writer.write(authToken));
+				}
+				finally
+				{
+					// Drop the cached discovery results, which may no longer hold
+					// (even if only some of the services were updated)
+					DiscoveryResultCache.getInstance().invalidate();
+				}
+				numberOfServicesAlreadyIndexed = writer.getUnchangedCount();
 			} // end else if matching service advertisements were successfully returned
-				
-			
+
 			if (updatedAdvertisementUUIDs.size() == 0)
 			{
 				System.out.println("Semantic matchmaking did not yield any new service advertisements matching this request.");
@@ -1491,8 +1304,15 @@ public class AdminHandler
 	
 	
 	/**
+	 * Re-indexes all service advertisements against all RFPs of the SRKB in
+	 * a single pass: every RFP is matched against the same classification of
+	 * the SRKB, and the advertisement of every affected service is then
+	 * updated once, with all the RFPs it matches, through an
+	 * IndexingReferenceWriter (only advertisements whose index changes are
+	 * saved, many per UDDI call).
+	 * 
 	 * @param authToken
-	 * @return
+	 * @return the UUIDs of the updated service advertisements
 	 * @throws SemanticRegistryMalformedInputException
 	 * @throws SemanticRegistryCommunicationException
 	 * @throws SemanticRegistryNoMatchFoundException
@@ -1517,79 +1337,59 @@ public class AdminHandler
 		if (InputValidator.isAuthenticationTokenWellFormed(authToken))	
 		{
 			
-			// //////////////////////
-			// LOAD THE SEMANTIC REGISTRY KB ONTOLOGY
-			// //////////////////////
+			// Get the URIs of the AFPs that every RFP matches, all RFPs being
+			// matched against the same classification of the SRKB
+			Map<String, List<String>> matchingAFPsByRFP = null;
+			
+			// Create a matchmaker to find AFPs that can match the RFPs
+			AdminTimeMatchmaker matchmaker = new AdminTimeMatchmaker();
 			
-			// Load the SRKB ontology
-			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
-
-			// Load the SRKB ontology from its physical URI (OWL file)
-			OWLOntology srkbOntology = null;
 			try
 			{
-				srkbOntology = manager.loadOntologyFromPhysicalURI(srkbOntologyPhysicalURI);
-				System.out.println("SRKB ontology loaded from " + srkbOntologyPhysicalURI);
+				matchingAFPsByRFP = matchmaker.getMatchingAFPsForAllRFPs(srkbOntologyPhysicalURI, eaiOntologyPhysicalURI);
 			}
-			catch (OWLOntologyCreationException e1)
+			catch (SemanticRegistryMatchmakingException e)
 			{
-				System.out.println("OWLOntologyCreationException: " + e1.getCause());
-				throw new SemanticRegistryMatchmakingException("An error occured while trying to load the SRKB Ontology from its physical URI (" + srkbOntologyPhysicalURI + ")");
+				throw new SemanticRegistryMatchmakingException(
+						"Problem occured during the semantic classification of the advertisements");
 			}
-
-			// Get the ontology's data factory to create the various objects
-			OWLDataFactory factory = manager.getOWLDataFactory();
-
-			// Get the SemanticRegistryKB ontology's logical URI
-			URI srkbLogicalURI = srkbOntology.getURI();
-			
-			// Obtain and load the imports closure of the semRegKBontology
-	        Set<OWLOntology> importsClosure = manager.getImportsClosure(srkbOntology);
-	        
-			System.out.println("Ontologies contained in the SRKB ontology's import closure:");
-			for (OWLOntology ont : importsClosure)
+			catch (SemanticRegistryConfigurationException e)
 			{
-				System.out.println(ont.getURI());
+				if (e.getMessage() == null || e.getMessage().length() == 0)
+					throw new SemanticRegistryConfigurationException("Problem occured during the semantic classification of the advertisements");
+				else
+					throw new SemanticRegistryConfigurationException(e.getMessage());
 			}
-	        
-			URI functionalFacetOntologyLogicalURI = getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory).getURI();
-			OWLOntology rfpOntology = getDefiningOntology(functionalFacetOntologyLogicalURI+"#RequestFunctionalProfile", importsClosure, factory);
-
-			// Create a reference to the Requested Functional Profile root class
-			OWLClass requestFunctionalProfileRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#RequestFunctionalProfile"));
-			
-			// Get a set of all the RFPs asserted in the ontology 
-			Set<OWLDescription> allRFPs = requestFunctionalProfileRootClass.getSubClasses(rfpOntology);
 			
-			String rfpURI = null;
-	   	    String [] affectedServices = null;
-	   	    
-			// Array for storing the UUIDs of the updated services
-			Vector<String> updatedAdvertisementUUIDs = new Vector<String>();
-	   	    
-	   	    // Iterate over all references to RFP classes
-			for (OWLDescription rfp : allRFPs)
+			// Record the matches per service, so that the advertisement of
+			// every affected service is updated once, with all the RFPs it matches
+			IndexingReferenceWriter writer = new IndexingReferenceWriter(inquiryURL, publishURL, INDEXING_TMODEL_KEY);
+			Set<String> affectedServiceUUIDs = new HashSet<String>();
+			for (Map.Entry<String, List<String>> match : matchingAFPsByRFP.entrySet())
 			{
-				// Call the reclassifyAdvertisements() method
-				try
+				for (String matchingAFPURI : match.getValue())
 				{
-					affectedServices = addRFPToIndex(authToken, rfp.asOWLClass().getURI().normalize().toString());
-				}
-				catch (SemanticRegistryNoMatchFoundException e)
-				{
-					// 
-				}
-				
-				// Add the URI of every updated advertisement to the returned list
-				if (affectedServices != null)
-				{
-					for (int i = 0; i < affectedServices.length; i++)
-					{
-						updatedAdvertisementUUIDs.add(affectedServices[i]);									
-					}
+					String serviceUUID = URI.create(matchingAFPURI).getFragment();
+					writer.addReference(serviceUUID, match.getKey());
+					affectedServiceUUIDs.add(serviceUUID);
 				}
 			}
 			
+			// Vector for storing the UUIDs of the updated services
+			Vector<String> updatedAdvertisementUUIDs = new Vector<String>();
+			try
+			{
+				updatedAdvertisementUUIDs.addAll(writer.write(authToken));
+			}
+			finally
+			{
+				// Drop the cached discovery results, which may no longer hold
+				// (even if only some of the services were updated)
+				DiscoveryResultCache.getInstance().invalidate();
+			}
+			
+			System.out.println(updatedAdvertisementUUIDs.size() + " of " + affectedServiceUUIDs.size() + " affected service advertisements were updated");
+
 			if (updatedAdvertisementUUIDs.size() == 0)
 			{
 				System.out.println("The re-classification procedure did not yield any new matches among RFPs and AFPs.");
@@ -1629,144 +1429,57 @@ public class AdminHandler
 	
 		
 	/**
-	 * @param targetClassName
-	 * @param importsClosure
-	 * @param factory
+	 * Finds the services whose advertisement references the given RFP through
+	 * the Subsumption_Indexing tModel
+	 * 
+	 * @param requestFunctionalProfileURI
 	 * @return
-	 * @throws SemanticRegistryConfigurationException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
 	 */
-	private static OWLOntology getDefiningOntology(
-			String targetClassName, 
-			Set<OWLOntology> importsClosure, 
-			OWLDataFactory factory) 
+	private ServiceList findServicesIndexedUnder(String requestFunctionalProfileURI)
 	
-	throws SemanticRegistryConfigurationException
+	throws SemanticRegistryCommunicationException, 
+			SemanticRegistryException
 	{
-		// Determine which of the ontologies imported by the SRKB 
-		// ontology (directly or indirectly) is the ontology in which 
-		// the targetClassName is defined, and retrieve its logical URI
-		System.out.println("Scanning for " + targetClassName + " in the import closure of the SRKB ontology:");
-		
-		OWLClass tmpClass = null; 
-		OWLOntology returnedOntology = null;
+		// Create a categoryBag with a keyedReference to the
+		// INDEXING_TMODEL_KEY with a value equal to the URI
+		KeyedReference kr = new KeyedReference();
+		kr.setTModelKey("uuid:" + INDEXING_TMODEL_KEY);
+		kr.setKeyName("Subsumption_Indexing_tModel");
+		kr.setKeyValue(requestFunctionalProfileURI);
 		
-		// Create a map to store search result tuples (ontology logical URI, number of subclasses detected)
-		Map<OWLOntology, Integer> ontologySearchResults = new HashMap<OWLOntology, Integer>();
+		Vector<KeyedReference> krList = new Vector<KeyedReference>();
+		krList.add(kr);
 		
-		URI targetClassURI = URI.create(targetClassName);
+		CategoryBag categoryBag = new CategoryBag();
+		categoryBag.setKeyedReferenceVector(krList);
 		
-		// Iterate over every ontology in the imports closure and check  
-		// if it contains any asserted subclasses of targetClassName
-		for (OWLOntology ont : importsClosure)
-		{
-			if (targetClassURI.isAbsolute())
-			{
-				tmpClass = factory.getOWLClass(targetClassURI);
-			}
-			else
-			{
-				tmpClass = factory.getOWLClass(URI.create(ont.getURI() + targetClassName));
-			}
-			
-			//System.out.println("Looking for subclasses of " + tmpClass.getURI() + " in " + ont.getURI());
-			Set<OWLDescription> foundSubClasses = tmpClass.getSubClasses(ont);
-			
-			// The containsEntityDeclaration method offers the best technique for 
-			// the specific purpose but cannot be used as it is still not implemented 
-			// in the latest binary release of the OWL-API (v2.1.1 - 16th August 2007)
-			//if (ont.containsEntityDeclaration(target)) 
-			//System.out.println("A declaration for concept " + tmpClass.getURI() + " was found in " + ont.getURI());
-			
-			// Since a concept with the specified name (targetClassName) may be defined in more 
-			// than one ontologies in the closure, judging which is the correct ontology that we 
-			// are after can only be based on a heuristic (the number of concepts in the ontology 
-			// that are defined as asserted subclasses of the target class - the more the better)
-			
-			// If at least one asserted subclass of the target class has been found
-			if (foundSubClasses.size() > 0)
-			{				
-				// Add it to the search results map
-				ontologySearchResults.put(ont, foundSubClasses.size());
-			}
-		}
-		
-		// If none of the ontologies in the import closure of the SRKB contains a 
-		// subclass of the target class, there is a configuration problem
-		if (ontologySearchResults.size() == 0)
+		try
 		{
-			throw new SemanticRegistryConfigurationException(
-					"Configuration problem detected: None of the ontologies in the import closure " +
-					"of the SRKB ontology contains subclasses of the " + targetClassName + " concept. " +
-					"Make sure that the SRKB ontology imports (directly or indirectly) some ontology " +
-					"in which a " + targetClassName + " concept as well as several subclass concepts are defined.");
+			return proxy.find_service(null, categoryBag, null, 0);
 		}
-		
-		// Standard case: only one ontology from the SRKB's imports closure 
-		// contains asserted subclasses of the target concept 
-		if (ontologySearchResults.size() == 1)
+		catch (UDDIException e)
 		{
-			returnedOntology = ontologySearchResults.keySet().iterator().next();
-			//int subclasses = ontologySearchResults.get(targetOntologyLogicalURI);
-			//System.out.println("FOUND " + subclasses + " subclasses of #TaxonomyEntity in " + taxonomyOntologyLogicalURI);
+			DispositionReport dr = e.getDispositionReport();
+			if (dr != null)
+			{
+				Vector results = dr.getResultVector();
+				for (int i = 0; i < results.size(); i++)
+				{
+					Result r = (Result) results.elementAt(i);
+					System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
+					throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
+				}
+			}
+			System.out.println("UDDI exception without Disposition Report -> SemanticRegistryCommunicationException");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
 		}
-		
-		// Exceptional case: more than one ontology from the SRKB's imports closure 
-		// contain asserted subclasses of the target class. Therefore Judging which 
-		// is the correct ontology can only be based on a heuristic (we choose the number of 
-		// is the correct asserted subclasses that were detected - the more being the better) 
-		if (ontologySearchResults.size() > 1)
+		catch (TransportException e)
 		{
-			int maxSubClassesFound = 0 ;
-			OWLOntology ontContainingMaxSubClasses = null;
-		    
-			// Get the keys (URIs) and values (number of subclasses) for every entry in the map
-		    for (Iterator it = ontologySearchResults.entrySet().iterator(); it.hasNext(); ) 
-		    {
-		        Map.Entry entry = (Map.Entry)it.next();
-		        OWLOntology onto = (OWLOntology) entry.getKey();
-		        Integer numOfSubclasses = (Integer) entry.getValue();
-		        
-		        if (numOfSubclasses.intValue() > maxSubClassesFound)
-		        {
-		        	maxSubClassesFound = numOfSubclasses.intValue();
-		        	ontContainingMaxSubClasses = onto;
-		        }
-		    }
-		    returnedOntology = ontContainingMaxSubClasses;
+			System.out.println("TransportException occured!");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
 		}
-		
-		System.out.println("Subclasses of the " + tmpClass + " concept are defined in " + returnedOntology.getURI());
-		return returnedOntology;
-	}
-	
-	
-	
-	
-	
-	
-			
-	/**
-	 * @param tModelKey
-	 * @param keyValue
-	 * @return
-	 * @throws SemanticRegistryException
-	 */
-	private KeyedReference generateKeyedReference(String tModelKey, String keyValue)
-			throws SemanticRegistryException
-	{
-		KeyedReference kr = new KeyedReference();
-		kr.setTModelKey("uuid:" + tModelKey);
-		kr.setKeyValue(keyValue);
-		String keyName = null;
-
-		if (tModelKey.equalsIgnoreCase(SAWSDL_TMODEL_KEY)) keyName = "SAWSDL_Document_URL_tModel";
-		if (tModelKey.equalsIgnoreCase(CATEGORY_TMODEL_KEY)) keyName = "Category_Annotation_tModel";
-		if (tModelKey.equalsIgnoreCase(INPUT_TMODEL_KEY)) keyName = "Input_Annotation_tModel";
-		if (tModelKey.equalsIgnoreCase(OUTPUT_TMODEL_KEY)) keyName = "Output_Annotation_tModel";
-		if (tModelKey.equalsIgnoreCase(INDEXING_TMODEL_KEY)) keyName = "Subsumption_Indexing_tModel";
-
-		kr.setKeyName(keyName);
-		return kr;
 	}
 	
 	
@@ -1776,15 +1489,19 @@ public class AdminHandler
 	
 	
 	/**
+	 * Removes an RFP from the subsumption index. The service advertisements
+	 * that reference the RFP are found with a find_service query on the
+	 * Subsumption_Indexing tModel, so only those advertisements are retrieved
+	 * and updated, however many services are published.
+	 * 
 	 * @param authToken
 	 * @param requestFunctionalProfileURI
-	 * @return
+	 * @return the UUIDs of the updated service advertisements
 	 * @throws SemanticRegistryException
 	 * @throws SemanticRegistryCommunicationException
 	 * @throws SemanticRegistryAuthException
 	 * @throws SemanticRegistryNoMatchFoundException
 	 * @throws SemanticRegistryMalformedInputException
-	 * @throws AxisFault 
 	 */
 	public String[] removeRFPFromIndex(
 			String authToken, 
@@ -1794,7 +1511,7 @@ public class AdminHandler
 	SemanticRegistryCommunicationException, 
 	SemanticRegistryAuthException, 
 	SemanticRegistryNoMatchFoundException, 
-	SemanticRegistryMalformedInputException, AxisFault
+	SemanticRegistryMalformedInputException
 	{
 		// Remove leading and trailing whitespaces
 		if (authToken != null) authToken = authToken.trim();
@@ -1805,162 +1522,39 @@ public class AdminHandler
 			// Array for storing the UUIDs of the updated services
 			Vector<String> updatedAdvertisementUUIDs = new Vector<String>();
 			
-			// Create a discovery manager to get all service UUIDs
-			DiscoveryManagerSkeleton discoveryManager = new DiscoveryManagerSkeleton();
-			GetAllServiceUUIDsResponse response = null;
-			GetAllServiceUUIDsResponse_type0 response2 = null;
+			// Remove the tModelReference to the INDEXING_TMODEL_KEY with the
+			// provided RFP URI as value from the services that the UDDI server
+			// finds indexed under it. If the server truncates the list, look
+			// again for the ones that remain, until none is left or none of
+			// the ones found can be updated.
+			boolean truncated = true;
 			try
 			{
-				response = discoveryManager.getAllServiceUUIDs();
-			}
-			catch (AxisFault e)
-			{
-				System.out.println("Problem retrieving the UUIDs of published services");
-				throw e;
-			}
-			
-			// Get all service UUIDs in an array
-			response2 = response.getGetAllServiceUUIDsResponse();
-			String[] uuids = response2.getString();
-			
-			
-			// For every service...
-			for (int i = 0; i < uuids.length; i++)
-			{
-				String serviceUUID = uuids[i];
-				ServiceDetail serviceDetail = null;
-
-				// Try to get the service detail from UDDI using the service key
-				try
-				{
-					serviceDetail = proxy.get_serviceDetail(serviceUUID);
-				}
-				catch (UDDIException e)
+				while (truncated)
 				{
-					DispositionReport dr = e.getDispositionReport();
-					if (dr != null)
+					ServiceList indexedServices = findServicesIndexedUnder(requestFunctionalProfileURI);
+					Vector serviceInfos = (indexedServices.getServiceInfos() != null) ? indexedServices.getServiceInfos().getServiceInfoVector() : null;
+					if (serviceInfos == null || serviceInfos.size() == 0)
+						break;
+					
+					IndexingReferenceWriter writer = new IndexingReferenceWriter(inquiryURL, publishURL, INDEXING_TMODEL_KEY);
+					for (int i = 0; i < serviceInfos.size(); i++)
 					{
-						Vector results = dr.getResultVector();
-						for (int k = 0; k < results.size(); k++)
-						{
-							Result r = (Result) results.elementAt(k);
-							if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed")) 
-								System.out.println("The advertisement of service " + serviceUUID + " was not updated (no such UUID)");
-						}
+						writer.removeReference(((ServiceInfo) serviceInfos.elementAt(i)).getServiceKey(), requestFunctionalProfileURI);
 					}
-				}
-				catch (TransportException e1)
-				{
-					System.out.println("TransportException occured!");
-					throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
-				}
-
-				if (serviceDetail != null)
-				{				
-					// Get the first business entity from the returned vector
-					Vector<BusinessService> businessServiceVector = serviceDetail.getBusinessServiceVector();
-
-					// Get the first and only BusinessService element from the vector
-					BusinessService businessService = (BusinessService) businessServiceVector.get(0);
-
-					// Get the categoryBag from the BusinessService
-					CategoryBag oldCategoryBag = businessService.getCategoryBag();
-
-					// Get the old keyedReferences vector
-					Vector<KeyedReference> oldKeyedRefVector = oldCategoryBag.getKeyedReferenceVector();
+					List<String> updated = writer.write(authToken);
+					updatedAdvertisementUUIDs.addAll(updated);
 					
-					// Check if the old keyed reference vector contains a reference to this RFP
-					if (oldKeyedRefVector.contains(generateKeyedReference(INDEXING_TMODEL_KEY, requestFunctionalProfileURI)))
-					{
-						// Copy the keyedReferences vector from the old
-						// category bag into a new vector
-						Vector<KeyedReference> newKeyedRefVector = oldKeyedRefVector;		
-						
-						// Remove the keyedReference from the new vector 
-						newKeyedRefVector.remove(generateKeyedReference(INDEXING_TMODEL_KEY, requestFunctionalProfileURI));
-
-						// Copy the old category bag into a new one
-						CategoryBag newCategoryBag = oldCategoryBag;
-
-						// Replace the old keyedReferences vector with the
-						// new (enriched) one
-						newCategoryBag.setKeyedReferenceVector(newKeyedRefVector);
-
-						// Replace the old categoryBag with the new one (the
-						// rest of the attributes in the businessService object 
-						// should remain unchanged)
-						businessService.setCategoryBag(newCategoryBag);
-
-						// Empty the businessServiceVector (i.e. remove the
-						// old businessService object)
-						businessServiceVector.clear();
-
-						// Add the old businessService again, which now
-						// contains the new categoryBag
-						businessServiceVector.addElement(businessService);
-
-						// Try to save the service
-						try
-						{
-							serviceDetail = proxy.save_service(authToken, businessServiceVector);
-							System.out.println("The advertisement of service " + serviceUUID + " was updated successfully");
-							updatedAdvertisementUUIDs.add(serviceUUID);
-						}
-						catch (UDDIException e)
-						{
-							DispositionReport dr = e.getDispositionReport();
-							if (dr != null)
-							{
-								Vector results = dr.getResultVector();
-								for (int k = 0; k < results.size(); k++)
-								{
-									Result r = (Result) results.elementAt(k);
-									System.out.println("The UDDI server raised an exception with error number: "+ r.getErrno());
-									if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-									{
-										System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
-										throw new SemanticRegistryAuthException(
-												"The authentication token is invalid");
-									}
-									if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-									{
-										System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-										throw new SemanticRegistryAuthException(
-												"The authentication token has timed out");
-									}
-									if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-									{
-										System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-										throw new SemanticRegistryException(
-												"One or more UUID keys do not match any known values");
-									}
-									throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
-								}
-							}
-							else
-							{
-								System.out
-										.println("UDDI exception without Disposition Report -> SemanticRegistryCommunicationException");
-								throw new SemanticRegistryCommunicationException(
-										"Problem communicating with the UDDI server");
-							}
-						}
-						catch (TransportException e)
-						{
-							System.out.println("TransportException occured!");
-							throw new SemanticRegistryCommunicationException(
-									"Problem communicating with the UDDI server");
-						}
-						catch (Exception e)
-						{
-							System.out.println("SemanticRegistryException occured!");
-							throw new SemanticRegistryException(
-									"An exception occured for unspecified reasons");
-						}
-					}// if RFP URI already indexed for this service advertisement
-				}// end if serviceDetail != null
+					truncated = indexedServices.getTruncatedBoolean() && updated.size() > 0;
+				}
 			}
-						
+			finally
+			{
+				// Drop the cached discovery results, which may no longer hold
+				// (even if only some of the services were updated)
+				DiscoveryResultCache.getInstance().invalidate();
+			}
+
 			if (updatedAdvertisementUUIDs.size() == 0)
 			{
 				System.out.println("There where no necessary changes to the index. " +
@@ -0,0 +1,404 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Properties;
+
+/**
+ * The fixed-width part of the rows of an {@link AdvertisementDescriptorTable}
+ * (the message exchange pattern and the filler class IDs of every AFP), kept
+ * outside the heap so that it does not add to garbage collection as the
+ * number of AFPs grows. The rows are held in fixed-size chunks, each in a
+ * direct buffer or in a memory-mapped file if a store directory has been
+ * configured, and are read in place by the matchmakers. Copies of the store
+ * made for a new version of the table share the chunks of the original:
+ * rows that no version has written yet are appended in place (each version
+ * only reads as many rows as its table holds), and a chunk is only copied
+ * when a row that another version may read is overwritten. Chunks are
+ * released when no store refers to them any more.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class AdvertisementDescriptorStore
+{
+	// The number of bytes of every row
+	static final int ROW_SIZE = 16;
+
+	// The number of rows of every chunk, as a power of two
+	private static final int CHUNK_SHIFT = 10;
+
+	// The number of rows of every chunk
+	private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+	// The offset of the hasCategory filler class ID in a row
+	private static final int CATEGORY_OFFSET = 0;
+
+	// The offset of the hasInput filler class ID in a row
+	private static final int INPUT_OFFSET = 4;
+
+	// The offset of the hasOutput filler class ID in a row
+	private static final int OUTPUT_OFFSET = 8;
+
+	// The offset of the message exchange pattern in a row
+	private static final int MEP_OFFSET = 12;
+
+	// The directory of the memory-mapped files, or null to use direct buffers
+	private static volatile File directory = null;
+
+	// The chunks holding the rows, by the row number divided by the chunk size (null for chunks not yet needed)
+	Chunk[] chunks = new Chunk[1];
+
+	// The chunks that belong to this store only, and can therefore be overwritten
+	BitSet ownedChunks = new BitSet();
+
+
+
+
+
+
+
+	/**
+	 * Sets the directory where the rows are kept in memory-mapped files from
+	 * the given properties, if it is present. Only stores allocated after
+	 * this is called are affected.
+	 *
+	 * @param properties
+	 */
+	public static void configure(Properties properties)
+	{
+		String path = properties.getProperty("afp_store_directory");
+		if (path == null || path.trim().length() == 0)
+			return;
+
+		File newDirectory = new File(path.trim());
+		if (!newDirectory.isDirectory() && !newDirectory.mkdirs())
+		{
+			System.out.println("Invalid afp_store_directory property in registry.properties -the AFP rows will be kept in direct buffers-");
+			return;
+		}
+		directory = newDirectory;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the code of the message exchange pattern of the AFP
+	 */
+	byte getMEP(int row)
+	{
+		return chunks[row >>> CHUNK_SHIFT].buffer.get(getOffset(row) + MEP_OFFSET);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasCategory filler class of the AFP
+	 */
+	int getCategoryId(int row)
+	{
+		return chunks[row >>> CHUNK_SHIFT].buffer.getInt(getOffset(row) + CATEGORY_OFFSET);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasInput filler class of the AFP, or -1
+	 */
+	int getInputId(int row)
+	{
+		return chunks[row >>> CHUNK_SHIFT].buffer.getInt(getOffset(row) + INPUT_OFFSET);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasOutput filler class of the AFP, or -1
+	 */
+	int getOutputId(int row)
+	{
+		return chunks[row >>> CHUNK_SHIFT].buffer.getInt(getOffset(row) + OUTPUT_OFFSET);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Stores a row, copying its chunk first if another copy of the store may
+	 * read the row.
+	 *
+	 * @param row
+	 * @param mep
+	 * @param categoryId
+	 * @param inputId
+	 * @param outputId
+	 */
+	void set(int row, byte mep, int categoryId, int inputId, int outputId)
+	{
+		ByteBuffer buffer = getWritableChunk(row).buffer;
+		int offset = getOffset(row);
+		buffer.putInt(offset + CATEGORY_OFFSET, categoryId);
+		buffer.putInt(offset + INPUT_OFFSET, inputId);
+		buffer.putInt(offset + OUTPUT_OFFSET, outputId);
+		buffer.put(offset + MEP_OFFSET, mep);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Copies a row over another one.
+	 *
+	 * @param fromRow
+	 * @param toRow
+	 */
+	void move(int fromRow, int toRow)
+	{
+		set(toRow, getMEP(fromRow), getCategoryId(fromRow), getInputId(fromRow), getOutputId(fromRow));
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the store that can be changed without affecting this
+	 * one. The chunks are shared, and are only copied when a row that the
+	 * other copy may read is overwritten.
+	 *
+	 * @return
+	 */
+	AdvertisementDescriptorStore copy()
+	{
+		AdvertisementDescriptorStore copy = new AdvertisementDescriptorStore();
+		copy.chunks = chunks.clone();
+
+		// The chunks are now shared, so this store must copy them before overwriting them too
+		ownedChunks = new BitSet();
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of bytes held outside the heap by the chunks of the
+	 * store, including the ones shared with other copies
+	 */
+	long getMemoryFootprint()
+	{
+		long bytes = 0;
+		for (Chunk chunk : chunks)
+		{
+			if (chunk != null)
+				bytes += CHUNK_ROWS * ROW_SIZE;
+		}
+		return bytes;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the chunk of the given row, ready for the row to be written:
+	 * the chunk is allocated if it is not yet needed, and copied if it is
+	 * shared and another copy of the store may read the row.
+	 *
+	 * @param row
+	 * @return
+	 */
+	private Chunk getWritableChunk(int row)
+	{
+		int index = row >>> CHUNK_SHIFT;
+		if (index >= chunks.length)
+		{
+			Chunk[] newChunks = new Chunk[Math.max(index + 1, chunks.length * 2)];
+			System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+			chunks = newChunks;
+		}
+
+		int rowInChunk = row & (CHUNK_ROWS - 1);
+		Chunk chunk = chunks[index];
+		if (chunk == null)
+		{
+			chunk = new Chunk(allocate(CHUNK_ROWS));
+			chunks[index] = chunk;
+			ownedChunks.set(index);
+		}
+		else if (!ownedChunks.get(index) && rowInChunk < chunk.rowCount)
+		{
+			// Copy the rows written so far, without moving the position of the shared buffer (so that concurrent readers are not affected)
+			Chunk newChunk = new Chunk(allocate(CHUNK_ROWS));
+			ByteBuffer rows = chunk.buffer.duplicate();
+			rows.position(0);
+			rows.limit(chunk.rowCount * ROW_SIZE);
+			newChunk.buffer.put(rows);
+			newChunk.rowCount = chunk.rowCount;
+			chunk = newChunk;
+			chunks[index] = chunk;
+			ownedChunks.set(index);
+		}
+
+		chunk.rowCount = Math.max(chunk.rowCount, rowInChunk + 1);
+		return chunk;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the offset of the row in its chunk
+	 */
+	private static int getOffset(int row)
+	{
+		return (row & (CHUNK_ROWS - 1)) * ROW_SIZE;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Allocates a buffer for the given number of rows, mapping it to a file
+	 * in the store directory if one has been configured. The file is deleted
+	 * as soon as it is mapped, so it goes away with the buffer.
+	 *
+	 * @param rowCapacity
+	 * @return
+	 */
+	private static ByteBuffer allocate(int rowCapacity)
+	{
+		int length = Math.max(1, rowCapacity) * ROW_SIZE;
+
+		File storeDirectory = directory;
+		if (storeDirectory != null)
+		{
+			try
+			{
+				File file = File.createTempFile("afp-", ".rows", storeDirectory);
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try
+				{
+					ByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+					return mapped.order(ByteOrder.nativeOrder());
+				}
+				finally
+				{
+					raf.close();
+					if (!file.delete())
+						file.deleteOnExit();
+				}
+			}
+			catch (IOException e)
+			{
+				System.out.println("The AFP rows could not be mapped to a file in " + storeDirectory + ": " + e.getMessage() + " -a direct buffer will be used-");
+			}
+		}
+
+		return ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+	}
+
+
+
+
+
+
+
+	/**
+	 * A chunk of rows, which may be shared by several copies of the store.
+	 */
+	static class Chunk
+	{
+		// The buffer holding the rows of the chunk
+		ByteBuffer buffer;
+
+		// The number of rows written to the chunk by any copy of the store (the rows past it are free to be appended in place)
+		int rowCount = 0;
+
+
+
+
+
+
+
+		/**
+		 * @param buffer
+		 */
+		Chunk(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+	}
+
+
+
+
+
+
+
+}
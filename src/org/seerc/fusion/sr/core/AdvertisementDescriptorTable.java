@@ -0,0 +1,724 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLDescription;
+import org.semanticweb.owl.model.OWLEntity;
+import org.semanticweb.owl.model.OWLEquivalentClassesAxiom;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.util.OWLEntityCollector;
+
+/**
+ * A table of the Advertisement Functional Profiles (AFPs) of the SRKB
+ * ontology, decoded once from their equivalent class axioms. For every AFP
+ * the table keeps its message exchange pattern and the IDs (in a
+ * {@link SubsumptionIndex}) of its hasCategory, hasInput and hasOutput filler
+ * classes, in fixed-width rows of an {@link AdvertisementDescriptorStore}
+ * outside the heap, so that matchmaking against all AFPs is a scan over
+ * primitive values that adds nothing to garbage collection. The rows of
+ * the AFPs are also indexed by the ID of their hasCategory filler class, so
+ * that only the AFPs whose category falls under the category of a request
+ * need to be scanned. The table is built the first time it is requested
+ * and is kept up to date by the {@link IncrementalClassifier} as AFPs are
+ * created and deleted. Copies of the table made for a new version of the
+ * knowledge base share the postings of the original until they change them,
+ * as well as its rows, of which each copy reads as many as it holds. Only
+ * the latest copy may be changed, since the map from AFPs to rows is shared
+ * too and is kept for that copy only.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class AdvertisementDescriptorTable
+{
+	// The message exchange pattern of AFPs that could not be decoded
+	public static final byte MEP_UNKNOWN = 0;
+
+	// The in-only message exchange pattern
+	public static final byte MEP_IN_ONLY = 1;
+
+	// The out-only message exchange pattern
+	public static final byte MEP_OUT_ONLY = 2;
+
+	// The in-out message exchange pattern
+	public static final byte MEP_IN_OUT = 3;
+
+	// The data factory used for creating references to the filler classes
+	OWLDataFactory factory;
+
+	// The SRKB ontology in which the AFPs are defined
+	OWLOntology srkbOntology;
+
+	// The AFP root class
+	OWLClass afpRootClass;
+
+	// The InputDataSet root class
+	OWLClass inputDataSetRootClass;
+
+	// The OutputDataSet root class
+	OWLClass outputDataSetRootClass;
+
+	// The index giving the IDs of the filler classes
+	SubsumptionIndex index;
+
+	// The row of every AFP in the latest copy of the table (shared by all copies)
+	Map<OWLClass, Integer> rows = new HashMap<OWLClass, Integer>();
+
+	// The number of AFPs in the table
+	int size = 0;
+
+	// The AFP classes, by row (null past the last row)
+	VersionedArray<OWLClass> afpClasses = new VersionedArray<OWLClass>();
+
+	// The normalised URIs of the AFP classes, by row (null past the last row)
+	VersionedArray<String> afpURIs = new VersionedArray<String>();
+
+	// The message exchange patterns and filler class IDs (-1 if there is none) of the AFPs, by row
+	AdvertisementDescriptorStore store = new AdvertisementDescriptorStore();
+
+	// The rows of the AFPs having each hasCategory filler class, by class ID
+	Map<Integer, BitSet> categoryRows = new HashMap<Integer, BitSet>();
+
+	// The IDs of the categories whose postings are shared with the table this one was copied from
+	BitSet sharedCategoryIds = new BitSet();
+
+	// The collector used for picking up the filler classes of the AFPs
+	OWLEntityCollector collector = new OWLEntityCollector();
+
+
+
+
+
+
+
+	/**
+	 * @param factory
+	 * @param srkbOntology
+	 * @param afpRootClass
+	 * @param inputDataSetRootClass
+	 * @param outputDataSetRootClass
+	 * @param index
+	 */
+	AdvertisementDescriptorTable(
+			OWLDataFactory factory,
+			OWLOntology srkbOntology,
+			OWLClass afpRootClass,
+			OWLClass inputDataSetRootClass,
+			OWLClass outputDataSetRootClass,
+			SubsumptionIndex index)
+	{
+		this.factory = factory;
+		this.srkbOntology = srkbOntology;
+		this.afpRootClass = afpRootClass;
+		this.inputDataSetRootClass = inputDataSetRootClass;
+		this.outputDataSetRootClass = outputDataSetRootClass;
+		this.index = index;
+
+		// Speed things up by asking the collector to collect only named classes
+		collector.setCollectClasses(true);
+		collector.setCollectDataProperties(false);
+		collector.setCollectObjectProperties(false);
+		collector.setCollectIndividuals(false);
+		collector.setCollectDataTypes(false);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Builds the table for all AFPs asserted in the SRKB ontology.
+	 *
+	 * @param factory
+	 * @param srkbOntology
+	 * @param afpRootClass
+	 * @param inputDataSetRootClass
+	 * @param outputDataSetRootClass
+	 * @param index
+	 * @return
+	 */
+	static AdvertisementDescriptorTable build(
+			OWLDataFactory factory,
+			OWLOntology srkbOntology,
+			OWLClass afpRootClass,
+			OWLClass inputDataSetRootClass,
+			OWLClass outputDataSetRootClass,
+			SubsumptionIndex index)
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		AdvertisementDescriptorTable table = new AdvertisementDescriptorTable(
+				factory, srkbOntology, afpRootClass, inputDataSetRootClass, outputDataSetRootClass, index);
+
+		for (OWLDescription afp : afpRootClass.getSubClasses(srkbOntology))
+		{
+			if (!afp.isAnonymous())
+				table.decode(afp.asOWLClass());
+		}
+
+		chron.stop();
+		System.out.println("AFP descriptor table built for " + table.getSize() + " AFPs in " + chron
+				+ " (" + (table.store.getMemoryFootprint() / 1024) + " KB outside the heap)");
+
+		return table;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reads a table written by {@link #write(DataOutput)}.
+	 *
+	 * @param in
+	 * @param factory
+	 * @param srkbOntology
+	 * @param index the index the IDs in the table refer to
+	 * @return
+	 * @throws IOException
+	 */
+	static AdvertisementDescriptorTable read(
+			DataInput in,
+			OWLDataFactory factory,
+			OWLOntology srkbOntology,
+			SubsumptionIndex index)
+
+	throws IOException
+	{
+		OWLClass afpRootClass = factory.getOWLClass(URI.create(in.readUTF()));
+		OWLClass inputDataSetRootClass = factory.getOWLClass(URI.create(in.readUTF()));
+		OWLClass outputDataSetRootClass = factory.getOWLClass(URI.create(in.readUTF()));
+
+		AdvertisementDescriptorTable table = new AdvertisementDescriptorTable(
+				factory, srkbOntology, afpRootClass, inputDataSetRootClass, outputDataSetRootClass, index);
+
+		int tableSize = in.readInt();
+		for (int row = 0; row < tableSize; row++)
+		{
+			OWLClass afpClass = factory.getOWLClass(URI.create(in.readUTF()));
+			table.rows.put(afpClass, Integer.valueOf(row));
+			table.setAFPClass(row, afpClass);
+			byte mep = in.readByte();
+			int categoryId = in.readInt();
+			int inputId = in.readInt();
+			int outputId = in.readInt();
+			table.store.set(row, mep, categoryId, inputId, outputId);
+			table.size++;
+			table.setCategoryRow(categoryId, row, true);
+		}
+		return table;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the table in a compact binary form: the root classes, followed
+	 * by the AFP class, message exchange pattern and filler class IDs of
+	 * every row (the category postings are not written, since they follow
+	 * from the rows).
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void write(DataOutput out)
+
+	throws IOException
+	{
+		out.writeUTF(afpRootClass.getURI().toString());
+		out.writeUTF(inputDataSetRootClass.getURI().toString());
+		out.writeUTF(outputDataSetRootClass.getURI().toString());
+
+		out.writeInt(size);
+		for (int row = 0; row < size; row++)
+		{
+			out.writeUTF(afpClasses.get(row).getURI().toString());
+			out.writeByte(store.getMEP(row));
+			out.writeInt(store.getCategoryId(row));
+			out.writeInt(store.getInputId(row));
+			out.writeInt(store.getOutputId(row));
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the table that can be changed without affecting this
+	 * one, for the given copies of the SRKB ontology and the subsumption
+	 * index. The rows and the postings of the categories are shared until the
+	 * copy changes them, and rows appended by the copy are written in place.
+	 * This table must not be changed afterwards.
+	 *
+	 * @param newIndex
+	 * @param newSrkbOntology
+	 * @return
+	 */
+	AdvertisementDescriptorTable copy(SubsumptionIndex newIndex, OWLOntology newSrkbOntology)
+	{
+		AdvertisementDescriptorTable copy = new AdvertisementDescriptorTable(
+				factory, newSrkbOntology, afpRootClass, inputDataSetRootClass, outputDataSetRootClass, newIndex);
+		copy.rows = rows;
+		copy.size = size;
+		copy.afpClasses = afpClasses.copy();
+		copy.afpURIs = afpURIs.copy();
+		copy.store = store.copy();
+		copy.categoryRows.putAll(categoryRows);
+		for (Integer categoryId : categoryRows.keySet())
+		{
+			copy.sharedCategoryIds.set(categoryId.intValue());
+		}
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the code of a message exchange pattern.
+	 *
+	 * @param mep "in-only", "out-only" or "in-out"
+	 * @return the code of the pattern, or MEP_UNKNOWN
+	 */
+	public static byte getMEPCode(String mep)
+	{
+		if ("in-only".equalsIgnoreCase(mep))
+			return MEP_IN_ONLY;
+		if ("out-only".equalsIgnoreCase(mep))
+			return MEP_OUT_ONLY;
+		if ("in-out".equalsIgnoreCase(mep))
+			return MEP_IN_OUT;
+		return MEP_UNKNOWN;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of AFPs in the table
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the AFP class
+	 */
+	public OWLClass getAFPClass(int row)
+	{
+		return afpClasses.get(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the normalised URI of the AFP class
+	 */
+	public String getAFPURI(int row)
+	{
+		return afpURIs.get(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the code of the message exchange pattern of the AFP
+	 */
+	public byte getMEP(int row)
+	{
+		return store.getMEP(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasCategory filler class of the AFP
+	 */
+	public int getCategoryId(int row)
+	{
+		return store.getCategoryId(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasInput filler class of the AFP, or -1
+	 */
+	public int getInputId(int row)
+	{
+		return store.getInputId(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param row
+	 * @return the ID of the hasOutput filler class of the AFP, or -1
+	 */
+	public int getOutputId(int row)
+	{
+		return store.getOutputId(row);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the rows of the AFPs whose hasCategory filler class is the same
+	 * as, or is subsumed by, the class with the given ID. The rows are
+	 * collected from the postings of the class and its descendants, or from
+	 * the postings of every category if the class has more descendants than
+	 * there are categories in use.
+	 *
+	 * @param categoryId
+	 * @return a new bitset of rows
+	 */
+	public BitSet getRowsInCategory(int categoryId)
+	{
+		BitSet result = new BitSet(size);
+		if (categoryId < 0)
+			return result;
+
+		BitSet descendantIds = index.getDescendants(categoryId);
+		if (descendantIds.cardinality() < categoryRows.size())
+		{
+			addRows(result, categoryId);
+			for (int i = descendantIds.nextSetBit(0); i >= 0; i = descendantIds.nextSetBit(i + 1))
+			{
+				addRows(result, i);
+			}
+		}
+		else
+		{
+			for (Map.Entry<Integer, BitSet> entry : categoryRows.entrySet())
+			{
+				if (index.isSubsumedBy(entry.getKey().intValue(), categoryId))
+					result.or(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Adds the given classes to the table if they are AFPs. Must be called
+	 * after the classes have been added to the subsumption index.
+	 *
+	 * @param classes
+	 */
+	void add(Set<OWLClass> classes)
+	{
+		for (OWLClass owlClass : classes)
+		{
+			if (owlClass.getSuperClasses(srkbOntology).contains(afpRootClass))
+				decode(owlClass);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Removes an AFP from the table, moving the last AFP to its row.
+	 *
+	 * @param afpClass
+	 */
+	void remove(OWLClass afpClass)
+	{
+		Integer row = rows.remove(afpClass);
+		if (row == null)
+			return;
+
+		int i = row.intValue();
+		int last = size - 1;
+		setCategoryRow(store.getCategoryId(i), i, false);
+		if (i != last)
+		{
+			setCategoryRow(store.getCategoryId(last), last, false);
+			setCategoryRow(store.getCategoryId(last), i, true);
+			afpClasses.set(i, afpClasses.get(last));
+			afpURIs.set(i, afpURIs.get(last));
+			store.move(last, i);
+			rows.put(afpClasses.get(i), row);
+		}
+
+		afpClasses.set(last, null);
+		afpURIs.set(last, null);
+		size--;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Decodes the equivalent class axiom of an AFP and stores the result in
+	 * the row of the AFP, which is appended to the table if necessary. AFPs
+	 * under a provisional key are left out, so matchmaking never returns them.
+	 *
+	 * @param afpClass
+	 */
+	private void decode(OWLClass afpClass)
+	{
+		// An AFP under a provisional key has no service in the UDDI server yet
+		if (PublicationTimeMatchmaker.isProvisionalAFP(afpClass))
+			return;
+
+		// Get the equivalent class axiom of the AFP class. By convention
+		// in the FUSION project, there should be only one equivalent
+		// class axiom, so this loop should be executed only once
+		for (OWLEquivalentClassesAxiom ax : srkbOntology.getEquivalentClassesAxioms(afpClass))
+		{
+			// Send the collector only to the anonymous class of the axiom
+			for (OWLDescription desc : ax.getDescriptions())
+			{
+				if (desc.isAnonymous())
+					desc.accept(collector);
+			}
+		}
+
+		// Keep the filler classes
+		OWLClass categoryFillerClass = null;
+		OWLClass inputFillerClass = null;
+		OWLClass outputFillerClass = null;
+
+		// Determine the property corresponding to each filler,
+		// by checking if the filler is an asserted subclass of
+		// 1) inputDataSetRootClass, 2) outputDataSetRootClass,
+		// or 3) none of the two (i.e. a taxonomy annotation)
+		for (OWLEntity filler : collector.getObjects())
+		{
+			OWLClass fillerCls = factory.getOWLClass(filler.getURI().normalize());
+			Set<OWLDescription> superClasses = fillerCls.getSuperClasses(srkbOntology);
+			if (inputFillerClass == null && superClasses.contains(inputDataSetRootClass))
+				inputFillerClass = fillerCls;
+			else if (outputFillerClass == null && superClasses.contains(outputDataSetRootClass))
+				outputFillerClass = fillerCls;
+			else
+				categoryFillerClass = fillerCls;
+		}
+
+		// Reset the collector to reuse it later
+		collector.reset();
+
+		// Detect the implied message exchange pattern of the AFP
+		byte mep = MEP_UNKNOWN;
+		if (categoryFillerClass != null && inputFillerClass != null && outputFillerClass == null) mep = MEP_IN_ONLY;
+		if (categoryFillerClass != null && inputFillerClass == null && outputFillerClass != null) mep = MEP_OUT_ONLY;
+		if (categoryFillerClass != null && inputFillerClass != null && outputFillerClass != null) mep = MEP_IN_OUT;
+
+		if (mep == MEP_UNKNOWN)
+			System.out.println("The filler classes of AFP " + afpClass.getURI() + " could not be determined");
+
+		// Find the row of the AFP, or append a new one
+		int row;
+		Integer existingRow = rows.get(afpClass);
+		if (existingRow != null)
+		{
+			row = existingRow.intValue();
+			setCategoryRow(store.getCategoryId(row), row, false);
+		}
+		else
+		{
+			row = size++;
+			rows.put(afpClass, Integer.valueOf(row));
+		}
+
+		setAFPClass(row, afpClass);
+		int categoryId = (categoryFillerClass == null) ? -1 : index.getId(categoryFillerClass);
+		int inputId = (inputFillerClass == null) ? -1 : index.getId(inputFillerClass);
+		int outputId = (outputFillerClass == null) ? -1 : index.getId(outputFillerClass);
+		store.set(row, mep, categoryId, inputId, outputId);
+		setCategoryRow(categoryId, row, true);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Adds a row to, or removes it from, the postings of a category.
+	 *
+	 * @param categoryId
+	 * @param row
+	 * @param value
+	 */
+	private void setCategoryRow(int categoryId, int row, boolean value)
+	{
+		if (categoryId < 0)
+			return;
+
+		Integer key = Integer.valueOf(categoryId);
+		BitSet postings = categoryRows.get(key);
+		if (postings != null && sharedCategoryIds.get(categoryId))
+		{
+			postings = (BitSet) postings.clone();
+			categoryRows.put(key, postings);
+			sharedCategoryIds.clear(categoryId);
+		}
+
+		if (value)
+		{
+			if (postings == null)
+			{
+				postings = new BitSet();
+				categoryRows.put(key, postings);
+			}
+			postings.set(row);
+		}
+		else if (postings != null)
+		{
+			postings.clear(row);
+			if (postings.isEmpty())
+				categoryRows.remove(key);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Adds the rows of the AFPs having the given hasCategory filler class.
+	 *
+	 * @param result
+	 * @param categoryId
+	 */
+	private void addRows(BitSet result, int categoryId)
+	{
+		BitSet postings = categoryRows.get(Integer.valueOf(categoryId));
+		if (postings != null)
+			result.or(postings);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Stores the AFP class of a row and its normalised URI, appending them to
+	 * the arrays if the row is past their end.
+	 *
+	 * @param row
+	 * @param afpClass
+	 */
+	private void setAFPClass(int row, OWLClass afpClass)
+	{
+		String uri = afpClass.getURI().normalize().toString();
+		if (row < afpClasses.size())
+		{
+			afpClasses.set(row, afpClass);
+			afpURIs.set(row, uri);
+		}
+		else
+		{
+			afpClasses.add(afpClass);
+			afpURIs.add(uri);
+		}
+	}
+
+
+
+
+
+
+
+}
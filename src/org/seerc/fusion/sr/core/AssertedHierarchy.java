@@ -0,0 +1,277 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.model.AxiomType;
+import org.semanticweb.owl.model.OWLAxiom;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.model.OWLSubClassAxiom;
+
+/**
+ * The asserted (told) subclass relations between the named classes of an
+ * ontology, kept as maps from every class to its direct subclasses and
+ * superclasses. Checking if a class is an asserted subclass of another, e.g.
+ * if a filler class is one of the #InputDataSet classes, is then a lookup
+ * instead of collecting all subclasses of the root class from the ontology.
+ *
+ * The hierarchy is built once for an ontology. When the ontology is changed
+ * through {@link SemanticRegistryKnowledgeBase#applyChanges(Set, Set)}, a
+ * copy of the hierarchy is brought in step with the copy of the ontology
+ * that is changed. The sets returned by the hierarchy must not be modified.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class AssertedHierarchy
+{
+	// The named classes asserted to be direct subclasses of every class
+	Map<OWLClass, Set<OWLClass>> subClasses = new HashMap<OWLClass, Set<OWLClass>>();
+
+	// The named classes asserted to be direct superclasses of every class
+	Map<OWLClass, Set<OWLClass>> superClasses = new HashMap<OWLClass, Set<OWLClass>>();
+
+	// The number of subclass axioms between named classes in the hierarchy
+	int relationCount = 0;
+
+
+
+
+
+
+
+	/**
+	 * Builds the hierarchy from the subclass axioms of the given ontology
+	 * (not including its imports).
+	 *
+	 * @param ontology
+	 * @return
+	 */
+	static AssertedHierarchy build(OWLOntology ontology)
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		AssertedHierarchy hierarchy = new AssertedHierarchy();
+		for (OWLSubClassAxiom axiom : ontology.getAxioms(AxiomType.SUBCLASS))
+		{
+			hierarchy.add(axiom);
+		}
+
+		chron.stop();
+		System.out.println("Asserted hierarchy of " + ontology.getURI() + " built with "
+				+ hierarchy.relationCount + " subclass relations in " + chron);
+
+		return hierarchy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if a class is asserted to be a direct subclass of another class.
+	 *
+	 * @param subClass
+	 * @param superClass
+	 * @return
+	 */
+	public boolean isAssertedSubClassOf(OWLClass subClass, OWLClass superClass)
+	{
+		Set<OWLClass> classes = superClasses.get(subClass);
+		return classes != null && classes.contains(superClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the named classes asserted to be direct subclasses of the given class
+	 */
+	public Set<OWLClass> getAssertedSubClasses(OWLClass owlClass)
+	{
+		Set<OWLClass> classes = subClasses.get(owlClass);
+		return (classes == null) ? Collections.<OWLClass>emptySet() : Collections.unmodifiableSet(classes);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the named classes asserted to be direct superclasses of the given class
+	 */
+	public Set<OWLClass> getAssertedSuperClasses(OWLClass owlClass)
+	{
+		Set<OWLClass> classes = superClasses.get(owlClass);
+		return (classes == null) ? Collections.<OWLClass>emptySet() : Collections.unmodifiableSet(classes);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return a copy of the hierarchy that can be changed without affecting this one
+	 */
+	AssertedHierarchy copy()
+	{
+		AssertedHierarchy copy = new AssertedHierarchy();
+		for (Map.Entry<OWLClass, Set<OWLClass>> entry : subClasses.entrySet())
+		{
+			copy.subClasses.put(entry.getKey(), new HashSet<OWLClass>(entry.getValue()));
+		}
+		for (Map.Entry<OWLClass, Set<OWLClass>> entry : superClasses.entrySet())
+		{
+			copy.superClasses.put(entry.getKey(), new HashSet<OWLClass>(entry.getValue()));
+		}
+		copy.relationCount = relationCount;
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Updates the hierarchy with the subclass axioms among the given axioms,
+	 * which have just been removed from and added to the ontology. Must only
+	 * be called on a copy that is not yet visible to other threads.
+	 *
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 */
+	void applyChanges(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove)
+	{
+		for (OWLAxiom axiom : axiomsToRemove)
+		{
+			if (axiom instanceof OWLSubClassAxiom)
+				remove((OWLSubClassAxiom) axiom);
+		}
+		for (OWLAxiom axiom : axiomsToAdd)
+		{
+			if (axiom instanceof OWLSubClassAxiom)
+				add((OWLSubClassAxiom) axiom);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Records the relation stated by a subclass axiom, if both of its sides
+	 * are named classes.
+	 *
+	 * @param axiom
+	 */
+	private void add(OWLSubClassAxiom axiom)
+	{
+		if (axiom.getSubClass().isAnonymous() || axiom.getSuperClass().isAnonymous())
+			return;
+
+		OWLClass subClass = axiom.getSubClass().asOWLClass();
+		OWLClass superClass = axiom.getSuperClass().asOWLClass();
+
+		Set<OWLClass> classes = subClasses.get(superClass);
+		if (classes == null)
+		{
+			classes = new HashSet<OWLClass>();
+			subClasses.put(superClass, classes);
+		}
+		if (classes.add(subClass))
+			relationCount++;
+
+		classes = superClasses.get(subClass);
+		if (classes == null)
+		{
+			classes = new HashSet<OWLClass>();
+			superClasses.put(subClass, classes);
+		}
+		classes.add(superClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Forgets the relation stated by a subclass axiom, if both of its sides
+	 * are named classes.
+	 *
+	 * @param axiom
+	 */
+	private void remove(OWLSubClassAxiom axiom)
+	{
+		if (axiom.getSubClass().isAnonymous() || axiom.getSuperClass().isAnonymous())
+			return;
+
+		OWLClass subClass = axiom.getSubClass().asOWLClass();
+		OWLClass superClass = axiom.getSuperClass().asOWLClass();
+
+		Set<OWLClass> classes = subClasses.get(superClass);
+		if (classes != null && classes.remove(subClass))
+		{
+			relationCount--;
+			if (classes.isEmpty())
+				subClasses.remove(superClass);
+		}
+
+		classes = superClasses.get(subClass);
+		if (classes != null)
+		{
+			classes.remove(superClass);
+			if (classes.isEmpty())
+				superClasses.remove(subClass);
+		}
+	}
+
+
+
+
+
+
+
+}
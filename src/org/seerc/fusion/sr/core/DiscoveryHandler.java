@@ -20,7 +20,6 @@
  package org.seerc.fusion.sr.core;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -86,6 +85,16 @@ public class DiscoveryHandler
 	String OUTPUT_TMODEL_KEY;
 	String INDEXING_TMODEL_KEY;
 
+	// The IDs of the "uuid:" forms of the tModel keys in the URI dictionary
+	int SAWSDL_TMODEL_KEY_ID;
+	int CATEGORY_TMODEL_KEY_ID;
+	int INPUT_TMODEL_KEY_ID;
+	int OUTPUT_TMODEL_KEY_ID;
+	int INDEXING_TMODEL_KEY_ID;
+
+	// The registry-wide URI dictionary
+	URIDictionary dictionary = URIDictionary.getInstance();
+
 	// The location of the Semantic Registry Knowledge Base Ontology
 	URI srkbOntologyPhysicalURI;
 	
@@ -107,32 +116,12 @@ public class DiscoveryHandler
 	
 	throws SemanticRegistryConfigurationException
 	{
-		// Specify which of the 3 SOAP transports that UDDI4j supports should
-		// be used to talk to jUDDI (Apache Axis, Apache SOAP 2.2, HP SOAP)
-		System.setProperty("org.uddi4j.TransportClassName", "org.uddi4j.transport.ApacheAxisTransport");
-
-		// Initialise the UDDIProxy object
-		proxy = new UDDIProxy();
-		
-		// Create a new properties object to store the settings loaded 
-		// from the registry.properties file in WEB-INF/classes
-		Properties properties = new Properties();
+		// Get the settings loaded from the registry.properties file in WEB-INF/classes
+		// (the components shared by all handlers are configured by RegistryConfiguration)
+		Properties properties = RegistryConfiguration.getProperties();
 
 		try
 		{
-			// This will look in the current classloader's context and find the
-			// registry.properties files that is placed under /WEB-INF/classes/
-			// (Any *.properties file that is placed inside the "src" folder 
-			// of an Eclipse project will get deployed to WEB-INF/classes automatically)
-			InputStream inputStream = getClass().getClassLoader().getResourceAsStream("registry.properties");
-			
-			if (inputStream == null)
-			{
-				System.out.println("The registry.properties file could not be located");
-				throw new SemanticRegistryConfigurationException("The classloader could not locate and load the registry.properties file");				
-			}
-			else properties.load(inputStream);
-			
 			// Get the URL values for the UDDI Inquiry and Publish API
 			String inquiryURL = properties.getProperty("inquiry_url");
 			String publishURL = properties.getProperty("publish_url");
@@ -143,9 +132,8 @@ public class DiscoveryHandler
 			if (!InputValidator.isURIWellFormed(inquiryURL))
 				throw new SemanticRegistryConfigurationException("inquiry_url in registry.properties file is not a valid URI");				
 
-			// Set the values
-			proxy.setInquiryURL(inquiryURL);
-			proxy.setPublishURL(publishURL);
+			// Get the long-lived proxy of this thread for the UDDI server
+			proxy = UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
 
 			// Set the UUID values of the canonical tModels needed 
 			SAWSDL_TMODEL_KEY = properties.getProperty("SAWSDL_Document_URL_tModel").replace("uuid:", "").replace(" ", "");
@@ -153,6 +141,13 @@ public class DiscoveryHandler
 			INPUT_TMODEL_KEY = properties.getProperty("Input_Annotation_tModel").replace("uuid:", "").replace(" ", "");
 			OUTPUT_TMODEL_KEY = properties.getProperty("Output_Annotation_tModel").replace("uuid:", "").replace(" ", "");
 			INDEXING_TMODEL_KEY = properties.getProperty("Subsumption_Indexing_tModel").replace("uuid:", "").replace(" ", "");
+
+			// Get the IDs of the tModel keys, for telling the KeyedReferences of a categoryBag apart
+			SAWSDL_TMODEL_KEY_ID = dictionary.getId("uuid:" + SAWSDL_TMODEL_KEY);
+			CATEGORY_TMODEL_KEY_ID = dictionary.getId("uuid:" + CATEGORY_TMODEL_KEY);
+			INPUT_TMODEL_KEY_ID = dictionary.getId("uuid:" + INPUT_TMODEL_KEY);
+			OUTPUT_TMODEL_KEY_ID = dictionary.getId("uuid:" + OUTPUT_TMODEL_KEY);
+			INDEXING_TMODEL_KEY_ID = dictionary.getId("uuid:" + INDEXING_TMODEL_KEY);
 			
 			// Check if the UUID keys loaded from the registry.properties file are valid
 			if (!InputValidator.isUUIDKeyWellFormed(SAWSDL_TMODEL_KEY))
@@ -796,32 +791,33 @@ public class DiscoveryHandler
 							{
 								KeyedReference keyedRef = (KeyedReference) keyedRefVector.elementAt(i);
 								tModelKey = keyedRef.getTModelKey();
+								int tModelKeyId = dictionary.getId(tModelKey);
 
-								if (tModelKey.equalsIgnoreCase("uuid:" + SAWSDL_TMODEL_KEY))
+								if (tModelKeyId == SAWSDL_TMODEL_KEY_ID)
 								{
 									// there will be only one keyedReference referring 
 									// to the URL of the service's SAWSDL, so this 
 									// assignment will be made only once
 									sawsdlURL = keyedRef.getKeyValue();
 								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + CATEGORY_TMODEL_KEY))
+								else if (tModelKeyId == CATEGORY_TMODEL_KEY_ID)
 								{
 									// there will be only one keyedReference referring
 									// to the URI of the service's category annotation, 
 									// so this assignment will be made only once
 									hasCategoryAnnotationURI = keyedRef.getKeyValue();
 								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + INPUT_TMODEL_KEY))
+								else if (tModelKeyId == INPUT_TMODEL_KEY_ID)
 								{
 									// there may be zero or multiple input annotation URIs
 									inputAnnotationURIs.add(keyedRef.getKeyValue());
 								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + OUTPUT_TMODEL_KEY))
+								else if (tModelKeyId == OUTPUT_TMODEL_KEY_ID)
 								{
 									// there may be zero or multiple output annotation URIs
 									outputAnnotationURIs.add(keyedRef.getKeyValue());
 								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + INDEXING_TMODEL_KEY))
+								else if (tModelKeyId == INDEXING_TMODEL_KEY_ID)
 								{
 									// there may be zero or multiple Request Functional Profile URIs
 									matchingRFPURIs.add(keyedRef.getKeyValue());
@@ -1000,6 +996,27 @@ public class DiscoveryHandler
 				}
 			}
 			
+			// Return the cached answer if the same search has been made since 
+			// the services or the index were last changed, and the document
+			// the RFP is defined in has not changed since either. The answer
+			// for an RFP in a known namespace only depends on the SRKB and the
+			// index, so its document is not looked at; other documents are
+			// revalidated through the ontology document cache, which the
+			// matchmaker loads them from as well
+			DiscoveryResultCache resultCache = DiscoveryResultCache.getInstance();
+			long cacheGeneration = resultCache.getGeneration();
+			long srkbVersion = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI).getVersion();
+			long rfpDocumentVersion = isRFPInKnownNamespace(requestFunctionalProfileURI) ? 0 : getRFPDocumentVersion(requestFunctionalProfileURI);
+			if (rfpDocumentVersion >= 0)
+			{
+				String[] cachedServiceUUIDs = resultCache.get(requestFunctionalProfileURI, serviceProviderUUID, srkbVersion, rfpDocumentVersion);
+				if (cachedServiceUUIDs != null)
+				{
+					System.out.println("Matching services for " + requestFunctionalProfileURI + " found in the discovery result cache");
+					return cachedServiceUUIDs;
+				}
+			}
+			
 			boolean isValid = false;
 			
 			// Check if the provided RFP URI is amenable to processing: 
@@ -1070,7 +1087,7 @@ public class DiscoveryHandler
 	        Set<OWLOntology> importsClosure = manager.getImportsClosure(srkbOntology);
 	        
 	        // Get the base/logical URI of the FunctionalFacet ontology
-			URI functionalFacetOntologyBaseURI = DiscoveryTimeMatchmaker.getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory).getURI();
+			URI functionalFacetOntologyBaseURI = OntologyRoleResolver.getInstance().getFunctionalFacetOntology(importsClosure, factory).getURI();
 			
 			
 			
@@ -1080,9 +1097,9 @@ public class DiscoveryHandler
 			
 			// Check if the baseURI of the URI of the requested Functional Profile
 			// coincides with the base/logical URI of the SRKB or of the XXX EAI ontology XXX FunctionalFacet 
-			if ( rfpBaseURI.equalsIgnoreCase(srkbOntologyBaseURI) 
-					//|| rfpBaseURI.equalsIgnoreCase(eaiOntologyBaseURI) )
-					|| rfpBaseURI.equalsIgnoreCase(functionalFacetOntologyBaseURI.toString()) )
+			if ( dictionary.isSameURI(rfpBaseURI, srkbOntologyBaseURI) 
+					//|| dictionary.isSameURI(rfpBaseURI, eaiOntologyBaseURI) )
+					|| dictionary.isSameURI(rfpBaseURI, functionalFacetOntologyBaseURI.toString()) )
 			{
 				rfpDefinedInKnownNamespace = true;
 			}
@@ -1278,6 +1295,11 @@ public class DiscoveryHandler
 			} // end else if baseURI of the RFP is in an unknown namespace
 			
 			
+			// Cache the answer for the next search for the same RFP
+			if (rfpDocumentVersion >= 0)
+				resultCache.put(requestFunctionalProfileURI, serviceProviderUUID, srkbVersion, rfpDocumentVersion, cacheGeneration, serviceUUIDs);
+			System.out.println(resultCache.getStatistics());
+			
 			// Return the (what should be a non empty) list of matching service UUIDs
 			return serviceUUIDs;
 			
@@ -1301,6 +1323,80 @@ public class DiscoveryHandler
 	
 	
 		
+	/**
+	 * Tells if the given RFP is defined in the namespace of the SRKB ontology
+	 * or of the FunctionalFacet ontology, as seen in the current view of the
+	 * SRKB.
+	 * 
+	 * @param requestFunctionalProfileURI
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private boolean isRFPInKnownNamespace(String requestFunctionalProfileURI)
+	
+	throws SemanticRegistryMatchmakingException
+	{
+		int fragmentStart = requestFunctionalProfileURI.indexOf("#");
+		if (fragmentStart < 0)
+			return false;
+		String rfpBaseURI = requestFunctionalProfileURI.substring(0, fragmentStart);
+		
+		SemanticRegistryKnowledgeBaseView view = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI).openView();
+		try
+		{
+			URI functionalFacetOntologyBaseURI = OntologyRoleResolver.getInstance().getFunctionalFacetOntology(view.getImportsClosure(), view.getDataFactory()).getURI();
+			return dictionary.isSameURI(rfpBaseURI, view.getSRKBOntology().getURI().toString())
+					|| dictionary.isSameURI(rfpBaseURI, functionalFacetOntologyBaseURI.toString());
+		}
+		finally
+		{
+			view.close();
+		}
+	}
+	
+	
+	
+	
+	
+	
+		
+	/**
+	 * Returns the version of the ontology document the given RFP is defined
+	 * in, revalidating the document if its time to live in the ontology
+	 * document cache has passed. A document that could not be retrieved a
+	 * moment ago is not tried again straight away.
+	 * 
+	 * @param requestFunctionalProfileURI
+	 * @return the version of the document, or -1 if it cannot be retrieved
+	 * (in which case the answer for the RFP must not be cached)
+	 */
+	private long getRFPDocumentVersion(String requestFunctionalProfileURI)
+	{
+		int fragmentStart = requestFunctionalProfileURI.indexOf("#");
+		if (fragmentStart < 0)
+			return -1;
+		
+		try
+		{
+			return OntologyDocumentCache.getInstance().getDocumentVersion(URI.create(requestFunctionalProfileURI.substring(0, fragmentStart)));
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			// The validation of the RFP will report the problem
+			return -1;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return -1;
+		}
+	}
+	
+	
+	
+	
+	
+	
+		
 	/**
 	 * Checks if all five Canonical TModels that are necessary for the Semantic
 	 * Registry's operation have been properly registered with the UDDI server.
@@ -0,0 +1,376 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A bounded cache of the answers of
+ * {@link DiscoveryHandler#doSemanticSearchForServices(String, String)}, keyed
+ * by the RFP URI, the service provider UUID used as a filter, the version
+ * of the SRKB the answer was computed against, and the version of the
+ * document the RFP is defined in (as given by
+ * {@link OntologyDocumentCache#getDocumentVersion(java.net.URI)}), so that
+ * an RFP edited in its ontology is not answered from an earlier entry. The
+ * least recently used answers are evicted once the cache is full.
+ *
+ * Every operation that changes the services registered in the UDDI server or
+ * the subsumption index (publishing, modifying or removing services, and
+ * adding, removing or refreshing RFPs in the index) must call
+ * {@link #invalidate()} once it has made its changes. Answers computed while
+ * an invalidation takes place are not cached.
+ *
+ * The size of the cache can be set through the optional discovery_cache_size
+ * property of the registry.properties file (0 disables caching).
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class DiscoveryResultCache
+{
+	// The process-wide cache
+	private static final DiscoveryResultCache instance = new DiscoveryResultCache();
+
+	// The default maximum number of cached answers
+	static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	// The maximum number of cached answers
+	int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	// The cached answers, least recently used first
+	Map<String, String[]> results;
+
+	// Incremented every time the cache is invalidated
+	long generation = 0;
+
+	// The number of lookups answered from the cache
+	long hits = 0;
+
+	// The number of lookups not answered from the cache
+	long misses = 0;
+
+	// The number of answers evicted to make room for others
+	long evictions = 0;
+
+	// The number of times the cache has been invalidated
+	long invalidations = 0;
+
+
+
+
+
+
+
+	/**
+	 * Creates an empty cache.
+	 */
+	DiscoveryResultCache()
+	{
+		// Keep the answers in access order, evicting the eldest when full
+		results = new LinkedHashMap<String, String[]>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest)
+			{
+				if (size() > maxEntries)
+				{
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the process-wide cache
+	 */
+	public static DiscoveryResultCache getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the size of the cache from the given properties, if it is present.
+	 *
+	 * @param properties
+	 */
+	public void configure(Properties properties)
+	{
+		if (properties.getProperty("discovery_cache_size") == null)
+			return;
+
+		try
+		{
+			setMaxEntries(Integer.parseInt(properties.getProperty("discovery_cache_size").trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid discovery_cache_size property in registry.properties -the default will be used-");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the maximum number of cached answers, evicting the least recently
+	 * used answers if there are more.
+	 *
+	 * @param entries the maximum number of answers, or 0 to disable caching
+	 */
+	public synchronized void setMaxEntries(int entries)
+	{
+		maxEntries = Math.max(0, entries);
+
+		Iterator<String> it = results.keySet().iterator();
+		while (results.size() > maxEntries && it.hasNext())
+		{
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the generation of the cache, which must be obtained before
+	 * computing an answer and passed to
+	 * {@link #put(String, String, long, long, long, String[])} along with it.
+	 *
+	 * @return
+	 */
+	public synchronized long getGeneration()
+	{
+		return generation;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param requestFunctionalProfileURI
+	 * @param serviceProviderUUID the service provider filter, or null
+	 * @param srkbVersion
+	 * @param rfpDocumentVersion the version of the document the RFP is defined in
+	 * @return a copy of the cached UUIDs of the matching services, or null if
+	 * the answer is not cached
+	 */
+	public synchronized String[] get(String requestFunctionalProfileURI, String serviceProviderUUID, long srkbVersion, long rfpDocumentVersion)
+	{
+		String[] serviceUUIDs = results.get(getKey(requestFunctionalProfileURI, serviceProviderUUID, srkbVersion, rfpDocumentVersion));
+		if (serviceUUIDs == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return serviceUUIDs.clone();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Caches the UUIDs of the services matching an RFP, unless the cache has
+	 * been invalidated since the given generation was obtained.
+	 *
+	 * @param requestFunctionalProfileURI
+	 * @param serviceProviderUUID the service provider filter, or null
+	 * @param srkbVersion
+	 * @param rfpDocumentVersion the version of the document the RFP is defined in
+	 * @param generation the generation of the cache when the computation of
+	 * the answer started
+	 * @param serviceUUIDs
+	 */
+	public synchronized void put(
+			String requestFunctionalProfileURI,
+			String serviceProviderUUID,
+			long srkbVersion,
+			long rfpDocumentVersion,
+			long generation,
+			String[] serviceUUIDs)
+	{
+		if (generation != this.generation || maxEntries == 0)
+			return;
+
+		results.put(getKey(requestFunctionalProfileURI, serviceProviderUUID, srkbVersion, rfpDocumentVersion), serviceUUIDs.clone());
+	}
+
+
+
+
+
+
+
+	/**
+	 * Drops all cached answers.
+	 */
+	public synchronized void invalidate()
+	{
+		results.clear();
+		generation++;
+		invalidations++;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of cached answers
+	 */
+	public synchronized int getSize()
+	{
+		return results.size();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups not answered from the cache
+	 */
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of answers evicted to make room for others
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of times the cache has been invalidated
+	 */
+	public synchronized long getInvalidationCount()
+	{
+		return invalidations;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return a line summarising the use of the cache
+	 */
+	public synchronized String getStatistics()
+	{
+		return "Discovery result cache: " + results.size() + "/" + maxEntries + " answers, "
+				+ hits + " hits, " + misses + " misses, " + evictions + " evictions, "
+				+ invalidations + " invalidations";
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param requestFunctionalProfileURI
+	 * @param serviceProviderUUID
+	 * @param srkbVersion
+	 * @param rfpDocumentVersion
+	 * @return the key of the answer for the given request
+	 */
+	private static String getKey(String requestFunctionalProfileURI, String serviceProviderUUID, long srkbVersion, long rfpDocumentVersion)
+	{
+		// RFP URIs that differ only in case or normalisation are the same RFP
+		int rfpId = URIDictionary.getInstance().getId(requestFunctionalProfileURI);
+		return rfpId + " " + ((serviceProviderUUID == null) ? "" : serviceProviderUUID.toLowerCase()) + " " + srkbVersion + " " + rfpDocumentVersion;
+	}
+
+
+
+
+
+
+
+}
@@ -19,36 +19,24 @@
  
  package org.seerc.fusion.sr.core;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
-import org.seerc.fusion.sr.utils.Chronometer;
-import org.semanticweb.owl.inference.OWLReasoner;
 import org.semanticweb.owl.inference.OWLReasonerException;
-import org.semanticweb.owl.apibinding.OWLManager;
 import org.semanticweb.owl.model.OWLClass;
 import org.semanticweb.owl.model.OWLDataFactory;
 import org.semanticweb.owl.model.OWLDescription;
 import org.semanticweb.owl.model.OWLEntity;
 import org.semanticweb.owl.model.OWLEquivalentClassesAxiom;
 import org.semanticweb.owl.model.OWLOntology;
-import org.semanticweb.owl.model.OWLOntologyCreationException;
-import org.semanticweb.owl.model.OWLOntologyManager;
 import org.semanticweb.owl.util.OWLEntityCollector;
 
-import org.apache.log4j.Level;
-import org.apache.log4j.Logger;
-
 /**
  * @author Dimitrios Kourtesis
  *
@@ -68,204 +56,69 @@ public class DiscoveryTimeMatchmaker
 		
 		
 		// //////////////////////
-		// LOAD THE SEMANTIC REGISTRY KB ONTOLOGY
+		// OBTAIN THE CLASSIFIED SEMANTIC REGISTRY KB
 		// //////////////////////
 		
-		// Load the SRKB ontology
-		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
-
-		// Load the SRKB ontology from its physical URI (OWL file)
-		OWLOntology srkbOntology = null;
-		try
-		{
-			srkbOntology = manager.loadOntologyFromPhysicalURI(srkbOntologyPhysicalURI);
-			System.out.println("SRKB ontology loaded from " + srkbOntologyPhysicalURI);
-		}
-		catch (OWLOntologyCreationException e1)
-		{
-			System.out.println("OWLOntologyCreationException: " + e1.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the SRKB Ontology from its physical URI (" + srkbOntologyPhysicalURI + ")");
-		}
-
-		// Get the ontology's data factory to create the various objects
-		OWLDataFactory factory = manager.getOWLDataFactory();
-
-		// Get the SemanticRegistryKB ontology's logical URI
-		URI srkbLogicalURI = srkbOntology.getURI();
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
 		
-		// Obtain and load the imports closure of the semRegKBontology
-        Set<OWLOntology> importsClosure = manager.getImportsClosure(srkbOntology);
-        
-		System.out.println("Ontologies contained in the SRKB ontology's import closure:");
-		for (OWLOntology ont : importsClosure)
-		{
-			System.out.println(ont.getURI());
-		}
-        
-        URI taxonomyOntologyLogicalURI = getDefiningOntology("#TaxonomyEntity", importsClosure, factory).getURI();
-		URI functionalFacetOntologyLogicalURI = getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory).getURI();
-		
-		
-		// //////////////////////
-		// LOAD THE EAI ONTOLOGY
-		// //////////////////////
-		
-		// Load the EAI ontology
-		OWLOntologyManager eaiOntologyManager = OWLManager.createOWLOntologyManager();
-
-		// Load the EAI ontology from its physical URI (OWL file)
-		OWLOntology eaiOntology = null;
-		System.out.println("Trying to load EAI ontology from : " + eaiOntologyPhysicalURI);
+		// Open a view of the classified SRKB in which the EAI ontology 
+		// plays the role of the ontology in which the RFPs are stored
+		SemanticRegistryKnowledgeBaseView view = kb.openView(eaiOntologyPhysicalURI);
 		try
 		{
-			eaiOntology = eaiOntologyManager.loadOntologyFromPhysicalURI(eaiOntologyPhysicalURI);
-			System.out.println("EAI ontology loaded from " + eaiOntologyPhysicalURI);
+			return getMatchingAFPsForRFP(view, requestedFunctionalProfileURI);
 		}
-		catch (OWLOntologyCreationException e1)
+		finally
 		{
-			System.out.println("OWLOntologyCreationException: " + e1.getCause());
-			throw new SemanticRegistryMatchmakingException("OWLOntologyCreationException");
+			view.close();
 		}
-
-		// Get the EAI ontology's data factory to create the various objects
-		OWLDataFactory eaiOntologyFactory = eaiOntologyManager.getOWLDataFactory();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Gets the URIs of all Advertisement Functional Profiles (AFPs) that the
+	 * RFP matches with, using the given view of the classified SRKB
+	 * 
+	 * @param view
+	 * @param requestedFunctionalProfileURI
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private SemanticProfileURICollection getMatchingAFPsForRFP(
+			SemanticRegistryKnowledgeBaseView view, 
+			URI requestedFunctionalProfileURI) 
+	
+	throws SemanticRegistryMatchmakingException, 
+		SemanticRegistryConfigurationException
+	{
+		// Get the data factory to create the various objects
+		OWLDataFactory factory = view.getDataFactory();
 		
-		// Get the EAI ontology's logical URI
-		URI eaiOntologyLogicalURI = eaiOntology.getURI();
-				
+		// Get the SRKB ontology and its imports closure
+		OWLOntology srkbOntology = view.getSRKBOntology();
+		Set<OWLOntology> importsClosure = view.getImportsClosure();
 		
-		// Determine which is the ontology in which the RFPs are stored
-		OWLOntology rfpOntology = null;
+		// Get the ontology in which the RFPs are stored, and its asserted subclass relations
+		OWLOntology rfpOntology = view.getRFPOntology();
+		AssertedHierarchy rfpHierarchy = view.getAssertedHierarchy(rfpOntology);
 		
-		// If the namespace of the SRKB and the EAI ontology are different...
-		if (!srkbLogicalURI.normalize().toString().equalsIgnoreCase(eaiOntologyLogicalURI.normalize().toString()))
-		{
-			// ... then the RFPs and the AFPs are stored in different ontologies
-			rfpOntology = eaiOntology;
-		}
-		else
-		{
-			// ... then the RFPs and the AFPs are stored in the same ontology
-			rfpOntology = srkbOntology;
-		}
+		// Get the logical URIs of the taxonomy and functional facet ontologies
+		OntologyRoleResolver roleResolver = OntologyRoleResolver.getInstance();
+		URI taxonomyOntologyLogicalURI = roleResolver.getTaxonomyOntology(importsClosure, factory).getURI();
+		URI functionalFacetOntologyLogicalURI = roleResolver.getFunctionalFacetOntology(importsClosure, factory).getURI();
 		
 		
 		
 		
 		
-		// //////////////////////
-		// CLASSIFY THE SEMANTIC REGISTRY KB ONTOLOGY
-		// //////////////////////
-		
-		// Create a Pellet reasoner instance
-		OWLReasoner reasoner = createReasoner(manager);
 
-		// Get the logger instance for pellet.taxonomy.Taxonomy
-		Logger logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.taxonomy.Taxonomy");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet.KnowledgeBase
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.KnowledgeBase");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet.ABox
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.ABox");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet");
-		logger.setLevel(Level.OFF);
-		
-		// Create a chronometer to measure lapsed time
-		Chronometer chron = new Chronometer();
-		chron.start();
-		
-		
-		
-		
-        // Check if the RFP Ontology is included in the imports closure
-        boolean included = false;
-        
-        for (OWLOntology ont : importsClosure)
-        {
-        	if (ont.getURI().normalize().toString().equalsIgnoreCase(rfpOntology.getURI().normalize().toString()))
-        		included = true;
-        }
-                
-		// If it was not included, load it explicitly
-    	if (included)
-    		System.out.println("RFP Ontology included in the SRKB imports closure");
-    	else
-    	{
-    		System.out.println("RFP Ontology not included in the SRKB imports closure -will be loaded to the reasoner separately-");
-    		
-    		// Load the RFP "home" ontology to Pellet
-    		try
-			{
-    			Set<OWLOntology> tmp = new HashSet<OWLOntology>();
-    			tmp.add(rfpOntology);
-				reasoner.loadOntologies(tmp);
-			}
-			catch (OWLReasonerException e)
-			{
-				System.out.println("OWLReasonerException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException("Problem occured while loading ontologies to the reasoner");
-			}
-    		
-    	}
-		
-    	
-        // Load the rest of the ontologies from the imports closure to Pellet
-        try
-		{
-			reasoner.loadOntologies(importsClosure);
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("OWLReasonerException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the ontology import closure to the DL reasoner");
-		}
-		
-		chron.stop();
-		System.out.println("The SRKB ontology and all directly or indirectly imported ontologies where loaded to the DL reasoner in " + chron);
-		
-		
-        // Classify the SRKB ontology and determine if it is inconsistent
-		try
-		{
-			reasoner.classify();
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("An error occured while trying to classify the SRKB ontology");
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to classify the SRKB ontology");
-		}
-		catch (Exception e)
-		{
-			try
-			{
-				if (reasoner.isConsistent(srkbOntology)) 
-				{
-					System.out.println("An error occured while trying to determine if the SRKB ontology is consistent. Message: " + e.getMessage());
-					throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
-				}
-				else
-				{
-					System.out.println("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between the newly created AFP and the RFPs in the EAI Ontology.");
-					throw new SemanticRegistryMatchmakingException("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between the newly created AFP and the RFPs in the EAI Ontology.");					
-				}
-			}
-			catch (OWLReasonerException e1)
-			{
-				System.out.println("An error occured while trying to determine if the SRKB ontology is consistent");
-				throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
-			}
-		}
-		
-		
-		
-		
-		
 		// //////////////////////
 		// PREPROCESSING - PREPARE RFP
 		// //////////////////////
@@ -288,9 +141,6 @@ public class DiscoveryTimeMatchmaker
 		// Get a set of all the RFPs asserted in the ontology 
 		Set<OWLDescription> allRFPs = requestFunctionalProfileRootClass.getSubClasses(rfpOntology);
 		
-		// Get a set of all AFPs in the ontology
-		Set<OWLDescription> allAFPs = advertisementFunctionalProfileRootClass.getSubClasses(srkbOntology);
-		
 		// Filler classes corresponding to the hasInput, hasOutput, and hasCategory classes associated with the RFP
 		// They are subclasses of #InputDataSet, #OutputDataSet, and #TaxonomyEntity, respectively
    	    OWLClass rfpHasCategoryPropertyFillerClass = null;
@@ -309,19 +159,12 @@ public class DiscoveryTimeMatchmaker
 		collector.setCollectDataTypes(false);
 		
 		System.out.println(allRFPs.size() + " RFPs contained in " + rfpOntology.getURI());
-		System.out.println(allAFPs.size() + " AFPs contained in " + srkbOntology.getURI());
 
 		// No point in continuing if the RFP ontology does not contain any RFPs
 		if (allRFPs.size() == 0)
 			throw new SemanticRegistryMatchmakingException(
 					"The ontology at " + rfpOntology.getURI() + " does not contain any RFP concepts. " +
 							"Matchmaking among AFPs and RFPs is not possible.");
-
-		// No point in continuing if the SRKB ontology does not contain any AFPs
-		if (allAFPs.size() == 0)
-			throw new SemanticRegistryMatchmakingException(
-					"The ontology at " + srkbOntology.getURI() + " does not contain any AFP concepts. " +
-							"Matchmaking among AFPs and RFPs is not possible.");
 	
 		// Keep a flag for each type of filler class expected
 		boolean hasCategoryFillerFound = false;
@@ -380,14 +223,14 @@ public class DiscoveryTimeMatchmaker
 		for (OWLEntity filler : collectedFillerClasses)
 		{
 			fillerCls = factory.getOWLClass(filler.getURI().normalize());
-			if (isAssertedSubClassOf(fillerCls, inputDataSetRootClass, rfpOntology))
+			if (rfpHierarchy.isAssertedSubClassOf(fillerCls, inputDataSetRootClass))
 			{
 				rfpHasInputPropertyFillerClass = fillerCls;
 				hasInputFillerFound = true;
 				System.out.println(rfpClassToClassifyAgainst + " hasInput: "
 						+ rfpHasInputPropertyFillerClass.getURI());
 			}
-			else if (isAssertedSubClassOf(fillerCls, outputDataSetRootClass, rfpOntology))
+			else if (rfpHierarchy.isAssertedSubClassOf(fillerCls, outputDataSetRootClass))
 			{
 				rfpHasOutputPropertyFillerClass = fillerCls;
 				hasOutputFillerFound = true;
@@ -420,15 +263,16 @@ public class DiscoveryTimeMatchmaker
 		
 		
 		// //////////////////////
-		// PREPROCESSING - CREATE CATEGORY MATCHING CHECKLIST
+		// PREPROCESSING - GET THE SUBSUMPTION INDEX
 		// //////////////////////
-			
-		// Get the set of sets of classes that are subsumed by the rfpHasOutputPropertyFillerClass
-		Set<Set<OWLClass>> subsumedByAFPHasCategoryClassSetOfSets = new HashSet<Set<OWLClass>>();
+		
+		// Get the subsumption index of the classified SRKB. Checking if a class
+		// is in the category, input or output matching checklist is a single
+		// bit test on the ancestors or descendants of the class in the index
+		SubsumptionIndex index = null;
 		try
 		{
-			// Get services having a category that is the same or more specific than what the request specifies
-			subsumedByAFPHasCategoryClassSetOfSets = reasoner.getDescendantClasses(rfpHasCategoryPropertyFillerClass);
+			index = view.getSubsumptionIndex();
 		}
 		catch (OWLReasonerException e)
 		{
@@ -436,120 +280,17 @@ public class DiscoveryTimeMatchmaker
 			throw new SemanticRegistryMatchmakingException();
 		}
 		
-		// Flatten the set of sets into one set...
-		Set<OWLClass> categoryCheckList = new HashSet<OWLClass>();
+		// Services having a category that is the same or more specific than what the request specifies
+		// (note that these classes are not necessarily asserted subclasses of #TaxonomyEntity)
+		System.out.println("The taxonomy class of the RFP (" + rfpHasCategoryPropertyFillerClass.getURI() + ") matches " + (index.getDescendants(rfpHasCategoryPropertyFillerClass).cardinality() + 1) + " classes (including itself)");
 		
-		// First of all, add the category class itself
-		categoryCheckList.add(rfpHasCategoryPropertyFillerClass);
-		
-		// ... and from each set...
-		for (Set<OWLClass> subsumedByRFPHasCategoryClassSet : subsumedByAFPHasCategoryClassSetOfSets)
-		{
-			// ...add every class apart from owl:Nothing 
-			for (OWLClass tmp : subsumedByRFPHasCategoryClassSet)
-			{
-				categoryCheckList.add(tmp);
-			}
-		}
-		
-		// Note that the categoryCheckList might contain classes that 
-		// are not necessarily asserted subclasses of #TaxonomyEntity
-		System.out.println("The taxonomy class of the RFP (" + rfpHasCategoryPropertyFillerClass.getURI() + ") matches " + categoryCheckList.size() + " classes (including itself)");
-		
-		
-		
-		
-		
-		// //////////////////////
-		// PREPROCESSING - CREATE INPUT MATCHING CHECKLIST 
-		// //////////////////////
-		
-		// A list of all matching InputDataSet classes
-		Set<OWLClass> inputCheckList = new HashSet<OWLClass>();
-		
-		// No point in preparing an input checklist if the RFP doesn't have any inputs 
+		// Services that require the same or less inputs than what the request specifies
 		if ( rfpHasInputPropertyFillerClass != null )
-		{			
-			// Get the set of sets of classes that subsume the rfpHasInputPropertyFillerClass
-			// (this includes all classes that represent collections of data, regardless of 
-			// whether they represent input or output data, and whether they "belong" to RFPs or AFPs 
-			Set<Set<OWLClass>> subsumersOfRFPInputDataSetClassSetOfSets = new HashSet<Set<OWLClass>>();
-			try
-			{
-				// Get services that require the same or less inputs than what the request specifies
-				subsumersOfRFPInputDataSetClassSetOfSets = reasoner.getAncestorClasses(rfpHasInputPropertyFillerClass);
-			}
-			catch (OWLReasonerException e)
-			{
-				System.out.println("OWLReasonerException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException();
-			}
-			
-			// First of all, add the InputDataSet class itself
-			inputCheckList.add(rfpHasInputPropertyFillerClass);
-			
-			// ... and from each set...
-			for (Set<OWLClass> tmpClassSet : subsumersOfRFPInputDataSetClassSetOfSets)
-			{
-				// ...pick only those classes that represent inputs (of AFPs or RFPs)
-				for (OWLClass tmpClass : tmpClassSet)
-				{
-					inputCheckList.add(tmpClass);
-				}
-			}
-			
-			// At this point the inputCheckList set contains classes 
-			// representing not only input data of AFPs, but also of RFPs
-			System.out.println("The input data set class of the RFP (" + rfpHasInputPropertyFillerClass.getURI() + ") matches " + inputCheckList.size() + " classes (including itself)");
-			
-		}
-		
-		
+			System.out.println("The input data set class of the RFP (" + rfpHasInputPropertyFillerClass.getURI() + ") matches " + (index.getAncestors(rfpHasInputPropertyFillerClass).cardinality() + 1) + " classes (including itself)");
 		
-		
-		
-		// //////////////////////
-		// PREPROCESSING - CREATE OUPUT MATCHING CHECKLIST
-		// //////////////////////
-		
-		// A list of all matching OutputDataSet classes
-		Set<OWLClass> outputCheckList = new HashSet<OWLClass>();
-		
-		// No point in preparing an output checklist if the service doesn't have any outputs 
-		if (  rfpHasOutputPropertyFillerClass != null  )
-		{	
-			// Get the set of sets of classes that are subsumed by the rfpHasOutputPropertyFillerClass
-			// (this includes all classes that represent collections of data, regardless of whether 
-			// they represent input or output data, and whether they "belong" to RFPs or AFPs 
-			Set<Set<OWLClass>> subsumedClassSetOfSets = new HashSet<Set<OWLClass>>();
-			try
-			{
-				// Get services that provide the same or more outputs than what the request specifies
-				subsumedClassSetOfSets = reasoner.getDescendantClasses(rfpHasOutputPropertyFillerClass);
-			}
-			catch (OWLReasonerException e)
-			{
-				System.out.println("OWLReasonerException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException();
-			}
-			
-			// First of all, add the OutputDataSet class itself
-			outputCheckList.add(rfpHasOutputPropertyFillerClass);
-			
-			// ... and from each set...
-			for (Set<OWLClass> tmpClassSet : subsumedClassSetOfSets)
-			{
-				// ...pick only those classes that represent outputs (of AFPs or RFPs)
-				for (OWLClass tmpClass : tmpClassSet)
-				{
-					outputCheckList.add(tmpClass);
-				}
-			}
-			
-			// At this point the output check list contains classes 
-			// representing not only output data of AFPs, but also of RFPs
-			System.out.println("The output data set class of the RFP (" + rfpHasOutputPropertyFillerClass.getURI() + ") matches " + outputCheckList.size() + " classes (including itself)");
-		}
+		// Services that provide the same or more outputs than what the request specifies
+		if ( rfpHasOutputPropertyFillerClass != null )
+			System.out.println("The output data set class of the RFP (" + rfpHasOutputPropertyFillerClass.getURI() + ") matches " + (index.getDescendants(rfpHasOutputPropertyFillerClass).cardinality() + 1) + " classes (including itself)");
 		
 		
 		
@@ -562,218 +303,113 @@ public class DiscoveryTimeMatchmaker
 		// Create a list to store the URIs of all AFPs that match the RFP 
 		List<String> returnedMatchingAFPs = new ArrayList<String>();
 		
-		// Create a reference to an object representing the TaxonomyEntity root class
-		OWLClass taxonomyRootClass = factory.getOWLClass(URI.create(taxonomyOntologyLogicalURI + "#TaxonomyEntity"));
-		
-   	    // Iterate over all references to AFP classes
-		for (OWLDescription afp : allAFPs)
+		// Get the table of decoded AFPs, which is built once and kept up to
+		// date as AFPs are created and deleted, instead of decoding the
+		// equivalent class axiom of every AFP for every request
+		AdvertisementDescriptorTable afpTable = null;
+		try
+		{
+			afpTable = view.getAdvertisementDescriptorTable(advertisementFunctionalProfileRootClass, inputDataSetRootClass, outputDataSetRootClass);
+		}
+		catch (OWLReasonerException e)
 		{
-			System.out.println("\nProcessing AFP: " + afp.asOWLClass().getURI().normalize().toString());
+			System.out.println("OWLReasonerException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException();
+		}
 
-			// Get the equivalent class axiom of the AFP class. By convention
-			// in the FUSION project, there should be only one equivalent
-			// class axiom, so this loop should be executed only once
-			for (OWLEquivalentClassesAxiom ax : srkbOntology.getEquivalentClassesAxioms(afp.asOWLClass()))
-			{
-				//System.out.println("Equivalent class axiom: " + ax.toString());
+		System.out.println(afpTable.getSize() + " AFPs contained in " + srkbOntology.getURI());
 
-				// By convention in the FUSION project, there should be two
-				// OWLDescription objects in the axiom: 1) the named AFP class,
-				// and 2) the anonymous class defined as an intersection of
-				// existential and universal restrictions on object properties
-				// (i.e. the hasCategory, hasInput, and hasOutput
-				// properties)
-				for (OWLDescription desc : ax.getDescriptions())
-				{
-					// Send the collector only to the second component
-					// of the axiom (i.e. only to the anonymous class)
-					if (desc.isAnonymous())
-					{
-						//System.out.println("Collecting filler classes from equivalent class axiom...");
-						desc.accept(collector);
-					}
-				}
-			}
-			
-			// Get the filler classes from the collector
-			collectedFillerClasses = collector.getObjects();
-			//System.out.println(collectedFillerClasses.size() + " filler classes collected from " + rfp);
-					
-			// By convention in the FUSION project, there should be a maximum 
-			// of three classes inside the collectedFillerClasses set:
-			// 1) the filler class for the hasCategory property restriction (mandatory)
-			// 2) the filler class for the hasInput property restriction (for in-only and in-out services)
-			// 3) the filler class for the hasOutput property restriction (for out-only and in-out services)
-			
-			// Keep a flag to speed things up a bit more
-			boolean categoryMatchFound = false;
-			boolean mepIsCompatible = false;
-			
-				// Keep a flag for each type of filler class expected
-			boolean hasAFPCategoryFillerFound = false;
-			boolean hasAFPInputFillerFound = false;
-			boolean hasAFPOutputFillerFound = false;
+		// No point in continuing if the SRKB ontology does not contain any AFPs
+		if (afpTable.getSize() == 0)
+			throw new SemanticRegistryMatchmakingException(
+					"The ontology at " + srkbOntology.getURI() + " does not contain any AFP concepts. " +
+							"Matchmaking among AFPs and RFPs is not possible.");
 
-			// Keep the filler classes
-			OWLClass hasAFPCategoryFillerClass = null;
-			OWLClass hasAFPInputFillerClass = null;
-			OWLClass hasAFPOutputFillerClass = null;
+		// Get the MEP code and the class IDs of the RFP, to be compared with those of every AFP
+		final byte rfpMEPCode = AdvertisementDescriptorTable.getMEPCode(rfpMEP);
+		final int rfpCategoryId = index.getId(rfpHasCategoryPropertyFillerClass);
+		final int rfpInputId = (rfpHasInputPropertyFillerClass == null) ? -1 : index.getId(rfpHasInputPropertyFillerClass);
+		final int rfpOutputId = (rfpHasOutputPropertyFillerClass == null) ? -1 : index.getId(rfpHasOutputPropertyFillerClass);
 
-			// We will need to convert each retrieved OWLEntity to an OWLClass
-			fillerCls = null;
+		// The AFPs may be matched on other threads, which need final references
+		final SubsumptionIndex subsumptionIndex = index;
+		final AdvertisementDescriptorTable table = afpTable;
 
-			// Determine the property corresponding to each filler,
-			// by checking if the filler is an asserted subclass of
-			// 1) inputDataSetRootClass, 2) outputDataSetRootClass,
-			// or 3) none of the two (i.e. a taxonomy annotation)
-			for (OWLEntity filler : collectedFillerClasses)
-			{
-				fillerCls = factory.getOWLClass(filler.getURI().normalize());
-				if (!hasAFPInputFillerFound
-						&& isAssertedSubClassOf(fillerCls, inputDataSetRootClass, srkbOntology))
-				{
-					hasAFPInputFillerFound = true;
-					hasAFPInputFillerClass = fillerCls;
-					//System.out.println(afp + " hasInput: " + fillerCls.getURI());
-				}
-				else if (!hasAFPOutputFillerFound
-						&& isAssertedSubClassOf(fillerCls, outputDataSetRootClass, srkbOntology))
-				{
-					hasAFPOutputFillerFound = true;
-					hasAFPOutputFillerClass = fillerCls;
-					//System.out.println(afp + " hasOutput: " + fillerCls.getURI());
-				}
-				else // i.e. if it's the filler class for hasCategory
-				{
-					hasAFPCategoryFillerFound = true;
-					hasAFPCategoryFillerClass = fillerCls;
-					//System.out.println(afp + " hasCategory: " + fillerCls.getURI());
-				}
-			}
+		// //////////////////////
+		// CATEGORY MATCHMAKING
+		// //////////////////////
 
-			// Detect the implied message exchange pattern of the AFP
-			String afpMEP = null;
-			if (hasAFPCategoryFillerFound && hasAFPInputFillerFound && !hasAFPOutputFillerFound) afpMEP = "in-only";
-			if (hasAFPCategoryFillerFound && !hasAFPInputFillerFound && hasAFPOutputFillerFound) afpMEP = "out-only";
-			if (hasAFPCategoryFillerFound && hasAFPInputFillerFound && hasAFPOutputFillerFound) afpMEP = "in-out";
+		// Only the AFPs having a category that is the same as, or more specific
+		// than, the category of the RFP are candidates for matching
+		BitSet candidateRows = afpTable.getRowsInCategory(rfpCategoryId);
+		System.out.println(candidateRows.cardinality() + " of " + afpTable.getSize() + " AFPs match the taxonomy class of the RFP");
 
-			if (afpMEP == null) throw new SemanticRegistryConfigurationException(
-					"Problem encountered while processing AFPs for matchmaking");
-			
-			
-			
-			
-			
-			// //////////////////////
-			// CATEGORY MATCHMAKING
-			// //////////////////////
+		// Get the rows of the candidate AFPs, in the order of the table
+		final int[] rows = new int[candidateRows.cardinality()];
+		for (int i = candidateRows.nextSetBit(0), k = 0; i >= 0; i = candidateRows.nextSetBit(i + 1), k++)
+		{
+			rows[k] = i;
+		}
 
-			// If the MEPs of the AFP and the RFP match, check if
-			// the AFP's hasCategory filler class is in the checklist
+		// The candidate AFPs rejected at every stage of matching, counted on
+		// the matching threads and reported once they have all finished
+		final AtomicInteger mepMismatches = new AtomicInteger();
+		final AtomicInteger inputMismatches = new AtomicInteger();
+		final AtomicInteger outputMismatches = new AtomicInteger();
 
-			if (afpMEP.equalsIgnoreCase(rfpMEP))
+		// Match the candidate AFPs, in parallel if there are many of them
+		BitSet matches = ParallelMatcher.match(rows.length, new ParallelMatcher.ProfileMatcher()
+		{
+			public boolean matches(int k) throws SemanticRegistryConfigurationException
 			{
-				mepIsCompatible = true;
-				System.out.println("The message exchange pattern of the AFP (" + afpMEP + ") matches the MEP of the RFP");
+				int i = rows[k];
+				byte afpMEP = table.getMEP(i);
 
-				for (OWLClass tmpClass : categoryCheckList)
-				{
-					if (!categoryMatchFound
-							&& hasAFPCategoryFillerClass.getURI().normalize().toString()
-									.equalsIgnoreCase(tmpClass.getURI().normalize().toString()))
-					{
-						// System.out.println("Category Match found!");
-						categoryMatchFound = true;
-					}
-				}
-			}
-			else
-			{
-				mepIsCompatible = false;
-				System.out.println("The message exchange pattern of the AFP (" + afpMEP + ") does not match the MEP of the RFP (" + rfpMEP + ")");
-			}
-			
-			
-			// If this RFP matches with the AFP at the category level,
-			// proceed to matchmaking at the input level (if MEP is in-only)
-			// or output-level (if MEP is out-only)
-			if (categoryMatchFound)
-			{
-				
-				// //////////////////////
-				// IN-ONLY MATCHMAKING
-				// //////////////////////
+				if (afpMEP == AdvertisementDescriptorTable.MEP_UNKNOWN) throw new SemanticRegistryConfigurationException(
+						"Problem encountered while processing AFPs for matchmaking");
 
-				// if both AFP and RFP represent services with an in-only MEP
-				if (afpMEP.equalsIgnoreCase("in-only") && rfpMEP.equalsIgnoreCase("in-only"))
+				// The MEPs of the AFP and the RFP must match
+				if (afpMEP != rfpMEPCode)
 				{
-					System.out.println("Category match detected for AFP " + afp + ", proceeding to input matching for this AFP");
-					if (inputCheckList.contains(hasAFPInputFillerClass))
-					{
-						System.out.println("Input match detected for AFP " + afp + ", adding it to the list of matching AFPs");
-						returnedMatchingAFPs.add(afp.asOWLClass().getURI().normalize().toString());
-					}
-					else
-						System.out.println("Input match was not detected for AFP " + afp);
+					mepMismatches.incrementAndGet();
+					return false;
 				}
 
-				
 				// //////////////////////
-				// OUT-ONLY MATCHMAKING
+				// INPUT MATCHMAKING
 				// //////////////////////
 
-				// if both AFP and RFP represent services with an out-only MEP
-				if (afpMEP.equalsIgnoreCase("out-only") && rfpMEP.equalsIgnoreCase("out-only"))
+				// In-only and in-out services must require the same or less inputs than what the request specifies
+				if ((afpMEP == AdvertisementDescriptorTable.MEP_IN_ONLY || afpMEP == AdvertisementDescriptorTable.MEP_IN_OUT)
+						&& !subsumptionIndex.isSubsumedBy(rfpInputId, table.getInputId(i)))
 				{
-					System.out.println("Category match detected for AFP " + afp + ", proceeding to output matching for this AFP");
-					if (outputCheckList.contains(hasAFPOutputFillerClass))
-					{
-						System.out.println("Output match detected for AFP " + afp + ", adding it to the list of matching AFPs");
-						returnedMatchingAFPs.add(afp.asOWLClass().getURI().normalize().toString());
-					}
-					else
-						System.out.println("Output match was not detected for AFP " + afp);
+					inputMismatches.incrementAndGet();
+					return false;
 				}
 
-				
 				// //////////////////////
-				// IN-OUT MATCHMAKING
+				// OUTPUT MATCHMAKING
 				// //////////////////////
 
-				// if both AFP and RFP represent services with an in-out MEP
-				if (afpMEP.equalsIgnoreCase("in-out") && rfpMEP.equalsIgnoreCase("in-out"))
+				// Out-only and in-out services must provide the same or more outputs than what the request specifies
+				if ((afpMEP == AdvertisementDescriptorTable.MEP_OUT_ONLY || afpMEP == AdvertisementDescriptorTable.MEP_IN_OUT)
+						&& !subsumptionIndex.isSubsumedBy(table.getOutputId(i), rfpOutputId))
 				{
-					System.out.println("Category match detected for AFP " + afp + ", proceeding to input matching for this AFP");
-					if (inputCheckList.contains(hasAFPInputFillerClass))
-					{
-						System.out.println("Input match detected for AFP " + afp + ", proceeding to output matching");
-						if (outputCheckList.contains(hasAFPOutputFillerClass))
-						{
-							System.out.println("Output match detected for AFP " + afp + ", adding it to the list of matching AFPs");
-							returnedMatchingAFPs.add(afp.asOWLClass().getURI().normalize()
-									.toString());
-						}
-						else
-							System.out.println("Output match was not detected for AFP " + afp);
-					}
-					else
-						System.out.println("Input match was not detected for AFP " + afp);
+					outputMismatches.incrementAndGet();
+					return false;
 				}
 
-			} // end-if this AFP matches with the RFP at the category level
-			else
-			{
-				if (mepIsCompatible && !categoryMatchFound)
-				{
-					System.out.println("Category match was not detected for RFP " + afp);
-				}
+				return true;
 			}
-			
-			// Reset the collector to reuse it in the next iteration
-			collector.reset();
+		});
 
-			
-		}// end for every RFP
+		// Collect the URIs of the matching AFPs
+		for (int k = matches.nextSetBit(0); k >= 0; k = matches.nextSetBit(k + 1))
+		{
+			returnedMatchingAFPs.add(afpTable.getAFPURI(rows[k]));
+		}
+		System.out.println(matches.cardinality() + " of " + rows.length + " candidate AFPs match the RFP (" + mepMismatches + " differ in their MEP, " 
+				+ inputMismatches + " in their inputs and " + outputMismatches + " in their outputs)");
 		
 		
 		
@@ -791,258 +427,4 @@ public class DiscoveryTimeMatchmaker
 
 
 
-	
-	
-	
-	
-	/**
-	 * @param subsumedClass
-	 * @param rootClass
-	 * @param reasoner
-	 * @return
-	 * @throws SemanticRegistryMatchmakingException
-	 */
-	private boolean isnferredSubClassOf(OWLClass subsumedClass,
-			OWLClass rootClass, OWLReasoner reasoner) throws SemanticRegistryMatchmakingException
-	{
-
-		Set<Set<OWLClass>> inferredSubClassesSetOfSets = new HashSet<Set<OWLClass>>();
-		try
-		{
-			inferredSubClassesSetOfSets = reasoner.getDescendantClasses(rootClass);
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("OWLReasonerException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("OWLReasonerException");
-		}
-		
-		for (Set<OWLClass> inferredSubClassesSet : inferredSubClassesSetOfSets)
-		{
-			// iterate over all classes...
-			for (OWLClass subClass : inferredSubClassesSet)
-			{
-				// ... and return true as soon as the URIs of the two class match 
-				if (subClass.getURI().toString().equalsIgnoreCase(subsumedClass.getURI().toString())) 
-				{
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
-
-
-
-
-
-
-	/**
-	 * @param classToCheck
-	 * @param rootClass
-	 * @param ontology
-	 * @return
-	 */
-	private boolean isAssertedSubClassOf(OWLClass classToCheck, OWLClass rootClass, OWLOntology ontology)
-	{
-		// Get a set of all classes in the ontology
-		Set<OWLDescription> allAssertedSubclassesOfRootClass = rootClass.getSubClasses(ontology);
-		
-		//System.out.println("allAssertedSubclassesOfRootClass.size(): " + allAssertedSubclassesOfRootClass.size());
-		
-		// One way to check
-		//System.out.print("Checking (IN MODE A) if " + classToCheck + " is subclass of " + rootClass + ": ");
-		if (allAssertedSubclassesOfRootClass.contains((OWLDescription)classToCheck)) 
-		{
-			return true;
-		}
-		return false;
-	}
-	
-	
-	
-	
-	
-	
-	
-	
-	/**
-	 * @param targetClassName
-	 * @param importsClosure
-	 * @param factory
-	 * @return
-	 * @throws SemanticRegistryConfigurationException
-	 */
-	static OWLOntology getDefiningOntology(
-			String targetClassName, 
-			Set<OWLOntology> importsClosure, 
-			OWLDataFactory factory) 
-	
-	throws SemanticRegistryConfigurationException
-	{
-		// Determine which of the ontologies imported by the SRKB 
-		// ontology (directly or indirectly) is the ontology in which 
-		// the targetClassName is defined, and retrieve its logical URI
-		System.out.println("Scanning for " + targetClassName + " in the import closure of the SRKB ontology:");
-		
-		OWLClass tmpClass = null; 
-		OWLOntology returnedOntology = null;
-		
-		// Create a map to store search result tuples (ontology logical URI, number of subclasses detected)
-		Map<OWLOntology, Integer> ontologySearchResults = new HashMap<OWLOntology, Integer>();
-		
-		URI targetClassURI = URI.create(targetClassName);
-		
-		// Iterate over every ontology in the imports closure and check  
-		// if it contains any asserted subclasses of targetClassName
-		for (OWLOntology ont : importsClosure)
-		{
-			if (targetClassURI.isAbsolute())
-			{
-				tmpClass = factory.getOWLClass(targetClassURI);
-			}
-			else
-			{
-				tmpClass = factory.getOWLClass(URI.create(ont.getURI() + targetClassName));
-			}
-			
-			//System.out.println("Looking for subclasses of " + tmpClass.getURI() + " in " + ont.getURI());
-			Set<OWLDescription> foundSubClasses = tmpClass.getSubClasses(ont);
-			
-			// The containsEntityDeclaration method offers the best technique for 
-			// the specific purpose but cannot be used as it is still not implemented 
-			// in the latest binary release of the OWL-API (v2.1.1 - 16th August 2007)
-			//if (ont.containsEntityDeclaration(target)) 
-			//System.out.println("A declaration for concept " + tmpClass.getURI() + " was found in " + ont.getURI());
-			
-			// Since a concept with the specified name (targetClassName) may be defined in more 
-			// than one ontologies in the closure, judging which is the correct ontology that we 
-			// are after can only be based on a heuristic (the number of concepts in the ontology 
-			// that are defined as asserted subclasses of the target class - the more the better)
-			
-			// If at least one asserted subclass of the target class has been found
-			if (foundSubClasses.size() > 0)
-			{
-				// Add it to the search results map
-				ontologySearchResults.put(ont, foundSubClasses.size());
-			}
-		}
-		
-		// If none of the ontologies in the import closure of the SRKB contains a 
-		// subclass of the target class, there is a configuration problem
-		if (ontologySearchResults.size() == 0)
-		{
-			throw new SemanticRegistryConfigurationException(
-					"Configuration problem detected: None of the ontologies in the import closure " +
-					"of the SRKB ontology contains subclasses of the " + targetClassName + " concept. " +
-					"Make sure that the SRKB ontology imports (directly or indirectly) some ontology " +
-					"in which a " + targetClassName + " concept as well as several subclass concepts are defined.");
-		}
-		
-		// Standard case: only one ontology from the SRKB's imports closure 
-		// contains asserted subclasses of the target concept 
-		if (ontologySearchResults.size() == 1)
-		{
-			returnedOntology = ontologySearchResults.keySet().iterator().next();
-			//int subclasses = ontologySearchResults.get(targetOntologyLogicalURI);
-			//System.out.println("FOUND " + subclasses + " subclasses of #TaxonomyEntity in " + taxonomyOntologyLogicalURI);
-		}
-		
-		// Exceptional case: more than one ontology from the SRKB's imports closure 
-		// contain asserted subclasses of the target class. Therefore Judging which 
-		// is the correct ontology can only be based on a heuristic (we choose the number of 
-		// is the correct asserted subclasses that were detected - the more being the better) 
-		if (ontologySearchResults.size() > 1)
-		{
-			int maxSubClassesFound = 0 ;
-			OWLOntology ontContainingMaxSubClasses = null;
-		    
-			// Get the keys (URIs) and values (number of subclasses) for every entry in the map
-		    for (Iterator it = ontologySearchResults.entrySet().iterator(); it.hasNext(); ) 
-		    {
-		        Map.Entry entry = (Map.Entry)it.next();
-		        OWLOntology onto = (OWLOntology) entry.getKey();
-		        Integer numOfSubclasses = (Integer) entry.getValue();
-		        
-		        if (numOfSubclasses.intValue() > maxSubClassesFound)
-		        {
-		        	maxSubClassesFound = numOfSubclasses.intValue();
-		        	ontContainingMaxSubClasses = onto;
-		        }
-		    }
-		    returnedOntology = ontContainingMaxSubClasses;
-		}
-		
-		System.out.println("Subclasses of the " + tmpClass + " concept are defined in " + returnedOntology.getURI());
-		return returnedOntology;
-	}
-	
-	
-	
-	
-	
-	
-	
-	
-	
-	/**
-	 * @param man
-	 * @return
-	 */
-	private static OWLReasoner createReasoner(OWLOntologyManager man)
-	{
-		try
-		{
-			// The following code is a little overly complicated. The reason for
-			// using reflection to create an instance of pellet is so that there 
-			// is no compile time dependency (since the pellet libraries aren't 
-			// contained in the OWL API repository). Normally, one would simply 
-			// create an instance using the following incantation:
-			//
-			// OWLReasoner reasoner = new Reasoner()
-			//
-			// Where the full class name for Reasoner is
-			// org.mindswap.pellet.owlapi.Reasoner
-			//
-			// Pellet requires the Pellet libraries (pellet.jar,
-			// aterm-java-x.x.jar) and the
-			// XSD libraries that are bundled with pellet: xsdlib.jar and
-			// relaxngDatatype.jar
-
-			String reasonerClassName = "org.mindswap.pellet.owlapi.Reasoner";
-			Class reasonerClass = Class.forName(reasonerClassName);
-			Constructor<OWLReasoner> con = reasonerClass.getConstructor(OWLOntologyManager.class);
-
-			return con.newInstance(man);
-		}
-		catch (ClassNotFoundException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (IllegalAccessException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (NoSuchMethodException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (InvocationTargetException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (InstantiationException e)
-		{
-			throw new RuntimeException(e);
-		}
-	}
-	
-	
-	
-	
-	
-	
-
-
 }
@@ -0,0 +1,1355 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.semanticweb.owl.inference.OWLReasoner;
+import org.semanticweb.owl.inference.OWLReasonerException;
+import org.semanticweb.owl.model.OWLAxiom;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLDeclarationAxiom;
+import org.semanticweb.owl.model.OWLDescription;
+import org.semanticweb.owl.model.OWLEntity;
+import org.semanticweb.owl.model.OWLEquivalentClassesAxiom;
+import org.semanticweb.owl.model.OWLObjectAllRestriction;
+import org.semanticweb.owl.model.OWLObjectIntersectionOf;
+import org.semanticweb.owl.model.OWLObjectSomeRestriction;
+import org.semanticweb.owl.model.OWLObjectUnionOf;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.model.OWLSubClassAxiom;
+import org.semanticweb.owl.util.OWLEntityCollector;
+
+/**
+ * Answers subsumption queries over a classified imports closure, taking into
+ * account classes that were defined or removed after the classification took
+ * place. New classes (e.g. the AFP class and its InputDataSet / OutputDataSet
+ * classes) are placed in the existing hierarchy by testing subsumption only
+ * against the classes that can be their ancestors or descendants, instead of
+ * reloading and reclassifying the whole imports closure. Removed classes are
+ * simply hidden from the answers.
+ *
+ * Placement assumes that the told superclasses of a new class (e.g.
+ * #InputDataSet) do not take part in the definitions of other classes, which
+ * holds for the profiles created by the Semantic Registry. The classifier
+ * keeps track of the number of changes it has absorbed, so that the knowledge
+ * base can be fully reclassified from time to time.
+ *
+ * A classifier restored from a {@link KnowledgeBaseSnapshot} starts with the
+ * subsumption index and AFP table of the snapshot, and only loads and
+ * classifies the imports closure in the reasoner the first time the reasoner
+ * is actually needed (e.g. to place a new class).
+ *
+ * A classifier that is visible to the views of the knowledge base is never
+ * changed. Changes are made to a copy, which shares the reasoner (and
+ * serialises its queries on it) but has its own placed classes, subsumption
+ * index and AFP table, and which replaces the original in the views of the
+ * new version of the knowledge base. The index and the table are built
+ * before a classifier is published, so that the views can read them without
+ * waiting for the reasoner.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class IncrementalClassifier
+{
+	// The reasoner holding the classified ontologies, shared with the copies of the classifier
+	SharedReasoner reasoner;
+
+	// The data factory used for creating class descriptions
+	OWLDataFactory factory;
+
+	// The definitions of the classes placed after the classification, with all new classes expanded
+	Map<OWLClass, OWLDescription> definitions = new HashMap<OWLClass, OWLDescription>();
+
+	// The descriptions of the classes placed after the classification (definition and told superclasses)
+	Map<OWLClass, OWLDescription> descriptions = new HashMap<OWLClass, OWLDescription>();
+
+	// The ancestors of every class placed after the classification
+	Map<OWLClass, Set<OWLClass>> ancestors = new HashMap<OWLClass, Set<OWLClass>>();
+
+	// The descendants of every class placed after the classification
+	Map<OWLClass, Set<OWLClass>> descendants = new HashMap<OWLClass, Set<OWLClass>>();
+
+	// The classes known to the reasoner that have been removed after the classification
+	Set<OWLClass> retractedClasses = new HashSet<OWLClass>();
+
+	// The number of classes placed or retracted since the classification
+	int changeCount = 0;
+
+	// The subsumption index, built before the classifier is published in a view
+	volatile SubsumptionIndex index;
+
+	// The table of decoded AFPs, built before the classifier is published if its root classes are known
+	volatile AdvertisementDescriptorTable descriptorTable;
+
+	// Held while the AFP table is built on request, so that it is only built once
+	final Object descriptorTableLock = new Object();
+
+	// The asserted hierarchy of every ontology queried through this classifier, built the first time it is requested
+	Map<OWLOntology, AssertedHierarchy> assertedHierarchies = new IdentityHashMap<OWLOntology, AssertedHierarchy>();
+
+
+
+
+
+
+
+	/**
+	 * @param reasoner a reasoner holding a classified imports closure
+	 * @param factory
+	 */
+	IncrementalClassifier(OWLReasoner reasoner, OWLDataFactory factory)
+	{
+		this(new SharedReasoner(reasoner, null), factory);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Creates a classifier from the subsumption index and AFP table of a
+	 * snapshot, which loads its reasoner the first time it is needed.
+	 *
+	 * @param reasonerLoader loads and classifies the imports closure the snapshot was taken of
+	 * @param factory
+	 * @param index
+	 * @param descriptorTable the AFP table, or null if the snapshot has none
+	 */
+	IncrementalClassifier(
+			Callable<OWLReasoner> reasonerLoader,
+			OWLDataFactory factory,
+			SubsumptionIndex index,
+			AdvertisementDescriptorTable descriptorTable)
+	{
+		this(new SharedReasoner(null, reasonerLoader), factory);
+		this.index = index;
+		this.descriptorTable = descriptorTable;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param reasoner
+	 * @param factory
+	 */
+	private IncrementalClassifier(SharedReasoner reasoner, OWLDataFactory factory)
+	{
+		this.reasoner = reasoner;
+		this.factory = factory;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the reasoner holding the classified ontologies, loading it if
+	 * this is the first time it is needed.
+	 *
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public OWLReasoner getReasoner()
+
+	throws OWLReasonerException
+	{
+		synchronized (reasoner)
+		{
+			return reasoner.get();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of classes placed or retracted since the classification
+	 */
+	public int getChangeCount()
+	{
+		return changeCount;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Builds the subsumption index of the hierarchy, and the table of decoded
+	 * AFPs of the SRKB ontology with the root classes of the given table,
+	 * unless they have been built already. Called by the knowledge base
+	 * before the classifier is published in a view, so that views never have
+	 * to wait for the reasoner (which may be busy placing the classes of a
+	 * publication) to get them.
+	 *
+	 * @param srkbOntology
+	 * @param rootClassTable a table whose root classes the AFP table is built
+	 * with, or null if they are not known yet
+	 * @throws OWLReasonerException
+	 */
+	void prepare(OWLOntology srkbOntology, AdvertisementDescriptorTable rootClassTable)
+
+	throws OWLReasonerException
+	{
+		synchronized (reasoner)
+		{
+			if (index == null)
+				index = SubsumptionIndex.build(this);
+		}
+
+		if (descriptorTable == null && rootClassTable != null)
+			descriptorTable = AdvertisementDescriptorTable.build(factory, srkbOntology, rootClassTable.afpRootClass,
+					rootClassTable.inputDataSetRootClass, rootClassTable.outputDataSetRootClass, index);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the subsumption index of the hierarchy. The index of a
+	 * classifier published in a view has been built by
+	 * {@link #prepare(OWLOntology, AdvertisementDescriptorTable)}, so it is
+	 * returned without taking the reasoner; otherwise it is built now.
+	 *
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public SubsumptionIndex getSubsumptionIndex()
+
+	throws OWLReasonerException
+	{
+		SubsumptionIndex builtIndex = index;
+		if (builtIndex != null)
+			return builtIndex;
+
+		synchronized (reasoner)
+		{
+			if (index == null)
+				index = SubsumptionIndex.build(this);
+			return index;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the table of decoded AFPs of the SRKB ontology, building it if
+	 * this is the first time it is requested (which only happens until the
+	 * knowledge base has learned the root classes from a built table). The
+	 * table is built from the subsumption index alone, so the reasoner is not
+	 * taken. The IDs in the table refer to the subsumption index of this
+	 * classifier.
+	 *
+	 * @param srkbOntology
+	 * @param afpRootClass
+	 * @param inputDataSetRootClass
+	 * @param outputDataSetRootClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public AdvertisementDescriptorTable getAdvertisementDescriptorTable(
+			OWLOntology srkbOntology,
+			OWLClass afpRootClass,
+			OWLClass inputDataSetRootClass,
+			OWLClass outputDataSetRootClass)
+
+	throws OWLReasonerException
+	{
+		AdvertisementDescriptorTable builtTable = descriptorTable;
+		if (builtTable != null)
+			return builtTable;
+
+		SubsumptionIndex builtIndex = getSubsumptionIndex();
+		synchronized (descriptorTableLock)
+		{
+			if (descriptorTable == null)
+				descriptorTable = AdvertisementDescriptorTable.build(factory, srkbOntology,
+						afpRootClass, inputDataSetRootClass, outputDataSetRootClass, builtIndex);
+			return descriptorTable;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the asserted hierarchy of the given ontology, which is one of
+	 * the ontologies loaded to the reasoner.
+	 *
+	 * @param ontology
+	 * @return
+	 */
+	public AssertedHierarchy getAssertedHierarchy(OWLOntology ontology)
+	{
+		synchronized (assertedHierarchies)
+		{
+			AssertedHierarchy hierarchy = assertedHierarchies.get(ontology);
+			if (hierarchy == null)
+			{
+				hierarchy = AssertedHierarchy.build(ontology);
+				assertedHierarchies.put(ontology, hierarchy);
+			}
+			return hierarchy;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Updates the asserted hierarchy of the given ontology, if it has been
+	 * built, with axioms that have just been removed from and added to the
+	 * ontology. Must only be called on a copy of the classifier made for the
+	 * ontology with {@link #copy(OWLOntology, OWLOntology)}.
+	 *
+	 * @param ontology
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 */
+	void updateAssertedHierarchy(OWLOntology ontology, Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove)
+	{
+		synchronized (assertedHierarchies)
+		{
+			AssertedHierarchy hierarchy = assertedHierarchies.get(ontology);
+			if (hierarchy != null)
+				hierarchy.applyChanges(axiomsToAdd, axiomsToRemove);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the classifier that can be changed without affecting
+	 * this one, in which the given copy of an ontology (normally the SRKB
+	 * ontology) takes the place of the original.
+	 *
+	 * @param ontology the ontology that has been copied
+	 * @param newOntology the copy of the ontology
+	 * @return
+	 */
+	IncrementalClassifier copy(OWLOntology ontology, OWLOntology newOntology)
+	{
+		IncrementalClassifier copy = new IncrementalClassifier(reasoner, factory);
+		synchronized (reasoner)
+		{
+			copy.definitions.putAll(definitions);
+			copy.descriptions.putAll(descriptions);
+			for (Map.Entry<OWLClass, Set<OWLClass>> entry : ancestors.entrySet())
+			{
+				copy.ancestors.put(entry.getKey(), new HashSet<OWLClass>(entry.getValue()));
+			}
+			for (Map.Entry<OWLClass, Set<OWLClass>> entry : descendants.entrySet())
+			{
+				copy.descendants.put(entry.getKey(), new HashSet<OWLClass>(entry.getValue()));
+			}
+			copy.retractedClasses.addAll(retractedClasses);
+			copy.changeCount = changeCount;
+
+			// The AFP table may be built on request meanwhile, but it is only ever set once built
+			AdvertisementDescriptorTable builtTable = descriptorTable;
+			if (index != null)
+				copy.index = index.copy();
+			if (builtTable != null)
+				copy.descriptorTable = builtTable.copy(copy.index,
+						(builtTable.srkbOntology == ontology) ? newOntology : builtTable.srkbOntology);
+		}
+
+		// The hierarchies of the other ontologies do not change, so they are shared
+		synchronized (assertedHierarchies)
+		{
+			for (Map.Entry<OWLOntology, AssertedHierarchy> entry : assertedHierarchies.entrySet())
+			{
+				if (entry.getKey() == ontology)
+					copy.assertedHierarchies.put(newOntology, entry.getValue().copy());
+				else
+					copy.assertedHierarchies.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if the given class was placed in the hierarchy after the
+	 * classification, which means that it is not known to the reasoner.
+	 *
+	 * @param owlClass
+	 * @return
+	 */
+	public boolean isPlaced(OWLClass owlClass)
+	{
+		return descriptions.containsKey(owlClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the classes that subsume the given class.
+	 *
+	 * @param owlClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public Set<Set<OWLClass>> getAncestorClasses(OWLClass owlClass)
+
+	throws OWLReasonerException
+	{
+		// The reasoner is shared by all views, so queries are serialised
+		synchronized (reasoner)
+		{
+			// The ancestors of placed classes are known in full
+			if (isPlaced(owlClass))
+				return toSetOfSets(ancestors.get(owlClass));
+
+			// Ask the reasoner, leaving out the retracted classes...
+			Set<Set<OWLClass>> result = filter(reasoner.get().getAncestorClasses(owlClass));
+
+			// ...and add every placed class that subsumes the class, along with its own ancestors
+			for (OWLClass placedClass : descendants.keySet())
+			{
+				if (descendants.get(placedClass).contains(owlClass))
+				{
+					result.add(Collections.singleton(placedClass));
+					result.addAll(toSetOfSets(ancestors.get(placedClass)));
+				}
+			}
+			return result;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the classes that are subsumed by the given class.
+	 *
+	 * @param owlClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public Set<Set<OWLClass>> getDescendantClasses(OWLClass owlClass)
+
+	throws OWLReasonerException
+	{
+		synchronized (reasoner)
+		{
+			// The descendants of placed classes are known in full
+			if (isPlaced(owlClass))
+				return toSetOfSets(descendants.get(owlClass));
+
+			// Ask the reasoner, leaving out the retracted classes...
+			Set<Set<OWLClass>> result = filter(reasoner.get().getDescendantClasses(owlClass));
+
+			// ...and add every placed class that is subsumed by the class, along with its own descendants
+			for (OWLClass placedClass : ancestors.keySet())
+			{
+				if (ancestors.get(placedClass).contains(owlClass))
+				{
+					result.add(Collections.singleton(placedClass));
+					result.addAll(toSetOfSets(descendants.get(placedClass)));
+				}
+			}
+			return result;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Places new classes in the classified hierarchy. The descriptions and
+	 * definitions must have been prepared with
+	 * {@link #getNewClasses(Set, Set, OWLDataFactory, IncrementalClassifier, Map, Map)}.
+	 *
+	 * @param newDefinitions the definitions of the new classes that are fully defined
+	 * @param newDescriptions the descriptions (definition and told superclasses) of all new classes
+	 * @throws OWLReasonerException
+	 */
+	void place(Map<OWLClass, OWLDescription> newDefinitions, Map<OWLClass, OWLDescription> newDescriptions)
+
+	throws OWLReasonerException
+	{
+		synchronized (reasoner)
+		{
+			for (OWLClass newClass : newDescriptions.keySet())
+			{
+				OWLDescription description = newDescriptions.get(newClass);
+				OWLDescription definition = newDefinitions.get(newClass);
+
+				// Find the classes of the hierarchy that subsume the new class
+				List<OWLClass> classAncestors = getAncestorsOf(description);
+
+				// Find the classes of the hierarchy that are subsumed by the new class
+				Set<OWLClass> classDescendants = new HashSet<OWLClass>();
+				if (definition != null)
+					classDescendants = getDescendantsOf(definition, description, classAncestors);
+
+				Set<OWLClass> ancestorSet = new HashSet<OWLClass>(classAncestors);
+				ancestorSet.removeAll(retractedClasses);
+				classDescendants.removeAll(retractedClasses);
+
+				// Relate the new class to the classes placed before it
+				for (OWLClass placedClass : descriptions.keySet())
+				{
+					OWLDescription placedDefinition = definitions.get(placedClass);
+					if (placedDefinition != null && reasoner.get().isSubClassOf(description, placedDefinition))
+					{
+						ancestorSet.add(placedClass);
+						descendants.get(placedClass).add(newClass);
+					}
+					if (definition != null && reasoner.get().isSubClassOf(descriptions.get(placedClass), definition))
+					{
+						classDescendants.add(placedClass);
+						ancestors.get(placedClass).add(newClass);
+					}
+				}
+
+				if (definition != null)
+					definitions.put(newClass, definition);
+				descriptions.put(newClass, description);
+				ancestors.put(newClass, ancestorSet);
+				descendants.put(newClass, classDescendants);
+				changeCount++;
+
+				// Keep the subsumption index up to date
+				if (index != null)
+					index.add(newClass, ancestorSet, classDescendants);
+
+				System.out.println("Class " + newClass.getURI() + " placed under " + ancestorSet.size() + " classes and above " + classDescendants.size() + " classes");
+			}
+
+			// Decode the new AFPs, now that their filler classes are indexed
+			if (descriptorTable != null)
+				descriptorTable.add(newDescriptions.keySet());
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Removes classes from the hierarchy.
+	 *
+	 * @param classes
+	 */
+	void retract(Set<OWLClass> classes)
+	{
+		synchronized (reasoner)
+		{
+			for (OWLClass owlClass : classes)
+			{
+				// Forget the placed classes...
+				if (isPlaced(owlClass))
+				{
+					definitions.remove(owlClass);
+					descriptions.remove(owlClass);
+					ancestors.remove(owlClass);
+					descendants.remove(owlClass);
+					for (Set<OWLClass> classSet : ancestors.values())
+					{
+						classSet.remove(owlClass);
+					}
+					for (Set<OWLClass> classSet : descendants.values())
+					{
+						classSet.remove(owlClass);
+					}
+				}
+
+				// ...and hide the ones known to the reasoner
+				retractedClasses.add(owlClass);
+				changeCount++;
+
+				// Keep the subsumption index up to date
+				if (index != null)
+					index.remove(owlClass);
+				if (descriptorTable != null)
+					descriptorTable.remove(owlClass);
+			}
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Gives new names to classes placed after the classification, which keep
+	 * their place in the hierarchy (and their IDs in the subsumption index)
+	 * instead of being retracted and placed again, so that no subsumption is
+	 * tested. This is only correct if every new class is described exactly
+	 * like its old class, with the renamed classes in place of the old ones
+	 * (e.g. the AFP of a service that was classified under a provisional key,
+	 * and its data set classes). Nothing is renamed unless all the classes
+	 * can be renamed.
+	 *
+	 * @param renamedClasses the new class of every renamed class
+	 * @param newDefinitions the definitions of the new classes that are fully
+	 * defined, prepared like those given to {@link #place(Map, Map)}
+	 * @param newDescriptions the descriptions of all new classes, prepared
+	 * like those given to {@link #place(Map, Map)}
+	 * @return false if the classes could not be renamed, in which case they
+	 * must be retracted and placed
+	 */
+	boolean rename(
+			Map<OWLClass, OWLClass> renamedClasses,
+			Map<OWLClass, OWLDescription> newDefinitions,
+			Map<OWLClass, OWLDescription> newDescriptions)
+	{
+		synchronized (reasoner)
+		{
+			// The old classes must have been placed (not classified by the reasoner), and the new ones must be new
+			for (Map.Entry<OWLClass, OWLClass> entry : renamedClasses.entrySet())
+			{
+				OWLClass owlClass = entry.getKey();
+				OWLClass newClass = entry.getValue();
+				if (!isPlaced(owlClass) || isPlaced(newClass) || !newDescriptions.containsKey(newClass)
+						|| definitions.containsKey(owlClass) != newDefinitions.containsKey(newClass)
+						|| (index != null && !index.canRename(owlClass, newClass)))
+					return false;
+			}
+
+			for (Map.Entry<OWLClass, OWLClass> entry : renamedClasses.entrySet())
+			{
+				OWLClass owlClass = entry.getKey();
+				OWLClass newClass = entry.getValue();
+				if (definitions.remove(owlClass) != null)
+					definitions.put(newClass, newDefinitions.get(newClass));
+				descriptions.remove(owlClass);
+				descriptions.put(newClass, newDescriptions.get(newClass));
+				ancestors.put(newClass, ancestors.remove(owlClass));
+				descendants.put(newClass, descendants.remove(owlClass));
+
+				// The bitsets of the index stay as they are
+				if (index != null)
+					index.rename(owlClass, newClass);
+				if (descriptorTable != null)
+					descriptorTable.remove(owlClass);
+			}
+
+			// Relate the placed classes to the new names
+			for (Set<OWLClass> classSet : ancestors.values())
+			{
+				rename(classSet, renamedClasses);
+			}
+			for (Set<OWLClass> classSet : descendants.values())
+			{
+				rename(classSet, renamedClasses);
+			}
+
+			// Decode the renamed AFPs (which are left out of the table under provisional keys)
+			if (descriptorTable != null)
+				descriptorTable.add(new HashSet<OWLClass>(renamedClasses.values()));
+
+			System.out.println(renamedClasses.size() + " classes renamed in the hierarchy");
+			return true;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Replaces the renamed classes of a set with their new classes.
+	 *
+	 * @param classSet
+	 * @param renamedClasses
+	 */
+	private static void rename(Set<OWLClass> classSet, Map<OWLClass, OWLClass> renamedClasses)
+	{
+		for (Map.Entry<OWLClass, OWLClass> entry : renamedClasses.entrySet())
+		{
+			if (classSet.remove(entry.getKey()))
+				classSet.add(entry.getValue());
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Finds the classes that are removed altogether by the removal of the
+	 * given axioms, i.e. the classes whose every referencing axiom is removed.
+	 * Returns false if some axiom does not belong to such a class, in which
+	 * case the removal cannot be handled incrementally.
+	 *
+	 * @param axiomsToRemove
+	 * @param ontology the ontology the axioms are removed from
+	 * @param importsClosure
+	 * @param removedClasses the set to which the removed classes are added
+	 * @return
+	 */
+	static boolean getRemovedClasses(
+			Set<OWLAxiom> axiomsToRemove,
+			OWLOntology ontology,
+			Set<OWLOntology> importsClosure,
+			Set<OWLClass> removedClasses)
+	{
+		// Find the class that every axiom is about
+		for (OWLAxiom axiom : axiomsToRemove)
+		{
+			OWLClass definedClass = getDefinedClass(axiom);
+			if (definedClass == null)
+				return false;
+			removedClasses.add(definedClass);
+		}
+
+		// Make sure that nothing else refers to the removed classes
+		for (OWLClass removedClass : removedClasses)
+		{
+			for (OWLOntology ont : importsClosure)
+			{
+				for (OWLAxiom axiom : ont.getReferencingAxioms(removedClass))
+				{
+					if (ont != ontology || !axiomsToRemove.contains(axiom))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Finds the classes that are introduced by the given axioms, i.e. classes
+	 * that are not referenced anywhere in the imports closure, and prepares
+	 * their descriptions for placement. Returns false if some axiom does not
+	 * define or declare such a class, or if a definition refers to a class
+	 * that cannot be handled, in which case the addition cannot be handled
+	 * incrementally.
+	 *
+	 * @param axiomsToAdd
+	 * @param importsClosure
+	 * @param factory
+	 * @param classifier the classifier in which the classes will be placed
+	 * @param newDefinitions the map to which the expanded definition of every fully defined new class is added
+	 * @param newDescriptions the map to which the description (definition and told superclasses) of every new class is added
+	 * @return
+	 */
+	static boolean getNewClasses(
+			Set<OWLAxiom> axiomsToAdd,
+			Set<OWLOntology> importsClosure,
+			OWLDataFactory factory,
+			IncrementalClassifier classifier,
+			Map<OWLClass, OWLDescription> newDefinitions,
+			Map<OWLClass, OWLDescription> newDescriptions)
+	{
+		// The definitions and told superclasses of the new classes, as they appear in the axioms
+		Map<OWLClass, OWLDescription> statedDefinitions = new HashMap<OWLClass, OWLDescription>();
+		Map<OWLClass, Set<OWLDescription>> toldSuperClasses = new HashMap<OWLClass, Set<OWLDescription>>();
+
+		for (OWLAxiom axiom : axiomsToAdd)
+		{
+			OWLClass newClass = getDefinedClass(axiom);
+			if (newClass == null || classifier.isPlaced(newClass) || isReferenced(newClass, importsClosure))
+				return false;
+
+			if (!toldSuperClasses.containsKey(newClass))
+				toldSuperClasses.put(newClass, new HashSet<OWLDescription>());
+
+			if (axiom instanceof OWLSubClassAxiom)
+			{
+				toldSuperClasses.get(newClass).add(((OWLSubClassAxiom) axiom).getSuperClass());
+			}
+			else if (axiom instanceof OWLEquivalentClassesAxiom)
+			{
+				// Only one definition per class is supported
+				if (statedDefinitions.containsKey(newClass))
+					return false;
+
+				for (OWLDescription desc : ((OWLEquivalentClassesAxiom) axiom).getDescriptions())
+				{
+					if (desc.isAnonymous())
+					{
+						if (statedDefinitions.containsKey(newClass))
+							return false;
+						statedDefinitions.put(newClass, desc);
+					}
+				}
+			}
+		}
+
+		// Every class referenced by the new axioms must either be new or known to the reasoner
+		OWLEntityCollector collector = new OWLEntityCollector();
+		collector.setCollectClasses(true);
+		collector.setCollectDataProperties(false);
+		collector.setCollectObjectProperties(false);
+		collector.setCollectIndividuals(false);
+		collector.setCollectDataTypes(false);
+		for (OWLAxiom axiom : axiomsToAdd)
+		{
+			axiom.accept(collector);
+		}
+		for (OWLEntity entity : collector.getObjects())
+		{
+			OWLClass referencedClass = (OWLClass) entity;
+			if (toldSuperClasses.containsKey(referencedClass))
+				continue;
+			if (referencedClass.isOWLThing())
+				continue;
+			if (classifier.isPlaced(referencedClass) || !isReferenced(referencedClass, importsClosure))
+				return false;
+		}
+
+		// Told superclasses must be known classes
+		for (Set<OWLDescription> superClasses : toldSuperClasses.values())
+		{
+			for (OWLDescription superClass : superClasses)
+			{
+				if (superClass.isAnonymous() || toldSuperClasses.containsKey(superClass.asOWLClass()))
+					return false;
+			}
+		}
+
+		// Expand the definitions, so that they only refer to classes known to the reasoner
+		for (OWLClass newClass : toldSuperClasses.keySet())
+		{
+			Set<OWLDescription> descriptionSet = new HashSet<OWLDescription>(toldSuperClasses.get(newClass));
+
+			if (statedDefinitions.containsKey(newClass))
+			{
+				OWLDescription definition = expand(statedDefinitions.get(newClass), statedDefinitions, toldSuperClasses, factory, new HashSet<OWLClass>());
+				if (definition == null)
+					return false;
+
+				newDefinitions.put(newClass, definition);
+				descriptionSet.add(definition);
+			}
+
+			if (descriptionSet.isEmpty())
+				newDescriptions.put(newClass, factory.getOWLThing());
+			else if (descriptionSet.size() == 1)
+				newDescriptions.put(newClass, descriptionSet.iterator().next());
+			else
+				newDescriptions.put(newClass, factory.getOWLObjectIntersectionOf(descriptionSet));
+		}
+		return true;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Finds the named classes that subsume the given description, testing
+	 * only the direct subclasses of the classes already found to subsume it.
+	 *
+	 * @param description
+	 * @return the ancestors in the order in which they were found, from the most general to the most specific
+	 * @throws OWLReasonerException
+	 */
+	private List<OWLClass> getAncestorsOf(OWLDescription description)
+
+	throws OWLReasonerException
+	{
+		List<OWLClass> found = new ArrayList<OWLClass>();
+		Set<OWLClass> visited = new HashSet<OWLClass>();
+		List<OWLClass> queue = new ArrayList<OWLClass>();
+
+		// owl:Thing subsumes everything
+		OWLClass thing = factory.getOWLThing();
+		found.add(thing);
+		visited.add(thing);
+		queue.add(thing);
+
+		// Walk down the hierarchy, one level at a time
+		while (!queue.isEmpty())
+		{
+			OWLClass current = queue.remove(0);
+
+			for (Set<OWLClass> subClassSet : reasoner.get().getSubClasses(current))
+			{
+				OWLClass subClass = getRepresentative(subClassSet);
+				if (subClass == null || visited.contains(subClass))
+					continue;
+				visited.addAll(subClassSet);
+
+				// The subclasses of a class that does not subsume the description need not be tested
+				if (reasoner.get().isSubClassOf(description, subClass))
+				{
+					found.addAll(subClassSet);
+					queue.add(subClass);
+				}
+			}
+		}
+		return found;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Finds the named classes that are subsumed by the given definition,
+	 * testing only the classes below the most specific ancestor of the
+	 * definition.
+	 *
+	 * @param definition
+	 * @param description
+	 * @param descriptionAncestors the ancestors of the description, from the most general to the most specific
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	private Set<OWLClass> getDescendantsOf(OWLDescription definition, OWLDescription description, List<OWLClass> descriptionAncestors)
+
+	throws OWLReasonerException
+	{
+		// Everything subsumed by the definition lies below its most specific
+		// ancestor. The ancestors of the description are ancestors of the
+		// definition too, unless they come from the told superclasses.
+		OWLClass top = factory.getOWLThing();
+		for (int i = descriptionAncestors.size() - 1; i >= 0; i--)
+		{
+			OWLClass candidate = descriptionAncestors.get(i);
+			if (definition.equals(description) || reasoner.get().isSubClassOf(definition, candidate))
+			{
+				top = candidate;
+				break;
+			}
+		}
+
+		Set<OWLClass> found = new HashSet<OWLClass>();
+		Set<OWLClass> visited = new HashSet<OWLClass>();
+		List<OWLClass> queue = new ArrayList<OWLClass>();
+		queue.add(top);
+
+		// Walk down the hierarchy, one level at a time
+		while (!queue.isEmpty())
+		{
+			OWLClass current = queue.remove(0);
+
+			for (Set<OWLClass> subClassSet : reasoner.get().getSubClasses(current))
+			{
+				OWLClass subClass = getRepresentative(subClassSet);
+				if (subClass == null || visited.contains(subClass))
+					continue;
+				visited.addAll(subClassSet);
+
+				if (reasoner.get().isSubClassOf(subClass, definition))
+				{
+					// The descendants of a subsumed class are subsumed as well
+					found.addAll(subClassSet);
+					for (Set<OWLClass> descendantSet : reasoner.get().getDescendantClasses(subClass))
+					{
+						for (OWLClass descendant : descendantSet)
+						{
+							if (!descendant.isOWLNothing())
+							{
+								found.add(descendant);
+								visited.add(descendant);
+							}
+						}
+					}
+				}
+				else
+				{
+					queue.add(subClass);
+				}
+			}
+		}
+		return found;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Removes the retracted classes from a set of sets of classes returned by
+	 * the reasoner.
+	 *
+	 * @param classSetOfSets
+	 * @return
+	 */
+	private Set<Set<OWLClass>> filter(Set<Set<OWLClass>> classSetOfSets)
+	{
+		Set<Set<OWLClass>> result = new HashSet<Set<OWLClass>>();
+		for (Set<OWLClass> classSet : classSetOfSets)
+		{
+			if (!retractedClasses.isEmpty())
+			{
+				classSet = new HashSet<OWLClass>(classSet);
+				classSet.removeAll(retractedClasses);
+			}
+			if (!classSet.isEmpty())
+				result.add(classSet);
+		}
+		return result;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param classes
+	 * @return a set containing a singleton set for every class
+	 */
+	private static Set<Set<OWLClass>> toSetOfSets(Set<OWLClass> classes)
+	{
+		Set<Set<OWLClass>> result = new HashSet<Set<OWLClass>>();
+		for (OWLClass owlClass : classes)
+		{
+			result.add(Collections.singleton(owlClass));
+		}
+		return result;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param classSet a set of equivalent classes
+	 * @return a class of the set other than owl:Nothing, or null if there is none
+	 */
+	private static OWLClass getRepresentative(Set<OWLClass> classSet)
+	{
+		for (OWLClass owlClass : classSet)
+		{
+			if (!owlClass.isOWLNothing())
+				return owlClass;
+		}
+		return null;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the named class that a subclass, equivalent classes or
+	 * declaration axiom is about, or null if the axiom is of some other kind.
+	 *
+	 * @param axiom
+	 * @return
+	 */
+	private static OWLClass getDefinedClass(OWLAxiom axiom)
+	{
+		if (axiom instanceof OWLSubClassAxiom)
+		{
+			OWLDescription subClass = ((OWLSubClassAxiom) axiom).getSubClass();
+			if (!subClass.isAnonymous())
+				return subClass.asOWLClass();
+		}
+		else if (axiom instanceof OWLEquivalentClassesAxiom)
+		{
+			// Exactly one of the descriptions must be a named class
+			OWLClass definedClass = null;
+			for (OWLDescription desc : ((OWLEquivalentClassesAxiom) axiom).getDescriptions())
+			{
+				if (!desc.isAnonymous())
+				{
+					if (definedClass != null)
+						return null;
+					definedClass = desc.asOWLClass();
+				}
+			}
+			return definedClass;
+		}
+		else if (axiom instanceof OWLDeclarationAxiom)
+		{
+			OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+			if (entity instanceof OWLClass)
+				return (OWLClass) entity;
+		}
+		return null;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @param importsClosure
+	 * @return true if some ontology of the imports closure refers to the class
+	 */
+	private static boolean isReferenced(OWLClass owlClass, Set<OWLOntology> importsClosure)
+	{
+		for (OWLOntology ont : importsClosure)
+		{
+			if (!ont.getReferencingAxioms(owlClass).isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Replaces every new class that appears in a description with its own
+	 * (expanded) definition and told superclasses, so that the description
+	 * can be given to a reasoner that does not know the new classes.
+	 *
+	 * @param description
+	 * @param statedDefinitions
+	 * @param toldSuperClasses
+	 * @param factory
+	 * @param expanding the new classes being expanded, used to detect cycles
+	 * @return the expanded description, or null if it cannot be expanded
+	 */
+	private static OWLDescription expand(
+			OWLDescription description,
+			Map<OWLClass, OWLDescription> statedDefinitions,
+			Map<OWLClass, Set<OWLDescription>> toldSuperClasses,
+			OWLDataFactory factory,
+			Set<OWLClass> expanding)
+	{
+		if (!description.isAnonymous())
+		{
+			OWLClass owlClass = description.asOWLClass();
+
+			// Known classes are left as they are
+			if (!toldSuperClasses.containsKey(owlClass))
+				return description;
+
+			// New classes can only be expanded if they are fully defined and acyclic
+			if (!statedDefinitions.containsKey(owlClass) || expanding.contains(owlClass))
+				return null;
+
+			expanding.add(owlClass);
+			OWLDescription definition = expand(statedDefinitions.get(owlClass), statedDefinitions, toldSuperClasses, factory, expanding);
+			expanding.remove(owlClass);
+			if (definition == null)
+				return null;
+
+			Set<OWLDescription> operands = new HashSet<OWLDescription>(toldSuperClasses.get(owlClass));
+			operands.add(definition);
+			return factory.getOWLObjectIntersectionOf(operands);
+		}
+		else if (description instanceof OWLObjectIntersectionOf || description instanceof OWLObjectUnionOf)
+		{
+			Set<OWLDescription> originalOperands = (description instanceof OWLObjectIntersectionOf)
+					? ((OWLObjectIntersectionOf) description).getOperands()
+					: ((OWLObjectUnionOf) description).getOperands();
+
+			Set<OWLDescription> operands = new HashSet<OWLDescription>();
+			for (OWLDescription operand : originalOperands)
+			{
+				OWLDescription expandedOperand = expand(operand, statedDefinitions, toldSuperClasses, factory, expanding);
+				if (expandedOperand == null)
+					return null;
+				operands.add(expandedOperand);
+			}
+
+			if (description instanceof OWLObjectIntersectionOf)
+				return factory.getOWLObjectIntersectionOf(operands);
+			else
+				return factory.getOWLObjectUnionOf(operands);
+		}
+		else if (description instanceof OWLObjectSomeRestriction)
+		{
+			OWLObjectSomeRestriction restriction = (OWLObjectSomeRestriction) description;
+			OWLDescription filler = expand(restriction.getFiller(), statedDefinitions, toldSuperClasses, factory, expanding);
+			if (filler == null)
+				return null;
+			return factory.getOWLObjectSomeRestriction(restriction.getProperty(), filler);
+		}
+		else if (description instanceof OWLObjectAllRestriction)
+		{
+			OWLObjectAllRestriction restriction = (OWLObjectAllRestriction) description;
+			OWLDescription filler = expand(restriction.getFiller(), statedDefinitions, toldSuperClasses, factory, expanding);
+			if (filler == null)
+				return null;
+			return factory.getOWLObjectAllRestriction(restriction.getProperty(), filler);
+		}
+
+		// Other kinds of descriptions are only supported if they do not refer to new classes
+		OWLEntityCollector collector = new OWLEntityCollector();
+		collector.setCollectClasses(true);
+		collector.setCollectDataProperties(false);
+		collector.setCollectObjectProperties(false);
+		collector.setCollectIndividuals(false);
+		collector.setCollectDataTypes(false);
+		description.accept(collector);
+		for (OWLEntity entity : collector.getObjects())
+		{
+			if (toldSuperClasses.containsKey(entity))
+				return null;
+		}
+		return description;
+	}
+
+
+
+
+
+
+
+	/**
+	 * The reasoner of a classifier and its copies, on which their queries to
+	 * the reasoner are serialised. The reasoner may be loaded the first time
+	 * it is needed.
+	 */
+	static class SharedReasoner
+	{
+		// The reasoner, or null if it has not been loaded yet
+		OWLReasoner reasoner;
+
+		// Loads the reasoner, or null if it has been loaded
+		Callable<OWLReasoner> loader;
+
+
+
+
+
+
+
+		/**
+		 * @param reasoner
+		 * @param loader
+		 */
+		SharedReasoner(OWLReasoner reasoner, Callable<OWLReasoner> loader)
+		{
+			this.reasoner = reasoner;
+			this.loader = loader;
+		}
+
+
+
+
+
+
+
+		/**
+		 * Returns the reasoner, loading it if necessary. Must be called while
+		 * holding the lock of this object.
+		 *
+		 * @return
+		 * @throws OWLReasonerException
+		 */
+		OWLReasoner get()
+
+		throws OWLReasonerException
+		{
+			if (reasoner == null)
+			{
+				try
+				{
+					reasoner = loader.call();
+					loader = null;
+				}
+				catch (Exception e)
+				{
+					System.out.println("The reasoner could not be loaded: " + e.getMessage());
+					throw new OWLReasonerException("The reasoner could not be loaded: " + e.getMessage());
+				}
+			}
+			return reasoner;
+		}
+	}
+
+
+
+
+
+
+
+}
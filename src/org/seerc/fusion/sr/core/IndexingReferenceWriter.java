@@ -0,0 +1,627 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryException;
+import org.uddi4j.UDDIException;
+import org.uddi4j.client.UDDIProxy;
+import org.uddi4j.datatype.service.BusinessService;
+import org.uddi4j.response.DispositionReport;
+import org.uddi4j.response.Result;
+import org.uddi4j.response.ServiceDetail;
+import org.uddi4j.transport.TransportException;
+import org.uddi4j.util.CategoryBag;
+import org.uddi4j.util.KeyedReference;
+
+/**
+ * Maintains the subsumption indexing information (the keyedReferences to the
+ * Subsumption_Indexing tModel) of service advertisements. The RFP references
+ * to add to or remove from every service are collected first, and then
+ * written in batches: the advertisements are retrieved BATCH_SIZE at a time,
+ * the references they should hold are compared with the ones they already
+ * hold, and only the advertisements whose references actually change are
+ * saved, BATCH_SIZE per save_service call. The batches are written side by
+ * side through the UDDIFanOutExecutor.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+class IndexingReferenceWriter
+{
+	// The number of businessService elements retrieved or saved by one UDDI call
+	static final int BATCH_SIZE = 100;
+
+	// The URL of the UDDI Inquiry API
+	String inquiryURL;
+
+	// The URL of the UDDI Publish API
+	String publishURL;
+
+	// The key of the Subsumption_Indexing tModel
+	String indexingTModelKey;
+
+	// The RFP URIs to add to the index of every service, by service UUID
+	Map<String, Set<String>> referencesToAdd = new LinkedHashMap<String, Set<String>>();
+
+	// The RFP URIs to remove from the index of every service, by service UUID
+	Map<String, Set<String>> referencesToRemove = new LinkedHashMap<String, Set<String>>();
+
+	// The number of written services whose index did not need to change
+	AtomicInteger unchangedCount = new AtomicInteger();
+
+	// The UUIDs of the services whose index has been updated so far
+	List<String> updatedServiceUUIDs = new ArrayList<String>();
+
+
+
+
+
+
+
+	/**
+	 * @param inquiryURL
+	 * @param publishURL
+	 * @param indexingTModelKey the key of the Subsumption_Indexing tModel (without the "uuid:" prefix)
+	 */
+	IndexingReferenceWriter(String inquiryURL, String publishURL, String indexingTModelKey)
+	{
+		this.inquiryURL = inquiryURL;
+		this.publishURL = publishURL;
+		this.indexingTModelKey = indexingTModelKey;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Records that the index of the given service should include the given RFP
+	 *
+	 * @param serviceUUID
+	 * @param rfpURI
+	 */
+	void addReference(String serviceUUID, String rfpURI)
+	{
+		getReferences(referencesToAdd, serviceUUID).add(rfpURI);
+		getReferences(referencesToRemove, serviceUUID).remove(rfpURI);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Records that the index of the given service should not include the given RFP
+	 *
+	 * @param serviceUUID
+	 * @param rfpURI
+	 */
+	void removeReference(String serviceUUID, String rfpURI)
+	{
+		getReferences(referencesToRemove, serviceUUID).add(rfpURI);
+		getReferences(referencesToAdd, serviceUUID).remove(rfpURI);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the number of written services whose index already held the
+	 * recorded changes
+	 *
+	 * @return
+	 */
+	int getUnchangedCount()
+	{
+		return unchangedCount.get();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the UUIDs of the services whose index has been updated by this
+	 * writer, including those updated before a write failed
+	 *
+	 * @return
+	 */
+	List<String> getUpdatedServiceUUIDs()
+	{
+		return updatedServiceUUIDs;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the recorded changes to the advertisements of the services,
+	 * saving only the advertisements whose index changes. The batches are
+	 * written side by side through the UDDIFanOutExecutor, each with a proxy
+	 * of its own. Services that do not exist, or whose advertisement cannot
+	 * be saved, are left out.
+	 *
+	 * If a batch fails as a whole (e.g. because the UDDI server cannot be
+	 * reached, or does not respond in time), the other batches are still
+	 * written, and the failure is thrown once all of them are done. The
+	 * services updated by then are available from getUpdatedServiceUUIDs,
+	 * and the changes of the failed batches stay recorded, so that calling
+	 * write again only retries those.
+	 *
+	 * @param authToken
+	 * @return the UUIDs of the services updated by this call
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	List<String> write(final String authToken)
+
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException,
+			SemanticRegistryException
+	{
+		// Make sure every service has both sets of changes, so that the
+		// batches only read the maps
+		List<String> serviceUUIDs = new ArrayList<String>(referencesToAdd.keySet());
+		for (String serviceUUID : referencesToRemove.keySet())
+		{
+			if (!referencesToAdd.containsKey(serviceUUID))
+				serviceUUIDs.add(serviceUUID);
+		}
+		for (String serviceUUID : serviceUUIDs)
+		{
+			getReferences(referencesToAdd, serviceUUID);
+			getReferences(referencesToRemove, serviceUUID);
+		}
+
+		Map<String, Vector<String>> batches = new LinkedHashMap<String, Vector<String>>();
+		Map<String, Callable<List<String>>> calls = new LinkedHashMap<String, Callable<List<String>>>();
+		for (int from = 0; from < serviceUUIDs.size(); from += BATCH_SIZE)
+		{
+			final Vector<String> serviceUUIDBatch = new Vector<String>(serviceUUIDs.subList(from, Math.min(from + BATCH_SIZE, serviceUUIDs.size())));
+			batches.put(serviceUUIDBatch.firstElement(), serviceUUIDBatch);
+			calls.put(serviceUUIDBatch.firstElement(), new Callable<List<String>>()
+			{
+				public List<String> call() throws Exception
+				{
+					return writeBatch(getThreadProxy(), authToken, serviceUUIDBatch);
+				}
+			});
+		}
+
+		// Collect the outcome of every batch before reporting a failure, so
+		// that the services updated by the other batches are not lost
+		List<String> updatedByThisWrite = new ArrayList<String>();
+		UDDIFanOutExecutor.Outcome<List<String>> failedOutcome = null;
+		for (Map.Entry<String, UDDIFanOutExecutor.Outcome<List<String>>> outcome : UDDIFanOutExecutor.getInstance().invokeAll(calls).entrySet())
+		{
+			if (outcome.getValue().isSuccessful())
+			{
+				updatedByThisWrite.addAll(outcome.getValue().getResult());
+
+				// The changes of the batch have been written
+				for (String serviceUUID : batches.get(outcome.getKey()))
+				{
+					referencesToAdd.remove(serviceUUID);
+					referencesToRemove.remove(serviceUUID);
+				}
+			}
+			else if (failedOutcome == null)
+			{
+				failedOutcome = outcome.getValue();
+			}
+		}
+		updatedServiceUUIDs.addAll(updatedByThisWrite);
+
+		if (failedOutcome != null)
+		{
+			System.out.println("The index of " + updatedByThisWrite.size() + " services was updated before the failure: " + updatedByThisWrite);
+			failedOutcome.rethrowFailure();
+		}
+
+		return updatedByThisWrite;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the recorded changes to the advertisements of a batch of services
+	 *
+	 * @param uddiProxy
+	 * @param authToken
+	 * @param serviceUUIDBatch
+	 * @return the UUIDs of the updated services
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private List<String> writeBatch(UDDIProxy uddiProxy, String authToken, Vector<String> serviceUUIDBatch)
+
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException
+	{
+		Vector<BusinessService> changedBusinessServices = new Vector<BusinessService>();
+		for (BusinessService businessService : getServices(uddiProxy, serviceUUIDBatch))
+		{
+			// Find the recorded changes of the service (UDDI keys are case insensitive)
+			String serviceUUID = null;
+			for (String key : serviceUUIDBatch)
+			{
+				if (key.equalsIgnoreCase(businessService.getServiceKey()))
+					serviceUUID = key;
+			}
+			if (serviceUUID == null)
+				continue;
+
+			if (updateReferences(businessService, referencesToAdd.get(serviceUUID), referencesToRemove.get(serviceUUID)))
+			{
+				changedBusinessServices.add(businessService);
+			}
+			else
+			{
+				unchangedCount.incrementAndGet();
+				System.out.println("The advertisement of service " + serviceUUID + " was not updated (its index already holds the changes)");
+			}
+		}
+
+		return saveServices(uddiProxy, authToken, changedBusinessServices);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the proxy of the calling thread for the UDDI server, so that a
+	 * batch does not share its proxy with the others
+	 *
+	 * @return
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private UDDIProxy getThreadProxy()
+
+	throws SemanticRegistryCommunicationException
+	{
+		try
+		{
+			return UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
+		}
+		catch (MalformedURLException e)
+		{
+			System.out.println("SemanticRegistryCommunicationException occured!");
+			throw new SemanticRegistryCommunicationException("The URLs of the UDDI server are malformed");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Brings the indexing keyedReferences of the given businessService in line
+	 * with the RFPs it should include and not include, keeping its other
+	 * keyedReferences as they are
+	 *
+	 * @param businessService
+	 * @param rfpURIsToAdd
+	 * @param rfpURIsToRemove
+	 * @return true if the keyedReferences of the businessService changed
+	 */
+	private boolean updateReferences(BusinessService businessService, Set<String> rfpURIsToAdd, Set<String> rfpURIsToRemove)
+	{
+		CategoryBag categoryBag = businessService.getCategoryBag();
+		if (categoryBag == null)
+			categoryBag = new CategoryBag();
+		Vector<KeyedReference> oldKeyedRefVector = categoryBag.getKeyedReferenceVector();
+
+		// Keep every keyedReference but the indexing ones that should go
+		// (or that repeat an RFP that is already indexed)
+		Vector<KeyedReference> newKeyedRefVector = new Vector<KeyedReference>();
+		Set<String> indexedRFPURIs = new LinkedHashSet<String>();
+		for (KeyedReference keyedRef : oldKeyedRefVector)
+		{
+			if (("uuid:" + indexingTModelKey).equalsIgnoreCase(keyedRef.getTModelKey()))
+			{
+				if (rfpURIsToRemove.contains(keyedRef.getKeyValue()) || !indexedRFPURIs.add(keyedRef.getKeyValue()))
+					continue;
+			}
+			newKeyedRefVector.add(keyedRef);
+		}
+
+		// Add the RFPs that are not indexed yet
+		for (String rfpURI : rfpURIsToAdd)
+		{
+			if (!indexedRFPURIs.contains(rfpURI))
+			{
+				KeyedReference keyedRef = new KeyedReference();
+				keyedRef.setTModelKey("uuid:" + indexingTModelKey);
+				keyedRef.setKeyName("Subsumption_Indexing_tModel");
+				keyedRef.setKeyValue(rfpURI);
+				newKeyedRefVector.add(keyedRef);
+			}
+		}
+
+		if (newKeyedRefVector.size() == oldKeyedRefVector.size() && newKeyedRefVector.containsAll(oldKeyedRefVector))
+			return false;
+
+		categoryBag.setKeyedReferenceVector(newKeyedRefVector);
+		businessService.setCategoryBag(categoryBag);
+		return true;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the businessService elements with the given UUID keys, retrieved
+	 * with one get_serviceDetail call. If the call is rejected, the elements
+	 * are retrieved one at a time, so that only the keys that do not match
+	 * any service are left out.
+	 * 
+	 * @param uddiProxy
+	 * @param serviceUUIDs
+	 * @return
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private Vector<BusinessService> getServices(UDDIProxy uddiProxy, Vector<String> serviceUUIDs)
+
+	throws SemanticRegistryCommunicationException
+	{
+		Vector<BusinessService> businessServices = new Vector<BusinessService>();
+		try
+		{
+			businessServices.addAll(uddiProxy.get_serviceDetail(serviceUUIDs).getBusinessServiceVector());
+		}
+		catch (UDDIException e)
+		{
+			// Retrieve the businessServices one at a time
+			for (String serviceUUID : serviceUUIDs)
+			{
+				try
+				{
+					businessServices.addAll(uddiProxy.get_serviceDetail(serviceUUID).getBusinessServiceVector());
+				}
+				catch (UDDIException e1)
+				{
+					System.out.println("The advertisement of service " + serviceUUID + " was not updated (no such UUID)");
+				}
+				catch (TransportException e1)
+				{
+					System.out.println("TransportException occured!");
+					throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
+				}
+			}
+		}
+		catch (TransportException e)
+		{
+			System.out.println("TransportException occured!");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
+		}
+		return businessServices;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Saves the given businessService elements with one save_service call.
+	 * If the call is rejected, the elements are saved one at a time, so that
+	 * only the ones at fault are left out.
+	 * 
+	 * @param uddiProxy
+	 * @param authToken
+	 * @param businessServices
+	 * @return the UUID keys of the saved businessService elements
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private List<String> saveServices(UDDIProxy uddiProxy, String authToken, Vector<BusinessService> businessServices)
+
+	throws SemanticRegistryAuthException, 
+			SemanticRegistryCommunicationException
+	{
+		List<String> savedServiceUUIDs = new ArrayList<String>();
+		if (businessServices.size() == 0)
+			return savedServiceUUIDs;
+
+		try
+		{
+			saveServiceVector(uddiProxy, authToken, businessServices);
+			for (BusinessService businessService : businessServices)
+			{
+				System.out.println("The advertisement of service " + businessService.getServiceKey() + " was updated successfully");
+				savedServiceUUIDs.add(businessService.getServiceKey());
+			}
+		}
+		catch (SemanticRegistryException e)
+		{
+			// Save the businessServices one at a time
+			for (BusinessService businessService : businessServices)
+			{
+				Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
+				businessServiceVector.addElement(businessService);
+				try
+				{
+					saveServiceVector(uddiProxy, authToken, businessServiceVector);
+					System.out.println("The advertisement of service " + businessService.getServiceKey() + " was updated successfully");
+					savedServiceUUIDs.add(businessService.getServiceKey());
+				}
+				catch (SemanticRegistryException e1)
+				{
+					System.out.println("The advertisement of service " + businessService.getServiceKey() + " was not updated (" + e1.getMessage() + ")");
+				}
+			}
+		}
+		return savedServiceUUIDs;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Saves the given businessService elements with one save_service call,
+	 * translating the errors raised by the UDDI server
+	 * 
+	 * @param uddiProxy
+	 * @param authToken
+	 * @param businessServiceVector
+	 * @return
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private ServiceDetail saveServiceVector(UDDIProxy uddiProxy, String authToken, Vector<BusinessService> businessServiceVector)
+
+	throws SemanticRegistryAuthException, 
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		try
+		{
+			return uddiProxy.save_service(authToken, businessServiceVector);
+		}
+		catch (UDDIException e)
+		{
+			DispositionReport dr = e.getDispositionReport();
+			if (dr != null)
+			{
+				Vector results = dr.getResultVector();
+				for (int k = 0; k < results.size(); k++)
+				{
+					Result r = (Result) results.elementAt(k);
+					System.out
+							.println("The UDDI server raised an exception with error number: "
+									+ r.getErrno());
+					if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
+					{
+						System.out
+								.println("E_authTokenRequired: (10120) The authentication token is invalid");
+						throw new SemanticRegistryAuthException(
+								"The authentication token is invalid");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
+					{
+						System.out
+								.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
+						throw new SemanticRegistryAuthException(
+								"The authentication token has timed out");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
+					{
+						System.out
+								.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
+						throw new SemanticRegistryException(
+								"One or more UUID keys do not match any known values");
+					}
+					throw new SemanticRegistryException(
+							"UDDI exception with error number: " + r.getErrno());
+				}
+			}
+			else
+			{
+				System.out
+						.println("UDDI exception without Disposition Report -> SemanticRegistryCommunicationException");
+				throw new SemanticRegistryCommunicationException(
+						"Problem communicating with the UDDI server");
+			}
+		}
+		catch (TransportException e)
+		{
+			System.out.println("TransportException occured!");
+			throw new SemanticRegistryCommunicationException(
+					"Problem communicating with the UDDI server");
+		}
+		catch (Exception e)
+		{
+			System.out.println("SemanticRegistryException occured!");
+			throw new SemanticRegistryException(
+					"An exception occured for unspecified reasons");
+		}
+
+		// The UDDI server rejected the call without reporting a reason
+		throw new SemanticRegistryException("An exception occured for unspecified reasons");
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the RFP URIs recorded for the given service in the given map,
+	 * creating an empty set if there are none
+	 *
+	 * @param references
+	 * @param serviceUUID
+	 * @return
+	 */
+	private Set<String> getReferences(Map<String, Set<String>> references, String serviceUUID)
+	{
+		Set<String> rfpURIs = references.get(serviceUUID);
+		if (rfpURIs == null)
+		{
+			rfpURIs = new LinkedHashSet<String>();
+			references.put(serviceUUID, rfpURIs);
+		}
+		return rfpURIs;
+	}
+}
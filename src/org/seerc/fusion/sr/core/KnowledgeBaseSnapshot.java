@@ -0,0 +1,309 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLOntology;
+
+/**
+ * A snapshot of the classified hierarchy of the SRKB, kept in a compact
+ * binary file next to the SRKB ontology document, so that a restarted
+ * registry does not have to classify the imports closure and build the
+ * {@link SubsumptionIndex} and {@link AdvertisementDescriptorTable} again
+ * before it can answer the first request. The snapshot holds the URIs of the
+ * indexed classes (which are also given to the {@link URIDictionary} when
+ * the snapshot is read), the ancestors of every class, and the decoded AFPs.
+ *
+ * The ontology documents remain the source of truth: the snapshot records a
+ * checksum of the documents it was taken of, and is ignored if the documents
+ * no longer match it. The snapshot file carries a checksum of its own
+ * contents too, so a damaged file is ignored as well.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class KnowledgeBaseSnapshot
+{
+	// The marker at the start of every snapshot file
+	private static final int MAGIC = 0x53524b53;
+
+	// The version of the snapshot format
+	private static final int FORMAT_VERSION = 1;
+
+	// The subsumption index
+	SubsumptionIndex index;
+
+	// The table of decoded AFPs, or null if it had not been built when the snapshot was taken
+	AdvertisementDescriptorTable descriptorTable;
+
+
+
+
+
+
+
+	/**
+	 * @param index
+	 * @param descriptorTable
+	 */
+	KnowledgeBaseSnapshot(SubsumptionIndex index, AdvertisementDescriptorTable descriptorTable)
+	{
+		this.index = index;
+		this.descriptorTable = descriptorTable;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reads the snapshot kept in the given file, if it was taken of documents
+	 * with the given checksum.
+	 *
+	 * @param file
+	 * @param checksum the checksum of the ontology documents, as computed by {@link #getChecksum(Collection)}
+	 * @param factory the data factory used for creating the classes
+	 * @param srkbOntology the SRKB ontology loaded from the documents
+	 * @return the snapshot, or null if there is no usable snapshot
+	 */
+	static KnowledgeBaseSnapshot read(File file, long checksum, OWLDataFactory factory, OWLOntology srkbOntology)
+	{
+		if (!file.isFile())
+			return null;
+
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		InputStream stream = null;
+		try
+		{
+			stream = new BufferedInputStream(new FileInputStream(file));
+			CheckedInputStream checkedStream = new CheckedInputStream(stream, new CRC32());
+			DataInputStream in = new DataInputStream(checkedStream);
+
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+			{
+				System.out.println("The snapshot " + file + " is not in the current format -it will be replaced-");
+				return null;
+			}
+			if (in.readLong() != checksum)
+			{
+				System.out.println("The snapshot " + file + " was taken of other versions of the ontology documents -it will be replaced-");
+				return null;
+			}
+
+			SubsumptionIndex index = SubsumptionIndex.read(in, factory);
+			AdvertisementDescriptorTable descriptorTable = null;
+			if (in.readBoolean())
+				descriptorTable = AdvertisementDescriptorTable.read(in, factory, srkbOntology, index);
+
+			// The checksum of the contents follows them, outside the checked stream
+			long contentsChecksum = checkedStream.getChecksum().getValue();
+			if (new DataInputStream(stream).readLong() != contentsChecksum)
+			{
+				System.out.println("The snapshot " + file + " is damaged -it will be replaced-");
+				return null;
+			}
+
+			chron.stop();
+			System.out.println("Snapshot read from " + file + " with " + index.getClassCount() + " classes and "
+					+ ((descriptorTable == null) ? 0 : descriptorTable.getSize()) + " AFPs in " + chron);
+
+			return new KnowledgeBaseSnapshot(index, descriptorTable);
+		}
+		catch (IOException e)
+		{
+			System.out.println("The snapshot " + file + " could not be read: " + e.getMessage() + " -it will be replaced-");
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			System.out.println("The snapshot " + file + " could not be read: " + e.getMessage() + " -it will be replaced-");
+			return null;
+		}
+		finally
+		{
+			close(stream);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes a snapshot to the given file. The snapshot is first written next
+	 * to the file and then renamed to it, so the file is never seen
+	 * half-written.
+	 *
+	 * @param file
+	 * @param checksum the checksum of the ontology documents the snapshot is taken of
+	 * @param index
+	 * @param descriptorTable the table of decoded AFPs, or null
+	 * @throws IOException
+	 */
+	static void write(File file, long checksum, SubsumptionIndex index, AdvertisementDescriptorTable descriptorTable)
+
+	throws IOException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(tempFile));
+		try
+		{
+			CheckedOutputStream checkedStream = new CheckedOutputStream(stream, new CRC32());
+			DataOutputStream out = new DataOutputStream(checkedStream);
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(checksum);
+			index.write(out);
+			out.writeBoolean(descriptorTable != null);
+			if (descriptorTable != null)
+				descriptorTable.write(out);
+			out.flush();
+
+			// The checksum of the contents follows them, outside the checked stream
+			DataOutputStream trailer = new DataOutputStream(stream);
+			trailer.writeLong(checkedStream.getChecksum().getValue());
+			trailer.flush();
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		// Renaming does not replace an existing file on every platform
+		if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file)))
+			throw new IOException("The snapshot could not be moved from " + tempFile + " to " + file);
+
+		chron.stop();
+		System.out.println("Snapshot written to " + file + " in " + chron + " (" + (file.length() / 1024) + " KB)");
+	}
+
+
+
+
+
+
+
+	/**
+	 * Computes a checksum of the contents of the given files, in the order
+	 * of their paths. Files that do not exist are left out.
+	 *
+	 * @param files
+	 * @return
+	 * @throws IOException
+	 */
+	static long getChecksum(Collection<File> files)
+
+	throws IOException
+	{
+		List<String> paths = new ArrayList<String>();
+		for (File file : files)
+		{
+			paths.add(file.getAbsolutePath());
+		}
+		Collections.sort(paths);
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[65536];
+		for (String path : paths)
+		{
+			File file = new File(path);
+			if (!file.isFile())
+				continue;
+
+			crc.update(path.getBytes("UTF-8"));
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				int count;
+				while ((count = in.read(buffer)) > 0)
+				{
+					crc.update(buffer, 0, count);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		return crc.getValue();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param stream
+	 */
+	private static void close(InputStream stream)
+	{
+		if (stream == null)
+			return;
+
+		try
+		{
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException: " + e.getMessage());
+		}
+	}
+
+
+
+
+
+
+
+}
@@ -0,0 +1,478 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.apibinding.OWLManager;
+import org.semanticweb.owl.io.OWLFunctionalSyntaxOntologyFormat;
+import org.semanticweb.owl.io.StreamInputSource;
+import org.semanticweb.owl.io.StreamOutputTarget;
+import org.semanticweb.owl.model.AddAxiom;
+import org.semanticweb.owl.model.OWLAxiom;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.model.OWLOntologyChange;
+import org.semanticweb.owl.model.OWLOntologyChangeException;
+import org.semanticweb.owl.model.OWLOntologyCreationException;
+import org.semanticweb.owl.model.OWLOntologyManager;
+import org.semanticweb.owl.model.OWLOntologyStorageException;
+import org.semanticweb.owl.model.RemoveAxiom;
+
+/**
+ * An append-only journal of the axioms added to and removed from an
+ * ontology, kept next to the ontology document so that a change does not
+ * require the whole document to be written again. Every change is appended
+ * as one record holding the added and the removed axioms (each set written
+ * as a small ontology document in OWL functional syntax) and a checksum, and
+ * is forced to disk before the change is considered to be made.
+ *
+ * The journal is replayed on top of the ontology document every time the
+ * document is loaded. A record that was only partly written (e.g. because
+ * the process stopped while writing it) fails its checksum, and is cut off
+ * together with anything after it. Once the ontology document has been
+ * written again with all changes included, the journal is reset.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class OntologyChangeJournal
+{
+	// The marker written at the start of every record
+	private static final int RECORD_MARKER = 0x534a524e;
+
+	// The journal file
+	File file;
+
+	// The open journal file, positioned at the end of the last complete record
+	RandomAccessFile journal;
+
+	// The number of complete records in the journal
+	int recordCount = 0;
+
+	// The length of the complete records in the journal, in bytes
+	long length = 0;
+
+
+
+
+
+
+
+	/**
+	 * Creates a journal kept in the given file. The file is created the first
+	 * time the journal is replayed.
+	 *
+	 * @param file
+	 */
+	OntologyChangeJournal(File file)
+	{
+		this.file = file;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Applies the changes recorded in the journal to the given ontology, in
+	 * the order in which they were made, and cuts off an incomplete record at
+	 * the end of the journal, if there is one.
+	 *
+	 * @param manager the manager holding the ontology
+	 * @param ontology
+	 * @return the number of records applied
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	synchronized int replay(OWLOntologyManager manager, OWLOntology ontology)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		try
+		{
+			open();
+			journal.seek(0);
+			recordCount = 0;
+			length = 0;
+
+			while (true)
+			{
+				byte[] addedDocument;
+				byte[] removedDocument;
+				try
+				{
+					if (journal.readInt() != RECORD_MARKER)
+						break;
+					addedDocument = readDocument();
+					removedDocument = readDocument();
+					if (journal.readLong() != getChecksum(addedDocument, removedDocument))
+						break;
+				}
+				catch (IOException e)
+				{
+					// The end of the journal has been reached in the middle of a record
+					break;
+				}
+
+				// Apply the removals first, as they were made
+				List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+				for (OWLAxiom axiom : parse(removedDocument))
+				{
+					changes.add(new RemoveAxiom(ontology, axiom));
+				}
+				for (OWLAxiom axiom : parse(addedDocument))
+				{
+					changes.add(new AddAxiom(ontology, axiom));
+				}
+				manager.applyChanges(changes);
+
+				recordCount++;
+				length = journal.getFilePointer();
+			}
+
+			// Cut off whatever follows the last complete record, so that new records are not lost behind it
+			if (journal.length() > length)
+			{
+				System.out.println("Incomplete record found at the end of the journal " + file + " -it will be discarded-");
+				journal.setLength(length);
+			}
+			journal.seek(length);
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException: " + e.getMessage());
+			throw new SemanticRegistryMatchmakingException("An error occured while reading the journal of the SRKB ontology (" + file + ")");
+		}
+		catch (OWLOntologyChangeException e)
+		{
+			System.out.println("OWLOntologyChangeException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while applying the journal of the SRKB ontology (" + file + ")");
+		}
+
+		chron.stop();
+		if (recordCount > 0)
+			System.out.println(recordCount + " changes replayed from the journal " + file + " in " + chron);
+
+		return recordCount;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Appends a record of the given changes to the journal and forces it to
+	 * disk. If the record cannot be written in full, the journal is left as
+	 * it was.
+	 *
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	synchronized void append(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		byte[] addedDocument = render(axiomsToAdd);
+		byte[] removedDocument = render(axiomsToRemove);
+
+		// Put the whole record together, so that it is written at once
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(addedDocument.length + removedDocument.length + 24);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try
+		{
+			out.writeInt(RECORD_MARKER);
+			out.writeInt(addedDocument.length);
+			out.write(addedDocument);
+			out.writeInt(removedDocument.length);
+			out.write(removedDocument);
+			out.writeLong(getChecksum(addedDocument, removedDocument));
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			// Not thrown by in-memory streams
+			throw new RuntimeException(e);
+		}
+
+		try
+		{
+			open();
+			journal.seek(length);
+			journal.write(bytes.toByteArray());
+			journal.getChannel().force(false);
+
+			recordCount++;
+			length = journal.getFilePointer();
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException: " + e.getMessage());
+
+			// Remove the part of the record that made it to the file
+			try
+			{
+				journal.setLength(length);
+			}
+			catch (IOException e1)
+			{
+				System.out.println("IOException: " + e1.getMessage());
+			}
+			throw new SemanticRegistryMatchmakingException("An error occured while writing to the journal of the SRKB ontology (" + file + ")");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Empties the journal, once the changes recorded in it have been written
+	 * to the ontology document.
+	 *
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	synchronized void reset()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		try
+		{
+			open();
+			journal.setLength(0);
+			journal.getChannel().force(true);
+			recordCount = 0;
+			length = 0;
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException: " + e.getMessage());
+			throw new SemanticRegistryMatchmakingException("An error occured while resetting the journal of the SRKB ontology (" + file + ")");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of changes recorded in the journal
+	 */
+	public synchronized int getRecordCount()
+	{
+		return recordCount;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the length of the journal, in bytes
+	 */
+	public synchronized long getLength()
+	{
+		return length;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Opens the journal file, creating it if necessary.
+	 *
+	 * @throws IOException
+	 */
+	private void open()
+
+	throws IOException
+	{
+		if (journal == null)
+			journal = new RandomAccessFile(file, "rw");
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reads a length-prefixed document from the current position of the journal.
+	 *
+	 * @return
+	 * @throws IOException if the document goes past the end of the journal
+	 */
+	private byte[] readDocument()
+
+	throws IOException
+	{
+		int documentLength = journal.readInt();
+		if (documentLength < 0 || documentLength > journal.length() - journal.getFilePointer())
+			throw new IOException("Invalid document length " + documentLength);
+
+		byte[] document = new byte[documentLength];
+		journal.readFully(document);
+		return document;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the given axioms as an ontology document in OWL functional
+	 * syntax. The document holds exactly the given axioms, so it can be read
+	 * back with {@link #parse(byte[])}.
+	 *
+	 * @param axioms
+	 * @return the document, or an empty array if there are no axioms
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private byte[] render(Set<OWLAxiom> axioms)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		if (axioms.isEmpty())
+			return new byte[0];
+
+		OWLOntologyManager documentManager = OWLManager.createOWLOntologyManager();
+		try
+		{
+			OWLOntology document = documentManager.createOntology(file.toURI());
+
+			List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+			for (OWLAxiom axiom : axioms)
+			{
+				changes.add(new AddAxiom(document, axiom));
+			}
+			documentManager.applyChanges(changes);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			documentManager.saveOntology(document, new OWLFunctionalSyntaxOntologyFormat(), new StreamOutputTarget(out));
+			return out.toByteArray();
+		}
+		catch (OWLOntologyCreationException e)
+		{
+			System.out.println("OWLOntologyCreationException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while preparing a record for the journal of the SRKB ontology");
+		}
+		catch (OWLOntologyChangeException e)
+		{
+			System.out.println("OWLOntologyChangeException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while preparing a record for the journal of the SRKB ontology");
+		}
+		catch (OWLOntologyStorageException e)
+		{
+			System.out.println("OWLOntologyStorageException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while preparing a record for the journal of the SRKB ontology");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reads the axioms of a document written by {@link #render(Set)}.
+	 *
+	 * @param document
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private Set<OWLAxiom> parse(byte[] document)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		if (document.length == 0)
+			return new HashSet<OWLAxiom>();
+
+		OWLOntologyManager documentManager = OWLManager.createOWLOntologyManager();
+		try
+		{
+			return documentManager.loadOntology(new StreamInputSource(new ByteArrayInputStream(document), file.toURI())).getAxioms();
+		}
+		catch (OWLOntologyCreationException e)
+		{
+			System.out.println("OWLOntologyCreationException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while reading a record of the journal of the SRKB ontology (" + file + ")");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param addedDocument
+	 * @param removedDocument
+	 * @return the checksum of a record holding the given documents
+	 */
+	private static long getChecksum(byte[] addedDocument, byte[] removedDocument)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(addedDocument);
+		crc.update(removedDocument);
+		return crc.getValue();
+	}
+
+
+
+
+
+
+
+}
@@ -0,0 +1,722 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.apibinding.OWLManager;
+import org.semanticweb.owl.io.StreamInputSource;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.model.OWLOntologyCreationException;
+import org.semanticweb.owl.model.OWLOntologyManager;
+
+/**
+ * A cache of the ontologies loaded from documents that are not part of the
+ * SRKB imports closure (e.g. the EAI ontology of a partner, in which the
+ * RFPs of a discovery request are defined), keyed by their physical URI.
+ * Each ontology is loaded with an ontology manager of its own, and is only
+ * downloaded and parsed again when its document has changed.
+ *
+ * Documents served over HTTP are revalidated once their time to live has
+ * passed, with a conditional request carrying the ETag and Last-Modified
+ * values of the last response; a 304 (Not Modified) answer keeps the loaded
+ * ontology. If the server cannot be reached, the loaded ontology is used
+ * until it can. Failures are remembered for a short while, during which the
+ * loaded ontology is used (or, if there is none, the lookup fails) without
+ * contacting the server again, so that a slow or unreachable server does
+ * not hold up every lookup. Local files are revalidated on every lookup by
+ * comparing their modification time. The least recently used ontologies are
+ * evicted once the cache is full.
+ *
+ * The size of the cache and the time to live can be set through the
+ * optional ontology_cache_size and ontology_cache_ttl_seconds properties of
+ * the registry.properties file, the time for which failures are remembered
+ * through the optional ontology_cache_failure_ttl_seconds property, and the
+ * time allowed for connecting to a
+ * server and for each read from it through the optional
+ * ontology_connect_timeout_seconds and ontology_read_timeout_seconds
+ * properties.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class OntologyDocumentCache
+{
+	/**
+	 * An ontology loaded from a document, along with the information needed
+	 * to tell if the document has changed since.
+	 */
+	static class Entry
+	{
+		// The loaded ontology
+		OWLOntology ontology;
+
+		// The ETag of the HTTP response the ontology was loaded from, or null
+		String entityTag;
+
+		// The Last-Modified value of the HTTP response the ontology was loaded from, or null
+		String lastModified;
+
+		// The modification time of the local file the ontology was loaded from, or 0
+		long fileTimestamp;
+
+		// The time the document was last fetched or found unchanged
+		long validatedAt;
+
+		// The time the document last failed to be revalidated, or 0
+		long failedAt;
+
+		// The number of the fetch the ontology was loaded by, which tells this
+		// load of the document apart from earlier and later ones
+		long version;
+	}
+
+	// The process-wide cache
+	private static final OntologyDocumentCache instance = new OntologyDocumentCache();
+
+	// The default maximum number of cached ontologies
+	static final int DEFAULT_MAX_ENTRIES = 32;
+
+	// The default time for which a document served over HTTP is not revalidated, in milliseconds
+	static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+	// The default time for which a failure to retrieve a document is remembered, in milliseconds
+	static final long DEFAULT_FAILURE_TIME_TO_LIVE = 30 * 1000;
+
+	// The default time allowed for connecting to a server, in milliseconds
+	static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+
+	// The default time allowed for each read from a server, in milliseconds
+	static final int DEFAULT_READ_TIMEOUT = 30 * 1000;
+
+	// The maximum number of cached ontologies
+	int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	// The time for which a document served over HTTP is not revalidated, in milliseconds
+	long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+	// The time for which a failure to retrieve a document is remembered, in milliseconds
+	long failureTimeToLive = DEFAULT_FAILURE_TIME_TO_LIVE;
+
+	// The time allowed for connecting to a server, in milliseconds
+	int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	// The time allowed for each read from a server, in milliseconds
+	int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	// The cached ontologies by normalised physical URI, least recently used first
+	Map<String, Entry> entries;
+
+	// The time of the last failure to retrieve each document that has not been loaded, by normalised physical URI
+	Map<String, Long> failures;
+
+	// The number of lookups answered without contacting the server
+	long hits = 0;
+
+	// The number of revalidations that found the document unchanged
+	long notModified = 0;
+
+	// The number of times a document was downloaded and parsed
+	long fetches = 0;
+
+	// The number of ontologies evicted to make room for others
+	long evictions = 0;
+
+	// The number of lookups answered from a remembered failure
+	long failureHits = 0;
+
+
+
+
+
+
+
+	/**
+	 * Creates an empty cache. Apart from the process-wide cache, instances
+	 * are only needed for trying the cache against a stand-in server.
+	 */
+	public OntologyDocumentCache()
+	{
+		// Keep the ontologies in access order, evicting the eldest when full
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+			{
+				if (size() > maxEntries)
+				{
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+
+		// Remember only as many failures as there can be ontologies
+		failures = new LinkedHashMap<String, Long>(16, 0.75f, false)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the process-wide cache
+	 */
+	public static OntologyDocumentCache getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the size of the cache, the time to live and the timeouts from the
+	 * given properties, if they are present.
+	 *
+	 * @param properties
+	 */
+	public void configure(Properties properties)
+	{
+		try
+		{
+			if (properties.getProperty("ontology_cache_size") != null)
+				setMaxEntries(Integer.parseInt(properties.getProperty("ontology_cache_size").trim()));
+			if (properties.getProperty("ontology_cache_ttl_seconds") != null)
+				setTimeToLive(Long.parseLong(properties.getProperty("ontology_cache_ttl_seconds").trim()) * 1000);
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid ontology_cache_size or ontology_cache_ttl_seconds property in registry.properties -the defaults will be used-");
+		}
+
+		try
+		{
+			if (properties.getProperty("ontology_cache_failure_ttl_seconds") != null)
+				setFailureTimeToLive(Long.parseLong(properties.getProperty("ontology_cache_failure_ttl_seconds").trim()) * 1000);
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid ontology_cache_failure_ttl_seconds property in registry.properties -the default will be used-");
+		}
+
+		try
+		{
+			int connectTimeout = this.connectTimeout;
+			int readTimeout = this.readTimeout;
+			if (properties.getProperty("ontology_connect_timeout_seconds") != null)
+				connectTimeout = Integer.parseInt(properties.getProperty("ontology_connect_timeout_seconds").trim()) * 1000;
+			if (properties.getProperty("ontology_read_timeout_seconds") != null)
+				readTimeout = Integer.parseInt(properties.getProperty("ontology_read_timeout_seconds").trim()) * 1000;
+			setTimeouts(connectTimeout, readTimeout);
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid ontology_connect_timeout_seconds or ontology_read_timeout_seconds property in registry.properties -the defaults will be used-");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the maximum number of cached ontologies, evicting the least
+	 * recently used ontologies if there are more.
+	 *
+	 * @param maxEntries the maximum number of ontologies (at least 1)
+	 */
+	public synchronized void setMaxEntries(int maxEntries)
+	{
+		this.maxEntries = Math.max(1, maxEntries);
+
+		Iterator<String> it = entries.keySet().iterator();
+		while (entries.size() > this.maxEntries && it.hasNext())
+		{
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the time for which a document served over HTTP is used without
+	 * being revalidated.
+	 *
+	 * @param timeToLive in milliseconds (0 revalidates on every lookup)
+	 */
+	public synchronized void setTimeToLive(long timeToLive)
+	{
+		this.timeToLive = Math.max(0, timeToLive);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the time for which a failure to retrieve or revalidate a document
+	 * is remembered, during which the server is not contacted again for it.
+	 *
+	 * @param failureTimeToLive in milliseconds (0 contacts the server on every lookup)
+	 */
+	public synchronized void setFailureTimeToLive(long failureTimeToLive)
+	{
+		this.failureTimeToLive = Math.max(0, failureTimeToLive);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the time allowed for connecting to a server and for each read
+	 * from it, after which a download or revalidation is given up.
+	 *
+	 * @param connectTimeout in milliseconds (at least 1)
+	 * @param readTimeout in milliseconds (at least 1)
+	 */
+	public synchronized void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		// A timeout of 0 would mean waiting forever
+		this.connectTimeout = Math.max(1, connectTimeout);
+		this.readTimeout = Math.max(1, readTimeout);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the ontology loaded from the document found at the given
+	 * physical URI, downloading and parsing the document only if it has not
+	 * been loaded before or has changed since. The returned ontology must not
+	 * be modified.
+	 *
+	 * @param physicalURI
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException if the document cannot be
+	 * retrieved or parsed, and has not been loaded before
+	 */
+	public OWLOntology getOntology(URI physicalURI)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		return getEntry(physicalURI).ontology;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the version of the document found at the given physical URI,
+	 * revalidating it the same way {@link #getOntology(URI)} does. The
+	 * version changes every time the document is downloaded and parsed again
+	 * because it has changed, so it can be used to tell if something computed
+	 * from the ontology is still up to date.
+	 *
+	 * @param physicalURI
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException if the document cannot be
+	 * retrieved or parsed, and has not been loaded before
+	 */
+	public long getDocumentVersion(URI physicalURI)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		return getEntry(physicalURI).version;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param physicalURI
+	 * @return the entry of the document found at the given physical URI,
+	 * loaded or revalidated if needed
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private Entry getEntry(URI physicalURI)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		String key = physicalURI.normalize().toString();
+		boolean isLocalFile = "file".equalsIgnoreCase(physicalURI.getScheme());
+
+		Entry previous = null;
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			previous = entries.get(key);
+			if (previous != null && !isLocalFile
+					&& (now - previous.validatedAt < timeToLive || now - previous.failedAt < failureTimeToLive))
+			{
+				hits++;
+				return previous;
+			}
+
+			// A document that could not be retrieved a moment ago is not tried again yet
+			Long failedAt = failures.get(key);
+			if (previous == null && failedAt != null && now - failedAt.longValue() < failureTimeToLive)
+			{
+				failureHits++;
+				throw new SemanticRegistryMatchmakingException("The ontology document found at " + physicalURI + " could not be retrieved a moment ago -it will be tried again later-");
+			}
+		}
+
+		// Fetch the document outside the lock, as it may take a while
+		Entry entry = null;
+		try
+		{
+			entry = fetch(physicalURI, previous);
+		}
+		catch (IOException e)
+		{
+			recordFailure(key, previous);
+			if (previous == null)
+			{
+				System.out.println("IOException: " + e.getMessage());
+				throw new SemanticRegistryMatchmakingException("An error occured while trying to retrieve the ontology document found at " + physicalURI);
+			}
+			System.out.println("The ontology document found at " + physicalURI + " could not be revalidated (" + e.getMessage() + ") -the cached ontology will be used-");
+			return previous;
+		}
+		catch (OWLOntologyCreationException e)
+		{
+			recordFailure(key, null);
+			System.out.println("OWLOntologyCreationException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the ontology found at " + physicalURI);
+		}
+
+		synchronized (this)
+		{
+			if (entry == previous)
+				notModified++;
+			else
+				entry.version = ++fetches;
+			entry.failedAt = 0;
+			entries.put(key, entry);
+			failures.remove(key);
+		}
+		return entry;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Remembers a failure to retrieve or revalidate a document.
+	 *
+	 * @param key the normalised physical URI of the document
+	 * @param previous the entry of the document, or null if it is not cached
+	 * (or its cached ontology must not be used any more)
+	 */
+	private synchronized void recordFailure(String key, Entry previous)
+	{
+		if (previous != null)
+			previous.failedAt = System.currentTimeMillis();
+		else
+			failures.put(key, Long.valueOf(System.currentTimeMillis()));
+	}
+
+
+
+
+
+
+
+	/**
+	 * Drops the ontology loaded from the document found at the given
+	 * physical URI, so that it is downloaded again the next time.
+	 *
+	 * @param physicalURI
+	 */
+	public synchronized void invalidate(URI physicalURI)
+	{
+		entries.remove(physicalURI.normalize().toString());
+		failures.remove(physicalURI.normalize().toString());
+	}
+
+
+
+
+
+
+
+	/**
+	 * Drops all cached ontologies.
+	 */
+	public synchronized void invalidate()
+	{
+		entries.clear();
+		failures.clear();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of cached ontologies
+	 */
+	public synchronized int getSize()
+	{
+		return entries.size();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups answered without contacting the server
+	 */
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of revalidations that found the document unchanged
+	 */
+	public synchronized long getNotModifiedCount()
+	{
+		return notModified;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups answered from a remembered failure
+	 */
+	public synchronized long getFailureHitCount()
+	{
+		return failureHits;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of times a document was downloaded and parsed
+	 */
+	public synchronized long getFetchCount()
+	{
+		return fetches;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of ontologies evicted to make room for others
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return a line summarising the use of the cache
+	 */
+	public synchronized String getStatistics()
+	{
+		return "Ontology document cache: " + entries.size() + "/" + maxEntries + " ontologies, "
+				+ hits + " hits, " + notModified + " not modified, " + fetches + " fetches, "
+				+ failureHits + " failure hits, " + evictions + " evictions";
+	}
+
+
+
+
+
+
+
+	/**
+	 * Loads the ontology from the document found at the given physical URI,
+	 * unless the document is known to be the one the given entry was loaded
+	 * from.
+	 *
+	 * @param physicalURI
+	 * @param previous the entry of the document, or null if it is not cached
+	 * @return the given entry (revalidated) if the document has not changed,
+	 * or else a new entry
+	 * @throws IOException
+	 * @throws OWLOntologyCreationException
+	 */
+	private Entry fetch(URI physicalURI, Entry previous)
+
+	throws IOException, OWLOntologyCreationException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		Entry entry = new Entry();
+		String scheme = physicalURI.getScheme();
+
+		if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+		{
+			// Ask the server to send the document only if it has changed
+			HttpURLConnection con = (HttpURLConnection) physicalURI.toURL().openConnection();
+			synchronized (this)
+			{
+				con.setConnectTimeout(connectTimeout);
+				con.setReadTimeout(readTimeout);
+			}
+			if (previous != null && previous.entityTag != null)
+				con.setRequestProperty("If-None-Match", previous.entityTag);
+			if (previous != null && previous.lastModified != null)
+				con.setRequestProperty("If-Modified-Since", previous.lastModified);
+
+			int responseCode = con.getResponseCode();
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null)
+			{
+				con.disconnect();
+				previous.validatedAt = System.currentTimeMillis();
+				return previous;
+			}
+			if (responseCode != HttpURLConnection.HTTP_OK)
+			{
+				con.disconnect();
+				throw new IOException("The server responded with HTTP status " + responseCode);
+			}
+
+			entry.entityTag = con.getHeaderField("ETag");
+			entry.lastModified = con.getHeaderField("Last-Modified");
+
+			// Parse the document as it is downloaded
+			InputStream in = con.getInputStream();
+			try
+			{
+				OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+				entry.ontology = manager.loadOntology(new StreamInputSource(in, physicalURI));
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		else
+		{
+			// Local files are known to be unchanged if their modification time is the same
+			if ("file".equalsIgnoreCase(scheme))
+			{
+				entry.fileTimestamp = new File(physicalURI.getPath()).lastModified();
+				if (previous != null && entry.fileTimestamp != 0 && previous.fileTimestamp == entry.fileTimestamp)
+				{
+					previous.validatedAt = System.currentTimeMillis();
+					return previous;
+				}
+			}
+
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			entry.ontology = manager.loadOntologyFromPhysicalURI(physicalURI);
+		}
+
+		entry.validatedAt = System.currentTimeMillis();
+
+		chron.stop();
+		System.out.println("Ontology " + entry.ontology.getURI() + " loaded from " + physicalURI + " in " + chron);
+
+		return entry;
+	}
+
+
+
+
+
+
+
+}
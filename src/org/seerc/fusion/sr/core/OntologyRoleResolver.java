@@ -0,0 +1,347 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLDescription;
+import org.semanticweb.owl.model.OWLOntology;
+
+/**
+ * Works out which of the ontologies in the imports closure of the SRKB
+ * ontology plays each of the roles the registry relies on (the taxonomy,
+ * data facet and functional facet ontologies, and the ontology in which the
+ * RFPs are defined). Finding the defining ontology of a root class means
+ * scanning every ontology of the closure for asserted subclasses of it, so
+ * the answer is remembered for every imports closure, identified by the
+ * logical URIs of its ontologies, until the knowledge base is reloaded or
+ * reclassified and calls {@link #invalidate()}.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class OntologyRoleResolver
+{
+	// The process-wide resolver
+	private static final OntologyRoleResolver instance = new OntologyRoleResolver();
+
+	// The logical URI of the defining ontology of every target class name, by imports closure
+	ConcurrentMap<Set<URI>, Map<String, URI>> definingOntologies = new ConcurrentHashMap<Set<URI>, Map<String, URI>>();
+
+
+
+
+
+
+
+	/**
+	 * @return the process-wide resolver
+	 */
+	public static OntologyRoleResolver getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param importsClosure
+	 * @param factory
+	 * @return the ontology in which the #TaxonomyEntity class is defined
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public OWLOntology getTaxonomyOntology(Set<OWLOntology> importsClosure, OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		return getDefiningOntology("#TaxonomyEntity", importsClosure, factory);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param importsClosure
+	 * @param factory
+	 * @return the ontology in which the #DataFacetEntity class is defined
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public OWLOntology getDataFacetOntology(Set<OWLOntology> importsClosure, OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		return getDefiningOntology("#DataFacetEntity", importsClosure, factory);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param importsClosure
+	 * @param factory
+	 * @return the ontology in which the #FunctionalFacetEntity class is defined
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public OWLOntology getFunctionalFacetOntology(Set<OWLOntology> importsClosure, OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		return getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param importsClosure
+	 * @param factory
+	 * @return the ontology in which the subclasses of the
+	 * #RequestFunctionalProfile class of the functional facet ontology
+	 * (i.e. the RFPs) are defined
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public OWLOntology getRFPOntology(Set<OWLOntology> importsClosure, OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		URI functionalFacetOntologyLogicalURI = getFunctionalFacetOntology(importsClosure, factory).getURI();
+		return getDefiningOntology(functionalFacetOntologyLogicalURI + "#RequestFunctionalProfile", importsClosure, factory);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the ontology of the imports closure in which the given class is
+	 * defined, scanning the imports closure only the first time the class is
+	 * looked up for it.
+	 *
+	 * @param targetClassName the absolute URI of the class, or its fragment
+	 * (e.g. "#TaxonomyEntity") if the namespace is not known
+	 * @param importsClosure
+	 * @param factory
+	 * @return
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public OWLOntology getDefiningOntology(
+			String targetClassName,
+			Set<OWLOntology> importsClosure,
+			OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		// Identify the imports closure by the logical URIs of its ontologies
+		Set<URI> closureKey = new HashSet<URI>();
+		for (OWLOntology ont : importsClosure)
+		{
+			closureKey.add(ont.getURI());
+		}
+
+		Map<String, URI> closureRoles = definingOntologies.get(closureKey);
+		if (closureRoles == null)
+		{
+			definingOntologies.putIfAbsent(closureKey, new ConcurrentHashMap<String, URI>());
+			closureRoles = definingOntologies.get(closureKey);
+		}
+
+		// Return the ontology found when the class was last looked up, if it is still in the closure
+		URI definingOntologyURI = closureRoles.get(targetClassName);
+		if (definingOntologyURI != null)
+		{
+			for (OWLOntology ont : importsClosure)
+			{
+				if (ont.getURI().equals(definingOntologyURI))
+					return ont;
+			}
+		}
+
+		OWLOntology definingOntology = scan(targetClassName, importsClosure, factory);
+		closureRoles.put(targetClassName, definingOntology.getURI());
+		return definingOntology;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Forgets the ontologies found so far. Called when the ontologies of the
+	 * SRKB are reloaded or changed in a way that may affect their roles.
+	 */
+	public void invalidate()
+	{
+		definingOntologies.clear();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Scans the imports closure for the ontology in which the given class is
+	 * defined.
+	 *
+	 * @param targetClassName
+	 * @param importsClosure
+	 * @param factory
+	 * @return
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private OWLOntology scan(
+			String targetClassName,
+			Set<OWLOntology> importsClosure,
+			OWLDataFactory factory)
+
+	throws SemanticRegistryConfigurationException
+	{
+		// Determine which of the ontologies imported by the SRKB
+		// ontology (directly or indirectly) is the ontology in which
+		// the targetClassName is defined, and retrieve its logical URI
+		System.out.println("Scanning for " + targetClassName + " in the import closure of the SRKB ontology:");
+
+		OWLClass tmpClass = null;
+		OWLOntology returnedOntology = null;
+
+		// Create a map to store search result tuples (ontology logical URI, number of subclasses detected)
+		Map<OWLOntology, Integer> ontologySearchResults = new HashMap<OWLOntology, Integer>();
+
+		URI targetClassURI = URI.create(targetClassName);
+
+		// Iterate over every ontology in the imports closure and check
+		// if it contains any asserted subclasses of targetClassName
+		for (OWLOntology ont : importsClosure)
+		{
+			if (targetClassURI.isAbsolute())
+			{
+				tmpClass = factory.getOWLClass(targetClassURI);
+			}
+			else
+			{
+				tmpClass = factory.getOWLClass(URI.create(ont.getURI() + targetClassName));
+			}
+
+			//System.out.println("Looking for subclasses of " + tmpClass.getURI() + " in " + ont.getURI());
+			Set<OWLDescription> foundSubClasses = tmpClass.getSubClasses(ont);
+
+			// The containsEntityDeclaration method offers the best technique for
+			// the specific purpose but cannot be used as it is still not implemented
+			// in the latest binary release of the OWL-API (v2.1.1 - 16th August 2007)
+			//if (ont.containsEntityDeclaration(target))
+			//System.out.println("A declaration for concept " + tmpClass.getURI() + " was found in " + ont.getURI());
+
+			// Since a concept with the specified name (targetClassName) may be defined in more
+			// than one ontologies in the closure, judging which is the correct ontology that we
+			// are after can only be based on a heuristic (the number of concepts in the ontology
+			// that are defined as asserted subclasses of the target class - the more the better)
+
+			// If at least one asserted subclass of the target class has been found
+			if (foundSubClasses.size() > 0)
+			{
+				// Add it to the search results map
+				ontologySearchResults.put(ont, foundSubClasses.size());
+			}
+		}
+
+		// If none of the ontologies in the import closure of the SRKB contains a
+		// subclass of the target class, there is a configuration problem
+		if (ontologySearchResults.size() == 0)
+		{
+			throw new SemanticRegistryConfigurationException(
+					"Configuration problem detected: None of the ontologies in the import closure " +
+					"of the SRKB ontology contains subclasses of the " + targetClassName + " concept. " +
+					"Make sure that the SRKB ontology imports (directly or indirectly) some ontology " +
+					"in which a " + targetClassName + " concept as well as several subclass concepts are defined.");
+		}
+
+		// Standard case: only one ontology from the SRKB's imports closure
+		// contains asserted subclasses of the target concept
+		if (ontologySearchResults.size() == 1)
+		{
+			returnedOntology = ontologySearchResults.keySet().iterator().next();
+			//int subclasses = ontologySearchResults.get(targetOntologyLogicalURI);
+			//System.out.println("FOUND " + subclasses + " subclasses of #TaxonomyEntity in " + taxonomyOntologyLogicalURI);
+		}
+
+		// Exceptional case: more than one ontology from the SRKB's imports closure
+		// contain asserted subclasses of the target class. Therefore Judging which
+		// is the correct ontology can only be based on a heuristic (we choose the number of
+		// is the correct asserted subclasses that were detected - the more being the better)
+		if (ontologySearchResults.size() > 1)
+		{
+			int maxSubClassesFound = 0 ;
+			OWLOntology ontContainingMaxSubClasses = null;
+
+			// Get the keys (URIs) and values (number of subclasses) for every entry in the map
+		    for (Iterator it = ontologySearchResults.entrySet().iterator(); it.hasNext(); )
+		    {
+		        Map.Entry entry = (Map.Entry)it.next();
+		        OWLOntology onto = (OWLOntology) entry.getKey();
+		        Integer numOfSubclasses = (Integer) entry.getValue();
+
+		        if (numOfSubclasses.intValue() > maxSubClassesFound)
+		        {
+		        	maxSubClassesFound = numOfSubclasses.intValue();
+		        	ontContainingMaxSubClasses = onto;
+		        }
+		    }
+		    returnedOntology = ontContainingMaxSubClasses;
+		}
+
+		System.out.println("Subclasses of the " + tmpClass + " concept are defined in " + returnedOntology.getURI());
+		return returnedOntology;
+	}
+
+
+
+
+
+
+
+}
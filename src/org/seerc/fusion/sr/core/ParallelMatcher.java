@@ -0,0 +1,341 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
+
+/**
+ * Runs the matchmaking checks of a set of profiles (e.g. the candidate AFPs
+ * of a discovery request, or the RFPs checked when an AFP is published) on a
+ * shared pool of threads. The profiles are split into contiguous ranges, and
+ * the matches found in every range are merged in the order of the ranges, so
+ * the result is the same as that of a sequential run. Sets smaller than the
+ * parallel threshold are matched sequentially on the calling thread.
+ *
+ * The number of threads and the threshold can be set through the optional
+ * matchmaking_threads and matchmaking_parallel_threshold properties of the
+ * registry.properties file.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class ParallelMatcher
+{
+	/**
+	 * Checks if a single profile matches. Implementations are called from
+	 * several threads at once, so they must only read shared state.
+	 */
+	public interface ProfileMatcher
+	{
+		/**
+		 * @param i the position of the profile in the set being matched
+		 * @return true if the profile matches
+		 * @throws SemanticRegistryMatchmakingException
+		 * @throws SemanticRegistryConfigurationException
+		 */
+		boolean matches(int i)
+
+		throws SemanticRegistryMatchmakingException,
+			SemanticRegistryConfigurationException;
+	}
+
+	// The default number of profiles below which matching is sequential
+	static final int DEFAULT_PARALLEL_THRESHOLD = 512;
+
+	// The number of ranges created per thread, so that uneven ranges even out
+	static final int RANGES_PER_THREAD = 4;
+
+	// The number of threads used for matching
+	private static int threadCount = Runtime.getRuntime().availableProcessors();
+
+	// The number of profiles below which matching is sequential
+	private static int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	// The pool of threads, created when it is first needed
+	private static ExecutorService executor;
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads and the parallel threshold from the given
+	 * properties, if they are present.
+	 *
+	 * @param properties
+	 */
+	public static void configure(Properties properties)
+	{
+		int threads = getThreadCount();
+		int threshold = getParallelThreshold();
+
+		try
+		{
+			if (properties.getProperty("matchmaking_threads") != null)
+				threads = Integer.parseInt(properties.getProperty("matchmaking_threads").trim());
+			if (properties.getProperty("matchmaking_parallel_threshold") != null)
+				threshold = Integer.parseInt(properties.getProperty("matchmaking_parallel_threshold").trim());
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid matchmaking_threads or matchmaking_parallel_threshold property in registry.properties -the defaults will be used-");
+			return;
+		}
+
+		configure(threads, threshold);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads used for matching, and the number of
+	 * profiles below which matching is sequential (at least 1).
+	 *
+	 * @param threads
+	 * @param threshold
+	 */
+	public static synchronized void configure(int threads, int threshold)
+	{
+		if (threads < 1)
+			threads = 1;
+		if (threshold < 1)
+			threshold = 1;
+
+		// Let the running tasks finish on the old pool
+		if (threads != threadCount && executor != null)
+		{
+			executor.shutdown();
+			executor = null;
+		}
+
+		threadCount = threads;
+		parallelThreshold = threshold;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of threads used for matching
+	 */
+	public static synchronized int getThreadCount()
+	{
+		return threadCount;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of profiles below which matching is sequential
+	 */
+	public static synchronized int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks every profile of a set, in parallel if the set is large enough.
+	 *
+	 * @param count the number of profiles in the set
+	 * @param matcher
+	 * @return the positions of the matching profiles
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public static BitSet match(int count, final ProfileMatcher matcher)
+
+	throws SemanticRegistryMatchmakingException,
+		SemanticRegistryConfigurationException
+	{
+		// There is nothing to match in an empty set
+		if (count <= 0)
+			return new BitSet();
+
+		int threads;
+		ExecutorService pool = null;
+		synchronized (ParallelMatcher.class)
+		{
+			threads = threadCount;
+			if (count >= parallelThreshold && threads > 1)
+				pool = getExecutor();
+		}
+
+		// Small sets are matched on the calling thread
+		if (pool == null)
+			return match(matcher, 0, count);
+
+		// Split the set into contiguous ranges
+		int rangeCount = Math.min(threads * RANGES_PER_THREAD, count);
+		int rangeSize = (count + rangeCount - 1) / rangeCount;
+
+		List<Future<BitSet>> futures = new ArrayList<Future<BitSet>>();
+		for (int start = 0; start < count; start += rangeSize)
+		{
+			final int from = start;
+			final int to = Math.min(start + rangeSize, count);
+			futures.add(pool.submit(new Callable<BitSet>()
+			{
+				public BitSet call() throws Exception
+				{
+					return match(matcher, from, to);
+				}
+			}));
+		}
+
+		// Merge the matches of every range, in order
+		BitSet matches = new BitSet(count);
+		try
+		{
+			for (Future<BitSet> future : futures)
+			{
+				matches.or(future.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SemanticRegistryMatchmakingException("Matchmaking was interrupted");
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof SemanticRegistryMatchmakingException)
+				throw (SemanticRegistryMatchmakingException) cause;
+			if (cause instanceof SemanticRegistryConfigurationException)
+				throw (SemanticRegistryConfigurationException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+
+			System.out.println("An error occured while matching profiles in parallel: " + cause);
+			throw new SemanticRegistryMatchmakingException("An error occured while matching profiles in parallel");
+		}
+		finally
+		{
+			// Stop whatever is left if a range failed
+			for (Future<BitSet> future : futures)
+			{
+				future.cancel(false);
+			}
+		}
+
+		return matches;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks the profiles in a range of positions.
+	 *
+	 * @param matcher
+	 * @param from
+	 * @param to
+	 * @return the positions of the matching profiles
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private static BitSet match(ProfileMatcher matcher, int from, int to)
+
+	throws SemanticRegistryMatchmakingException,
+		SemanticRegistryConfigurationException
+	{
+		BitSet matches = new BitSet(to);
+		for (int i = from; i < to; i++)
+		{
+			if (matcher.matches(i))
+				matches.set(i);
+		}
+		return matches;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the pool of threads, creating it if necessary. Must be called
+	 * while holding the class lock.
+	 *
+	 * @return
+	 */
+	private static ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+			{
+				private final AtomicInteger number = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable)
+				{
+					// Matchmaking threads must not keep the container from shutting down
+					Thread thread = new Thread(runnable, "matchmaker-" + number.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+
+
+
+
+
+
+}
@@ -19,19 +19,28 @@
  
  package org.seerc.fusion.sr.core;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
@@ -40,7 +49,8 @@ import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryMalformedInputException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryNoMatchFoundException;
-import org.semanticweb.owl.apibinding.OWLManager;
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.model.OWLAxiom;
 import org.semanticweb.owl.model.OWLClass;
 import org.semanticweb.owl.model.OWLDataFactory;
 import org.semanticweb.owl.model.OWLDescription;
@@ -49,11 +59,8 @@ import org.semanticweb.owl.model.OWLEquivalentClassesAxiom;
 import org.semanticweb.owl.model.OWLOntology;
 import org.semanticweb.owl.model.OWLOntologyChangeException;
 import org.semanticweb.owl.model.OWLOntologyCreationException;
-import org.semanticweb.owl.model.OWLOntologyManager;
 import org.semanticweb.owl.model.OWLOntologyStorageException;
-import org.semanticweb.owl.model.UnknownOWLOntologyException;
 import org.semanticweb.owl.util.OWLEntityCollector;
-import org.semanticweb.owl.util.OWLEntityRemover;
 
 import org.uddi4j.UDDIException;
 import org.uddi4j.client.UDDIProxy;
@@ -82,6 +89,10 @@ public class PublicationHandler
 	// The UDDI4j proxy object
 	UDDIProxy proxy;
 
+	// The URLs of the UDDI Inquiry and Publish API, for the proxies of bulk removal threads
+	String inquiryURL;
+	String publishURL;
+
 	// The 5 tModels that need to be pre-registered with the UDDI server
 	String SAWSDL_TMODEL_KEY;
 	String CATEGORY_TMODEL_KEY;
@@ -89,11 +100,43 @@ public class PublicationHandler
 	String OUTPUT_TMODEL_KEY;
 	String INDEXING_TMODEL_KEY;
 
+	// The IDs of the "uuid:" forms of the tModel keys in the URI dictionary
+	int SAWSDL_TMODEL_KEY_ID;
+	int CATEGORY_TMODEL_KEY_ID;
+	int INPUT_TMODEL_KEY_ID;
+	int OUTPUT_TMODEL_KEY_ID;
+	int INDEXING_TMODEL_KEY_ID;
+
+	// The registry-wide URI dictionary
+	URIDictionary dictionary = URIDictionary.getInstance();
+
 	// The location of the Semantic Registry Knowledge Base Ontology
 	URI srkbOntologyPhysicalURI;
 	
 	// The location of the EAI Ontology
 	URI eaiOntologyPhysicalURI;
+
+	// The number of businessService elements saved by one save_service call in bulk publication
+	static final int SAVE_BATCH_SIZE = 100;
+
+	// The largest number of service descriptions accepted by one bulk publication
+	static final int MAX_PUBLICATIONS = 1000;
+
+	// The number of threads that validate service descriptions in bulk publication
+	static final int VALIDATION_THREADS = 8;
+
+	// The number of validations that can wait for a validation thread; when
+	// it is reached, the publishing thread runs the validation itself
+	static final int VALIDATION_QUEUE_CAPACITY = 100;
+
+	// The pool of validation threads, shared by all handlers and created when it is first needed
+	private static ExecutorService validator;
+
+	// The number of UDDI keys deleted by one delete_service or delete_business call in bulk removal
+	static final int DELETE_BATCH_SIZE = 100;
+
+	// The SRKB ontologies from which the provisional AFPs left by earlier processes have been swept
+	private static final Set<URI> sweptSRKBOntologies = new HashSet<URI>();
 	
 	
 	
@@ -110,35 +153,15 @@ public class PublicationHandler
 	
 	throws SemanticRegistryConfigurationException
 	{
-		// Specify which of the 3 SOAP transports that UDDI4j supports should
-		// be used to talk to jUDDI (Apache Axis, Apache SOAP 2.2, HP SOAP)
-		System.setProperty("org.uddi4j.TransportClassName", "org.uddi4j.transport.ApacheAxisTransport");
-
-		// Initialise the UDDIProxy object
-		proxy = new UDDIProxy();
-		
-		// Create a new properties object to store the settings loaded 
-		// from the registry.properties file in WEB-INF/classes
-		Properties properties = new Properties();
+		// Get the settings loaded from the registry.properties file in WEB-INF/classes
+		// (the components shared by all handlers are configured by RegistryConfiguration)
+		Properties properties = RegistryConfiguration.getProperties();
 
 		try
 		{
-			// This will look in the current classloader's context and find the
-			// registry.properties files that is placed under /WEB-INF/classes/
-			// (Any *.properties file that is placed inside the "src" folder 
-			// of an Eclipse project will get deployed to WEB-INF/classes automatically)
-			InputStream inputStream = getClass().getClassLoader().getResourceAsStream("registry.properties");
-			
-			if (inputStream == null)
-			{
-				System.out.println("The registry.properties file could not be located");
-				throw new SemanticRegistryConfigurationException("The classloader could not locate and load the registry.properties file");				
-			}
-			else properties.load(inputStream);
-			
 			// Get the URL values for the UDDI Inquiry and Publish API
-			String inquiryURL = properties.getProperty("inquiry_url");
-			String publishURL = properties.getProperty("publish_url");
+			inquiryURL = properties.getProperty("inquiry_url");
+			publishURL = properties.getProperty("publish_url");
 
 			// Check the validity of URIs loaded from the registry.properties file
 			if (!InputValidator.isURIWellFormed(publishURL))
@@ -146,9 +169,8 @@ public class PublicationHandler
 			if (!InputValidator.isURIWellFormed(inquiryURL))
 				throw new SemanticRegistryConfigurationException("inquiry_url in registry.properties file is not a valid URI");				
 
-			// Set the values
-			proxy.setInquiryURL(inquiryURL);
-			proxy.setPublishURL(publishURL);
+			// Get the long-lived proxy of this thread for the UDDI server
+			proxy = UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
 
 			// Set the UUID values of the canonical tModels needed 
 			SAWSDL_TMODEL_KEY = properties.getProperty("SAWSDL_Document_URL_tModel").replace("uuid:", "").replace(" ", "");
@@ -156,6 +178,13 @@ public class PublicationHandler
 			INPUT_TMODEL_KEY = properties.getProperty("Input_Annotation_tModel").replace("uuid:", "").replace(" ", "");
 			OUTPUT_TMODEL_KEY = properties.getProperty("Output_Annotation_tModel").replace("uuid:", "").replace(" ", "");
 			INDEXING_TMODEL_KEY = properties.getProperty("Subsumption_Indexing_tModel").replace("uuid:", "").replace(" ", "");
+
+			// Get the IDs of the tModel keys, for telling the KeyedReferences of a categoryBag apart
+			SAWSDL_TMODEL_KEY_ID = dictionary.getId("uuid:" + SAWSDL_TMODEL_KEY);
+			CATEGORY_TMODEL_KEY_ID = dictionary.getId("uuid:" + CATEGORY_TMODEL_KEY);
+			INPUT_TMODEL_KEY_ID = dictionary.getId("uuid:" + INPUT_TMODEL_KEY);
+			OUTPUT_TMODEL_KEY_ID = dictionary.getId("uuid:" + OUTPUT_TMODEL_KEY);
+			INDEXING_TMODEL_KEY_ID = dictionary.getId("uuid:" + INDEXING_TMODEL_KEY);
 			
 			// Check if the UUID keys loaded from the registry.properties file are valid
 			if (!InputValidator.isUUIDKeyWellFormed(SAWSDL_TMODEL_KEY))
@@ -647,6 +676,9 @@ public class PublicationHandler
 				throw new SemanticRegistryException("An exception occured for unspecified reasons");
 			}
 
+			// Drop the cached discovery results, which may no longer hold
+			DiscoveryResultCache.getInstance().invalidate();
+			
 			// If all goes well
 			return true;
 
@@ -889,6 +921,68 @@ public class PublicationHandler
 			SemanticRegistryCommunicationException, 
 			SemanticRegistryMatchmakingException, 
 			SemanticRegistryException, SemanticRegistryConfigurationException 
+	{
+		// Validate the input parameter values and create the service advertisement
+		UDDIServiceAdvertisement adv = prepareServiceAdvertisementWithoutSAWSDL(
+				proxy,
+				authToken,
+				serviceSAWSDLURL,
+				serviceProviderUUID,
+				serviceName,
+				serviceFreeTextDescription,
+				hasCategoryAnnotationURI,
+				hasInputAnnotationURIArray,
+				hasOutputAnnotationURIArray);
+
+		//The authToken key has been asserted to be valid, but should also have the proper prefix
+		authToken = authToken.trim();
+		if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
+
+		// Save the advertisement and index it by the RFPs that its AFP matches
+		return publishServiceAdvertisement(authToken, adv, serviceName);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Validates the input parameter values of a new service advertisement,
+	 * makes sure that the service provider is known to the UDDI server, and
+	 * creates the advertisement from the given annotations. The
+	 * advertisement does not yet include any subsumption indexing information.
+	 * 
+	 * @param inquiryProxy the proxy used for retrieving the service provider
+	 * (which must not be shared with other threads)
+	 * @param authToken
+	 * @param serviceSAWSDLURL
+	 * @param serviceProviderUUID
+	 * @param serviceName
+	 * @param serviceFreeTextDescription
+	 * @param hasCategoryAnnotationURI
+	 * @param hasInputAnnotationURIArray
+	 * @param hasOutputAnnotationURIArray
+	 * @return
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private UDDIServiceAdvertisement prepareServiceAdvertisementWithoutSAWSDL(
+			UDDIProxy inquiryProxy,
+			String authToken, 
+			String serviceSAWSDLURL,
+			String serviceProviderUUID, 
+			String serviceName,
+			String serviceFreeTextDescription, 
+			String hasCategoryAnnotationURI, 
+			String[] hasInputAnnotationURIArray, 
+			String[] hasOutputAnnotationURIArray)
+			
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException 
 	{
 		// Remove leading and trailing whitespaces from values to be used as keys
 		if (authToken != null) authToken = authToken.trim();
@@ -930,7 +1024,7 @@ public class PublicationHandler
 			BusinessDetail businessDetail;
 			try
 			{
-				businessDetail = proxy.get_businessDetail(serviceProviderUUID);
+				businessDetail = inquiryProxy.get_businessDetail(serviceProviderUUID);
 
 				// Get the BusinessEntity vector from the returned result
 				Vector businessEntityVector = businessDetail.getBusinessEntityVector();
@@ -1100,292 +1194,7 @@ public class PublicationHandler
 					hasInputAnnotationURIArray, 
 					hasOutputAnnotationURIArray);
 			
-			// Create a vector for the businessService entities to be published
-			Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
-
-			// Create a new businessService entity
-			BusinessService businessService = new BusinessService();
-
-			// Set the business key of the service provider
-			businessService.setBusinessKey(adv.getServiceProviderUUID());
-
-			// Set default businessService name
-			businessService.setDefaultNameString(adv.getServiceName(), "en");
-
-			// Set default businessService description
-			businessService.setDefaultDescriptionString(adv.getServiceFreeTextDescription());
-
-			// Add the categoryBag to the businessService
-			businessService.setCategoryBag(adv.getServiceCategoryBag());
-
-			// Add the businessService to the vector
-			businessServiceVector.addElement(businessService);
-
-			// Create a ServiceDetail to store the outcome of
-			// the save_service call
-			ServiceDetail serviceDetail = null;
-
-			try
-			{
-				// Save the service and retrieve a serviceDetail message
-				serviceDetail = proxy.save_service(authToken, businessServiceVector);
-			}
-			catch (UDDIException e)
-			{
-				DispositionReport dr = e.getDispositionReport();
-				if (dr != null)
-				{
-					Vector results = dr.getResultVector();
-					for (int i = 0; i < results.size(); i++)
-					{
-						Result r = (Result) results.elementAt(i);
-						System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
-
-						if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-						{
-							System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
-							throw new SemanticRegistryAuthException("The authentication token is invalid");
-						}
-						if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-						{
-							System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-							throw new SemanticRegistryAuthException("The authentication token has timed out");
-						}
-						if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-						{
-							System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-							throw new SemanticRegistryException("One or more UUID keys do not match any known values");
-						}
-						throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
-					}
-				}
-				else
-				{
-					System.out.println(
-							"The UDDI server reported an internal error but did not provide a Disposition Report " +
-							"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-							"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-							"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-							"or in a failure to communicate with the database that the UDDI server relies on.");
-					throw new SemanticRegistryCommunicationException(
-							"The UDDI server reported an internal error but did not provide a Disposition Report " +
-							"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-							"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-							"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-							"or in a failure to communicate with the database that the UDDI server relies on.");
-				}
-			}
-			catch (TransportException e)
-			{
-				System.out.println("TransportException occured!");
-				throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
-			}
-			catch (Exception e)
-			{
-				System.out.println("SemanticRegistryException occured!");
-				throw new SemanticRegistryException("An exception occured for unspecified reasons");
-			}
-
-			// If all goes well: i.e. the service advertisement gets saved
-			BusinessService returnedBusinessService = null;
-			String serviceKey = null;
-
-			// Get the first (and logically only) business service entity from
-			// the returned serviceDetail object
-			returnedBusinessService = (BusinessService) serviceDetail.getBusinessServiceVector().elementAt(0);
-
-			// Get the Business Service key
-			serviceKey = returnedBusinessService.getServiceKey();
-
-			// Create a new categoryBag, including subsumption indexing
-			// information, and replace the old categoryBag in the saved advertisement
-
-			// Get the old category bag
-			CategoryBag oldCategoryBag = adv.getServiceCategoryBag();
-
-			// Get the old keyedReferences vector
-			Vector<KeyedReference> oldKeyedRefVector = oldCategoryBag.getKeyedReferenceVector();
-
-			// Create lists to hold the modelReference annotations that will be read from the categoryBag
-			List<String> functionalModelReferenceAnnotations = new ArrayList<String>();
-			List<String> inputModelReferenceAnnotations = new ArrayList<String>();
-			List<String> outputModelReferenceAnnotations = new ArrayList<String>();
-
-			// Populate the lists
-			if (oldKeyedRefVector != null)
-			{
-				int vectorSize = oldKeyedRefVector.size();
-				if (vectorSize > 0)
-				{
-					// For every KeyedReference
-					for (int i = 0; i < vectorSize; i++)
-					{
-						KeyedReference keyedRef = (KeyedReference) oldKeyedRefVector.elementAt(i);
-						String tModelKey = keyedRef.getTModelKey();
-
-						if (tModelKey.equalsIgnoreCase("uuid:" + CATEGORY_TMODEL_KEY))
-						{
-							functionalModelReferenceAnnotations.add(keyedRef.getKeyValue());
-						}
-						else if (tModelKey.equalsIgnoreCase("uuid:" + INPUT_TMODEL_KEY))
-						{
-							inputModelReferenceAnnotations.add(keyedRef.getKeyValue());
-						}
-						else if (tModelKey.equalsIgnoreCase("uuid:" + OUTPUT_TMODEL_KEY))
-						{
-							outputModelReferenceAnnotations.add(keyedRef.getKeyValue());
-						}
-					}
-				}
-			}				
-
-			// Create an object to group all useful information
-			SemanticProfileAnnotationCollection annotations = new SemanticProfileAnnotationCollection(
-					serviceName, 
-					functionalModelReferenceAnnotations,
-					inputModelReferenceAnnotations, 
-					outputModelReferenceAnnotations);
-
-			// Create a matchmaker to construct an AFP concept, store it in
-			// the ontology, and classify it against all RFPs contained in it
-			PublicationTimeMatchmaker matchmaker = new PublicationTimeMatchmaker();
-
-			// Get the URIs of all RFPs that the AFP can satisfy
-			// (i.e. get all requests that can be readily satisfied by the new advertisement)
-			SemanticProfileURICollection matchingRFPs = null;
-			try
-			{
-				matchingRFPs = matchmaker.createAFPAndGetMatchingRFPs(
-						srkbOntologyPhysicalURI,
-						annotations,
-						serviceKey.replace("uuid:", ""));
-			}
-			catch (SemanticRegistryMatchmakingException e)
-			{
-				throw new SemanticRegistryMatchmakingException(
-						"Problem occured during the semantic classification of the advertisement");
-			}
-			catch (SemanticRegistryConfigurationException e)
-			{
-				if (e.getMessage() == null || e.getMessage().length() == 0)
-					throw new SemanticRegistryConfigurationException("Problem occured during the semantic classification of the advertisement");
-				else
-					throw new SemanticRegistryConfigurationException(e.getMessage());
-			}
-
-
-			// No point in going on and updating the advertisement if
-			// there is no subsumption-indexing information to add to it
-			if (matchingRFPs != null)
-			{
-				// Copy the keyedReferences vector from the old
-				// category bag into a new vector
-				Vector<KeyedReference> newKeyedRefVector = oldKeyedRefVector;				
-				
-				// Create and add a keyedReference to the new keyed
-				// references vector for every RFP that subsumes the AFP
-				List<String> superClassURIs = matchingRFPs.getProfileURIs();
-				for (int i = 0; i < superClassURIs.size(); i++)
-				{
-					newKeyedRefVector.add(generateKeyedReference(INDEXING_TMODEL_KEY,
-							superClassURIs.get(i)));
-				}
-
-				// Copy the old category bag into a new one
-				CategoryBag newCategoryBag = oldCategoryBag;
-
-				// Replace the old keyedReferences vector with the new
-				// (enriched) one
-				newCategoryBag.setKeyedReferenceVector(newKeyedRefVector);
-
-				// Replace the old categoryBag with the new one (the rest of
-				// the attributes in the businessService object should remain
-				// unchanged)
-				businessService.setCategoryBag(newCategoryBag);
-
-				// Set the key equal to that of the previously saved service record, 
-				// or a new service record will be created
-				businessService.setServiceKey(serviceKey);
-				
-				// Empty the businessServiceVector (i.e. remove the old
-				// businessService object)
-				businessServiceVector.clear();
-
-				// Add the old businessService again, which now contains the new
-				// categoryBag
-				businessServiceVector.addElement(businessService);
-
-				// Save the service
-				try
-				{
-					serviceDetail = proxy.save_service(authToken, businessServiceVector);
-				}
-				catch (UDDIException e)
-				{
-					DispositionReport dr = e.getDispositionReport();
-					if (dr != null)
-					{
-						Vector results = dr.getResultVector();
-						for (int i = 0; i < results.size(); i++)
-						{
-							Result r = (Result) results.elementAt(i);
-							System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
-
-							if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-							{
-								System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
-								throw new SemanticRegistryAuthException(
-										"The authentication token is invalid");
-							}
-							if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-							{
-								System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-								throw new SemanticRegistryAuthException(
-										"The authentication token has timed out");
-							}
-							if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-							{
-								System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-								throw new SemanticRegistryException(
-										"One or more UUID keys do not match any known values");
-							}
-							throw new SemanticRegistryException(
-									"UDDI exception with error number: " + r.getErrno());
-						}
-					}
-					else
-					{
-						System.out.println(
-								"The UDDI server reported an internal error but did not provide a Disposition Report " +
-								"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-								"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-								"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-								"or in a failure to communicate with the database that the UDDI server relies on.");
-						throw new SemanticRegistryCommunicationException(
-								"The UDDI server reported an internal error but did not provide a Disposition Report " +
-								"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-								"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-								"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-								"or in a failure to communicate with the database that the UDDI server relies on.");
-					}
-				}
-				catch (TransportException e)
-				{
-					System.out.println("TransportException occured!");
-					throw new SemanticRegistryCommunicationException(
-							"Problem communicating with the UDDI server");
-				}
-				catch (Exception e)
-				{
-					System.out.println("SemanticRegistryException occured!");
-					throw new SemanticRegistryException(
-							"An exception occured for unspecified reasons");
-				}
-
-			} // end if (matchingRFPs != null)
-
-			// Return the service key
-			return serviceKey;
+			return adv;
 
 
 		} // endif input is well-formed
@@ -1453,27 +1262,81 @@ public class PublicationHandler
 			SemanticRegistryMatchmakingException, 
 			SemanticRegistryException, SemanticRegistryConfigurationException 
 	{
-		// Remove leading and trailing whitespaces from values to be used as keys
-		if (authToken != null) authToken = authToken.trim();
-		if (serviceProviderUUID != null) serviceProviderUUID = serviceProviderUUID.trim();
-		
-		if ( InputValidator.isAuthenticationTokenWellFormed(authToken) 
-				&& InputValidator.isUUIDKeyWellFormed(serviceProviderUUID)
-				&& InputValidator.isURLWellFormedAndResolvable(serviceSAWSDLURL) )
-				{
-					//The authToken key has been asserted to be valid, but should also have the proper prefix
-					if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
+		// Validate the input parameter values and create the service advertisement
+		UDDIServiceAdvertisement adv = prepareServiceAdvertisement(
+				proxy,
+				authToken,
+				serviceSAWSDLURL,
+				serviceProviderUUID,
+				serviceName,
+				serviceFreeTextDescription);
 
-					// If the client has provided a preferred name make sure it's not too long
-					if (serviceName != null && serviceName.length() > 0)
-					{
-						if (serviceName.length() > 256) 
-							throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceName' is too long");
-					}
+		//The authToken key has been asserted to be valid, but should also have the proper prefix
+		authToken = authToken.trim();
+		if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
 
-					// If the client has provided a service description make sure it's not too long
-					if (serviceFreeTextDescription != null && serviceFreeTextDescription.length() > 0)
-					{
+		// Save the advertisement and index it by the RFPs that its AFP matches
+		return publishServiceAdvertisement(authToken, adv, serviceName);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Validates the input parameter values of a new service advertisement,
+	 * makes sure that the service provider is known to the UDDI server, and
+	 * creates the advertisement by parsing the SAWSDL document of the
+	 * service. The advertisement does not yet include any subsumption
+	 * indexing information.
+	 * 
+	 * @param inquiryProxy the proxy used for retrieving the service provider
+	 * (which must not be shared with other threads)
+	 * @param authToken
+	 * @param serviceSAWSDLURL
+	 * @param serviceProviderUUID
+	 * @param serviceName
+	 * @param serviceFreeTextDescription
+	 * @return
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private UDDIServiceAdvertisement prepareServiceAdvertisement(
+			UDDIProxy inquiryProxy,
+			String authToken, 
+			String serviceSAWSDLURL,
+			String serviceProviderUUID, 
+			String serviceName,
+			String serviceFreeTextDescription)
+			
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException 
+	{
+		// Remove leading and trailing whitespaces from values to be used as keys
+		if (authToken != null) authToken = authToken.trim();
+		if (serviceProviderUUID != null) serviceProviderUUID = serviceProviderUUID.trim();
+		
+		if ( InputValidator.isAuthenticationTokenWellFormed(authToken) 
+				&& InputValidator.isUUIDKeyWellFormed(serviceProviderUUID)
+				&& InputValidator.isURLWellFormedAndResolvable(serviceSAWSDLURL) )
+				{
+					//The authToken key has been asserted to be valid, but should also have the proper prefix
+					if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
+
+					// If the client has provided a preferred name make sure it's not too long
+					if (serviceName != null && serviceName.length() > 0)
+					{
+						if (serviceName.length() > 256) 
+							throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceName' is too long");
+					}
+
+					// If the client has provided a service description make sure it's not too long
+					if (serviceFreeTextDescription != null && serviceFreeTextDescription.length() > 0)
+					{
 						if (serviceFreeTextDescription.length() > 256) 
 							throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceFreeTextDescription' is too long");
 					}
@@ -1484,7 +1347,7 @@ public class PublicationHandler
 					BusinessDetail businessDetail;
 					try
 					{
-						businessDetail = proxy.get_businessDetail(serviceProviderUUID);
+						businessDetail = inquiryProxy.get_businessDetail(serviceProviderUUID);
 
 						// Get the BusinessEntity vector from the returned result
 						Vector businessEntityVector = businessDetail.getBusinessEntityVector();
@@ -1563,310 +1426,1356 @@ public class PublicationHandler
 							serviceName, 
 							serviceFreeTextDescription);
 					
-					// Create a vector for the businessService entities to be published
-					Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
-					
-					// Create a new businessService entity
-					BusinessService businessService = new BusinessService();
-					
-					// Set the business key of the service provider
-					businessService.setBusinessKey(adv.getServiceProviderUUID());
-					
-					// Set default businessService name
-					businessService.setDefaultNameString(adv.getServiceName(), "en");
-					
-					// Set default businessService description
-					businessService.setDefaultDescriptionString(adv.getServiceFreeTextDescription());
-					
-					// Add the categoryBag to the businessService
-					businessService.setCategoryBag(adv.getServiceCategoryBag());
-					
-					// Add the businessService to the vector
-					businessServiceVector.addElement(businessService);
-								
-					// Create a ServiceDetail to store the outcome of the save_service call
-					ServiceDetail serviceDetail = null;
-					
-					try
-					{
-						// Save the service and retrieve a serviceDetail message
-						serviceDetail = proxy.save_service(authToken, businessServiceVector);
-					}
-					catch (UDDIException e)
-					{
-						DispositionReport dr = e.getDispositionReport();
-						if (dr != null)
-						{
-							Vector results = dr.getResultVector();
-							for (int i = 0; i < results.size(); i++)
-							{
-								Result r = (Result) results.elementAt(i);
-								System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
-								
-								if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-								{
-									System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
-									throw new SemanticRegistryAuthException("The authentication token is invalid");
-								}
-								if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-								{
-									System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-									throw new SemanticRegistryAuthException("The authentication token has timed out");
-								}
-								if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-								{
-									System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-									throw new SemanticRegistryException("One or more UUID keys do not match any known values");
-								}
-								throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
-							}
-						}
-						else
-						{
-							System.out.println(
-									"The UDDI server reported an internal error but did not provide a Disposition Report " +
-									"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-									"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-									"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-									"or in a failure to communicate with the database that the UDDI server relies on.");
-							throw new SemanticRegistryCommunicationException(
-									"The UDDI server reported an internal error but did not provide a Disposition Report " +
-									"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-									"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-									"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-									"or in a failure to communicate with the database that the UDDI server relies on.");
-						}
-					}
-					catch (TransportException e)
-					{
-						System.out.println("TransportException occured!");
-						throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
-					}
-					catch (Exception e)
-					{
-						System.out.println("SemanticRegistryException occured!");
-						throw new SemanticRegistryException("An exception occured for unspecified reasons");
-					}
-					
-					
-					
-					// If all goes well: i.e. no exception occurs 
-					// and the service advertisement gets saved
-					BusinessService returnedBusinessService = null;
-					String serviceKey = null; 
-					
-					// Get the first (and logically only) business service entity from the returned serviceDetail object
-					returnedBusinessService = (BusinessService) serviceDetail.getBusinessServiceVector().elementAt(0);
-					
-					// Get the Business Service key
-					serviceKey = returnedBusinessService.getServiceKey();
-					
-					
-					
-					// Create a new categoryBag (which will shortly include subsumption 
-					// indexing information, and replace the old categoryBag in the saved advertisement
-					
-					// Get the old category bag
-					CategoryBag oldCategoryBag = adv.getServiceCategoryBag();
-					
-					// Get the old keyedReferences vector
-					Vector<KeyedReference> oldKeyedRefVector = oldCategoryBag.getKeyedReferenceVector();
-					
-					// Create lists to hold the modelReference annotations that will be read from the categoryBag
-					List<String> functionalModelReferenceAnnotations = new ArrayList<String>();
-					List<String> inputModelReferenceAnnotations = new ArrayList<String>();
-					List<String> outputModelReferenceAnnotations = new ArrayList<String>();
-					
-					// Populate the lists
-					if (oldKeyedRefVector != null)
-					{
-						int vectorSize = oldKeyedRefVector.size();
-						if (vectorSize > 0)
-						{
-							// For every KeyedReference
-							for (int i = 0; i < vectorSize; i++)
-							{
-								KeyedReference keyedRef = (KeyedReference) oldKeyedRefVector.elementAt(i);
-								String tModelKey = keyedRef.getTModelKey();
-
-								if (tModelKey.equalsIgnoreCase("uuid:" + CATEGORY_TMODEL_KEY))
-								{
-									functionalModelReferenceAnnotations.add(keyedRef.getKeyValue());
-								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + INPUT_TMODEL_KEY))
-								{
-									inputModelReferenceAnnotations.add(keyedRef.getKeyValue());
-								}
-								else if (tModelKey.equalsIgnoreCase("uuid:" + OUTPUT_TMODEL_KEY))
-								{
-									outputModelReferenceAnnotations.add(keyedRef.getKeyValue());
-								}
-							}
-						}
-					}				
-					
-					// Create an object to group all useful information
-					SemanticProfileAnnotationCollection annotations = new SemanticProfileAnnotationCollection(
-							serviceName,
-							functionalModelReferenceAnnotations,
-							inputModelReferenceAnnotations, 
-							outputModelReferenceAnnotations);
-					
-					// Create a matchmaker that will construct an AFP class, store it in 
-					// the ontology, and classify it against all RFPs contained in it
-					PublicationTimeMatchmaker matchmaker = new PublicationTimeMatchmaker();
+					return adv;
 					
-					// Get the URIs of all RFPs that the AFP can match 
-					// (i.e. get all requests that can be readily satisfied by the new advertisement)
-					SemanticProfileURICollection matchingRFPs = null;
-					try
-					{
-						matchingRFPs = matchmaker.createAFPAndGetMatchingRFPs(
-								srkbOntologyPhysicalURI, 
-								annotations, 
-								serviceKey.replace("uuid:", ""));
-					}
-					catch (SemanticRegistryMatchmakingException e)
-					{
-						if (e.getMessage() == null || e.getMessage().length() == 0)
-							throw new SemanticRegistryMatchmakingException("Problem occured during the semantic classification of the advertisement");
-						else
-							throw new SemanticRegistryMatchmakingException(e.getMessage());
-					}
-					catch (SemanticRegistryConfigurationException e)
-					{
-						if (e.getMessage() == null || e.getMessage().length() == 0)
-							throw new SemanticRegistryConfigurationException("Problem occured during the semantic classification of the advertisement");
-						else
-							throw new SemanticRegistryConfigurationException(e.getMessage());
-					}
 					
-					// No point in going on and updating the advertisement if 
-					// there is no subsumption-indexing information to add to it
-					if (matchingRFPs != null)
-					{
-						// Copy the keyedReferences vector from the old category bag into a new vector
-						Vector<KeyedReference> newKeyedRefVector = oldKeyedRefVector;
-						
-						// Create and add a keyedReference to the new keyed 
-						// references vector for every RFP that subsumes the AFP
-						List<String> superClassURIs = matchingRFPs.getProfileURIs();
-						for (int i = 0; i < superClassURIs.size(); i++)
-						{
-							newKeyedRefVector.add(generateKeyedReference(INDEXING_TMODEL_KEY, superClassURIs.get(i)));
-						}
+				} // endif input is well-formed
+				else
+				{
+					System.out.println("SemanticRegistryMalformedInputException occured!");
+					if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
+						throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
+					if (!InputValidator.isURLWellFormedAndResolvable(serviceSAWSDLURL))
+						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceSAWSDLURL' is malformed");					
+					if (!InputValidator.isUUIDKeyWellFormed(serviceProviderUUID))
+						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceProviderUUID' is malformed");
+					if (!InputValidator.isTextParameterWellFormed(serviceName))
+						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceName' is malformed");
+					if (!InputValidator.isTextParameterWellFormed(serviceFreeTextDescription))
+						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceFreeTextDescription' is malformed");
+					throw new SemanticRegistryMalformedInputException("One or more input parameter values are malformed");
+				}
+	}
+	
+	
+	
+	
+	
+		
+	
+	/**
+	 * Adds the Advertisement Functional Profile (AFP) of a validated service
+	 * advertisement to the SRKB ontology, and saves the advertisement in the
+	 * UDDI server along with the subsumption indexing information of the
+	 * Request Functional Profiles (RFP) that the AFP matches. The AFP is
+	 * classified under a provisional key before the advertisement is saved,
+	 * so that the advertisement is written only once, with its final
+	 * categoryBag, and is renamed after the key of the saved businessService
+	 * (keeping its place in the classified hierarchy, so the rename takes no
+	 * reasoning). UDDI v2 servers reject service keys chosen by the publisher,
+	 * so the final key cannot be used from the start.
+	 * In the asynchronous indexing mode, the advertisement is saved as it is
+	 * and handed over to the {@link PublicationIndexer} instead.
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param adv
+	 * @param serviceName
+	 * @return the key of the saved businessService
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryException
+	 * @throws SemanticRegistryConfigurationException 
+	 */
+	private String publishServiceAdvertisement(
+			String authToken,
+			UDDIServiceAdvertisement adv,
+			String serviceName)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryMatchmakingException, 
+			SemanticRegistryException, SemanticRegistryConfigurationException 
+	{
+		// Leave the semantic classification to the indexing threads, if so configured
+		if (PublicationIndexer.getInstance().isAsynchronous())
+			return publishServiceAdvertisementForIndexing(authToken, adv, serviceName);
+		
+		// Get the category bag, which will shortly include subsumption indexing information
+		CategoryBag categoryBag = adv.getServiceCategoryBag();
+		
+		// Read the modelReference annotations from the categoryBag
+		SemanticProfileAnnotationCollection annotations = readAnnotations(categoryBag, serviceName);
+		
+		// Create a matchmaker that will construct an AFP class, store it in 
+		// the ontology, and classify it against all RFPs contained in it
+		PublicationTimeMatchmaker matchmaker = new PublicationTimeMatchmaker();
+		
+		// The UDDI server assigns the service key only when the service is 
+		// saved, so the AFP is classified under a provisional key until then
+		String provisionalKey = PublicationTimeMatchmaker.createProvisionalAFPKey();
+		
+		// Get the URIs of all RFPs that the AFP can match 
+		// (i.e. get all requests that can be readily satisfied by the new advertisement)
+		SemanticProfileURICollection matchingRFPs = null;
+		try
+		{
+			matchingRFPs = matchmaker.createAFPAndGetMatchingRFPs(
+					srkbOntologyPhysicalURI, 
+					annotations, 
+					provisionalKey);
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			if (e.getMessage() == null || e.getMessage().length() == 0)
+				throw new SemanticRegistryMatchmakingException("Problem occured during the semantic classification of the advertisement");
+			else
+				throw new SemanticRegistryMatchmakingException(e.getMessage());
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			if (e.getMessage() == null || e.getMessage().length() == 0)
+				throw new SemanticRegistryConfigurationException("Problem occured during the semantic classification of the advertisement");
+			else
+				throw new SemanticRegistryConfigurationException(e.getMessage());
+		}
+		
+		// Create and add a keyedReference to the category bag 
+		// for every RFP that subsumes the AFP
+		if (matchingRFPs != null)
+		{
+			Vector<KeyedReference> keyedRefVector = categoryBag.getKeyedReferenceVector();
+			List<String> superClassURIs = matchingRFPs.getProfileURIs();
+			for (int i = 0; i < superClassURIs.size(); i++)
+			{
+				keyedRefVector.add(generateKeyedReference(INDEXING_TMODEL_KEY, superClassURIs.get(i)));
+			}
+			categoryBag.setKeyedReferenceVector(keyedRefVector);
+		}
+		
+		// Create a vector for the businessService entities to be published
+		Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
+		
+		// Create a new businessService entity
+		BusinessService businessService = new BusinessService();
+		
+		// Set the business key of the service provider
+		businessService.setBusinessKey(adv.getServiceProviderUUID());
+		
+		// Set default businessService name
+		businessService.setDefaultNameString(adv.getServiceName(), "en");
+		
+		// Set default businessService description
+		businessService.setDefaultDescriptionString(adv.getServiceFreeTextDescription());
+		
+		// Add the categoryBag, complete with the subsumption indexing information
+		businessService.setCategoryBag(categoryBag);
+		
+		// Add the businessService to the vector
+		businessServiceVector.addElement(businessService);
+		
+		// Save the service and retrieve a serviceDetail message
+		String serviceKey = null;
+		try
+		{
+			ServiceDetail serviceDetail = saveServices(authToken, businessServiceVector);
+			
+			// Get the key of the first (and logically only) business service 
+			// entity from the returned serviceDetail object
+			BusinessService returnedBusinessService = (BusinessService) serviceDetail.getBusinessServiceVector().elementAt(0);
+			serviceKey = returnedBusinessService.getServiceKey();
+		}
+		finally
+		{
+			// Give the AFP the key of the saved service, or
+			// withdraw it if the service could not be saved
+			List<SemanticProfileAnnotationCollection> annotationsList = new ArrayList<SemanticProfileAnnotationCollection>();
+			List<String> provisionalKeys = new ArrayList<String>();
+			List<String> serviceKeys = new ArrayList<String>();
+			annotationsList.add(annotations);
+			provisionalKeys.add(provisionalKey);
+			serviceKeys.add((serviceKey == null) ? null : serviceKey.replace("uuid:", ""));
+			renameProvisionalAFPs(authToken, annotationsList, provisionalKeys, serviceKeys);
+		}
+		
+		// Drop the cached discovery results, which may no longer hold
+		DiscoveryResultCache.getInstance().invalidate();
+		
+		// Return the service key
+		return serviceKey;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Saves a validated service advertisement in the UDDI server as it is, and
+	 * hands it over to the {@link PublicationIndexer}, which adds its AFP to
+	 * the SRKB ontology and its subsumption indexing information to the
+	 * advertisement in the background. The indexing information is saved with
+	 * the given authentication token, so the publication session must last
+	 * until the indexing has finished.
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param adv
+	 * @param serviceName
+	 * @return the key of the saved businessService
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private String publishServiceAdvertisementForIndexing(
+			final String authToken,
+			UDDIServiceAdvertisement adv,
+			String serviceName)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		// Get the category bag, to which subsumption indexing information will be added later
+		CategoryBag categoryBag = adv.getServiceCategoryBag();
+		
+		// Read the modelReference annotations from the categoryBag
+		final SemanticProfileAnnotationCollection annotations = readAnnotations(categoryBag, serviceName);
+		
+		// Create a vector for the businessService entities to be published
+		Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
+		
+		// Create a new businessService entity
+		BusinessService businessService = new BusinessService();
+		businessService.setBusinessKey(adv.getServiceProviderUUID());
+		businessService.setDefaultNameString(adv.getServiceName(), "en");
+		businessService.setDefaultDescriptionString(adv.getServiceFreeTextDescription());
+		businessService.setCategoryBag(categoryBag);
+		businessServiceVector.addElement(businessService);
+		
+		// Save the service and get the key of the first (and logically only) 
+		// business service entity from the returned serviceDetail object
+		ServiceDetail serviceDetail = saveServices(authToken, businessServiceVector);
+		BusinessService returnedBusinessService = (BusinessService) serviceDetail.getBusinessServiceVector().elementAt(0);
+		final String serviceKey = returnedBusinessService.getServiceKey();
+		
+		// Index the service in the background
+		PublicationIndexer.getInstance().submit(serviceKey, authToken, new Callable<Object>()
+		{
+			public Object call() throws Exception
+			{
+				indexServiceAdvertisement(authToken, annotations, serviceKey);
+				return null;
+			}
+		});
+		
+		// Return the service key
+		return serviceKey;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Adds the AFP of a saved service advertisement to the SRKB ontology, and
+	 * adds the subsumption indexing information of the RFPs that the AFP
+	 * matches to the advertisement, through an IndexingReferenceWriter. The
+	 * writer reads the advertisement back from the UDDI server and only adds
+	 * the indexing keyedReferences to it, so that changes made to the
+	 * advertisement since it was published are kept. The AFP is removed if the
+	 * service has been removed in the meantime, or if the advertisement could
+	 * not be updated.
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param annotations
+	 * @param serviceKey the key of the saved businessService
+	 * @throws Exception
+	 */
+	private void indexServiceAdvertisement(
+			String authToken,
+			SemanticProfileAnnotationCollection annotations,
+			String serviceKey)
+	
+	throws Exception
+	{
+		String afpClassName = serviceKey.replace("uuid:", "");
+		
+		// Get the URIs of all RFPs that the AFP can match 
+		SemanticProfileURICollection matchingRFPs = new PublicationTimeMatchmaker().createAFPAndGetMatchingRFPs(
+				srkbOntologyPhysicalURI, 
+				annotations, 
+				afpClassName);
+		
+		// A service removed while it was being classified must not leave its AFP behind
+		if (!PublicationIndexer.getInstance().isPending(serviceKey))
+		{
+			deleteAFP(afpClassName, srkbOntologyPhysicalURI);
+			return;
+		}
+		
+		// No point in updating the advertisement if 
+		// there is no subsumption-indexing information to add to it
+		if (matchingRFPs != null)
+		{
+			// Record a keyedReference for every RFP that subsumes the AFP
+			IndexingReferenceWriter writer = new IndexingReferenceWriter(inquiryURL, publishURL, INDEXING_TMODEL_KEY);
+			List<String> superClassURIs = matchingRFPs.getProfileURIs();
+			for (int i = 0; i < superClassURIs.size(); i++)
+			{
+				writer.addReference(afpClassName, superClassURIs.get(i));
+			}
+			
+			try
+			{
+				// The writer uses proxies of its own, as indexing threads outlive the request
+				writer.write(authToken);
+				if (writer.getUpdatedServiceUUIDs().isEmpty() && writer.getUnchangedCount() == 0)
+				{
+					System.out.println("SemanticRegistryException occured!");
+					throw new SemanticRegistryException("The advertisement of service " + serviceKey + " could not be updated with its subsumption indexing information");
+				}
+			}
+			catch (Exception e)
+			{
+				deleteAFP(afpClassName, srkbOntologyPhysicalURI);
+				throw e;
+			}
+		}
+		
+		// Drop the cached discovery results, which may no longer hold
+		DiscoveryResultCache.getInstance().invalidate();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Hands the services that were pending indexing when the registry stopped
+	 * over to the PublicationIndexer again. Their journal is kept next to the
+	 * SRKB ontology document (if it is a local file), and is only read once,
+	 * while the registry is initialized.
+	 */
+	private void resumePendingIndexing()
+	{
+		if (!"file".equalsIgnoreCase(srkbOntologyPhysicalURI.getScheme()))
+			return;
+		
+		File srkbFile = new File(srkbOntologyPhysicalURI);
+		Map<String, String> pendingServices = PublicationIndexer.getInstance().recover(
+				new File(srkbFile.getParentFile(), srkbFile.getName() + ".indexing"));
+		
+		for (Map.Entry<String, String> pendingService : pendingServices.entrySet())
+		{
+			final String serviceKey = pendingService.getKey();
+			final String authToken = pendingService.getValue();
+			PublicationIndexer.getInstance().submit(serviceKey, authToken, new Callable<Object>()
+			{
+				public Object call() throws Exception
+				{
+					reindexServiceAdvertisement(authToken, serviceKey);
+					return null;
+				}
+			});
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Indexes a service that was pending indexing when the registry stopped.
+	 * Its advertisement is read back from the UDDI server for its annotations,
+	 * the AFP it may have been given before the registry stopped is removed,
+	 * and it is then indexed as if it had just been published. A service
+	 * that no longer exists is withdrawn. If the authentication token it was
+	 * published with has expired, its indexing fails, which its indexing
+	 * status reports.
+	 * 
+	 * @param authToken the (prefixed) authentication token the service was published with
+	 * @param serviceKey the key of the service
+	 * @throws Exception
+	 */
+	private void reindexServiceAdvertisement(
+			String authToken,
+			String serviceKey)
+	
+	throws Exception
+	{
+		BusinessService businessService = null;
+		try
+		{
+			Vector businessServices = getThreadProxy().get_serviceDetail(serviceKey).getBusinessServiceVector();
+			if (!businessServices.isEmpty())
+				businessService = (BusinessService) businessServices.elementAt(0);
+		}
+		catch (UDDIException e)
+		{
+			// The key does not match any service
+		}
+		catch (TransportException e)
+		{
+			System.out.println("SemanticRegistryCommunicationException occured!");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
+		}
+		
+		if (businessService == null)
+		{
+			System.out.println("Service " + serviceKey + " no longer exists -it will not be indexed-");
+			PublicationIndexer.getInstance().withdraw(serviceKey);
+			return;
+		}
+		
+		// Read the modelReference annotations from the categoryBag
+		CategoryBag categoryBag = businessService.getCategoryBag();
+		if (categoryBag == null)
+			categoryBag = new CategoryBag();
+		SemanticProfileAnnotationCollection annotations = readAnnotations(categoryBag, businessService.getDefaultNameString());
+		
+		// Remove the AFP the service was given before the registry stopped, if any
+		String afpClassName = serviceKey.replace("uuid:", "");
+		if (containsAFP(afpClassName))
+			deleteAFP(afpClassName, srkbOntologyPhysicalURI);
+		
+		indexServiceAdvertisement(authToken, annotations, serviceKey);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * @param afpClassName the name of the AFP class
+	 * @return whether the SRKB ontology refers to an AFP class with the given name
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private boolean containsAFP(String afpClassName)
+	
+	throws SemanticRegistryMatchmakingException
+	{
+		SemanticRegistryKnowledgeBaseView view = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI).openView();
+		try
+		{
+			OWLOntology srkbOntology = view.getSRKBOntology();
+			OWLClass afpClass = view.getDataFactory().getOWLClass(URI.create(srkbOntology.getURI() + "#" + afpClassName));
+			return srkbOntology.getReferencedClasses().contains(afpClass);
+		}
+		finally
+		{
+			view.close();
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Renames the AFPs that were classified under provisional keys after the
+	 * keys of their saved services, and removes those of services that were
+	 * not saved. If the renaming fails, it is tried once more. If it fails
+	 * again, the saved services are deleted from the UDDI server (their keys
+	 * are set to null in serviceKeys), as they could never be discovered
+	 * without their AFPs, and the failure is thrown. The provisional AFPs
+	 * are then removed, or, if that fails too, swept away by the next
+	 * process that loads the SRKB. A failure is only reported if no service
+	 * was saved.
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param annotationsList
+	 * @param provisionalKeys
+	 * @param serviceKeys the key of each service (without the "uuid:" prefix), or null if it was not saved
+	 * @throws SemanticRegistryMatchmakingException if the AFPs of the saved
+	 *             services could not be renamed
+	 */
+	private void renameProvisionalAFPs(
+			String authToken,
+			List<SemanticProfileAnnotationCollection> annotationsList,
+			List<String> provisionalKeys,
+			List<String> serviceKeys)
+	
+	throws SemanticRegistryMatchmakingException
+	{
+		PublicationTimeMatchmaker matchmaker = new PublicationTimeMatchmaker();
+		String errorMessage = null;
+		for (int attempt = 0; attempt < 2; attempt++)
+		{
+			try
+			{
+				matchmaker.renameAFPs(srkbOntologyPhysicalURI, annotationsList, provisionalKeys, serviceKeys);
+				return;
+			}
+			catch (SemanticRegistryMatchmakingException e)
+			{
+				errorMessage = e.getMessage();
+				System.out.println("SemanticRegistryMatchmakingException occured while renaming provisional AFPs: " + errorMessage);
+			}
+			catch (SemanticRegistryConfigurationException e)
+			{
+				errorMessage = e.getMessage();
+				System.out.println("SemanticRegistryConfigurationException occured while renaming provisional AFPs: " + errorMessage);
+			}
+		}
+		
+		// Delete the saved services, which could never be discovered without their AFPs
+		List<String> savedKeys = new ArrayList<String>();
+		for (String serviceKey : serviceKeys)
+		{
+			if (serviceKey != null)
+				savedKeys.add(serviceKey);
+		}
+		List<String> deletedKeys = new ArrayList<String>();
+		List<String> unknownKeys = Collections.synchronizedList(new ArrayList<String>());
+		if (savedKeys.size() > 0)
+		{
+			try
+			{
+				deleteInBatches(authToken, savedKeys, false, deletedKeys, unknownKeys);
+			}
+			catch (SemanticRegistryException e)
+			{
+				System.out.println("SemanticRegistryException occured while deleting the services whose AFPs could not be renamed: " + e.getMessage());
+			}
+			catch (SemanticRegistryAuthException e)
+			{
+				System.out.println("SemanticRegistryAuthException occured while deleting the services whose AFPs could not be renamed: " + e.getMessage());
+			}
+			catch (SemanticRegistryCommunicationException e)
+			{
+				System.out.println("SemanticRegistryCommunicationException occured while deleting the services whose AFPs could not be renamed: " + e.getMessage());
+			}
+			catch (SemanticRegistryMalformedInputException e)
+			{
+				System.out.println("SemanticRegistryMalformedInputException occured while deleting the services whose AFPs could not be renamed: " + e.getMessage());
+			}
+		}
+		
+		// Remove the provisional AFPs of all services
+		List<String> noServiceKeys = new ArrayList<String>();
+		for (int i = 0; i < serviceKeys.size(); i++)
+		{
+			if (serviceKeys.get(i) != null && (deletedKeys.contains(serviceKeys.get(i)) || unknownKeys.contains(serviceKeys.get(i))))
+				serviceKeys.set(i, null);
+			noServiceKeys.add(null);
+		}
+		try
+		{
+			matchmaker.renameAFPs(srkbOntologyPhysicalURI, annotationsList, provisionalKeys, noServiceKeys);
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			System.out.println("The provisional AFPs could not be removed -they will be swept away when the SRKB is next loaded-");
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			System.out.println("The provisional AFPs could not be removed -they will be swept away when the SRKB is next loaded-");
+		}
+		
+		if (savedKeys.isEmpty())
+			return;
+		
+		System.out.println("SemanticRegistryMatchmakingException occured!");
+		savedKeys.removeAll(deletedKeys);
+		savedKeys.removeAll(unknownKeys);
+		if (savedKeys.isEmpty())
+			throw new SemanticRegistryMatchmakingException(
+					"The AFPs of the saved services could not be added to the SRKB ontology (" + errorMessage + "), so the services were removed from the UDDI server");
+		else
+			throw new SemanticRegistryMatchmakingException(
+					"The AFPs of the saved services could not be added to the SRKB ontology (" + errorMessage + "), and the following services could not be removed from the UDDI server: " + savedKeys);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Finishes the work left over by an earlier process: removes the AFPs
+	 * left under provisional keys, and hands the services that were pending
+	 * indexing over to the PublicationIndexer again. Called once by
+	 * {@link RegistryConfiguration#initialize()}, and again on the next
+	 * initialization for as long as the sweep fails.
+	 * 
+	 * @return true if the SRKB has been swept
+	 */
+	boolean recoverUnfinishedWork()
+	{
+		// Hand the services that were pending indexing when the registry stopped over again
+		resumePendingIndexing();
+		
+		// Remove the AFPs left under provisional keys by publications that did not finish
+		return sweepProvisionalAFPs();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Removes the AFPs left under provisional keys in the SRKB ontology by
+	 * publications that did not finish (e.g. because the process stopped
+	 * before their AFPs were renamed). This is done once per process, while
+	 * the registry is initialized, which loads the SRKB for it; handlers wait
+	 * for it to finish before they are created. The SRKB only counts as swept
+	 * once no provisional AFPs are left in it, so after a failure (which is
+	 * only reported) the next initialization tries again.
+	 * 
+	 * @return true if the SRKB has been swept
+	 */
+	private boolean sweepProvisionalAFPs()
+	{
+		synchronized (sweptSRKBOntologies)
+		{
+			if (sweptSRKBOntologies.contains(srkbOntologyPhysicalURI))
+				return true;
+			
+			boolean swept = false;
+			try
+			{
+				List<String> provisionalAFPClassNames = getProvisionalAFPClassNames();
+				if (provisionalAFPClassNames.size() > 0)
+				{
+					System.out.println(removeAFPs(provisionalAFPClassNames) + " provisional AFPs swept away from the SRKB ontology");
+					
+					// Make sure that the change went through before the sweep is taken as done
+					provisionalAFPClassNames = getProvisionalAFPClassNames();
+					if (provisionalAFPClassNames.size() > 0)
+						System.out.println(provisionalAFPClassNames.size() + " provisional AFPs are still in the SRKB ontology -they will be swept again-");
+				}
+				swept = provisionalAFPClassNames.isEmpty();
+			}
+			catch (SemanticRegistryMatchmakingException e)
+			{
+				System.out.println("SemanticRegistryMatchmakingException occured while sweeping provisional AFPs: " + e.getMessage());
+			}
+			catch (SemanticRegistryConfigurationException e)
+			{
+				System.out.println("SemanticRegistryConfigurationException occured while sweeping provisional AFPs: " + e.getMessage());
+			}
+			finally
+			{
+				// Anything short of a finished sweep (including an unexpected error) leaves the SRKB to be swept again
+				if (swept)
+					sweptSRKBOntologies.add(srkbOntologyPhysicalURI);
+			}
+			return swept;
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * @return the names of the AFP classes under provisional keys in the
+	 * current version of the SRKB ontology
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private List<String> getProvisionalAFPClassNames()
+	
+	throws SemanticRegistryMatchmakingException
+	{
+		List<String> provisionalAFPClassNames = new ArrayList<String>();
+		SemanticRegistryKnowledgeBaseView view = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI).openView();
+		try
+		{
+			for (OWLClass referencedClass : view.getSRKBOntology().getReferencedClasses())
+			{
+				if (PublicationTimeMatchmaker.isProvisionalAFP(referencedClass))
+					provisionalAFPClassNames.add(referencedClass.getURI().getFragment());
+			}
+		}
+		finally
+		{
+			view.close();
+		}
+		return provisionalAFPClassNames;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Reads the category, input and output modelReference annotations of a
+	 * service from the keyedReferences in its categoryBag
+	 * 
+	 * @param categoryBag
+	 * @param serviceName
+	 * @return
+	 */
+	private SemanticProfileAnnotationCollection readAnnotations(
+			CategoryBag categoryBag,
+			String serviceName)
+	{
+		// Get the keyedReferences vector
+		Vector<KeyedReference> keyedRefVector = categoryBag.getKeyedReferenceVector();
+		
+		// Create lists to hold the modelReference annotations that will be read from the categoryBag
+		List<String> functionalModelReferenceAnnotations = new ArrayList<String>();
+		List<String> inputModelReferenceAnnotations = new ArrayList<String>();
+		List<String> outputModelReferenceAnnotations = new ArrayList<String>();
+		
+		// Populate the lists
+		if (keyedRefVector != null)
+		{
+			int vectorSize = keyedRefVector.size();
+			if (vectorSize > 0)
+			{
+				// For every KeyedReference
+				for (int i = 0; i < vectorSize; i++)
+				{
+					KeyedReference keyedRef = (KeyedReference) keyedRefVector.elementAt(i);
+					String tModelKey = keyedRef.getTModelKey();
+					int tModelKeyId = dictionary.getId(tModelKey);
+
+					if (tModelKeyId == CATEGORY_TMODEL_KEY_ID)
+					{
+						functionalModelReferenceAnnotations.add(keyedRef.getKeyValue());
+					}
+					else if (tModelKeyId == INPUT_TMODEL_KEY_ID)
+					{
+						inputModelReferenceAnnotations.add(keyedRef.getKeyValue());
+					}
+					else if (tModelKeyId == OUTPUT_TMODEL_KEY_ID)
+					{
+						outputModelReferenceAnnotations.add(keyedRef.getKeyValue());
+					}
+				}
+			}
+		}				
+		
+		// Create an object to group all useful information
+		SemanticProfileAnnotationCollection annotations = new SemanticProfileAnnotationCollection(
+				serviceName,
+				functionalModelReferenceAnnotations,
+				inputModelReferenceAnnotations, 
+				outputModelReferenceAnnotations);
+		
+		return annotations;
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Calls the UDDI server's save_service function for the given
+	 * businessService elements, translating any error it reports. The
+	 * save_service function is atomic, so if any of the elements is rejected
+	 * none of them is saved.
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param businessServiceVector
+	 * @return the serviceDetail listing the saved businessService elements in the order given
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private ServiceDetail saveServices(
+			String authToken,
+			Vector<BusinessService> businessServiceVector)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		return saveServices(proxy, authToken, businessServiceVector);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Calls the UDDI server's save_service function through the given proxy
+	 * 
+	 * @param uddiProxy
+	 * @param authToken the (prefixed) authentication token
+	 * @param businessServiceVector
+	 * @return the serviceDetail listing the saved businessService elements in the order given
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private ServiceDetail saveServices(
+			UDDIProxy uddiProxy,
+			String authToken,
+			Vector<BusinessService> businessServiceVector)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		// Create a ServiceDetail to store the outcome of the save_service call
+		ServiceDetail serviceDetail = null;
+		
+		try
+		{
+			// Save the service and retrieve a serviceDetail message
+			serviceDetail = uddiProxy.save_service(authToken, businessServiceVector);
+		}
+		catch (UDDIException e)
+		{
+			DispositionReport dr = e.getDispositionReport();
+			if (dr != null)
+			{
+				Vector results = dr.getResultVector();
+				for (int i = 0; i < results.size(); i++)
+				{
+					Result r = (Result) results.elementAt(i);
+					System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
+					
+					if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
+					{
+						System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
+						throw new SemanticRegistryAuthException("The authentication token is invalid");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
+					{
+						System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
+						throw new SemanticRegistryAuthException("The authentication token has timed out");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
+					{
+						System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
+						throw new SemanticRegistryException("One or more UUID keys do not match any known values");
+					}
+					throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
+				}
+			}
+			else
+			{
+				System.out.println(
+						"The UDDI server reported an internal error but did not provide a Disposition Report " +
+						"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
+						"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
+						"value exceeding max character length), in a failure to communicate with the UDDI server, " +
+						"or in a failure to communicate with the database that the UDDI server relies on.");
+				throw new SemanticRegistryCommunicationException(
+						"The UDDI server reported an internal error but did not provide a Disposition Report " +
+						"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
+						"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
+						"value exceeding max character length), in a failure to communicate with the UDDI server, " +
+						"or in a failure to communicate with the database that the UDDI server relies on.");
+			}
+		}
+		catch (TransportException e)
+		{
+			System.out.println("TransportException occured!");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
+		}
+		catch (Exception e)
+		{
+			System.out.println("SemanticRegistryException occured!");
+			throw new SemanticRegistryException("An exception occured for unspecified reasons");
+		}
+		
+		return serviceDetail;
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Publishes a batch of service advertisements in the UDDI server, each one
+	 * created by parsing the SAWSDL document of the service. This has the same
+	 * effect as calling addService once for every service, but the service
+	 * descriptions are validated in parallel, the businessService elements are
+	 * saved with batched save_service calls, and the AFPs of all services are
+	 * added to the SRKB ontology and classified together. The outcome for
+	 * every service (its new UUID key, or the reason it was not published) is
+	 * set on its ServicePublication, so one malformed service description does
+	 * not cause the rest to be rejected. At most MAX_PUBLICATIONS service
+	 * descriptions are accepted in one batch.
+	 * 
+	 * @param authToken
+	 * @param publications
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryException
+	 * @throws SemanticRegistryConfigurationException 
+	 */
+	public void addServices(
+			String authToken,
+			List<ServicePublication> publications)
+	
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryMatchmakingException, 
+			SemanticRegistryException, SemanticRegistryConfigurationException 
+	{
+		publishServices(authToken, publications, true);
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Publishes a batch of service advertisements in the UDDI server, each one
+	 * created from the annotations given for the service instead of parsing
+	 * its SAWSDL document. See addServices for how the batch is processed.
+	 * 
+	 * @param authToken
+	 * @param publications
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryException
+	 * @throws SemanticRegistryConfigurationException 
+	 */
+	public void addServicesWithoutSAWSDL(
+			String authToken,
+			List<ServicePublication> publications)
+	
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryMatchmakingException, 
+			SemanticRegistryException, SemanticRegistryConfigurationException 
+	{
+		publishServices(authToken, publications, false);
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Validates a batch of service descriptions in parallel, adds the AFPs of
+	 * the valid ones to the SRKB ontology in a single change, and saves them
+	 * in the UDDI server once, along with their subsumption indexing
+	 * information. Only a malformed authentication token or a failure
+	 * that affects every service (e.g. of communication with the UDDI server,
+	 * or of the classification of the SRKB) is thrown; any other failure is
+	 * set on the ServicePublication concerned.
+	 * 
+	 * @param authToken
+	 * @param publications
+	 * @param parseSAWSDL whether the annotations are read from the SAWSDL documents
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryException
+	 * @throws SemanticRegistryConfigurationException 
+	 */
+	private void publishServices(
+			String authToken,
+			List<ServicePublication> publications,
+			final boolean parseSAWSDL)
+	
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryMatchmakingException, 
+			SemanticRegistryException, SemanticRegistryConfigurationException 
+	{
+		// Remove leading and trailing whitespaces from values to be used as keys
+		if (authToken != null) authToken = authToken.trim();
+		
+		if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
+		{
+			System.out.println("SemanticRegistryMalformedInputException occured!");
+			throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
+		}
+		if (publications == null || publications.size() == 0)
+		{
+			System.out.println("SemanticRegistryMalformedInputException occured!");
+			throw new SemanticRegistryMalformedInputException("No service descriptions have been provided");
+		}
+		if (publications.size() > MAX_PUBLICATIONS)
+		{
+			System.out.println("SemanticRegistryMalformedInputException occured!");
+			throw new SemanticRegistryMalformedInputException("At most " + MAX_PUBLICATIONS + " service descriptions can be provided in a single request");
+		}
+		
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+		
+		
+		
+		
+		
+		// //////////////////////
+		// VALIDATE THE SERVICE DESCRIPTIONS IN PARALLEL
+		// //////////////////////
+		
+		// Each validation waits on the UDDI server (and on the retrieval 
+		// of a SAWSDL document), so they are run side by side, each one
+		// through the proxy of the thread running it
+		final String unprefixedAuthToken = authToken;
+		List<Future<UDDIServiceAdvertisement>> futures = new ArrayList<Future<UDDIServiceAdvertisement>>(publications.size());
+		for (final ServicePublication publication : publications)
+		{
+			futures.add(getValidator().submit(new Callable<UDDIServiceAdvertisement>()
+			{
+				public UDDIServiceAdvertisement call() throws Exception
+				{
+					if (parseSAWSDL)
+						return prepareServiceAdvertisement(
+								getThreadProxy(),
+								unprefixedAuthToken,
+								publication.getServiceSAWSDLURL(),
+								publication.getServiceProviderUUID(),
+								publication.getServiceName(),
+								publication.getServiceFreeTextDescription());
+					else
+						return prepareServiceAdvertisementWithoutSAWSDL(
+								getThreadProxy(),
+								unprefixedAuthToken,
+								publication.getServiceSAWSDLURL(),
+								publication.getServiceProviderUUID(),
+								publication.getServiceName(),
+								publication.getServiceFreeTextDescription(),
+								publication.getHasCategoryAnnotationURI(),
+								publication.getHasInputAnnotationURIArray(),
+								publication.getHasOutputAnnotationURIArray());
+				}
+			}));
+		}
+		
+		// Create lists for the valid service descriptions and their businessService entities
+		List<ServicePublication> validPublications = new ArrayList<ServicePublication>();
+		List<BusinessService> businessServices = new ArrayList<BusinessService>();
+		
+		for (int i = 0; i < publications.size(); i++)
+		{
+			ServicePublication publication = publications.get(i);
+			try
+			{
+				publication.setAdvertisement(futures.get(i).get());
+			}
+			catch (ExecutionException e)
+			{
+				String message = e.getCause().getMessage();
+				if (message == null || message.length() == 0)
+					message = "An exception occured for unspecified reasons";
+				publication.setErrorMessage(message);
+				continue;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				System.out.println("SemanticRegistryException occured!");
+				throw new SemanticRegistryException("Interrupted while validating the service descriptions");
+			}
+			
+			// Create a new businessService entity for the advertisement
+			UDDIServiceAdvertisement adv = publication.getAdvertisement();
+			BusinessService businessService = new BusinessService();
+			businessService.setBusinessKey(adv.getServiceProviderUUID());
+			businessService.setDefaultNameString(adv.getServiceName(), "en");
+			businessService.setDefaultDescriptionString(adv.getServiceFreeTextDescription());
+			businessService.setCategoryBag(adv.getServiceCategoryBag());
+			
+			validPublications.add(publication);
+			businessServices.add(businessService);
+		}
+		
+		//The authToken key has been asserted to be valid, but should also have the proper prefix
+		if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
+		
+		
+		
+		
+		
+		// //////////////////////
+		// CLASSIFY ALL AFPs TOGETHER UNDER PROVISIONAL KEYS
+		// //////////////////////
+		
+		// The UDDI server assigns the service keys only when the services are 
+		// saved, so the AFPs are classified under provisional keys until then
+		List<SemanticProfileAnnotationCollection> annotationsList = new ArrayList<SemanticProfileAnnotationCollection>();
+		List<String> provisionalKeys = new ArrayList<String>();
+		for (int i = 0; i < validPublications.size(); i++)
+		{
+			UDDIServiceAdvertisement adv = validPublications.get(i).getAdvertisement();
+			annotationsList.add(readAnnotations(adv.getServiceCategoryBag(), adv.getServiceName()));
+			provisionalKeys.add(PublicationTimeMatchmaker.createProvisionalAFPKey());
+		}
+		
+		// Construct the AFPs of all valid advertisements, store them in the 
+		// ontology, and classify them against all RFPs contained in it at once
+		PublicationTimeMatchmaker matchmaker = new PublicationTimeMatchmaker();
+		List<String> matchmakingErrors = new ArrayList<String>();
+		List<SemanticProfileURICollection> matchingRFPsList = new ArrayList<SemanticProfileURICollection>();
+		if (validPublications.size() > 0)
+		{
+			matchingRFPsList = matchmaker.createAFPsAndGetMatchingRFPs(
+					srkbOntologyPhysicalURI, 
+					annotationsList, 
+					provisionalKeys,
+					matchmakingErrors);
+		}
+		
+		// Add a keyedReference for every RFP that subsumes the AFP of each advertisement
+		List<ServicePublication> classifiedPublications = new ArrayList<ServicePublication>();
+		List<BusinessService> classifiedBusinessServices = new ArrayList<BusinessService>();
+		for (int i = 0; i < validPublications.size(); i++)
+		{
+			ServicePublication publication = validPublications.get(i);
+			if (matchmakingErrors.get(i) != null)
+			{
+				publication.setErrorMessage("The semantic classification of the service failed: " + matchmakingErrors.get(i));
+				continue;
+			}
+			
+			BusinessService businessService = businessServices.get(i);
+			SemanticProfileURICollection matchingRFPs = matchingRFPsList.get(i);
+			if (matchingRFPs != null)
+			{
+				CategoryBag categoryBag = businessService.getCategoryBag();
+				Vector<KeyedReference> keyedRefVector = categoryBag.getKeyedReferenceVector();
+				List<String> superClassURIs = matchingRFPs.getProfileURIs();
+				for (int j = 0; j < superClassURIs.size(); j++)
+				{
+					keyedRefVector.add(generateKeyedReference(INDEXING_TMODEL_KEY, superClassURIs.get(j)));
+				}
+				categoryBag.setKeyedReferenceVector(keyedRefVector);
+			}
+			
+			classifiedPublications.add(publication);
+			classifiedBusinessServices.add(businessService);
+		}
+		
+		
+		
+		
+		
+		// //////////////////////
+		// SAVE THE INDEXED ADVERTISEMENTS IN BATCHES
+		// //////////////////////
+		
+		int savedCount = 0;
+		try
+		{
+			saveServicesInBatches(authToken, classifiedPublications, classifiedBusinessServices);
+		}
+		finally
+		{
+			// Give every AFP the key of its saved service, or
+			// withdraw it if the service could not be saved
+			List<String> serviceKeys = new ArrayList<String>();
+			for (int i = 0; i < validPublications.size(); i++)
+			{
+				ServicePublication publication = validPublications.get(i);
+				if (publication.getServiceUUID() == null)
+				{
+					serviceKeys.add(null);
+				}
+				else
+				{
+					serviceKeys.add(publication.getServiceUUID().replace("uuid:", ""));
+					savedCount++;
+				}
+			}
+			if (validPublications.size() > 0)
+			{
+				try
+				{
+					renameProvisionalAFPs(authToken, annotationsList, provisionalKeys, serviceKeys);
+				}
+				catch (SemanticRegistryMatchmakingException e)
+				{
+					// The services deleted again are no longer published
+					for (int i = 0; i < validPublications.size(); i++)
+					{
+						ServicePublication publication = validPublications.get(i);
+						if (publication.getServiceUUID() != null && serviceKeys.get(i) == null)
+						{
+							publication.setServiceUUID(null);
+							publication.setErrorMessage(e.getMessage());
+						}
+					}
+					throw e;
+				}
+			}
+		}
+		
+		// Drop the cached discovery results, which may no longer hold
+		if (savedCount > 0)
+			DiscoveryResultCache.getInstance().invalidate();
+		
+		chron.stop();
+		System.out.println(savedCount + " of " + publications.size() + " services published in " + chron);
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Saves the given businessService elements with one save_service call per
+	 * batch of SAVE_BATCH_SIZE elements, and sets the key of each saved
+	 * element on its ServicePublication. If a batch is rejected, its elements
+	 * are saved one at a time, so that only the ones at fault are left out
+	 * (with the reason set on their ServicePublication).
+	 * 
+	 * @param authToken the (prefixed) authentication token
+	 * @param publications
+	 * @param businessServices the businessService of each publication, in the same order
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private void saveServicesInBatches(
+			String authToken,
+			List<ServicePublication> publications,
+			List<BusinessService> businessServices)
+	
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException
+	{
+		for (int from = 0; from < businessServices.size(); from += SAVE_BATCH_SIZE)
+		{
+			int to = Math.min(from + SAVE_BATCH_SIZE, businessServices.size());
+			try
+			{
+				ServiceDetail serviceDetail = saveServices(authToken, new Vector<BusinessService>(businessServices.subList(from, to)));
+				
+				// The saved businessServices are returned in the order they were given
+				Vector returnedBusinessServiceVector = serviceDetail.getBusinessServiceVector();
+				for (int i = from; i < to; i++)
+				{
+					BusinessService returnedBusinessService = (BusinessService) returnedBusinessServiceVector.elementAt(i - from);
+					publications.get(i).setServiceUUID(returnedBusinessService.getServiceKey());
+				}
+			}
+			catch (SemanticRegistryException e)
+			{
+				// Save the businessServices of the batch one at a time
+				for (int i = from; i < to; i++)
+				{
+					Vector<BusinessService> businessServiceVector = new Vector<BusinessService>();
+					businessServiceVector.addElement(businessServices.get(i));
+					try
+					{
+						ServiceDetail serviceDetail = saveServices(authToken, businessServiceVector);
+						BusinessService returnedBusinessService = (BusinessService) serviceDetail.getBusinessServiceVector().elementAt(0);
+						publications.get(i).setServiceUUID(returnedBusinessService.getServiceKey());
+					}
+					catch (SemanticRegistryException e1)
+					{
+						publications.get(i).setErrorMessage(e1.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Returns the pool of threads that validates service descriptions,
+	 * creating it if necessary
+	 * 
+	 * @return
+	 */
+	private static synchronized ExecutorService getValidator()
+	{
+		if (validator == null)
+		{
+			validator = new ThreadPoolExecutor(
+					VALIDATION_THREADS, 
+					VALIDATION_THREADS, 
+					0L, TimeUnit.MILLISECONDS, 
+					new ArrayBlockingQueue<Runnable>(VALIDATION_QUEUE_CAPACITY), 
+					new ThreadFactory()
+					{
+						private final AtomicInteger number = new AtomicInteger();
 
-						// Copy the old category bag into a new one
-						CategoryBag newCategoryBag = oldCategoryBag;
-						
-						// Replace the old keyedReferences vector with the new (enriched) one
-						newCategoryBag.setKeyedReferenceVector(newKeyedRefVector);
-						
-						// Replace the old categoryBag with the new one (the rest of 
-						// the attributes in the businessService object should remain unchanged)
-						businessService.setCategoryBag(newCategoryBag);
-						
-						// Set the key equal to that of the previously saved service record, 
-						// or a new service record will be created
-						businessService.setServiceKey(serviceKey);
-						
-						// Empty the businessServiceVector (i.e. remove the old businessService object)
-						businessServiceVector.clear();
-						
-						// Add the old businessService again, which now contains the new categoryBag 
-						businessServiceVector.addElement(businessService);
-						
-						// Save the service
-						try
-						{	 
-							serviceDetail = proxy.save_service(authToken, businessServiceVector);
-						}
-						catch (UDDIException e)
-						{
-							DispositionReport dr = e.getDispositionReport();
-							if (dr != null)
-							{
-								Vector results = dr.getResultVector();
-								for (int i = 0; i < results.size(); i++)
-								{
-									Result r = (Result) results.elementAt(i);
-									System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
-									
-									if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
-									{
-										System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
-										throw new SemanticRegistryAuthException("The authentication token is invalid");
-									}
-									if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
-									{
-										System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
-										throw new SemanticRegistryAuthException("The authentication token has timed out");
-									}
-									if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
-									{
-										System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
-										throw new SemanticRegistryException("One or more UUID keys do not match any known values");
-									}
-									throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
-								}
-							}
-							else
-							{
-								System.out.println(
-										"The UDDI server reported an internal error but did not provide a Disposition Report " +
-										"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-										"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-										"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-										"or in a failure to communicate with the database that the UDDI server relies on.");
-								throw new SemanticRegistryCommunicationException(
-										"The UDDI server reported an internal error but did not provide a Disposition Report " +
-										"to explain its cause. The problem resulted while trying to invoke the 'save_service' " +
-										"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
-										"value exceeding max character length), in a failure to communicate with the UDDI server, " +
-										"or in a failure to communicate with the database that the UDDI server relies on.");
-							}
-						}
-						catch (TransportException e)
-						{
-							System.out.println("TransportException occured!");
-							throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
-						}
-						catch (Exception e)
+						public Thread newThread(Runnable runnable)
 						{
-							System.out.println("SemanticRegistryException occured!");
-							throw new SemanticRegistryException("An exception occured for unspecified reasons");
+							// Validation threads must not keep the container from shutting down
+							Thread thread = new Thread(runnable, "publication-validator-" + number.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
 						}
-					
-					}// end if (matchingRFPs != null)
-					
-					
-					// Return the service key
-					return serviceKey;
-					
-					
-				} // endif input is well-formed
-				else
-				{
-					System.out.println("SemanticRegistryMalformedInputException occured!");
-					if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
-						throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
-					if (!InputValidator.isURLWellFormedAndResolvable(serviceSAWSDLURL))
-						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceSAWSDLURL' is malformed");					
-					if (!InputValidator.isUUIDKeyWellFormed(serviceProviderUUID))
-						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceProviderUUID' is malformed");
-					if (!InputValidator.isTextParameterWellFormed(serviceName))
-						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceName' is malformed");
-					if (!InputValidator.isTextParameterWellFormed(serviceFreeTextDescription))
-						throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceFreeTextDescription' is malformed");
-					throw new SemanticRegistryMalformedInputException("One or more input parameter values are malformed");
-				}
+					},
+					// Slow the publishing threads down instead of queueing without limit
+					new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return validator;
 	}
+
 	
 	
 	
 	
 	
+	
+	
+	/**
+	 * Reports the indexing state of a service published in the asynchronous
+	 * indexing mode: pending, indexed, failed (along with the reason), or
+	 * unknown if the service has not been handed over for indexing since the
+	 * registry started. Before proceeding, the value of the provided input
+	 * parameter is validated.
+	 * 
+	 * @param serviceUUID
+	 * @return
+	 * @throws SemanticRegistryMalformedInputException
+	 */
+	public PublicationIndexer.IndexingStatus getServiceIndexingStatus(String serviceUUID)
+	
+	throws SemanticRegistryMalformedInputException
+	{
+		// Remove leading and trailing whitespaces from values to be used as keys
+		if (serviceUUID != null) serviceUUID = serviceUUID.trim();
+		
+		if (!InputValidator.isUUIDKeyWellFormed(serviceUUID))
+		{
+			System.out.println("SemanticRegistryMalformedInputException occured!");
+			throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceUUID' is malformed");
+		}
 		
+		return PublicationIndexer.getInstance().getStatus(serviceUUID);
+	}
+	
+	
+	
+	
+	
+	
 	
 	/**
 	 * Deletes a service advertisement (businessService element) from the UDDI
@@ -1961,6 +2870,12 @@ public class PublicationHandler
 					throw new SemanticRegistryException("An exception occured for unspecified reasons");
 				}
 				
+				// Drop the cached discovery results, which may no longer hold
+				DiscoveryResultCache.getInstance().invalidate();
+				
+				// Make sure a service that is still waiting to be indexed is not indexed
+				PublicationIndexer.getInstance().withdraw(serviceUUID);
+				
 				try
 				{
 					deleteAFP(serviceUUID, srkbOntologyPhysicalURI);
@@ -1994,29 +2909,506 @@ public class PublicationHandler
 				}
 				catch (Exception e)
 				{
-					if (e.getMessage() == null || e.getMessage().length() == 0)
-						throw new SemanticRegistryConfigurationException(
-								"The service was removed from the UDDI server, but an exception occured while trying to " +
-								"remove its corresponding AFP concept from the SRKB ontology (Exception)");
-					else
-						throw new SemanticRegistryConfigurationException(e.getMessage());
+					if (e.getMessage() == null || e.getMessage().length() == 0)
+						throw new SemanticRegistryConfigurationException(
+								"The service was removed from the UDDI server, but an exception occured while trying to " +
+								"remove its corresponding AFP concept from the SRKB ontology (Exception)");
+					else
+						throw new SemanticRegistryConfigurationException(e.getMessage());
+				}
+				
+				System.out.println("Advertisement " + serviceUUID + " removed successfully from the SRKB ontology");
+
+				// If all goes well
+				return true;
+
+			} // endif input is well-formed
+			else
+			{
+				System.out.println("SemanticRegistryMalformedInputException occured!");
+				if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
+					throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
+				if (!InputValidator.isUUIDKeyWellFormed(serviceUUID))
+					throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceUUID' is malformed");
+				throw new SemanticRegistryMalformedInputException("One or more input parameter values are malformed");
+			}
+	}
+	
+	
+	
+	
+	
+	
+			
+	/**
+	 * Deletes many service advertisements (businessService elements) from the
+	 * UDDI server, and the corresponding AFP concepts from the SRKB ontology.
+	 * This has the same effect as calling removeService once for every
+	 * service, but the services are deleted with batched delete_service calls
+	 * sent by a few threads side by side, and all AFPs are removed from the
+	 * SRKB ontology with a single change. Services that cannot be deleted
+	 * (e.g. because their keys are malformed) are skipped, along with their
+	 * AFPs. Services the UDDI server does not know are not counted, but any
+	 * AFP left behind for them is removed.
+	 * 
+	 * If a batch fails as a whole (e.g. because the UDDI server cannot be
+	 * reached, or does not respond in time), the AFPs of the services deleted
+	 * by the other batches are still removed before the failure is thrown.
+	 * The services of the failed batch may or may not have been deleted; if
+	 * they were, removing them again removes their AFPs.
+	 * 
+	 * @param authToken
+	 * @param serviceUUIDs
+	 * @return the number of services removed
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public int removeServices(
+			String authToken, 
+			List<String> serviceUUIDs)
+			
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException, SemanticRegistryConfigurationException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+		
+		// Delete the businessService elements from the UDDI server. If a 
+		// batch fails, the services deleted by the others must still lose 
+		// their AFPs before the failure is reported
+		List<String> removedUUIDs = new ArrayList<String>(serviceUUIDs.size());
+		List<String> unknownUUIDs = Collections.synchronizedList(new ArrayList<String>());
+		try
+		{
+			deleteInBatches(authToken, serviceUUIDs, false, removedUUIDs, unknownUUIDs);
+		}
+		catch (SemanticRegistryAuthException e)
+		{
+			removeAFPsAfterFailure(removedUUIDs, unknownUUIDs);
+			throw e;
+		}
+		catch (SemanticRegistryCommunicationException e)
+		{
+			removeAFPsAfterFailure(removedUUIDs, unknownUUIDs);
+			throw e;
+		}
+		catch (SemanticRegistryException e)
+		{
+			removeAFPsAfterFailure(removedUUIDs, unknownUUIDs);
+			throw e;
+		}
+		
+		// Remove the AFPs of the deleted services in a single change
+		removeAFPsOfDeletedServices(removedUUIDs, unknownUUIDs);
+		
+		chron.stop();
+		System.out.println(removedUUIDs.size() + " of " + serviceUUIDs.size() + " services removed in " + chron);
+		
+		return removedUUIDs.size();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Deletes many Service Provider records (businessEntity elements) from the
+	 * UDDI server, with batched delete_business calls sent by a few threads
+	 * side by side. As with removeServiceProvider, the services of the
+	 * providers are deleted by the UDDI server, but their AFPs are left in
+	 * the SRKB ontology, so the services should be removed first. Service
+	 * providers that cannot be deleted are skipped.
+	 * 
+	 * @param authToken
+	 * @param serviceProviderUUIDs
+	 * @return the number of service providers removed
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	public int removeServiceProviders(
+			String authToken, 
+			List<String> serviceProviderUUIDs)
+			
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+		
+		// Delete the businessEntity elements from the UDDI server
+		List<String> removedUUIDs = new ArrayList<String>(serviceProviderUUIDs.size());
+		try
+		{
+			deleteInBatches(authToken, serviceProviderUUIDs, true, removedUUIDs, new ArrayList<String>());
+		}
+		finally
+		{
+			// Drop the cached discovery results, which may no longer hold
+			// (even if only some of the service providers were deleted)
+			if (removedUUIDs.size() > 0)
+				DiscoveryResultCache.getInstance().invalidate();
+		}
+		
+		chron.stop();
+		System.out.println(removedUUIDs.size() + " of " + serviceProviderUUIDs.size() + " service providers removed in " + chron);
+		
+		return removedUUIDs.size();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Deletes businessService or businessEntity elements from the UDDI server
+	 * in batches of DELETE_BATCH_SIZE keys, sending the batches side by side
+	 * through the UDDIFanOutExecutor, each with a proxy of its own. If a batch
+	 * is rejected, its keys are deleted one at a time, so that only the ones
+	 * at fault are left out. If a batch fails as a whole, the keys deleted by
+	 * the other batches are collected before the failure is thrown.
+	 * 
+	 * @param authToken
+	 * @param keys
+	 * @param businesses true to delete businessEntity elements, false to delete businessService elements
+	 * @param deletedKeys the list the deleted keys are added to
+	 * @param unknownKeys the (synchronized) list the keys unknown to the UDDI server are added to
+	 * @throws SemanticRegistryMalformedInputException
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private void deleteInBatches(
+			String authToken, 
+			List<String> keys,
+			final boolean businesses,
+			List<String> deletedKeys,
+			final List<String> unknownKeys)
+			
+	throws SemanticRegistryMalformedInputException,
+			SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		// Remove leading and trailing whitespaces from values to be used as keys
+		if (authToken != null) authToken = authToken.trim();
+		
+		if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
+		{
+			System.out.println("SemanticRegistryMalformedInputException occured!");
+			throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
+		}
+		
+		//The authToken key has been asserted to be valid, but should also have the proper prefix
+		if (authToken.length() == 36) authToken = "authToken:".concat(authToken);
+		final String prefixedAuthToken = authToken;
+		
+		// Leave out the malformed keys
+		List<String> wellFormedKeys = new ArrayList<String>(keys.size());
+		for (String key : keys)
+		{
+			if (key != null && InputValidator.isUUIDKeyWellFormed(key.trim()))
+				wellFormedKeys.add(key.trim());
+			else
+				System.out.println("Skipping malformed UUID key: " + key);
+		}
+		
+		// Send the batches side by side, each call talking to the UDDI server through its own proxy
+		Map<String, Callable<List<String>>> calls = new LinkedHashMap<String, Callable<List<String>>>();
+		for (int from = 0; from < wellFormedKeys.size(); from += DELETE_BATCH_SIZE)
+		{
+			final Vector<String> batch = new Vector<String>(
+					wellFormedKeys.subList(from, Math.min(from + DELETE_BATCH_SIZE, wellFormedKeys.size())));
+			calls.put(batch.firstElement(), new Callable<List<String>>()
+			{
+				public List<String> call() throws Exception
+				{
+					return deleteBatch(getThreadProxy(), prefixedAuthToken, batch, businesses, unknownKeys);
+				}
+			});
+		}
+		
+		// Collect the keys deleted by every batch before reporting a failure
+		UDDIFanOutExecutor.Outcome<List<String>> failedOutcome = null;
+		for (UDDIFanOutExecutor.Outcome<List<String>> outcome : UDDIFanOutExecutor.getInstance().invokeAll(calls).values())
+		{
+			if (outcome.isSuccessful())
+				deletedKeys.addAll(outcome.getResult());
+			else if (failedOutcome == null)
+				failedOutcome = outcome;
+		}
+		System.out.println(deletedKeys.size() + " of " + wellFormedKeys.size() + (businesses ? " service providers" : " services") + " deleted");
+		
+		// Failures that concern a whole batch stop the removal
+		if (failedOutcome != null)
+			failedOutcome.rethrowFailure();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Deletes a batch of businessService or businessEntity elements from the
+	 * UDDI server with one call, or one at a time if the batch is rejected.
+	 * 
+	 * @param uddiProxy
+	 * @param authToken the (prefixed) authentication token
+	 * @param keys
+	 * @param businesses true to delete businessEntity elements, false to delete businessService elements
+	 * @param unknownKeys the (synchronized) list the keys unknown to the UDDI server are added to
+	 * @return the keys that were deleted
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private List<String> deleteBatch(
+			UDDIProxy uddiProxy,
+			String authToken, 
+			Vector<String> keys,
+			boolean businesses,
+			List<String> unknownKeys)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException
+	{
+		try
+		{
+			if (deleteEntities(uddiProxy, authToken, keys, businesses))
+				return new ArrayList<String>(keys);
+		}
+		catch (SemanticRegistryException e)
+		{
+			System.out.println("The batch starting with UUID " + keys.firstElement() + " was rejected (" + e.getMessage() + ")");
+		}
+		
+		// Delete the elements of the batch one at a time
+		List<String> deletedKeys = new ArrayList<String>(keys.size());
+		for (String key : keys)
+		{
+			Vector<String> singleKey = new Vector<String>();
+			singleKey.addElement(key);
+			try
+			{
+				if (deleteEntities(uddiProxy, authToken, singleKey, businesses))
+				{
+					deletedKeys.add(key);
+				}
+				else
+				{
+					System.out.println("Problem removing " + (businesses ? "service provider" : "service") + " with UUID: " + key + " (the UDDI server does not know it)");
+					unknownKeys.add(key);
+				}
+			}
+			catch (SemanticRegistryException e1)
+			{
+				System.out.println("Problem removing " + (businesses ? "service provider" : "service") + " with UUID: " + key + " (" + e1.getMessage() + ")");
+			}
+		}
+		return deletedKeys;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Calls the UDDI server's delete_service or delete_business function for
+	 * the given keys, translating the errors it reports.
+	 * 
+	 * @param uddiProxy
+	 * @param authToken the (prefixed) authentication token
+	 * @param keys
+	 * @param businesses true to call delete_business, false to call delete_service
+	 * @return false if the UDDI server does not know one or more of the keys
+	 * (in which case none of them is deleted)
+	 * @throws SemanticRegistryAuthException
+	 * @throws SemanticRegistryCommunicationException
+	 * @throws SemanticRegistryException
+	 */
+	private boolean deleteEntities(
+			UDDIProxy uddiProxy,
+			String authToken, 
+			Vector<String> keys,
+			boolean businesses)
+			
+	throws SemanticRegistryAuthException,
+			SemanticRegistryCommunicationException, 
+			SemanticRegistryException
+	{
+		String operation = businesses ? "delete_business" : "delete_service";
+		try
+		{
+			if (businesses)
+				uddiProxy.delete_business(authToken, keys);
+			else
+				uddiProxy.delete_service(authToken, keys);
+			return true;
+		}
+		catch (UDDIException e)
+		{
+			DispositionReport dr = e.getDispositionReport();
+			if (dr != null)
+			{
+				Vector results = dr.getResultVector();
+				for (int i = 0; i < results.size(); i++)
+				{
+					Result r = (Result) results.elementAt(i);
+					System.out.println("The UDDI server raised an exception with error number: " + r.getErrno());
+					
+					if (r.getErrInfo().getErrCode().equals("E_authTokenRequired"))
+					{
+						System.out.println("E_authTokenRequired: (10120) The authentication token is invalid");
+						throw new SemanticRegistryAuthException("The authentication token is invalid");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_authTokenExpired"))
+					{
+						System.out.println("E_invalidKeyPassed: (10110) The authentication token has timed out");
+						throw new SemanticRegistryAuthException("The authentication token has timed out");
+					}
+					if (r.getErrInfo().getErrCode().equals("E_invalidKeyPassed"))
+					{
+						System.out.println("E_invalidKeyPassed: (10210) The uuid_key did not match any known key values");
+						return false;
+					}
+					throw new SemanticRegistryException("UDDI exception with error number: " + r.getErrno());
 				}
-				
-				System.out.println("Advertisement " + serviceUUID + " removed successfully from the SRKB ontology");
-
-				// If all goes well
-				return true;
-
-			} // endif input is well-formed
-			else
+			}
+			System.out.println(
+					"The UDDI server reported an internal error but did not provide a Disposition Report " +
+					"to explain its cause. The problem resulted while trying to invoke the '" + operation + "' " +
+					"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
+					"value exceeding max character length), in a failure to communicate with the UDDI server, " +
+					"or in a failure to communicate with the database that the UDDI server relies on.");
+			throw new SemanticRegistryCommunicationException(
+					"The UDDI server reported an internal error but did not provide a Disposition Report " +
+					"to explain its cause. The problem resulted while trying to invoke the '" + operation + "' " +
+					"operation, and the cause of the problem may be in the data provided (e.g. some parameter " +
+					"value exceeding max character length), in a failure to communicate with the UDDI server, " +
+					"or in a failure to communicate with the database that the UDDI server relies on.");
+		}
+		catch (TransportException e)
+		{
+			System.out.println("TransportException occured!");
+			throw new SemanticRegistryCommunicationException("Problem communicating with the UDDI server");
+		}
+		catch (Exception e)
+		{
+			System.out.println("SemanticRegistryException occured!");
+			throw new SemanticRegistryException("An exception occured for unspecified reasons");
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Returns the proxy of the calling thread for the UDDI server of this
+	 * handler, for threads that must not share the proxy of the handler.
+	 * 
+	 * @return
+	 * @throws SemanticRegistryCommunicationException
+	 */
+	private UDDIProxy getThreadProxy()
+	
+	throws SemanticRegistryCommunicationException
+	{
+		try
+		{
+			return UDDIProxyPool.getInstance().getProxy(inquiryURL, publishURL);
+		}
+		catch (MalformedURLException e)
+		{
+			System.out.println("SemanticRegistryCommunicationException occured!");
+			throw new SemanticRegistryCommunicationException("The URLs of the UDDI server are malformed");
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Removes the AFPs of services that have been deleted from the UDDI
+	 * server (or that the UDDI server does not know) in a single change,
+	 * making sure that those still waiting to be indexed are not indexed.
+	 * 
+	 * @param deletedUUIDs
+	 * @param unknownUUIDs
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private void removeAFPsOfDeletedServices(List<String> deletedUUIDs, List<String> unknownUUIDs)
+	
+	throws SemanticRegistryConfigurationException
+	{
+		// Drop the cached discovery results, which may no longer hold
+		if (deletedUUIDs.size() > 0)
+			DiscoveryResultCache.getInstance().invalidate();
+		
+		List<String> afpClassNames = new ArrayList<String>(deletedUUIDs.size() + unknownUUIDs.size());
+		for (String serviceUUID : deletedUUIDs)
+		{
+			PublicationIndexer.getInstance().withdraw(serviceUUID);
+			afpClassNames.add(serviceUUID.replace("uuid:", ""));
+		}
+		synchronized (unknownUUIDs)
+		{
+			for (String serviceUUID : unknownUUIDs)
 			{
-				System.out.println("SemanticRegistryMalformedInputException occured!");
-				if (!InputValidator.isAuthenticationTokenWellFormed(authToken))
-					throw new SemanticRegistryMalformedInputException("Input parameter value 'authToken' is malformed");
-				if (!InputValidator.isUUIDKeyWellFormed(serviceUUID))
-					throw new SemanticRegistryMalformedInputException("Input parameter value 'serviceUUID' is malformed");
-				throw new SemanticRegistryMalformedInputException("One or more input parameter values are malformed");
+				PublicationIndexer.getInstance().withdraw(serviceUUID);
+				afpClassNames.add(serviceUUID.replace("uuid:", ""));
 			}
+		}
+		removeAFPs(afpClassNames);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Removes the AFPs of the services deleted before a removal failed,
+	 * reporting (instead of throwing) any problem in doing so, so that the
+	 * failure of the removal is the one thrown.
+	 * 
+	 * @param deletedUUIDs
+	 * @param unknownUUIDs
+	 */
+	private void removeAFPsAfterFailure(List<String> deletedUUIDs, List<String> unknownUUIDs)
+	{
+		System.out.println(deletedUUIDs.size() + " services were deleted before the removal failed; removing their AFPs");
+		try
+		{
+			removeAFPsOfDeletedServices(deletedUUIDs, unknownUUIDs);
+		}
+		catch (SemanticRegistryConfigurationException e)
+		{
+			System.out.println("The AFPs of the services deleted before the failure could not be removed (" + e.getMessage() + ")");
+		}
 	}
 	
 	
@@ -2024,7 +3416,77 @@ public class PublicationHandler
 	
 	
 	
+	
+	/**
+	 * Removes the AFPs with the given names, along with their InputDataSet and
+	 * OutputDataSet classes, from the SRKB ontology with a single change. AFPs
+	 * that do not exist in the SRKB ontology are ignored.
+	 * 
+	 * @param afpClassNames
+	 * @return the number of AFPs removed
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private int removeAFPs(List<String> afpClassNames)
+	
+	throws SemanticRegistryConfigurationException
+	{
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
+		
+		// Open a view of the SRKB to find the axioms that refer to the classes to be removed
+		Set<OWLAxiom> axiomsToRemove = new HashSet<OWLAxiom>();
+		int removed = 0;
+		SemanticRegistryKnowledgeBaseView view = kb.openView();
+		try
+		{
+			OWLDataFactory factory = view.getDataFactory();
+			OWLOntology srkbOntology = view.getSRKBOntology();
+			URI srkbLogicalURI = srkbOntology.getURI();
+			URI functionalFacetOntologyLogicalURI = OntologyRoleResolver.getInstance().getFunctionalFacetOntology(view.getImportsClosure(), factory).getURI();
+			OWLClass inputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#InputDataSet"));
+			OWLClass outputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#OutputDataSet"));
+			AssertedHierarchy srkbHierarchy = view.getAssertedHierarchy(srkbOntology);
 			
+			for (String afpClassName : afpClassNames)
+			{
+				OWLClass afpClass = factory.getOWLClass(URI.create(srkbLogicalURI + "#" + afpClassName));
+				if (srkbOntology.getReferencingAxioms(afpClass).isEmpty())
+					continue;
+				collectAFPAxioms(factory, srkbOntology, srkbHierarchy, afpClass, inputDataSetRootClass, outputDataSetRootClass, axiomsToRemove);
+				removed++;
+			}
+		}
+		finally
+		{
+			view.close();
+		}
+		
+		if (axiomsToRemove.isEmpty())
+			return 0;
+		
+		// Remove the axioms from the SRKB ontology, store the updated 
+		// ontology back to the file, and reclassify it
+		try
+		{
+			kb.applyChanges(new HashSet<OWLAxiom>(), axiomsToRemove);
+			System.out.println(removed + " AFPs removed successfully from the ontology");
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			System.out.println("SemanticRegistryConfigurationException occured!");
+			throw new SemanticRegistryConfigurationException(
+					"The services were removed from the UDDI server, but an exception occured while trying to " +
+					"remove their corresponding AFP concepts from the SRKB ontology");
+		}
+		return removed;
+	}
+	
+	
+	
+	
+	
+	
+	
 	/**
 	 * Modifies a service advertisement. In UDDI, a service is represented as a
 	 * businessService element. Before proceeding, the values of all provided
@@ -2204,6 +3666,9 @@ public class PublicationHandler
 				throw new SemanticRegistryException("An exception occured for unspecified reasons");
 			}
 			
+			// Drop the cached discovery results, which may no longer hold
+			DiscoveryResultCache.getInstance().invalidate();
+			
 			// If all goes well
 			return true;
 
@@ -2798,11 +4263,12 @@ public class PublicationHandler
 	
 	
 	/**
-	 * Loads the specified ontology file and removes the following named OWL
-	 * classes: (i) the OWLClass of the AFP, (ii) the OWLClass of the
-	 * InputDataSet with which the AFP is associated, and (iii), the OWLClass of
-	 * the OutputDataSet with which the AFP is associated. The ontology is saved
-	 * back in its original format (e.g. RDF/XML or OWL/XML). 
+	 * Removes the following named OWL classes from the SRKB ontology, through
+	 * the process-wide knowledge base: (i) the OWLClass of the AFP, (ii) the
+	 * OWLClass of the InputDataSet with which the AFP is associated, and
+	 * (iii), the OWLClass of the OutputDataSet with which the AFP is
+	 * associated. The ontology is saved back in its original format (e.g.
+	 * RDF/XML or OWL/XML) and reclassified.
 	 * 
 	 * @param afpClassName the name of the AFP class to remove
 	 * @param targetOntologyPhysicalURI the URI
@@ -2829,43 +4295,79 @@ public class PublicationHandler
 	{
 		
 		// //////////////////////
-		// LOAD THE SEMANTIC REGISTRY KB ONTOLOGY
+		// OBTAIN THE CLASSIFIED SEMANTIC REGISTRY KB
 		// //////////////////////
 		
-		// Load the SRKB ontology
-		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
-
-		// Load the SRKB ontology from its physical URI (OWL file)
-		OWLOntology srkbOntology = null;
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
+		
+		// Open a view of the SRKB to find the axioms that refer to the classes to be removed
+		Set<OWLAxiom> axiomsToRemove = null;
+		SemanticRegistryKnowledgeBaseView view = kb.openView();
+		try
+		{
+			axiomsToRemove = getAFPAxioms(view, afpClassName);
+		}
+		finally
+		{
+			view.close();
+		}
+		
+		// Remove the axioms from the SRKB ontology, store the updated 
+		// ontology back to the file, and reclassify it
 		try
 		{
-			srkbOntology = manager.loadOntologyFromPhysicalURI(srkbOntologyPhysicalURI);
-			System.out.println("SRKB ontology loaded from " + srkbOntologyPhysicalURI);
+			kb.applyChanges(new HashSet<OWLAxiom>(), axiomsToRemove);
+			System.out.println("AFP (" + afpClassName + ") removed successfully from the ontology");
 		}
-		catch (OWLOntologyCreationException e1)
+		catch (SemanticRegistryMatchmakingException e)
 		{
-			System.out.println("OWLOntologyCreationException: " + e1.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the SRKB Ontology from its physical URI (" + srkbOntologyPhysicalURI + ")");
+			throw new OWLOntologyStorageException("Problem saving the updated ontology (" + targetOntologyPhysicalURI + ")");
 		}
 
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Collects the axioms of the SRKB ontology that refer to the following
+	 * named OWL classes: (i) the OWLClass of the AFP, (ii) the OWLClass of the
+	 * InputDataSet with which the AFP is associated, and (iii), the OWLClass of
+	 * the OutputDataSet with which the AFP is associated.
+	 * 
+	 * @param view a view of the SRKB
+	 * @param afpClassName the name of the AFP class
+	 * @return
+	 * @throws SemanticRegistryConfigurationException
+	 * @throws Exception if an AFP with the provided name does not exist in the
+	 *             SRKB ontology
+	 */
+	private Set<OWLAxiom> getAFPAxioms(
+		SemanticRegistryKnowledgeBaseView view,
+		String afpClassName)
+	
+		throws 
+		SemanticRegistryConfigurationException, 
+		Exception 
+	{
+		// Create a set to hold all axioms that refer to the classes to be removed
+		Set<OWLAxiom> axiomsToRemove = new HashSet<OWLAxiom>();
+		
 		// Get the ontology's data factory to create the various objects
-		OWLDataFactory factory = manager.getOWLDataFactory();
-
-		// Get the SemanticRegistryKB ontology's logical URI
+		OWLDataFactory factory = view.getDataFactory();
+		
+		// Get the SRKB ontology and its logical URI
+		OWLOntology srkbOntology = view.getSRKBOntology();
 		URI srkbLogicalURI = srkbOntology.getURI();
 		
-		// Obtain and load the imports closure of the semRegKBontology
-        Set<OWLOntology> importsClosure = manager.getImportsClosure(srkbOntology);
-        
-		System.out.println("Ontologies contained in the SRKB ontology's import closure:");
-		for (OWLOntology ont : importsClosure)
-		{
-			System.out.println(ont.getURI());
-		}
+		// Get the imports closure of the SRKB ontology
+        Set<OWLOntology> importsClosure = view.getImportsClosure();
         
-        URI taxonomyOntologyLogicalURI = getDefiningOntology("#TaxonomyEntity", importsClosure, factory).getURI();
-		URI dataFacetOntologyLogicalURI = getDefiningOntology("#DataFacetEntity", importsClosure, factory).getURI();
-		URI functionalFacetOntologyLogicalURI = getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory).getURI();
+		URI functionalFacetOntologyLogicalURI = OntologyRoleResolver.getInstance().getFunctionalFacetOntology(importsClosure, factory).getURI();
 		
 		// Create a reference to an object representing the class of the
 		// AFP, using the provided class name
@@ -2877,11 +4379,58 @@ public class PublicationHandler
 		if (!srkbOntology.getReferencedClasses().contains(afpClass)) 
 			throw new Exception("The specified ontology does not contain any reference to an AFP with the provided name");
 		
-		// Create an entity remover that will be asked to visit: 
+		// The axioms referring to the AFP class and to its data set classes will be removed
+		System.out.println("Removing " + afpClass + " and its data set classes");
+		
+		// Create a reference to an object representing the InputDataSet class
+		OWLClass inputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#InputDataSet"));
+		
+		// Create a reference to an object representing the OutputDataSet class
+		OWLClass outputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#OutputDataSet"));
+		
+		// Get the asserted subclass relations of the SRKB ontology
+		AssertedHierarchy srkbHierarchy = view.getAssertedHierarchy(srkbOntology);
+		
+		collectAFPAxioms(factory, srkbOntology, srkbHierarchy, afpClass, inputDataSetRootClass, outputDataSetRootClass, axiomsToRemove);
+		
+		// Return the axioms to be removed
+		return axiomsToRemove;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Adds to the given set the axioms of the SRKB ontology that refer to the
+	 * following named OWL classes: (i) the OWLClass of the AFP, (ii) the
+	 * OWLClass of the InputDataSet with which the AFP is associated, and
+	 * (iii), the OWLClass of the OutputDataSet with which the AFP is
+	 * associated.
+	 * 
+	 * @param factory
+	 * @param srkbOntology
+	 * @param srkbHierarchy the asserted subclass relations of the SRKB ontology
+	 * @param afpClass
+	 * @param inputDataSetRootClass
+	 * @param outputDataSetRootClass
+	 * @param axiomsToRemove
+	 */
+	private void collectAFPAxioms(
+		OWLDataFactory factory,
+		OWLOntology srkbOntology,
+		AssertedHierarchy srkbHierarchy,
+		OWLClass afpClass,
+		OWLClass inputDataSetRootClass,
+		OWLClass outputDataSetRootClass,
+		Set<OWLAxiom> axiomsToRemove)
+	{
+		// The axioms referring to the following classes will be collected:
 		// 1. the OWLClass of the AFP 
 		// 2. the OWLClass of the InputDataSet with which the AFP is associated
 		// 3. the OWLClass of the OutputDataSet with which the AFP is associated
-		OWLEntityRemover remover = new OWLEntityRemover(manager, Collections.singleton(srkbOntology));
 				
 		// Create a collector to pick up all named classes
 		// referenced within the equivalent class axiom of the AFP
@@ -2932,12 +4481,6 @@ public class PublicationHandler
 		// We will need to convert each retrieved OWLEntity to an OWLClass
 		OWLClass fillerCls = null;
 		
-		// Create a reference to an object representing the InputDataSet class
-		OWLClass inputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#InputDataSet"));
-		
-		// Create a reference to an object representing the OutputDataSet class
-		OWLClass outputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#OutputDataSet"));
-		
 		// Determine the property corresponding to each of the three
 		// fillers, by checking if a filler is an asserted subclass of
 		// 1) inputDataSetRootClass, 2) outputDataSetRootClass,
@@ -2946,158 +4489,19 @@ public class PublicationHandler
 		{
 			fillerCls = factory.getOWLClass(filler.getURI().normalize());
 			// If the fillerCls is an asserted subclass of #InputDataSet in the given ontology...
-			if (inputDataSetRootClass.getSubClasses(srkbOntology).contains((OWLDescription)fillerCls))
+			if (srkbHierarchy.isAssertedSubClassOf(fillerCls, inputDataSetRootClass))
 			{
-				System.out.println("Removing " + fillerCls + " (" + afpClass + " hasInput " + filler.getURI().normalize() + ")" );
-				fillerCls.accept(remover);
+				axiomsToRemove.addAll(srkbOntology.getReferencingAxioms(fillerCls));
 			}
 			// If the fillerCls is an asserted subclass of #OutputDataSet in the given ontology...			
-			if (outputDataSetRootClass.getSubClasses(srkbOntology).contains((OWLDescription)fillerCls))
+			if (srkbHierarchy.isAssertedSubClassOf(fillerCls, outputDataSetRootClass))
 			{
-				System.out.println("Removing " + fillerCls + " (" + afpClass + " hasOutput " + filler.getURI().normalize() + ")" );
-				fillerCls.accept(remover);
+				axiomsToRemove.addAll(srkbOntology.getReferencingAxioms(fillerCls));
 			}
 		}
 	
-		// Finally, ask the AFP class to also accept a visit from the entity remover
-		System.out.println("Removing " + afpClass);
-		afpClass.accept(remover);
-
-		// Get the changes necessary to remove the class from the ontology
-		manager.applyChanges(remover.getChanges());
-
-		// Store the updated ontology back to the file
-		try
-		{
-			manager.saveOntology(srkbOntology);
-			System.out.println("AFP (" + afpClassName + ") removed successfully from the ontology");
-		}
-		catch (UnknownOWLOntologyException e)
-		{
-			throw new Exception("Problem removing AFP (" + afpClassName + ") from the ontology file (" + targetOntologyPhysicalURI + ")");
-		}
-		catch (OWLOntologyStorageException e)
-		{
-			throw new OWLOntologyStorageException("Problem saving the updated ontology (" + targetOntologyPhysicalURI + ")");
-		}
-
-	}
-	
-	
-	
-	
-	
-	
-	
-	/**
-	 * @param targetClassName
-	 * @param importsClosure
-	 * @param factory
-	 * @return
-	 * @throws SemanticRegistryConfigurationException
-	 */
-	private static OWLOntology getDefiningOntology(
-			String targetClassName, 
-			Set<OWLOntology> importsClosure, 
-			OWLDataFactory factory) 
-	
-	throws SemanticRegistryConfigurationException
-	{
-		// Determine which of the ontologies imported by the SRKB 
-		// ontology (directly or indirectly) is the ontology in which 
-		// the targetClassName is defined, and retrieve its logical URI
-		System.out.println("Scanning for " + targetClassName + " in the import closure of the SRKB ontology:");
-		
-		OWLClass tmpClass = null; 
-		OWLOntology returnedOntology = null;
-		
-		// Create a map to store search result tuples (ontology logical URI, number of subclasses detected)
-		Map<OWLOntology, Integer> ontologySearchResults = new HashMap<OWLOntology, Integer>();
-		
-		URI targetClassURI = URI.create(targetClassName);
-		
-		// Iterate over every ontology in the imports closure and check  
-		// if it contains any asserted subclasses of targetClassName
-		for (OWLOntology ont : importsClosure)
-		{
-			if (targetClassURI.isAbsolute())
-			{
-				tmpClass = factory.getOWLClass(targetClassURI);
-			}
-			else
-			{
-				tmpClass = factory.getOWLClass(URI.create(ont.getURI() + targetClassName));
-			}
-			
-			//System.out.println("Looking for subclasses of " + tmpClass.getURI() + " in " + ont.getURI());
-			Set<OWLDescription> foundSubClasses = tmpClass.getSubClasses(ont);
-			
-			// The containsEntityDeclaration method offers the best technique for 
-			// the specific purpose but cannot be used as it is still not implemented 
-			// in the latest binary release of the OWL-API (v2.1.1 - 16th August 2007)
-			//if (ont.containsEntityDeclaration(target)) 
-			//System.out.println("A declaration for concept " + tmpClass.getURI() + " was found in " + ont.getURI());
-			
-			// Since a concept with the specified name (targetClassName) may be defined in more 
-			// than one ontologies in the closure, judging which is the correct ontology that we 
-			// are after can only be based on a heuristic (the number of concepts in the ontology 
-			// that are defined as asserted subclasses of the target class - the more the better)
-			
-			// If at least one asserted subclass of the target class has been found
-			if (foundSubClasses.size() > 0)
-			{				
-				// Add it to the search results map
-				ontologySearchResults.put(ont, foundSubClasses.size());
-			}
-		}
-		
-		// If none of the ontologies in the import closure of the SRKB contains a 
-		// subclass of the target class, there is a configuration problem
-		if (ontologySearchResults.size() == 0)
-		{
-			throw new SemanticRegistryConfigurationException(
-					"Configuration problem detected: None of the ontologies in the import closure " +
-					"of the SRKB ontology contains subclasses of the " + targetClassName + " concept. " +
-					"Make sure that the SRKB ontology imports (directly or indirectly) some ontology " +
-					"in which a " + targetClassName + " concept as well as several subclass concepts are defined.");
-		}
-		
-		// Standard case: only one ontology from the SRKB's imports closure 
-		// contains asserted subclasses of the target concept 
-		if (ontologySearchResults.size() == 1)
-		{
-			returnedOntology = ontologySearchResults.keySet().iterator().next();
-			//int subclasses = ontologySearchResults.get(targetOntologyLogicalURI);
-			//System.out.println("FOUND " + subclasses + " subclasses of #TaxonomyEntity in " + taxonomyOntologyLogicalURI);
-		}
-		
-		// Exceptional case: more than one ontology from the SRKB's imports closure 
-		// contain asserted subclasses of the target class. Therefore Judging which 
-		// is the correct ontology can only be based on a heuristic (we choose the number of 
-		// is the correct asserted subclasses that were detected - the more being the better) 
-		if (ontologySearchResults.size() > 1)
-		{
-			int maxSubClassesFound = 0 ;
-			OWLOntology ontContainingMaxSubClasses = null;
-		    
-			// Get the keys (URIs) and values (number of subclasses) for every entry in the map
-		    for (Iterator it = ontologySearchResults.entrySet().iterator(); it.hasNext(); ) 
-		    {
-		        Map.Entry entry = (Map.Entry)it.next();
-		        OWLOntology onto = (OWLOntology) entry.getKey();
-		        Integer numOfSubclasses = (Integer) entry.getValue();
-		        
-		        if (numOfSubclasses.intValue() > maxSubClassesFound)
-		        {
-		        	maxSubClassesFound = numOfSubclasses.intValue();
-		        	ontContainingMaxSubClasses = onto;
-		        }
-		    }
-		    returnedOntology = ontContainingMaxSubClasses;
-		}
-		
-		System.out.println("Subclasses of the " + tmpClass + " concept are defined in " + returnedOntology.getURI());
-		return returnedOntology;
+		// Finally, collect the axioms referring to the AFP class itself
+		axiomsToRemove.addAll(srkbOntology.getReferencingAxioms(afpClass));
 	}
 	
 	
@@ -0,0 +1,913 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indexes services published in the asynchronous indexing mode in the
+ * background. In this mode, publishing a service returns as soon as its
+ * advertisement has been saved in the UDDI server, and the creation and
+ * classification of its AFP, as well as the addition of the subsumption
+ * indexing information to its advertisement, are left to a bounded pool of
+ * indexing threads. The state of every service that has been handed over
+ * (pending, indexed or failed) is kept so that publishers can poll it, along
+ * with the number of services waiting to be indexed and the time the oldest
+ * of them has been waiting.
+ *
+ * When the queue of the indexing threads is full, a service is indexed by the
+ * thread that publishes it, as in the synchronous mode.
+ *
+ * Every service handed over, along with the authentication token it was
+ * published with, and the outcome of its indexing are recorded in a journal
+ * (kept next to the SRKB ontology document) and forced to disk, so that the
+ * services still pending when the process stops are handed over again when
+ * the registry starts, and the failures are not forgotten. The journal is
+ * rewritten with the pending and the failed services only when the registry
+ * starts, and whenever it has grown past MAX_JOURNAL_RECORDS records.
+ *
+ * The mode can be set through the optional publication_indexing_mode property
+ * of the registry.properties file ("synchronous", the default, or
+ * "asynchronous"), and the pool through the optional indexing_threads and
+ * indexing_queue_capacity properties.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class PublicationIndexer
+{
+	// The state of a service that is waiting to be indexed
+	public static final String PENDING = "pending";
+
+	// The state of a service that has been indexed
+	public static final String INDEXED = "indexed";
+
+	// The state of a service whose indexing failed
+	public static final String FAILED = "failed";
+
+	// The state of a service that has not been handed over for indexing
+	public static final String UNKNOWN = "unknown";
+
+	// The process-wide indexer
+	private static final PublicationIndexer instance = new PublicationIndexer();
+
+	// The default number of indexing threads
+	static final int DEFAULT_THREADS = 1;
+
+	// The default number of services that may wait for an indexing thread
+	static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	// The number of services whose state is kept
+	static final int MAX_STATUSES = 10000;
+
+	// The number of records after which the journal is rewritten
+	static final int MAX_JOURNAL_RECORDS = 10000;
+
+	// Whether services are indexed after their publication has returned
+	boolean asynchronous = false;
+
+	// The number of indexing threads
+	int threads = DEFAULT_THREADS;
+
+	// The number of services that may wait for an indexing thread
+	int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	// The pool of indexing threads, created when it is first needed
+	ThreadPoolExecutor executor;
+
+	// The state of the services handed over for indexing, by service key, least recently handed over first
+	Map<String, IndexingStatus> statuses;
+
+	// The time at which each pending service was handed over, by service key, oldest first
+	Map<String, Long> pendingSince = new LinkedHashMap<String, Long>();
+
+	// The number of services indexed
+	long indexed = 0;
+
+	// The number of services whose indexing failed
+	long failed = 0;
+
+	// The authentication token each pending service was published with, by service key
+	Map<String, String> authTokens = new HashMap<String, String>();
+
+	// The file recording the services handed over and their outcome, or null until the journal is opened
+	File journalFile;
+
+	// The open journal file, or null if nothing is recorded
+	RandomAccessFile journal;
+
+	// The length of the complete records in the journal, in bytes
+	long journalLength = 0;
+
+	// The number of records in the journal
+	int journalRecords = 0;
+
+
+
+
+
+
+
+	/**
+	 * The indexing state of a service
+	 *
+	 * @author Dimitrios Kourtesis
+	 *
+	 */
+	public static class IndexingStatus
+	{
+		// One of PENDING, INDEXED, FAILED or UNKNOWN
+		String state;
+
+		// The reason the indexing failed, if it did
+		String errorMessage;
+
+		// The time at which the service was handed over for indexing
+		long submitted;
+
+		// The time at which the indexing finished, or 0 if it has not
+		long finished;
+
+
+
+
+
+
+
+		IndexingStatus(String state, String errorMessage, long submitted, long finished)
+		{
+			this.state = state;
+			this.errorMessage = errorMessage;
+			this.submitted = submitted;
+			this.finished = finished;
+		}
+
+
+
+
+
+
+
+		/**
+		 * @return one of PENDING, INDEXED, FAILED or UNKNOWN
+		 */
+		public String getState()
+		{
+			return state;
+		}
+
+
+
+
+
+
+
+		/**
+		 * @return the reason the indexing failed, or null
+		 */
+		public String getErrorMessage()
+		{
+			return errorMessage;
+		}
+
+
+
+
+
+
+
+		/**
+		 * @return the time at which the service was handed over for indexing
+		 */
+		public long getSubmitted()
+		{
+			return submitted;
+		}
+
+
+
+
+
+
+
+		/**
+		 * @return the time at which the indexing finished, or 0 if it has not
+		 */
+		public long getFinished()
+		{
+			return finished;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Creates an indexer with no services.
+	 */
+	PublicationIndexer()
+	{
+		// Keep the states in the order the services were handed over, forgetting the eldest when full
+		statuses = new LinkedHashMap<String, IndexingStatus>()
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, IndexingStatus> eldest)
+			{
+				return size() > MAX_STATUSES && !PENDING.equals(eldest.getValue().state);
+			}
+		};
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the process-wide indexer
+	 */
+	public static PublicationIndexer getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the indexing mode and the size of the pool of indexing threads from
+	 * the given properties, if they are present.
+	 *
+	 * @param properties
+	 */
+	public void configure(Properties properties)
+	{
+		String mode = properties.getProperty("publication_indexing_mode");
+		if (mode != null)
+		{
+			if (mode.trim().equalsIgnoreCase("asynchronous"))
+				setAsynchronous(true);
+			else if (mode.trim().equalsIgnoreCase("synchronous"))
+				setAsynchronous(false);
+			else
+				System.out.println("Invalid publication_indexing_mode property in registry.properties -the default will be used-");
+		}
+
+		int threads = this.threads;
+		int queueCapacity = this.queueCapacity;
+
+		try
+		{
+			if (properties.getProperty("indexing_threads") != null)
+				threads = Integer.parseInt(properties.getProperty("indexing_threads").trim());
+			if (properties.getProperty("indexing_queue_capacity") != null)
+				queueCapacity = Integer.parseInt(properties.getProperty("indexing_queue_capacity").trim());
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid indexing_threads or indexing_queue_capacity property in registry.properties -the defaults will be used-");
+			return;
+		}
+
+		configure(threads, queueCapacity);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of indexing threads and the number of services that may
+	 * wait for one.
+	 *
+	 * @param threads
+	 * @param queueCapacity
+	 */
+	public synchronized void configure(int threads, int queueCapacity)
+	{
+		threads = Math.max(1, threads);
+		queueCapacity = Math.max(1, queueCapacity);
+
+		// Let the services already handed over be indexed by the old pool
+		if ((threads != this.threads || queueCapacity != this.queueCapacity) && executor != null)
+		{
+			executor.shutdown();
+			executor = null;
+		}
+
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param asynchronous whether services are indexed after their publication
+	 *            has returned
+	 */
+	public synchronized void setAsynchronous(boolean asynchronous)
+	{
+		this.asynchronous = asynchronous;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return whether services are indexed after their publication has
+	 *         returned
+	 */
+	public synchronized boolean isAsynchronous()
+	{
+		return asynchronous;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Hands a published service over for indexing, recording it in the
+	 * journal first. If no indexing thread can take it, the service is
+	 * indexed by the calling thread.
+	 *
+	 * @param serviceKey the key of the service
+	 * @param authToken the authentication token the service was published
+	 *            with, which the indexing needs if it is run again after a
+	 *            restart
+	 * @param indexing the indexing of the service
+	 */
+	public void submit(String serviceKey, String authToken, final Callable<?> indexing)
+	{
+		final String key = normalize(serviceKey);
+
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			statuses.remove(key);
+			statuses.put(key, new IndexingStatus(PENDING, null, now, 0));
+			pendingSince.remove(key);
+			pendingSince.put(key, now);
+			authTokens.put(key, authToken);
+			record("P", now, key, authToken);
+		}
+
+		Runnable task = new Runnable()
+		{
+			public void run()
+			{
+				index(key, indexing);
+			}
+		};
+
+		try
+		{
+			getExecutor().execute(task);
+		}
+		catch (RejectedExecutionException e)
+		{
+			System.out.println("The indexing queue is full -service " + key + " will be indexed by the publishing thread-");
+			task.run();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Indexes a service, unless it has been withdrawn, and records the outcome.
+	 *
+	 * @param key the normalised key of the service
+	 * @param indexing the indexing of the service
+	 */
+	void index(String key, Callable<?> indexing)
+	{
+		if (!isPending(key))
+			return;
+
+		String errorMessage = null;
+		try
+		{
+			indexing.call();
+		}
+		catch (Exception e)
+		{
+			errorMessage = e.getMessage();
+			if (errorMessage == null || errorMessage.length() == 0)
+				errorMessage = "An exception occured for unspecified reasons";
+			System.out.println(e.getClass().getSimpleName() + " occured while indexing service " + key + ": " + errorMessage);
+		}
+
+		synchronized (this)
+		{
+			// The service may have been withdrawn while it was being indexed
+			IndexingStatus status = statuses.get(key);
+			if (status == null || !PENDING.equals(status.state))
+				return;
+
+			long now = System.currentTimeMillis();
+			statuses.put(key, new IndexingStatus((errorMessage == null) ? INDEXED : FAILED, errorMessage, status.submitted, now));
+			pendingSince.remove(key);
+			authTokens.remove(key);
+			if (errorMessage == null)
+				record("I", now, key, null);
+			else
+				record("F", now, key, errorMessage);
+
+			if (errorMessage == null)
+				indexed++;
+			else
+				failed++;
+
+			System.out.println("Service " + key + " " + statuses.get(key).state + " " + (now - status.submitted) +
+					" ms after its publication (" + pendingSince.size() + " services pending)");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Forgets a service that has been removed, so that it is not indexed if it
+	 * is still pending.
+	 *
+	 * @param serviceKey the key of the service
+	 */
+	public synchronized void withdraw(String serviceKey)
+	{
+		String key = normalize(serviceKey);
+		if (statuses.remove(key) != null)
+			record("W", System.currentTimeMillis(), key, null);
+		pendingSince.remove(key);
+		authTokens.remove(key);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param serviceKey the key of the service
+	 * @return whether the service is waiting to be indexed, or being indexed
+	 */
+	public synchronized boolean isPending(String serviceKey)
+	{
+		return pendingSince.containsKey(normalize(serviceKey));
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param serviceKey the key of the service
+	 * @return the indexing state of the service, which is UNKNOWN if it has
+	 *         not been handed over for indexing since the registry started (or
+	 *         if it has been forgotten)
+	 */
+	public synchronized IndexingStatus getStatus(String serviceKey)
+	{
+		IndexingStatus status = statuses.get(normalize(serviceKey));
+		if (status == null)
+			return new IndexingStatus(UNKNOWN, null, 0, 0);
+		return status;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of services waiting to be indexed, or being indexed
+	 */
+	public synchronized int getQueueDepth()
+	{
+		return pendingSince.size();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of milliseconds the oldest pending service has been
+	 *         waiting to be indexed, or 0 if there are none
+	 */
+	public synchronized long getIndexingLag()
+	{
+		if (pendingSince.isEmpty())
+			return 0;
+		return System.currentTimeMillis() - pendingSince.values().iterator().next();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of services indexed since the registry started
+	 */
+	public synchronized long getIndexedCount()
+	{
+		return indexed;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of services whose indexing failed since the registry
+	 *         started
+	 */
+	public synchronized long getFailedCount()
+	{
+		return failed;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Opens the journal kept in the given file, unless a journal is already
+	 * open, and reads it back: the failures recorded in it are restored, and
+	 * the services that were still pending when the process stopped are
+	 * marked as pending again, so that they can be handed over again. The
+	 * journal is then rewritten with the pending and the failed services
+	 * only. A record that was only partly written (e.g. because the process
+	 * stopped while writing it) is discarded.
+	 *
+	 * @param file
+	 * @return the authentication token of every service that was still
+	 *         pending, by service key (empty if a journal is already open)
+	 */
+	public synchronized Map<String, String> recover(File file)
+	{
+		Map<String, String> pending = new LinkedHashMap<String, String>();
+		if (journalFile != null)
+			return pending;
+		journalFile = file;
+
+		// The records of the pending and the failed services, by service key
+		Map<String, String[]> pendingRecords = new LinkedHashMap<String, String[]>();
+		Map<String, String[]> failedRecords = new LinkedHashMap<String, String[]>();
+
+		try
+		{
+			// Finish a rewrite that was interrupted after the old journal was removed
+			File rewrittenFile = new File(file.getPath() + ".tmp");
+			if (!file.exists() && rewrittenFile.exists() && !rewrittenFile.renameTo(file))
+				throw new IOException("The journal " + rewrittenFile + " could not be renamed");
+
+			if (file.exists())
+			{
+				RandomAccessFile in = new RandomAccessFile(file, "r");
+				byte[] bytes = new byte[(int) in.length()];
+				try
+				{
+					in.readFully(bytes);
+				}
+				finally
+				{
+					in.close();
+				}
+
+				// Only the records up to the last line feed are complete
+				String text = new String(bytes, "UTF-8");
+				int end = text.lastIndexOf('\n') + 1;
+				if (end < text.length())
+					System.out.println("Incomplete record found at the end of the journal " + file + " -it will be discarded-");
+
+				for (String line : text.substring(0, end).split("\n"))
+				{
+					// The type, the time and the service key, followed by the token or the error message
+					String[] fields = line.split("\t", 4);
+					if (fields.length < 3)
+						continue;
+
+					String key = fields[2];
+					pendingRecords.remove(key);
+					failedRecords.remove(key);
+					if (fields[0].equals("P") && fields.length == 4)
+						pendingRecords.put(key, fields);
+					else if (fields[0].equals("F"))
+						failedRecords.put(key, fields);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException occured while reading the indexing journal " + file + ": " + e.getMessage() + " -the services handed over for indexing will not be recorded-");
+			return pending;
+		}
+
+		// Restore the failures, and mark the pending services as pending again
+		for (String[] fields : failedRecords.values())
+		{
+			long time = parseTime(fields[1]);
+			statuses.remove(fields[2]);
+			statuses.put(fields[2], new IndexingStatus(FAILED, (fields.length == 4) ? fields[3] : null, time, time));
+		}
+		for (String[] fields : pendingRecords.values())
+		{
+			long time = parseTime(fields[1]);
+			statuses.remove(fields[2]);
+			statuses.put(fields[2], new IndexingStatus(PENDING, null, time, 0));
+			pendingSince.remove(fields[2]);
+			pendingSince.put(fields[2], time);
+			authTokens.put(fields[2], fields[3]);
+			pending.put(fields[2], fields[3]);
+		}
+
+		rewriteJournal();
+
+		if (!pending.isEmpty())
+			System.out.println(pending.size() + " services pending indexing recovered from the journal " + file);
+
+		return pending;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Appends a record to the journal and forces it to disk. A failure is
+	 * only reported, as the service has already been published by then.
+	 *
+	 * @param type P (handed over), I (indexed), F (failed) or W (withdrawn)
+	 * @param time
+	 * @param key the normalised key of the service
+	 * @param detail the authentication token, the error message, or null
+	 */
+	private void record(String type, long time, String key, String detail)
+	{
+		if (journal == null)
+			return;
+
+		if (journalRecords >= MAX_JOURNAL_RECORDS)
+		{
+			rewriteJournal();
+			if (journal == null)
+				return;
+		}
+
+		try
+		{
+			journal.seek(journalLength);
+			journal.write(format(type, time, key, detail));
+			journal.getChannel().force(false);
+			journalLength = journal.getFilePointer();
+			journalRecords++;
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException occured while recording service " + key + " in the indexing journal " + journalFile + ": " + e.getMessage());
+
+			// Remove the part of the record that made it to the file
+			try
+			{
+				journal.setLength(journalLength);
+			}
+			catch (IOException e1)
+			{
+				System.out.println("IOException: " + e1.getMessage());
+			}
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Rewrites the journal with a record for every pending and every failed
+	 * service. The records are written to a temporary file first, which then
+	 * takes the place of the journal, so that a journal is always in place.
+	 * If the journal cannot be rewritten, nothing is recorded any more.
+	 */
+	private void rewriteJournal()
+	{
+		File rewrittenFile = new File(journalFile.getPath() + ".tmp");
+		try
+		{
+			if (journal != null)
+			{
+				journal.close();
+				journal = null;
+			}
+
+			RandomAccessFile out = new RandomAccessFile(rewrittenFile, "rw");
+			int records = 0;
+			try
+			{
+				out.setLength(0);
+				for (Map.Entry<String, IndexingStatus> status : statuses.entrySet())
+				{
+					if (FAILED.equals(status.getValue().state))
+					{
+						out.write(format("F", status.getValue().finished, status.getKey(), status.getValue().errorMessage));
+						records++;
+					}
+				}
+				for (Map.Entry<String, Long> pending : pendingSince.entrySet())
+				{
+					out.write(format("P", pending.getValue(), pending.getKey(), authTokens.get(pending.getKey())));
+					records++;
+				}
+				out.getChannel().force(true);
+			}
+			finally
+			{
+				out.close();
+			}
+
+			if ((journalFile.exists() && !journalFile.delete()) || !rewrittenFile.renameTo(journalFile))
+				throw new IOException("The journal " + rewrittenFile + " could not be renamed");
+
+			journal = new RandomAccessFile(journalFile, "rw");
+			journalLength = journal.length();
+			journalRecords = records;
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException occured while rewriting the indexing journal " + journalFile + ": " + e.getMessage() + " -the services handed over for indexing will not be recorded-");
+			journal = null;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param type
+	 * @param time
+	 * @param key
+	 * @param detail the authentication token, the error message, or null
+	 * @return a journal record, as a line of tab-separated fields
+	 */
+	private static byte[] format(String type, long time, String key, String detail)
+	{
+		StringBuilder line = new StringBuilder();
+		line.append(type).append('\t').append(time).append('\t').append(key);
+		if (detail != null)
+			line.append('\t').append(detail.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+		line.append('\n');
+
+		try
+		{
+			return line.toString().getBytes("UTF-8");
+		}
+		catch (IOException e)
+		{
+			// UTF-8 is always supported
+			throw new RuntimeException(e);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param time
+	 * @return the time read from a journal record, or 0 if it is not a number
+	 */
+	private static long parseTime(String time)
+	{
+		try
+		{
+			return Long.parseLong(time);
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the pool of indexing threads, creating it if necessary.
+	 *
+	 * @return
+	 */
+	synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory()
+			{
+				private final AtomicInteger number = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable)
+				{
+					// Indexing threads must not keep the container from shutting down
+					Thread thread = new Thread(runnable, "publication-indexer-" + number.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param serviceKey
+	 * @return the service key without its "uuid:" prefix, in lower case
+	 */
+	static String normalize(String serviceKey)
+	{
+		return serviceKey.trim().replace("uuid:", "").toLowerCase();
+	}
+}
@@ -19,25 +19,21 @@
  
  package org.seerc.fusion.sr.core;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.UUID;
 
 import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
 import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
-import org.seerc.fusion.sr.utils.Chronometer;
-import org.semanticweb.owl.inference.OWLReasoner;
 import org.semanticweb.owl.inference.OWLReasonerException;
-import org.semanticweb.owl.apibinding.OWLManager;
-import org.semanticweb.owl.model.AddAxiom;
 import org.semanticweb.owl.model.OWLAnonymousDescription;
 import org.semanticweb.owl.model.OWLAxiom;
 import org.semanticweb.owl.model.OWLClass;
@@ -47,21 +43,61 @@ import org.semanticweb.owl.model.OWLEntity;
 import org.semanticweb.owl.model.OWLEquivalentClassesAxiom;
 import org.semanticweb.owl.model.OWLObjectProperty;
 import org.semanticweb.owl.model.OWLOntology;
-import org.semanticweb.owl.model.OWLOntologyChangeException;
-import org.semanticweb.owl.model.OWLOntologyCreationException;
-import org.semanticweb.owl.model.OWLOntologyManager;
-import org.semanticweb.owl.model.OWLOntologyStorageException;
 import org.semanticweb.owl.util.OWLEntityCollector;
 
-import org.apache.log4j.Level;
-import org.apache.log4j.Logger;
-
 /**
  * @author Dimitrios Kourtesis
  *
  */
 public class PublicationTimeMatchmaker
 {
+	// The prefix of the class names of AFPs that have been classified before
+	// the UDDI server assigned a key to their service
+	static final String PROVISIONAL_AFP_PREFIX = "provisional-";
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Creates a key for classifying the AFP of a service before the service is
+	 * saved in the UDDI server. UDDI v2 servers do not accept keys assigned by
+	 * the publisher, so the AFP is renamed once the real key is known.
+	 * 
+	 * @return
+	 */
+	public static String createProvisionalAFPKey()
+	{
+		return PROVISIONAL_AFP_PREFIX + UUID.randomUUID().toString();
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Checks if an AFP has been classified under a provisional key, meaning
+	 * that its service has not been saved in the UDDI server yet
+	 * 
+	 * @param afpClass
+	 * @return
+	 */
+	static boolean isProvisionalAFP(OWLClass afpClass)
+	{
+		String fragment = afpClass.getURI().getFragment();
+		return fragment != null && fragment.startsWith(PROVISIONAL_AFP_PREFIX);
+	}
+	
+	
+	
+	
+	
+	
+	
 
 	/**
 	 * Uses the extracted information to construct a service Advertisement
@@ -85,61 +121,378 @@ public class PublicationTimeMatchmaker
 	SemanticRegistryConfigurationException
 	
 	{
-		// Get the parsed modelReference annotations
-		List<String> functionalModelReferenceAnnotations = annotations.getFunctionalModelReferenceAnnotationURIs();
-		List<String> inputModelReferenceAnnotations = annotations.getInputModelReferenceAnnotationURIs();
-		List<String> outputModelReferenceAnnotations = annotations.getOutputModelReferenceAnnotationURIs();
-
 		// Detect the implied message exchange pattern of the AFP
-		String afpMEP = null;
-		if (inputModelReferenceAnnotations.size() > 0 && outputModelReferenceAnnotations.size() == 0) afpMEP = "in-only";
-		if (inputModelReferenceAnnotations.size() == 0 && outputModelReferenceAnnotations.size() > 0) afpMEP = "out-only";
-		if (inputModelReferenceAnnotations.size() > 0 && outputModelReferenceAnnotations.size() > 0) afpMEP = "in-out";
+		String afpMEP = getAFPMEP(annotations);
 		System.out.println("The message exchange pattern of the service is: " + afpMEP);
 		
 		
 		
 		
+		
+		
 		// //////////////////////
-		// LOAD THE SEMANTIC REGISTRY KB ONTOLOGY
+		// OBTAIN THE CLASSIFIED SEMANTIC REGISTRY KB
 		// //////////////////////
 		
-		// Load the SRKB ontology
-		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
-
-		// Load the SRKB ontology from its physical URI (OWL file)
-		OWLOntology srkbOntology = null;
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
+		
+		// Create the axioms representing the AFP, using a view of the SRKB
+		Set<OWLAxiom> afpAxioms = null;
+		SemanticRegistryKnowledgeBaseView view = kb.openView();
 		try
 		{
-			srkbOntology = manager.loadOntologyFromPhysicalURI(srkbOntologyPhysicalURI);
-			System.out.println("SRKB ontology loaded from " + srkbOntologyPhysicalURI);
+			afpAxioms = createAFPAxioms(view, annotations, advertisementUUIDKey, afpMEP);
 		}
-		catch (OWLOntologyCreationException e1)
+		finally
 		{
-			System.out.println("OWLOntologyCreationException: " + e1.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the SRKB Ontology from its physical URI (" + srkbOntologyPhysicalURI + ")");
+			view.close();
 		}
+		
+		
+		
+		
+		
+		// //////////////////////
+		// ADD THE AFP TO THE SEMANTIC REGISTRY KB ONTOLOGY
+		// //////////////////////
+		
+		// Add the axioms to the SRKB ontology, save it, and reclassify it
+		kb.applyChanges(afpAxioms, new HashSet<OWLAxiom>());
+		System.out.println("AFP added to the SRKB");
+		
+		
+		
+		
+		
+		// //////////////////////
+		// MATCHMAKING WITH ALL RFPs
+		// //////////////////////
+		
+		// Open a view of the reclassified SRKB, which now contains the AFP
+		view = kb.openView();
+		try
+		{
+			return getMatchingRFPs(view, annotations, advertisementUUIDKey, afpMEP);
+		}
+		finally
+		{
+			view.close();
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Does the same as createAFPAndGetMatchingRFPs for a batch of services,
+	 * but adds all of their AFPs to the SRKB ontology in a single change, so
+	 * that the SRKB is reclassified once for the whole batch. A service whose
+	 * AFP cannot be created or matched does not hold back the rest: its
+	 * matching RFPs are null, and the reason is put at the same position in
+	 * errorMessages.
+	 * 
+	 * @param srkbOntologyPhysicalURI
+	 * @param annotationsList
+	 * @param advertisementUUIDKeys
+	 * @param errorMessages filled with one entry per service, null if it succeeded
+	 * @return the matching RFPs of each service, in the order given
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public List<SemanticProfileURICollection> createAFPsAndGetMatchingRFPs(
+			URI srkbOntologyPhysicalURI, 
+			List<SemanticProfileAnnotationCollection> annotationsList, 
+			List<String> advertisementUUIDKeys,
+			List<String> errorMessages) 
+	
+	throws SemanticRegistryMatchmakingException, 
+	SemanticRegistryConfigurationException
+	
+	{
+		int count = annotationsList.size();
+		
+		// Detect the implied message exchange pattern of every AFP
+		String[] afpMEPs = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			afpMEPs[i] = getAFPMEP(annotationsList.get(i));
+			errorMessages.add(null);
+		}
+		
+		
+		
+		
+		
+		// //////////////////////
+		// OBTAIN THE CLASSIFIED SEMANTIC REGISTRY KB
+		// //////////////////////
+		
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
+		
+		// Create the axioms representing every AFP, using a single view of the SRKB
+		Set<OWLAxiom> afpAxioms = new HashSet<OWLAxiom>();
+		SemanticRegistryKnowledgeBaseView view = kb.openView();
+		try
+		{
+			for (int i = 0; i < count; i++)
+			{
+				try
+				{
+					afpAxioms.addAll(createAFPAxioms(view, annotationsList.get(i), advertisementUUIDKeys.get(i), afpMEPs[i]));
+				}
+				catch (SemanticRegistryMatchmakingException e)
+				{
+					errorMessages.set(i, e.getMessage());
+				}
+			}
+		}
+		finally
+		{
+			view.close();
+		}
+		
+		
+		
+		
+		
+		// //////////////////////
+		// ADD THE AFPs TO THE SEMANTIC REGISTRY KB ONTOLOGY
+		// //////////////////////
+		
+		// Add the axioms of all AFPs at once, and reclassify the SRKB once
+		kb.applyChanges(afpAxioms, new HashSet<OWLAxiom>());
+		System.out.println(count + " AFPs added to the SRKB");
+		
+		
+		
+		
+		
+		// //////////////////////
+		// MATCHMAKING WITH ALL RFPs
+		// //////////////////////
+		
+		// Match every AFP against a single view of the reclassified SRKB
+		List<SemanticProfileURICollection> matchingRFPs = new ArrayList<SemanticProfileURICollection>(count);
+		view = kb.openView();
+		try
+		{
+			for (int i = 0; i < count; i++)
+			{
+				SemanticProfileURICollection rfps = null;
+				if (errorMessages.get(i) == null)
+				{
+					try
+					{
+						rfps = getMatchingRFPs(view, annotationsList.get(i), advertisementUUIDKeys.get(i), afpMEPs[i]);
+					}
+					catch (SemanticRegistryMatchmakingException e)
+					{
+						errorMessages.set(i, e.getMessage());
+					}
+				}
+				matchingRFPs.add(rfps);
+			}
+		}
+		finally
+		{
+			view.close();
+		}
+		return matchingRFPs;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Renames the AFPs that were classified under provisional keys, giving
+	 * them the keys that the UDDI server assigned to their services. The AFP
+	 * of a service that was not saved (i.e. one whose key is null) is removed
+	 * instead. All AFPs are renamed with a single change to the SRKB ontology,
+	 * in which the renamed AFPs keep their place in the classified hierarchy,
+	 * so they are not classified again.
+	 * 
+	 * @param srkbOntologyPhysicalURI
+	 * @param annotationsList
+	 * @param provisionalKeys
+	 * @param advertisementUUIDKeys the key of each service, or null if it was not saved
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public void renameAFPs(
+			URI srkbOntologyPhysicalURI, 
+			List<SemanticProfileAnnotationCollection> annotationsList, 
+			List<String> provisionalKeys,
+			List<String> advertisementUUIDKeys) 
+	
+	throws SemanticRegistryMatchmakingException, 
+	SemanticRegistryConfigurationException
+	
+	{
+		// Get the process-wide SRKB, which is loaded and classified only once
+		SemanticRegistryKnowledgeBase kb = SemanticRegistryKnowledgeBase.getInstance(srkbOntologyPhysicalURI);
+		
+		// The axioms of an AFP depend only on its annotations and its key, so
+		// the axioms under the provisional key can be created again for removal
+		Set<OWLAxiom> axiomsToAdd = new HashSet<OWLAxiom>();
+		Set<OWLAxiom> axiomsToRemove = new HashSet<OWLAxiom>();
+		Map<OWLClass, OWLClass> renamedClasses = new HashMap<OWLClass, OWLClass>();
+		SemanticRegistryKnowledgeBaseView view = kb.openView();
+		try
+		{
+			for (int i = 0; i < annotationsList.size(); i++)
+			{
+				String afpMEP = getAFPMEP(annotationsList.get(i));
+				try
+				{
+					axiomsToRemove.addAll(createAFPAxioms(view, annotationsList.get(i), provisionalKeys.get(i), afpMEP));
+					if (advertisementUUIDKeys.get(i) != null)
+					{
+						axiomsToAdd.addAll(createAFPAxioms(view, annotationsList.get(i), advertisementUUIDKeys.get(i), afpMEP));
+						addRenamedAFPClasses(view, provisionalKeys.get(i), advertisementUUIDKeys.get(i), afpMEP, renamedClasses);
+					}
+				}
+				catch (SemanticRegistryMatchmakingException e)
+				{
+					// The AFP could not be created in the first place
+					continue;
+				}
+			}
+		}
+		finally
+		{
+			view.close();
+		}
+		
+		if (axiomsToAdd.isEmpty() && axiomsToRemove.isEmpty())
+			return;
+		
+		kb.applyChanges(axiomsToAdd, axiomsToRemove, renamedClasses);
+		System.out.println(annotationsList.size() + " provisional AFPs renamed in the SRKB");
+	}
 
-		// Get the ontology's data factory to create the various objects
-		OWLDataFactory factory = manager.getOWLDataFactory();
-
-		// Get the SemanticRegistryKB ontology's logical URI
-		URI srkbLogicalURI = srkbOntology.getURI();
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Maps the classes created for an AFP under one key (the AFP class and the
+	 * classes of its incoming and outgoing data) to the classes created for
+	 * it under another key, as {@link #createAFPAxioms} names them.
+	 * 
+	 * @param view
+	 * @param key
+	 * @param newKey
+	 * @param afpMEP
+	 * @param renamedClasses the map to which the classes are added
+	 */
+	private static void addRenamedAFPClasses(
+			SemanticRegistryKnowledgeBaseView view, 
+			String key, 
+			String newKey, 
+			String afpMEP, 
+			Map<OWLClass, OWLClass> renamedClasses)
+	{
+		OWLDataFactory factory = view.getDataFactory();
+		URI srkbLogicalURI = view.getSRKBOntology().getURI();
 		
-		// Obtain and load the imports closure of the semRegKBontology
-        Set<OWLOntology> importsClosure = manager.getImportsClosure(srkbOntology);
-        
-		System.out.println("Ontologies contained in the SRKB ontology's import closure:");
-		for (OWLOntology ont : importsClosure)
+		List<String> suffixes = new ArrayList<String>();
+		suffixes.add("");
+		if ( afpMEP.equalsIgnoreCase("in-only") || afpMEP.equalsIgnoreCase("in-out") )
+			suffixes.add("InputDataSet");
+		if ( afpMEP.equalsIgnoreCase("out-only") || afpMEP.equalsIgnoreCase("in-out") )
+			suffixes.add("OutputDataSet");
+		
+		for (String suffix : suffixes)
 		{
-			System.out.println(ont.getURI());
+			renamedClasses.put(factory.getOWLClass(URI.create(srkbLogicalURI + "#" + key + suffix)), 
+					factory.getOWLClass(URI.create(srkbLogicalURI + "#" + newKey + suffix)));
 		}
+	}
+
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Detects the message exchange pattern implied by the input and output
+	 * annotations of a service
+	 * 
+	 * @param annotations
+	 * @return "in-only", "out-only", "in-out", or null if there are neither
+	 */
+	private String getAFPMEP(SemanticProfileAnnotationCollection annotations)
+	{
+		List<String> inputModelReferenceAnnotations = annotations.getInputModelReferenceAnnotationURIs();
+		List<String> outputModelReferenceAnnotations = annotations.getOutputModelReferenceAnnotationURIs();
+
+		String afpMEP = null;
+		if (inputModelReferenceAnnotations.size() > 0 && outputModelReferenceAnnotations.size() == 0) afpMEP = "in-only";
+		if (inputModelReferenceAnnotations.size() == 0 && outputModelReferenceAnnotations.size() > 0) afpMEP = "out-only";
+		if (inputModelReferenceAnnotations.size() > 0 && outputModelReferenceAnnotations.size() > 0) afpMEP = "in-out";
+		return afpMEP;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Creates the axioms that represent the Advertisement Functional Profile
+	 * (AFP) of a service, without adding them to the SRKB ontology
+	 * 
+	 * @param view
+	 * @param annotations
+	 * @param advertisementUUIDKey
+	 * @param afpMEP
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private Set<OWLAxiom> createAFPAxioms(
+			SemanticRegistryKnowledgeBaseView view,
+			SemanticProfileAnnotationCollection annotations, 
+			String advertisementUUIDKey,
+			String afpMEP) 
+	
+	throws SemanticRegistryMatchmakingException, 
+	SemanticRegistryConfigurationException
+	
+	{
+		// Get the parsed modelReference annotations
+		List<String> functionalModelReferenceAnnotations = annotations.getFunctionalModelReferenceAnnotationURIs();
+		List<String> inputModelReferenceAnnotations = annotations.getInputModelReferenceAnnotationURIs();
+		List<String> outputModelReferenceAnnotations = annotations.getOutputModelReferenceAnnotationURIs();
+		
+		// Get the data factory to create the various objects
+		OWLDataFactory factory = view.getDataFactory();
+		
+		// Get the SemanticRegistryKB ontology's logical URI
+		URI srkbLogicalURI = view.getSRKBOntology().getURI();
+		
+		// Get the imports closure of the SRKB ontology
+        Set<OWLOntology> importsClosure = view.getImportsClosure();
         
-        URI taxonomyOntologyLogicalURI = getDefiningOntology("#TaxonomyEntity", importsClosure, factory).getURI();
-		URI dataFacetOntologyLogicalURI = getDefiningOntology("#DataFacetEntity", importsClosure, factory).getURI();
-		URI functionalFacetOntologyLogicalURI = getDefiningOntology("#FunctionalFacetEntity", importsClosure, factory).getURI();
-		OWLOntology rfpOntology = getDefiningOntology(functionalFacetOntologyLogicalURI+"#RequestFunctionalProfile", importsClosure, factory);
-				
+		URI functionalFacetOntologyLogicalURI = OntologyRoleResolver.getInstance().getFunctionalFacetOntology(importsClosure, factory).getURI();
+		
+		// Create a set to hold all axioms representing the AFP
+		Set<OWLAxiom> afpAxioms = new HashSet<OWLAxiom>();
+		
 		
 		
 		
@@ -159,19 +512,8 @@ public class PublicationTimeMatchmaker
 		// Advertisement is a subclass of the AdvertisementFunctionalProfile root class
 		OWLAxiom axiom = factory.getOWLSubClassAxiom(afpClass, advertisementFunctionalProfileRootClass);
 
-		// Add the axiom to the ontology by creating an AddAxiom change object
-		AddAxiom addAxiomChange = new AddAxiom(srkbOntology, axiom);
-
-		// Apply the axiom addition
-		try
-		{
-			manager.applyChange(addAxiomChange);
-		}
-		catch (OWLOntologyChangeException e)
-		{
-			System.out.println("OWLOntologyChangeException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-		}
+		// Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+		afpAxioms.add(axiom);
 		
 				
 		
@@ -201,19 +543,8 @@ public class PublicationTimeMatchmaker
 			// afpIncomingDataClass is a subclass of the inputDataSetRootClass
 			axiom = factory.getOWLSubClassAxiom(afpIncomingDataClass, inputDataSetRootClass);
 	
-			// Add the axiom to the ontology by creating an AddAxiom change object
-			addAxiomChange = new AddAxiom(srkbOntology, axiom);
-	
-			// Apply the axiom addition
-			try
-			{
-				manager.applyChange(addAxiomChange);
-			}
-			catch (OWLOntologyChangeException e)
-			{
-				System.out.println("OWLOntologyChangeException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-			}
+			// Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+			afpAxioms.add(axiom);
 			
 			// Create a list containing only one element: the URI of the above class
 			List<String> afpIncomingDataClassURI = new ArrayList<String>();
@@ -222,7 +553,7 @@ public class PublicationTimeMatchmaker
 	        // Create a restriction to describe the class of individuals that have
 			// at least one hasInput relationship to an individual of class
 			// xxxxxInputDataSet, and a closure axiom restriction
-			afpIncomingDataClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (manager, srkbOntology, factory, afpClass, hasInput, afpIncomingDataClassURI));		
+			afpIncomingDataClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (factory, hasInput, afpIncomingDataClassURI));		
 		}
 		
 				
@@ -253,19 +584,8 @@ public class PublicationTimeMatchmaker
 			// outgoingDataClass is a subclass of the outputDataSetRootClass
 			axiom = factory.getOWLSubClassAxiom(afpOutgoingDataClass, outputDataSetRootClass);
 	
-			// Add the axiom to the ontology by creating an AddAxiom change object
-			addAxiomChange = new AddAxiom(srkbOntology, axiom);
-	
-			// Apply the axiom addition
-			try
-			{
-				manager.applyChange(addAxiomChange);
-			}
-			catch (OWLOntologyChangeException e)
-			{
-				System.out.println("OWLOntologyChangeException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-			}
+			// Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+			afpAxioms.add(axiom);
 			
 			// Create a list containing only one element: the URI of the above class
 			List<String> afpOutgoingDataClassURI = new ArrayList<String>();
@@ -274,7 +594,7 @@ public class PublicationTimeMatchmaker
 	        // Create a restriction to describe the class of individuals that have
 			// at least one hasOutput relationship to an individual of class
 			// DataProvidedBy_xxxxx, and a closure axiom restriction
-			afpOutgoingDataClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (manager, srkbOntology, factory, afpClass, hasOutput, afpOutgoingDataClassURI));
+			afpOutgoingDataClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (factory, hasOutput, afpOutgoingDataClassURI));
 		}
 		
 				
@@ -296,7 +616,7 @@ public class PublicationTimeMatchmaker
         // Create a restriction to describe the class of individuals that have
 		// at least one hasCategory relationship to an individual of class
 		// DataProvidedBy_xxxxx, and a closure axiom restriction
-		afpCategoryClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (manager, srkbOntology, factory, afpClass, hasCategory, functionalModelReferenceAnnotations));
+		afpCategoryClassRestrictionSet.addAll(createExistentialAndUniversalRestrictions (factory, hasCategory, functionalModelReferenceAnnotations));
 		
 		
 		
@@ -328,17 +648,8 @@ public class PublicationTimeMatchmaker
 		// intersection of existential and universal restrictions
 		OWLAxiom equivalentClassesAxiom = factory.getOWLEquivalentClassesAxiom(afpClassPlusAnonymousClass);
         
-        // Apply the axiom addition
-        addAxiomChange = new AddAxiom(srkbOntology, equivalentClassesAxiom);
-        try
-		{
-			manager.applyChange(addAxiomChange);
-		}
-		catch (OWLOntologyChangeException e)
-		{
-			System.out.println("OWLOntologyChangeException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-		}
+        // Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+        afpAxioms.add(equivalentClassesAxiom);
 		
 		
 		
@@ -361,7 +672,7 @@ public class PublicationTimeMatchmaker
 			// describe the class of individuals that have at least one hasInput
 			// relationship to an individual of class X (universal restriction
 			// should not be created, in order to allow for non-exact match)
-			afpIncomingDataRestrictionSet.addAll(createExistentialRestrictions (manager, srkbOntology, factory, afpIncomingDataClass, hasDataParameter, inputModelReferenceAnnotations));
+			afpIncomingDataRestrictionSet.addAll(createExistentialRestrictions (factory, hasDataParameter, inputModelReferenceAnnotations));
 			
 			// Print the number of restrictions created
 			//System.out.println("Number of existential and universal restrictions in incomingDataRestrictionSet: " + afpIncomingDataRestrictionSet.size());
@@ -381,17 +692,8 @@ public class PublicationTimeMatchmaker
 			// existential and universal restrictions
 			equivalentClassesAxiom = factory.getOWLEquivalentClassesAxiom(afpIncomingDataClassPlusAnonymousDescription);
 	        
-	        // Apply the axiom addition
-	        addAxiomChange = new AddAxiom(srkbOntology, equivalentClassesAxiom);
-	        try
-			{
-				manager.applyChange(addAxiomChange);
-			}
-			catch (OWLOntologyChangeException e)
-			{
-				System.out.println("OWLOntologyChangeException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-			}
+	        // Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+	        afpAxioms.add(equivalentClassesAxiom);
 		}
 		
 		
@@ -412,7 +714,7 @@ public class PublicationTimeMatchmaker
 			// describe the class of individuals that have at least one hasOutput
 			// relationship to an individual of class X, and also create a universal
 			// restriction to serve as a closure axiom
-			afpOutgoingDataRestrictionSet.addAll(createExistentialAndUniversalRestrictions (manager, srkbOntology, factory, afpOutgoingDataClass, hasDataParameter, outputModelReferenceAnnotations));
+			afpOutgoingDataRestrictionSet.addAll(createExistentialAndUniversalRestrictions (factory, hasDataParameter, outputModelReferenceAnnotations));
 			
 			// Print the number of restrictions created
 			//System.out.println("Number of existential and universal restrictions in outgoingDataRestrictionSet: " + afpOutgoingDataRestrictionSet.size());
@@ -432,130 +734,87 @@ public class PublicationTimeMatchmaker
 			// existential and universal restrictions
 			equivalentClassesAxiom = factory.getOWLEquivalentClassesAxiom(afpOutgoingDataClassPlusAnonymousDescription);
 	        
-	        // Apply the axiom addition
-	        addAxiomChange = new AddAxiom(srkbOntology, equivalentClassesAxiom);
-	        try
-			{
-				manager.applyChange(addAxiomChange);
-			}
-			catch (OWLOntologyChangeException e)
-			{
-				System.out.println("OWLOntologyChangeException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException("An error occured while constructing an AFP in memory");
-			}
+	        // Keep the axiom, to be added to the SRKB ontology along with the rest of the AFP
+	        afpAxioms.add(equivalentClassesAxiom);
 		}
 		
 		
-		
+		// Return the axioms representing the AFP
+		return afpAxioms;
+	}
 	
-		// //////////////////////
-		// SAVE THE SEMANTIC REGISTRY KB ONTOLOGY
-		// //////////////////////
-		try
-		{
-			manager.saveOntology(srkbOntology);
-			System.out.println("AFP added to the SRKB");
-		}
-		catch (OWLOntologyStorageException e)
-		{
-			System.out.println("OWLOntologyStorageException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to save the AFP to the SRKB ontology (" + srkbOntology + ")");
-		}
-		
-				
-		
-		
-		// //////////////////////
-		// CLASSIFY THE SEMANTIC REGISTRY KB ONTOLOGY
-		// //////////////////////
-		
-		// Create a Pellet reasoner instance
-		OWLReasoner reasoner = createReasoner(manager);
-
-		// Get the logger instance for pellet.taxonomy.Taxonomy
-		Logger logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.taxonomy.Taxonomy");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet.KnowledgeBase
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.KnowledgeBase");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet.ABox
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.ABox");
-		logger.setLevel(Level.OFF);
-		
-		// Get the logger instance for pellet
-		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet");
-		logger.setLevel(Level.OFF);
-		
-		// Create a chronometer to measure lapsed time
-		Chronometer chron = new Chronometer();
-		chron.start();
-		
-        // Load the ontologies to Pellet
-        try
-		{
-			reasoner.loadOntologies(importsClosure);
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("OWLReasonerException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the ontology import closure to the DL reasoner");
-		}
-		
-		chron.stop();
-		System.out.println("The SRKB ontology and all directly or indirectly imported ontologies where loaded to the DL reasoner in " + chron);
-		
-		
-        // Classify the SRKB ontology and determine if it is inconsistent
-		try
-		{
-			reasoner.classify();
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("An error occured while trying to classify the SRKB ontology");
-			throw new SemanticRegistryMatchmakingException("An error occured while trying to classify the SRKB ontology");
-		}
-		catch (Exception e)
-		{
-			try
-			{
-				if (reasoner.isConsistent(srkbOntology)) 
-				{
-					System.out.println("An error occured while trying to determine if the SRKB ontology is consistent. Message: " + e.getMessage());
-					throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
-				}
-				else
-				{
-					System.out.println("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between the newly created AFP and the RFPs in the EAI Ontology.");
-					throw new SemanticRegistryMatchmakingException("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between the newly created AFP and the RFPs in the EAI Ontology.");					
-				}
-			}
-			catch (OWLReasonerException e1)
-			{
-				System.out.println("An error occured while trying to determine if the SRKB ontology is consistent");
-				throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
-			}
-		}
+	
+	
+	
+	
+	
+	
+	/**
+	 * Gets the URIs of all service Request Functional Profiles (RFPs) that the
+	 * AFP matches, using a view of the classified SRKB that contains the AFP
+	 * 
+	 * @param view
+	 * @param annotations
+	 * @param advertisementUUIDKey
+	 * @param afpMEP
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	private SemanticProfileURICollection getMatchingRFPs(
+			SemanticRegistryKnowledgeBaseView view,
+			SemanticProfileAnnotationCollection annotations, 
+			String advertisementUUIDKey,
+			final String afpMEP) 
+	
+	throws SemanticRegistryMatchmakingException, 
+	SemanticRegistryConfigurationException
+	
+	{
+		// Get the parsed modelReference annotations
+		List<String> functionalModelReferenceAnnotations = annotations.getFunctionalModelReferenceAnnotationURIs();
+		
+		// Get the data factory to create the various objects
+		final OWLDataFactory factory = view.getDataFactory();
+		
+		// Get the SRKB ontology and its logical URI
+		OWLOntology srkbOntology = view.getSRKBOntology();
+		URI srkbLogicalURI = srkbOntology.getURI();
+		
+		// Get the imports closure of the SRKB ontology
+        Set<OWLOntology> importsClosure = view.getImportsClosure();
+        
+		// Get the logical URIs of the taxonomy and functional facet ontologies
+		OntologyRoleResolver roleResolver = OntologyRoleResolver.getInstance();
+		URI taxonomyOntologyLogicalURI = roleResolver.getTaxonomyOntology(importsClosure, factory).getURI();
+		URI functionalFacetOntologyLogicalURI = roleResolver.getFunctionalFacetOntology(importsClosure, factory).getURI();
+		final OWLOntology rfpOntology = roleResolver.getRFPOntology(importsClosure, factory);
+		final AssertedHierarchy rfpHierarchy = view.getAssertedHierarchy(rfpOntology);
+		
+		// Create references to the AFP class and to the classes of its incoming and outgoing data
+		OWLClass advertisementFunctionalProfileRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#AdvertisementFunctionalProfile"));
+		final OWLClass afpIncomingDataClass = factory.getOWLClass(URI.create(srkbLogicalURI + "#" + advertisementUUIDKey + "InputDataSet"));
+		final OWLClass afpOutgoingDataClass = factory.getOWLClass(URI.create(srkbLogicalURI + "#" + advertisementUUIDKey + "OutputDataSet" ));
+		
+		// Create references to the InputDataSet and OutputDataSet root classes
+		final OWLClass inputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#InputDataSet"));
+		final OWLClass outputDataSetRootClass = factory.getOWLClass(URI.create(functionalFacetOntologyLogicalURI + "#OutputDataSet"));
 		
 		
 		
 		
-
 		
 		// //////////////////////
-		// PREPROCESSING - CREATE CATEGORY MATCHING CHECKLIST
+		// PREPROCESSING - GET THE SUBSUMPTION INDEX
 		// //////////////////////
 		
-		// Create a reference to the filler class of the AFP's hasCategory property
-		OWLClass afpHasCategoryClass = factory.getOWLClass(URI.create(functionalModelReferenceAnnotations.get(0)));
-		
-		// Get the set of sets of classes that subsume the afpHasCategoryClass
-		Set<Set<OWLClass>> subsumersOfAFPHasCategoryClassSetOfSets = new HashSet<Set<OWLClass>>();
+		// Get the subsumption index of the classified SRKB. Checking if a class
+		// is in the category, input or output matching checklist is a single
+		// bit test on the ancestors or descendants of the class in the index
+		SubsumptionIndex index = null;
 		try
 		{
-			subsumersOfAFPHasCategoryClassSetOfSets = reasoner.getAncestorClasses(afpHasCategoryClass);
+			index = view.getSubsumptionIndex();
 		}
 		catch (OWLReasonerException e)
 		{
@@ -563,148 +822,23 @@ public class PublicationTimeMatchmaker
 			throw new SemanticRegistryMatchmakingException();
 		}
 		
-		// Flatten the set of sets into one set...
-		Set<OWLClass> categoryCheckList = new HashSet<OWLClass>();
-		
-		// First of all, add the category class itself
-		categoryCheckList.add(afpHasCategoryClass);
-		
-		// ... and from each set...
-		for (Set<OWLClass> subsumersOfRFPHasCategoryClassSet : subsumersOfAFPHasCategoryClassSetOfSets)
-		{
-			// ...add every class apart from owl:Nothing 
-			for (OWLClass tmp : subsumersOfRFPHasCategoryClassSet)
-			{
-				// We could check tmp.isOWLThing() to avoid adding owl:Thing in the 
-				// checkList. However we don't, because we would like to keep it. 
-				// The reason for keeping it is to allow someone to bypass the 
-				// category-based matchmaking for a specific RFP by specifying this 
-				// RFP as having a category equal to #Thing. This is essentially read 
-				// as "any category will do for this request to be satisfied". On
-				// the other hand, the presence of owl:Nothing would signal an 
-				// inconsistent ontology and as this information would be irrelevant 
-				// to indexing, we would prefer to avoid it.
-				if ( !tmp.isOWLNothing() ) 
-				{
-					categoryCheckList.add(tmp);
-				}
-			}
-		}
-		
-		// Note that the checkList might contain classes that are not necessarily asserted subclasses of #TaxonomyEntity
-		System.out.println("The taxonomy class of the AFP (" + afpHasCategoryClass.getURI() + ") is subsumed by " + categoryCheckList.size() + " classes (including itself)");
-		
-		
-		
-		
-		
-		// //////////////////////
-		// PREPROCESSING - CREATE INPUT MATCHING CHECKLIST 
-		// //////////////////////
-		
-		// A list of all matching InputDataSet classes
-		Set<OWLClass> inputCheckList = new HashSet<OWLClass>();
+		// Get the filler class of the AFP's hasCategory property. Requests having a 
+		// category that is the same or more generic than the AFP's category match.
+		// The owl:Thing class is among them, which allows someone to bypass the 
+		// category-based matchmaking for a specific RFP by specifying this RFP as
+		// having a category equal to #Thing
+		final OWLClass afpHasCategoryClass = factory.getOWLClass(URI.create(functionalModelReferenceAnnotations.get(0)));
+		System.out.println("The taxonomy class of the AFP (" + afpHasCategoryClass.getURI() + ") is subsumed by " + (index.getAncestors(afpHasCategoryClass).cardinality() + 1) + " classes (including itself)");
 		
-		// No point in preparing an input checklist if the service doesn't have any inputs 
+		// Requests that provide the same or more inputs than what the AFP requires
 		if ( afpMEP.equalsIgnoreCase("in-only") || afpMEP.equalsIgnoreCase("in-out") )
-		{			
-			// Get the set of sets of classes subsumed by afpIncomingDataClass
-			// (this includes all classes that represent collections of data, 
-			// regardless of whether they represent input or output data, and 
-			// whether they "belong" to RFPs or AFPs 
-			Set<Set<OWLClass>> subsumedRFPInputDataSetClassSetOfSets = new HashSet<Set<OWLClass>>();
-			try
-			{
-				subsumedRFPInputDataSetClassSetOfSets = reasoner.getDescendantClasses(afpIncomingDataClass);
-			}
-			catch (OWLReasonerException e)
-			{
-				System.out.println("OWLReasonerException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException();
-			}
-			
-			// First of all, add the InputDataSet class itself
-			inputCheckList.add(afpIncomingDataClass);
-			
-			// ... and from each set...
-			for (Set<OWLClass> subsumedRFPInputDataSetClassSet : subsumedRFPInputDataSetClassSetOfSets)
-			{
-				// ...pick only those classes that represent inputs (of AFPs or RFPs)
-				for (OWLClass subsumedRFPInputDataSetClass : subsumedRFPInputDataSetClassSet)
-				{
-					// if the descendantClass is not the owl:Nothing class (the presence of owl:Nothing would signal an inconsistent ontology), AND
-					// if the descendantClass is an asserted subclass of the #InputDataSet root class (i.e. it represents input, not output)
-					if ( !subsumedRFPInputDataSetClass.isOWLNothing() 
-							&& (isAssertedSubClassOf(subsumedRFPInputDataSetClass, inputDataSetRootClass, rfpOntology) ) ) 
-					{
-						// ...add the class to the subsumedInputClasses set, 
-						inputCheckList.add(subsumedRFPInputDataSetClass);
-					}
-				}
-			}
-			
-			// At this point the subsumedInputClasses set contains classes 
-			// representing not only input data of RFPs, but also of AFPs
-			System.out.println("The input data set class of the AFP " + afpIncomingDataClass.getURI() + " subsumes " + inputCheckList.size() + " classes (including itself)");
-			
-		}
-		
-		
-		
+			System.out.println("The input data set class of the AFP " + afpIncomingDataClass.getURI() + " subsumes " + (index.getDescendants(afpIncomingDataClass).cardinality() + 1) + " classes (including itself)");
 		
+		// Requests that expect the same or less outputs than what the AFP provides
+		if ( afpMEP.equalsIgnoreCase("out-only") || afpMEP.equalsIgnoreCase("in-out") )
+			System.out.println("The output data set class of the AFP " + afpOutgoingDataClass.getURI() + " is subsumed by " + (index.getAncestors(afpOutgoingDataClass).cardinality() + 1) + " classes (including itself)");
 		
 		
-		// //////////////////////
-		// PREPROCESSING - CREATE OUPUT MATCHING CHECKLIST
-		// //////////////////////
-		
-		// A list of all matching OutputDataSet classes
-		Set<OWLClass> outputCheckList = new HashSet<OWLClass>();
-		
-		// No point in preparing an output checklist if the service doesn't have any outputs 
-		if ( afpMEP.equalsIgnoreCase("out-only") || afpMEP.equalsIgnoreCase("in-out") )
-		{	
-			// Get the set of sets of classes that subsume the afpOutgoingDataClass
-			// (this includes all classes that represent collections of data, 
-			// regardless of whether they represent input or output data, and 
-			// whether they "belong" to RFPs or AFPs 
-			Set<Set<OWLClass>> subsumerClassSetOfSets = new HashSet<Set<OWLClass>>();
-			try
-			{
-				subsumerClassSetOfSets = reasoner.getAncestorClasses(afpOutgoingDataClass);
-			}
-			catch (OWLReasonerException e)
-			{
-				System.out.println("OWLReasonerException: " + e.getCause());
-				throw new SemanticRegistryMatchmakingException();
-			}
-			
-			// First of all, add the OutputDataSet class itself
-			outputCheckList.add(afpOutgoingDataClass);
-			
-			// ... and from each set...
-			for (Set<OWLClass> tmpClassSet : subsumerClassSetOfSets)
-			{
-				// ...pick only those classes that represent outputs (of AFPs or RFPs)
-				for (OWLClass tmpClass : tmpClassSet)
-				{
-					// if the class is not the owl:Thing class, AND
-					// if the class is an asserted subclass of the #OutputDataSet root class (i.e. it represents output, not input)
-					if ( !tmpClass.isOWLThing() 
-							&& (isAssertedSubClassOf(tmpClass, outputDataSetRootClass, rfpOntology) ) ) 
-					{
-						// ...add the class to the set of subsumer classes 
-						outputCheckList.add(tmpClass);
-					}
-				}
-			}
-			
-			// At this point the set of subsumer classes contains classes 
-			// representing not only output data of RFPs, but also of AFPs
-			System.out.println("The output data set class of the AFP " + afpOutgoingDataClass.getURI() + " is subsumed by " + outputCheckList.size() + " classes (including itself)");
-		}
-			
-			
 		
 		
 		
@@ -738,16 +872,9 @@ public class PublicationTimeMatchmaker
 		
 		System.out.println(allRFPs.size() + " RFPs found in the ontology");
 		
-		// Create a collector to pick up all named classes
-		// referenced within the equivalent class axiom of the RFP
-		OWLEntityCollector collector = new OWLEntityCollector();
-
-		// Speed things up by asking the collector to collect only named classes
-		collector.setCollectClasses(true);
-		collector.setCollectDataProperties(false);
-		collector.setCollectObjectProperties(false);
-		collector.setCollectIndividuals(false);
-		collector.setCollectDataTypes(false);
+		// The RFPs may be matched on other threads, which need final references
+		final List<OWLDescription> rfps = new ArrayList<OWLDescription>(allRFPs);
+		final SubsumptionIndex subsumptionIndex = index;
 		
 
 		
@@ -757,233 +884,245 @@ public class PublicationTimeMatchmaker
 		// ITERATING OVER ALL RFPs 
 		// //////////////////////
 		
-   	    // Iterate over all references to RFP classes
-		for (OWLDescription rfp : allRFPs)
+		// Match the RFPs, in parallel if there are many of them
+		// The RFPs rejected at every stage of matching, counted on the matching
+		// threads and reported once they have all finished
+		final AtomicInteger mepMismatches = new AtomicInteger();
+		final AtomicInteger categoryMismatches = new AtomicInteger();
+		final AtomicInteger inputMismatches = new AtomicInteger();
+		final AtomicInteger outputMismatches = new AtomicInteger();
+		
+		BitSet matches = ParallelMatcher.match(rfps.size(), new ParallelMatcher.ProfileMatcher()
 		{
-			System.out.println("\nProcessing RFP: " + rfp.asOWLClass().getURI().normalize().toString());
-
-			// Get the equivalent class axiom of the RFP class. By convention
-			// in the FUSION project, there should be only one equivalent
-			// class axiom, so this loop should be executed only once
-			for (OWLEquivalentClassesAxiom ax : rfpOntology.getEquivalentClassesAxioms(rfp.asOWLClass()))
+			public boolean matches(int i)
 			{
-				//System.out.println("Equivalent class axiom: " + ax.toString());
+				OWLDescription rfp = rfps.get(i);
+
+				// Create a collector to pick up all named classes
+				// referenced within the equivalent class axiom of the RFP
+				OWLEntityCollector collector = new OWLEntityCollector();
+
+				// Speed things up by asking the collector to collect only named classes
+				collector.setCollectClasses(true);
+				collector.setCollectDataProperties(false);
+				collector.setCollectObjectProperties(false);
+				collector.setCollectIndividuals(false);
+				collector.setCollectDataTypes(false);
 
-				// By convention in the FUSION project, there should be two
-				// OWLDescription objects in the axiom: 1) the named RFP class,
-				// and 2) the anonymous class defined as an intersection of
-				// existential and universal restrictions on object properties
-				// (i.e. the hasCategory, hasInput, and hasOutput
-				// properties)
-				for (OWLDescription desc : ax.getDescriptions())
+				// Set if the RFP matches the AFP
+				boolean rfpMatches = false;
+
+				// Get the equivalent class axiom of the RFP class. By convention
+				// in the FUSION project, there should be only one equivalent
+				// class axiom, so this loop should be executed only once
+				for (OWLEquivalentClassesAxiom ax : rfpOntology.getEquivalentClassesAxioms(rfp.asOWLClass()))
 				{
-					// Send the collector only to the second component
-					// of the axiom (i.e. only to the anonymous class)
-					if (desc.isAnonymous())
+					//System.out.println("Equivalent class axiom: " + ax.toString());
+
+					// By convention in the FUSION project, there should be two
+					// OWLDescription objects in the axiom: 1) the named RFP class,
+					// and 2) the anonymous class defined as an intersection of
+					// existential and universal restrictions on object properties
+					// (i.e. the hasCategory, hasInput, and hasOutput
+					// properties)
+					for (OWLDescription desc : ax.getDescriptions())
 					{
-						//System.out.println("Collecting filler classes from equivalent class axiom...");
-						desc.accept(collector);
+						// Send the collector only to the second component
+						// of the axiom (i.e. only to the anonymous class)
+						if (desc.isAnonymous())
+						{
+							//System.out.println("Collecting filler classes from equivalent class axiom...");
+							desc.accept(collector);
+						}
 					}
 				}
-			}
 
-			// Get the filler classes from the collector
-			Set<OWLEntity> collectedFillerClasses = collector.getObjects();
-			//System.out.println(collectedFillerClasses.size() + " filler classes collected from " + rfp);
+				// Get the filler classes from the collector
+				Set<OWLEntity> collectedFillerClasses = collector.getObjects();
+				//System.out.println(collectedFillerClasses.size() + " filler classes collected from " + rfp);
 					
-			// By convention in the FUSION project, there should be a maximum 
-			// of three classes inside the collectedFillerClasses set:
-			// 1) the filler class for the hasCategory property restriction (mandatory)
-			// 2) the filler class for the hasInput property restriction (for in-only and in-out services)
-			// 3) the filler class for the hasOutput property restriction (for out-only and in-out services)
+				// By convention in the FUSION project, there should be a maximum 
+				// of three classes inside the collectedFillerClasses set:
+				// 1) the filler class for the hasCategory property restriction (mandatory)
+				// 2) the filler class for the hasInput property restriction (for in-only and in-out services)
+				// 3) the filler class for the hasOutput property restriction (for out-only and in-out services)
 			
-			// Keep a flag to speed things up a bit more
-			boolean categoryMatchFound = false;
-			boolean mepIsCompatible = false;
+				// Keep a flag to speed things up a bit more
+				boolean categoryMatchFound = false;
+				boolean mepIsCompatible = false;
 			
-			// //////////////////////
-			// 
-			// //////////////////////
+				// //////////////////////
+				// 
+				// //////////////////////
 			
-			// In-only AFPs should be checked for matchmaking only against in-only RFPs, 
-			// out-only AFPs checked for matchmaking only against out-only RFPs, and in-out
-			// AFPs checked for matchmaking only against in-out RFPs. 
-			// If collectedFillerClasses.size() == 2 then the RFP represents an in-only 
-			// or an out-only service (we can't yet know which of the two). 
-			// If collectedFillerClasses.size() == 3 then the RFP represents an in-out service.
-			if ( 
-					( (afpMEP.equalsIgnoreCase("in-out") && collectedFillerClasses.size() == 3) ) 
-					|| 
-					( ( (afpMEP.equalsIgnoreCase("in-only") || afpMEP.equalsIgnoreCase("out-only") ) && collectedFillerClasses.size() == 2) )
-				)
-			{
-				// Keep a flag for each type of filler class expected
-				boolean hasCategoryFillerFound = false;
-				boolean hasInputFillerFound = false;
-				boolean hasOutputFillerFound = false;
+				// In-only AFPs should be checked for matchmaking only against in-only RFPs, 
+				// out-only AFPs checked for matchmaking only against out-only RFPs, and in-out
+				// AFPs checked for matchmaking only against in-out RFPs. 
+				// If collectedFillerClasses.size() == 2 then the RFP represents an in-only 
+				// or an out-only service (we can't yet know which of the two). 
+				// If collectedFillerClasses.size() == 3 then the RFP represents an in-out service.
+				if ( 
+						( (afpMEP.equalsIgnoreCase("in-out") && collectedFillerClasses.size() == 3) ) 
+						|| 
+						( ( (afpMEP.equalsIgnoreCase("in-only") || afpMEP.equalsIgnoreCase("out-only") ) && collectedFillerClasses.size() == 2) )
+					)
+				{
+					// Keep a flag for each type of filler class expected
+					boolean hasCategoryFillerFound = false;
+					boolean hasInputFillerFound = false;
+					boolean hasOutputFillerFound = false;
 				
-				// Keep the filler classes
-				OWLClass hasCategoryFillerClass = null;
-				OWLClass hasInputFillerClass = null;
-				OWLClass hasOutputFillerClass = null;
+					// Keep the filler classes
+					OWLClass hasCategoryFillerClass = null;
+					OWLClass hasInputFillerClass = null;
+					OWLClass hasOutputFillerClass = null;
 				
-				// We will need to convert each retrieved OWLEntity to an OWLClass
-				OWLClass fillerCls = null;
+					// We will need to convert each retrieved OWLEntity to an OWLClass
+					OWLClass fillerCls = null;
 				
-				// Determine the property corresponding to each filler, 
-				// by checking if the filler is an asserted subclass of 
-				// 1) inputDataSetRootClass, 2) outputDataSetRootClass, 
-				// or 3) none of the two (i.e. a taxonomy annotation)
-				for (OWLEntity filler : collectedFillerClasses)
-				{
-					fillerCls = factory.getOWLClass(filler.getURI().normalize());
-					if (!hasInputFillerFound && 
-							isAssertedSubClassOf(fillerCls, inputDataSetRootClass, rfpOntology))
-					{
-						//System.out.println(rfp + " hasInput " + filler.getURI().normalize());
-						hasInputFillerFound = true;
-						hasInputFillerClass = fillerCls;
-					}
-					else if (!hasOutputFillerFound && 
-							isAssertedSubClassOf(fillerCls, outputDataSetRootClass, rfpOntology))
+					// Determine the property corresponding to each filler, 
+					// by checking if the filler is an asserted subclass of 
+					// 1) inputDataSetRootClass, 2) outputDataSetRootClass, 
+					// or 3) none of the two (i.e. a taxonomy annotation)
+					for (OWLEntity filler : collectedFillerClasses)
 					{
-						//System.out.println(rfp + " hasOutput " + filler.getURI().normalize());
-						hasOutputFillerFound = true;
-						hasOutputFillerClass = fillerCls;
-					}
-					else // i.e. if it's the filler class for hasCategory 
-					{
-						//System.out.println(rfp + " hasCategory " + filler.getURI().normalize());
-						hasCategoryFillerFound = true;
-						hasCategoryFillerClass = fillerCls;
+						fillerCls = factory.getOWLClass(filler.getURI().normalize());
+						if (!hasInputFillerFound && 
+								rfpHierarchy.isAssertedSubClassOf(fillerCls, inputDataSetRootClass))
+						{
+							//System.out.println(rfp + " hasInput " + filler.getURI().normalize());
+							hasInputFillerFound = true;
+							hasInputFillerClass = fillerCls;
+						}
+						else if (!hasOutputFillerFound && 
+								rfpHierarchy.isAssertedSubClassOf(fillerCls, outputDataSetRootClass))
+						{
+							//System.out.println(rfp + " hasOutput " + filler.getURI().normalize());
+							hasOutputFillerFound = true;
+							hasOutputFillerClass = fillerCls;
+						}
+						else // i.e. if it's the filler class for hasCategory 
+						{
+							//System.out.println(rfp + " hasCategory " + filler.getURI().normalize());
+							hasCategoryFillerFound = true;
+							hasCategoryFillerClass = fillerCls;
+						}
 					}
-				}
 				
-				// Detect the implied message exchange pattern of the RFP
-				String rfpMEP = null;
-				if (hasCategoryFillerFound && hasInputFillerFound && !hasOutputFillerFound) rfpMEP = "in-only";
-				if (hasCategoryFillerFound && !hasInputFillerFound && hasOutputFillerFound) rfpMEP = "out-only";
-				if (hasCategoryFillerFound && hasInputFillerFound && hasOutputFillerFound) rfpMEP = "in-out";				
+					// Detect the implied message exchange pattern of the RFP
+					String rfpMEP = null;
+					if (hasCategoryFillerFound && hasInputFillerFound && !hasOutputFillerFound) rfpMEP = "in-only";
+					if (hasCategoryFillerFound && !hasInputFillerFound && hasOutputFillerFound) rfpMEP = "out-only";
+					if (hasCategoryFillerFound && hasInputFillerFound && hasOutputFillerFound) rfpMEP = "in-out";				
 				
 				
-				// //////////////////////
-				// CATEGORY MATCHMAKING 
-				// //////////////////////
+					// //////////////////////
+					// CATEGORY MATCHMAKING 
+					// //////////////////////
 				
-				// If the MEPs of the AFP and the RFP match, check if 
-				// the RFP's hasCategory filler class is in the checklist
+					// If the MEPs of the AFP and the RFP match, check if 
+					// the RFP's hasCategory filler class is in the checklist
 				
-				if ( afpMEP.equalsIgnoreCase(rfpMEP) )
-				{
-					mepIsCompatible = true;
-					System.out.println("The message exchange pattern of the RFP (" + rfpMEP + ") matches the MEP of the AFP");
+					if ( afpMEP.equalsIgnoreCase(rfpMEP) )
+					{
+						mepIsCompatible = true;
 					
-					for (OWLClass tmpClass : categoryCheckList)
+						// Check if the category of the RFP is the same as, or more generic than, the category of the AFP
+						categoryMatchFound = subsumptionIndex.isSubsumedBy(afpHasCategoryClass, hasCategoryFillerClass);
+					}
+					else
 					{
-						if (!categoryMatchFound && 
-								hasCategoryFillerClass.getURI().normalize().toString().equalsIgnoreCase(
-										tmpClass.getURI().normalize().toString()))
-						{
-							//System.out.println("Category Match found!");
-							categoryMatchFound = true;
-						}
+						mepIsCompatible = false;
+						mepMismatches.incrementAndGet();
 					}
-				}
-				else
-				{
-					mepIsCompatible = false;
-					System.out.println("The message exchange pattern of the RFP (" + rfpMEP + ") does not match the MEP of the AFP (" + afpMEP + ")");
-				}
 				
-				// If this RFP matches with the AFP at the category level, 
-				// proceed to matchmaking at the input level (if MEP is in-only)
-				// or output-level (if MEP is out-only)
-				if (categoryMatchFound)
-				{
+					// If this RFP matches with the AFP at the category level, 
+					// proceed to matchmaking at the input level (if MEP is in-only)
+					// or output-level (if MEP is out-only)
+					if (categoryMatchFound)
+					{
 					
-					// //////////////////////
-					// IN-ONLY MATCHMAKING 
-					// //////////////////////
+						// //////////////////////
+						// IN-ONLY MATCHMAKING 
+						// //////////////////////
 					
-					// if both AFP and RFP represent services with an in-only MEP
-					if (afpMEP.equalsIgnoreCase("in-only") && rfpMEP.equalsIgnoreCase("in-only"))
-					{
-						System.out.println("Category match detected for RFP " +  rfp + ", proceeding to input matching for this RFP");
-						if (inputCheckList.contains(hasInputFillerClass))
+						// if both AFP and RFP represent services with an in-only MEP
+						if (afpMEP.equalsIgnoreCase("in-only") && rfpMEP.equalsIgnoreCase("in-only"))
 						{
-							System.out.println("Input match detected for RFP " +  rfp + ", adding it to the list of matching RFPs");
-							returnedMatchingRFPs.add(rfp.asOWLClass().getURI().normalize().toString());
+							if (subsumptionIndex.isSubsumedBy(hasInputFillerClass, afpIncomingDataClass))
+							{
+								rfpMatches = true;
+							}
+							else
+								inputMismatches.incrementAndGet();
 						}
-						else
-							System.out.println("Input match was not detected for RFP " +  rfp);
-					}
 					
 					
-					// //////////////////////
-					// OUT-ONLY MATCHMAKING 
-					// //////////////////////
+						// //////////////////////
+						// OUT-ONLY MATCHMAKING 
+						// //////////////////////
 					
-					// if both AFP and RFP represent services with an out-only MEP
-					if (afpMEP.equalsIgnoreCase("out-only") && rfpMEP.equalsIgnoreCase("out-only"))
-					{
-						System.out.println("Category match detected for RFP " +  rfp + ", proceeding to output matching for this RFP");
-						if (outputCheckList.contains(hasOutputFillerClass))
+						// if both AFP and RFP represent services with an out-only MEP
+						if (afpMEP.equalsIgnoreCase("out-only") && rfpMEP.equalsIgnoreCase("out-only"))
 						{
-							System.out.println("Output match detected for RFP " +  rfp + ", adding it to the list of matching RFPs");
-							returnedMatchingRFPs.add(rfp.asOWLClass().getURI().normalize().toString());
+							if (subsumptionIndex.isSubsumedBy(afpOutgoingDataClass, hasOutputFillerClass))
+							{
+								rfpMatches = true;
+							}
+							else
+								outputMismatches.incrementAndGet();
 						}
-						else
-							System.out.println("Output match was not detected for RFP " +  rfp);
-					}
 					
 					
-					// //////////////////////
-					// IN-OUT MATCHMAKING 
-					// //////////////////////
+						// //////////////////////
+						// IN-OUT MATCHMAKING 
+						// //////////////////////
 					
-					// if both AFP and RFP represent services with an in-out MEP
-					if (afpMEP.equalsIgnoreCase("in-out") && rfpMEP.equalsIgnoreCase("in-out"))
-					{
-						System.out.println("Category match detected for RFP " +  rfp + ", proceeding to input matching for this RFP");
-						if (inputCheckList.contains(hasInputFillerClass))
+						// if both AFP and RFP represent services with an in-out MEP
+						if (afpMEP.equalsIgnoreCase("in-out") && rfpMEP.equalsIgnoreCase("in-out"))
 						{
-							System.out.println("Input match detected for RFP " +  rfp + ", proceeding to output matching");
-							if (outputCheckList.contains(hasOutputFillerClass))
+							if (subsumptionIndex.isSubsumedBy(hasInputFillerClass, afpIncomingDataClass))
 							{
-								System.out.println("Output match detected for RFP " +  rfp + ", adding it to the list of matching RFPs");
-								returnedMatchingRFPs.add(rfp.asOWLClass().getURI().normalize().toString());
+								if (subsumptionIndex.isSubsumedBy(afpOutgoingDataClass, hasOutputFillerClass))
+								{
+									rfpMatches = true;
+								}
+								else
+									outputMismatches.incrementAndGet();
 							}
 							else
-								System.out.println("Output match was not detected for RFP " +  rfp);
+								inputMismatches.incrementAndGet();
 						}
-						else
-							System.out.println("Input match was not detected for RFP " +  rfp);
-					}
 					
 					
-				} // end-if this RFP matches with the AFP at the category level
-				else
-				{	
-					if (mepIsCompatible && !categoryMatchFound)
-					{
-						System.out.println("Category match was not detected for RFP " +  rfp);
+					} // end-if this RFP matches with the AFP at the category level
+					else
+					{	
+						if (mepIsCompatible && !categoryMatchFound)
+						{
+							categoryMismatches.incrementAndGet();
+						}
 					}
-				}
 				
 				
-			}// end if both AFP and RFP represent in-only, out-only, or in-out services
-			else
-			{
-				System.out.println("The message exchange pattern of the RFP does not match the MEP of the AFP (" + afpMEP + ")");		
-			}
-			
-			// Reset the collector to reuse it in the next iteration
-			collector.reset();
-			
+				}// end if both AFP and RFP represent in-only, out-only, or in-out services
+				else
+				{
+					mepMismatches.incrementAndGet();
+				}
 			
-		}// end for every RFP
+				return rfpMatches;
+			}
+		});
+
+		// Collect the URIs of the matching RFPs, in the order of the set of RFPs
+		for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1))
+		{
+			returnedMatchingRFPs.add(rfps.get(i).asOWLClass().getURI().normalize().toString());
+		}
 		
-		// 
+		System.out.println(mepMismatches + " RFPs did not match the MEP of the AFP, " + categoryMismatches + " its category, " 
+				+ inputMismatches + " its inputs and " + outputMismatches + " its outputs");
 		if (returnedMatchingRFPs.size() == 0)
 			System.out.println("No RFP was detected to match the AFP. ");
 		else
@@ -993,78 +1132,6 @@ public class PublicationTimeMatchmaker
 		return new SemanticProfileURICollection(returnedMatchingRFPs);
 				
 	}
-
-
-
-	
-	
-	
-	
-	/**
-	 * @param subsumedClass
-	 * @param rootClass
-	 * @param reasoner
-	 * @return
-	 * @throws SemanticRegistryMatchmakingException
-	 */
-	private boolean isnferredSubClassOf(OWLClass subsumedClass,
-			OWLClass rootClass, OWLReasoner reasoner) throws SemanticRegistryMatchmakingException
-	{
-
-		Set<Set<OWLClass>> inferredSubClassesSetOfSets = new HashSet<Set<OWLClass>>();
-		try
-		{
-			inferredSubClassesSetOfSets = reasoner.getDescendantClasses(rootClass);
-		}
-		catch (OWLReasonerException e)
-		{
-			System.out.println("OWLReasonerException: " + e.getCause());
-			throw new SemanticRegistryMatchmakingException("????????????");
-		}
-		
-		for (Set<OWLClass> inferredSubClassesSet : inferredSubClassesSetOfSets)
-		{
-			// iterate over all classes...
-			for (OWLClass subClass : inferredSubClassesSet)
-			{
-				// ... and return true as soon as the URIs of the two class match 
-				if (subClass.getURI().toString().equalsIgnoreCase(subsumedClass.getURI().toString())) 
-				{
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-
-
-
-
-
-
-
-	/**
-	 * @param classToCheck
-	 * @param rootClass
-	 * @param ontology
-	 * @return
-	 */
-	private boolean isAssertedSubClassOf(OWLClass classToCheck, OWLClass rootClass, OWLOntology ontology)
-	{
-		// Get a set of all classes in the ontology
-		Set<OWLDescription> allAssertedSubclassesOfRootClass = rootClass.getSubClasses(ontology);
-		
-		//System.out.println("allAssertedSubclassesOfRootClass.size(): " + allAssertedSubclassesOfRootClass.size());
-		
-		//System.out.print("Checking (IN MODE A) if " + classToCheck + " is subclass of " + rootClass + ": ");
-		if (allAssertedSubclassesOfRootClass.contains((OWLDescription)classToCheck)) 
-		{
-			//System.out.println("YES");
-			return true;
-		}
-
-		return false;
-	}
 	
 	
 	
@@ -1073,18 +1140,14 @@ public class PublicationTimeMatchmaker
 	
 	
 	/**
-	 * @param manager
-	 * @param semRegKBontology
 	 * @param factory
-	 * @param classInObjectPropertyDomain
 	 * @param objectProperty
 	 * @param objectPropertyRangeURIs
 	 * @return
 	 * @throws SemanticRegistryMatchmakingException
 	 */
-	Set<OWLDescription> createExistentialAndUniversalRestrictions(OWLOntologyManager manager,
-			OWLOntology semRegKBontology, OWLDataFactory factory,
-			OWLClass classInObjectPropertyDomain, OWLObjectProperty objectProperty,
+	Set<OWLDescription> createExistentialAndUniversalRestrictions(OWLDataFactory factory,
+			OWLObjectProperty objectProperty,
 			List<String> objectPropertyRangeURIs) throws SemanticRegistryMatchmakingException
 	{
 		// Create a set to hold all restrictions (one existential per annotation
@@ -1170,18 +1233,14 @@ public class PublicationTimeMatchmaker
 	
 	
 	/**
-	 * @param manager
-	 * @param semRegKBontology
 	 * @param factory
-	 * @param classInObjectPropertyDomain
 	 * @param objectProperty
 	 * @param objectPropertyRangeURIs
 	 * @return
 	 * @throws SemanticRegistryMatchmakingException
 	 */
-	Set<OWLDescription> createExistentialRestrictions(OWLOntologyManager manager,
-			OWLOntology semRegKBontology, OWLDataFactory factory,
-			OWLClass classInObjectPropertyDomain, OWLObjectProperty objectProperty,
+	Set<OWLDescription> createExistentialRestrictions(OWLDataFactory factory,
+			OWLObjectProperty objectProperty,
 			List<String> objectPropertyRangeURIs) throws SemanticRegistryMatchmakingException
 	{
 		// For every annotation URI pointing to a class X: create an existential
@@ -1246,173 +1305,4 @@ public class PublicationTimeMatchmaker
 	
 	
 	
-	/**
-	 * @param targetClassName
-	 * @param importsClosure
-	 * @param factory
-	 * @return
-	 * @throws SemanticRegistryConfigurationException
-	 */
-	private static OWLOntology getDefiningOntology(
-			String targetClassName, 
-			Set<OWLOntology> importsClosure, 
-			OWLDataFactory factory) 
-	
-	throws SemanticRegistryConfigurationException
-	{
-		// Determine which of the ontologies imported by the SRKB 
-		// ontology (directly or indirectly) is the ontology in which 
-		// the targetClassName is defined, and retrieve its logical URI
-		System.out.println("Scanning for " + targetClassName + " in the import closure of the SRKB ontology:");
-		
-		OWLClass tmpClass = null; 
-		OWLOntology returnedOntology = null;
-		
-		// Create a map to store search result tuples (ontology logical URI, number of subclasses detected)
-		Map<OWLOntology, Integer> ontologySearchResults = new HashMap<OWLOntology, Integer>();
-		
-		URI targetClassURI = URI.create(targetClassName);
-		
-		// Iterate over every ontology in the imports closure and check  
-		// if it contains any asserted subclasses of targetClassName
-		for (OWLOntology ont : importsClosure)
-		{
-			if (targetClassURI.isAbsolute())
-			{
-				tmpClass = factory.getOWLClass(targetClassURI);
-			}
-			else
-			{
-				tmpClass = factory.getOWLClass(URI.create(ont.getURI() + targetClassName));
-			}
-			
-			//System.out.println("Looking for subclasses of " + tmpClass.getURI() + " in " + ont.getURI());
-			Set<OWLDescription> foundSubClasses = tmpClass.getSubClasses(ont);
-			
-			// The containsEntityDeclaration method offers the best technique for 
-			// the specific purpose but cannot be used as it is still not implemented 
-			// in the latest binary release of the OWL-API (v2.1.1 - 16th August 2007)
-			//if (ont.containsEntityDeclaration(target)) 
-			//System.out.println("A declaration for concept " + tmpClass.getURI() + " was found in " + ont.getURI());
-			
-			// Since a concept with the specified name (targetClassName) may be defined in more 
-			// than one ontologies in the closure, judging which is the correct ontology that we 
-			// are after can only be based on a heuristic (the number of concepts in the ontology 
-			// that are defined as asserted subclasses of the target class - the more the better)
-			
-			// If at least one asserted subclass of the target class has been found
-			if (foundSubClasses.size() > 0)
-			{				
-				// Add it to the search results map
-				ontologySearchResults.put(ont, foundSubClasses.size());
-			}
-		}
-		
-		// If none of the ontologies in the import closure of the SRKB contains a 
-		// subclass of the target class, there is a configuration problem
-		if (ontologySearchResults.size() == 0)
-		{
-			throw new SemanticRegistryConfigurationException(
-					"Configuration problem detected: None of the ontologies in the import closure " +
-					"of the SRKB ontology contains subclasses of the " + targetClassName + " concept. " +
-					"Make sure that the SRKB ontology imports (directly or indirectly) some ontology " +
-					"in which a " + targetClassName + " concept as well as several subclass concepts are defined.");
-		}
-		
-		// Standard case: only one ontology from the SRKB's imports closure 
-		// contains asserted subclasses of the target concept 
-		if (ontologySearchResults.size() == 1)
-		{
-			returnedOntology = ontologySearchResults.keySet().iterator().next();
-			//int subclasses = ontologySearchResults.get(targetOntologyLogicalURI);
-			//System.out.println("FOUND " + subclasses + " subclasses of #TaxonomyEntity in " + taxonomyOntologyLogicalURI);
-		}
-		
-		// Exceptional case: more than one ontology from the SRKB's imports closure 
-		// contain asserted subclasses of the target class. Therefore Judging which 
-		// is the correct ontology can only be based on a heuristic (we choose the number of 
-		// is the correct asserted subclasses that were detected - the more being the better) 
-		if (ontologySearchResults.size() > 1)
-		{
-			int maxSubClassesFound = 0 ;
-			OWLOntology ontContainingMaxSubClasses = null;
-		    
-			// Get the keys (URIs) and values (number of subclasses) for every entry in the map
-		    for (Iterator it = ontologySearchResults.entrySet().iterator(); it.hasNext(); ) 
-		    {
-		        Map.Entry entry = (Map.Entry)it.next();
-		        OWLOntology onto = (OWLOntology) entry.getKey();
-		        Integer numOfSubclasses = (Integer) entry.getValue();
-		        
-		        if (numOfSubclasses.intValue() > maxSubClassesFound)
-		        {
-		        	maxSubClassesFound = numOfSubclasses.intValue();
-		        	ontContainingMaxSubClasses = onto;
-		        }
-		    }
-		    returnedOntology = ontContainingMaxSubClasses;
-		}
-		
-		System.out.println("Subclasses of the " + tmpClass + " concept are defined in " + returnedOntology.getURI());
-		return returnedOntology;
-	}
-	
-	
-	
-	
-	
-	
-	
-	/**
-	 * @param man
-	 * @return
-	 */
-	private static OWLReasoner createReasoner(OWLOntologyManager man)
-	{
-		try
-		{
-			// The following code is a little overly complicated. The reason for
-			// using reflection to create an instance of pellet is so that there 
-			// is no compile time dependency (since the pellet libraries aren't 
-			// contained in the OWL API repository). Normally, one would simply 
-			// create an instance using the following incantation:
-			//
-			// OWLReasoner reasoner = new Reasoner()
-			//
-			// Where the full class name for Reasoner is
-			// org.mindswap.pellet.owlapi.Reasoner
-			//
-			// Pellet requires the Pellet libraries (pellet.jar,
-			// aterm-java-x.x.jar) and the
-			// XSD libraries that are bundled with pellet: xsdlib.jar and
-			// relaxngDatatype.jar
-
-			String reasonerClassName = "org.mindswap.pellet.owlapi.Reasoner";
-			Class reasonerClass = Class.forName(reasonerClassName);
-			Constructor<OWLReasoner> con = reasonerClass.getConstructor(OWLOntologyManager.class);
-
-			return con.newInstance(man);
-		}
-		catch (ClassNotFoundException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (IllegalAccessException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (NoSuchMethodException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (InvocationTargetException e)
-		{
-			throw new RuntimeException(e);
-		}
-		catch (InstantiationException e)
-		{
-			throw new RuntimeException(e);
-		}
-	}
-
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryConfigurationException;
+
+/**
+ * The process-wide configuration of the Semantic Registry, loaded once from
+ * the registry.properties file. {@link #initialize()} applies the settings
+ * of the file to the components shared by all handlers (the UDDI proxy pool
+ * and transport, the matchmaking threads, the caches, the SRKB, the AFP
+ * store, the publication indexer and the fan-out executor), and finishes
+ * the work left over by an earlier process. It is called by the web service
+ * skeletons before they create a handler, and only does its work the first
+ * time (the leftover work is tried again until it succeeds). Handlers read
+ * their own settings through {@link #getProperties()}, and leave the shared
+ * components alone, so that a request never changes them while other
+ * requests are using them.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class RegistryConfiguration
+{
+	// The settings loaded from the registry.properties file, or null until they are loaded
+	private static Properties properties = null;
+
+	// Set once the shared components have been configured
+	private static boolean configured = false;
+
+	// Set once the work left over by an earlier process has been finished
+	private static boolean recovered = false;
+
+
+
+
+
+
+
+	/**
+	 * Returns the settings of the registry.properties file, which is looked
+	 * up in the classloader's context (under /WEB-INF/classes/) and loaded
+	 * the first time they are needed. The returned object must not be
+	 * modified.
+	 *
+	 * @return
+	 * @throws SemanticRegistryConfigurationException if the file cannot be
+	 * found or read
+	 */
+	public static synchronized Properties getProperties()
+
+	throws SemanticRegistryConfigurationException
+	{
+		if (properties != null)
+			return properties;
+
+		InputStream inputStream = RegistryConfiguration.class.getClassLoader().getResourceAsStream("registry.properties");
+		if (inputStream == null)
+		{
+			System.out.println("The registry.properties file could not be located");
+			throw new SemanticRegistryConfigurationException("The classloader could not locate and load the registry.properties file");
+		}
+
+		Properties loadedProperties = new Properties();
+		try
+		{
+			try
+			{
+				loadedProperties.load(inputStream);
+			}
+			finally
+			{
+				inputStream.close();
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("SemanticRegistryConfigurationException occured!");
+			throw new SemanticRegistryConfigurationException("Problem loading the registry.properties file");
+		}
+
+		properties = loadedProperties;
+		return properties;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Discards the loaded settings, so that the registry.properties file is
+	 * read again the next time they are needed. Called after the file has
+	 * been rewritten. The shared components keep the settings they were
+	 * configured with.
+	 */
+	static synchronized void reloadProperties()
+	{
+		properties = null;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Configures the components shared by all handlers from the
+	 * registry.properties file, and finishes the work left over by an
+	 * earlier process, unless this has already been done. Handlers wait for
+	 * it to finish.
+	 *
+	 * @throws SemanticRegistryConfigurationException
+	 */
+	public static synchronized void initialize()
+
+	throws SemanticRegistryConfigurationException
+	{
+		if (!configured)
+		{
+			Properties settings = getProperties();
+
+			// Set how the proxies talk to the UDDI server, and how long each call may take
+			UDDIProxyPool.getInstance().configure(settings);
+			UDDITransportConfiguration.configure(settings);
+
+			// Set the number of threads and the profile count above which matchmaking runs in parallel
+			ParallelMatcher.configure(settings);
+
+			// Set the number of discovery results kept in the cache
+			DiscoveryResultCache.getInstance().configure(settings);
+
+			// Set the number of RFP ontologies kept loaded, and how often their documents are revalidated
+			OntologyDocumentCache.getInstance().configure(settings);
+
+			// Set how changes to the SRKB ontology are grouped, and how many are journalled before its document is written again
+			SemanticRegistryKnowledgeBase.configure(settings);
+
+			// Set where the AFP rows are kept outside the heap
+			AdvertisementDescriptorStore.configure(settings);
+
+			// Set whether services are indexed after their publication has returned, and by how many threads
+			PublicationIndexer.getInstance().configure(settings);
+
+			// Set how many UDDI calls of bulk operations are sent side by side, and how long each may take
+			UDDIFanOutExecutor.getInstance().configure(settings);
+
+			configured = true;
+		}
+
+		// Remove the provisional AFPs and resume the indexing left over by an earlier process
+		if (!recovered)
+			recovered = new PublicationHandler().recoverUnfinishedWork();
+	}
+
+
+
+
+
+
+
+}
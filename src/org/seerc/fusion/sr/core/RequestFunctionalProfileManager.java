@@ -158,7 +158,7 @@ class RequestFunctionalProfileManager
 		{
 			// If the two URIs (targetOntologyPhysicalURI and functionalFacetOntologyPhysicalURI) 
 			// point to the same ontology there is no need to load it twice
-			if (targetOntologyPhysicalURI.normalize().toString().equalsIgnoreCase(functionalFacetOntologyPhysicalURI.normalize().toString()))
+			if (URIDictionary.getInstance().isSameURI(targetOntologyPhysicalURI, functionalFacetOntologyPhysicalURI))
 			{
 				ffOntology = targetOntology;				
 			}
@@ -522,6 +522,10 @@ class RequestFunctionalProfileManager
 			e.printStackTrace();
 			throw new OWLOntologyStorageException ("The RFP could not be saved to the specified ontology (" + targetOntologyPhysicalURI + ")");
 		}
+		
+		// The ontology may be part of the imports closure of the SRKB, 
+		// so the resident knowledge base must be reloaded before it is used again
+		SemanticRegistryKnowledgeBase.invalidateAll();
 	}// end method
 	
 	
@@ -598,7 +602,7 @@ class RequestFunctionalProfileManager
 		{
 			// If the two URIs (targetOntologyPhysicalURI and functionalFacetOntologyPhysicalURI) 
 			// point to the same ontology there is no need to load it twice
-			if (targetOntologyPhysicalURI.normalize().toString().equalsIgnoreCase(functionalFacetOntologyPhysicalURI.normalize().toString()))
+			if (URIDictionary.getInstance().isSameURI(targetOntologyPhysicalURI, functionalFacetOntologyPhysicalURI))
 			{
 				ffOntology = targetOntology;				
 			}
@@ -735,6 +739,10 @@ class RequestFunctionalProfileManager
 		{
 			throw new OWLOntologyStorageException("Problem saving the updated ontology (" + targetOntologyPhysicalURI + ")");
 		}
+		
+		// The ontology may be part of the imports closure of the SRKB, 
+		// so the resident knowledge base must be reloaded before it is used again
+		SemanticRegistryKnowledgeBase.invalidateAll();
 
 	}
 	
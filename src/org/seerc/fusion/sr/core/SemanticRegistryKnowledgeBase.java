@@ -0,0 +1,2058 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.apibinding.OWLManager;
+import org.semanticweb.owl.inference.OWLReasoner;
+import org.semanticweb.owl.inference.OWLReasonerException;
+import org.semanticweb.owl.io.RDFXMLOntologyFormat;
+import org.semanticweb.owl.model.AddAxiom;
+import org.semanticweb.owl.model.OWLAxiom;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDescription;
+import org.semanticweb.owl.model.OWLOntology;
+import org.semanticweb.owl.model.OWLOntologyChange;
+import org.semanticweb.owl.model.OWLOntologyChangeException;
+import org.semanticweb.owl.model.OWLOntologyChangeListener;
+import org.semanticweb.owl.model.OWLOntologyCreationException;
+import org.semanticweb.owl.model.OWLOntologyFormat;
+import org.semanticweb.owl.model.OWLOntologyManager;
+import org.semanticweb.owl.model.OWLOntologyStorageException;
+import org.semanticweb.owl.model.RemoveAxiom;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * A long-lived, process-wide holder of the Semantic Registry Knowledge Base
+ * (SRKB). The SRKB ontology and its imports closure are loaded and classified
+ * once, and the classified hierarchy is handed out to the matchmakers through
+ * read-only {@link SemanticRegistryKnowledgeBaseView} objects.
+ *
+ * Changes to the SRKB ontology must be made through
+ * {@link #applyChanges(Set, Set)}. Changes requested while another one is
+ * being made (e.g. while a batch of services is being published) are
+ * committed together as a group, with a single journal record and a single
+ * classification. Every change is made to a
+ * copy of the SRKB ontology and of the classified hierarchy, and the copies
+ * are then published in a new base view, so views that are in use are never
+ * affected by a change and are read without locking. Classes added or
+ * removed by the change (e.g. the classes of an AFP) are placed in or removed
+ * from the copied hierarchy by an {@link IncrementalClassifier}, and classes
+ * that are only renamed keep their place in it; other
+ * changes cause the whole imports closure to be reloaded and reclassified.
+ * Changes are recorded in an {@link OntologyChangeJournal} kept next to the
+ * SRKB ontology document, which is replayed whenever the document is loaded
+ * and is folded back into the document in the background once it has grown
+ * long. The SRKB ontology document is replaced in a single step, so it is
+ * never seen half-written. After the SRKB has been classified, after the
+ * journal has been folded, and when the process shuts down, a
+ * {@link KnowledgeBaseSnapshot} of the classified hierarchy is written, from
+ * which the hierarchy is restored on the next start if the documents have
+ * not changed in the meantime. Changes made to the ontology documents by
+ * other means are picked up by {@link #refresh()} or {@link #invalidate()}, and, for
+ * local files, automatically the next time a view is opened.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class SemanticRegistryKnowledgeBase
+{
+	// The knowledge bases created so far, keyed by the SRKB physical URI
+	private static final Map<String, SemanticRegistryKnowledgeBase> instances = new HashMap<String, SemanticRegistryKnowledgeBase>();
+
+	// The maximum number of classified views kept for ontologies that are not part of the imports closure
+	static final int MAX_EXTENDED_VIEWS = 8;
+
+	// The number of classes that may be placed in or retracted from the hierarchy before it is fully reclassified
+	static final int MAX_INCREMENTAL_CHANGES = 1000;
+
+	// The default number of journalled changes after which the journal is folded into the SRKB ontology document
+	static final int DEFAULT_JOURNAL_COMPACTION_THRESHOLD = 500;
+
+	// The number of journalled changes after which the journal is folded into the SRKB ontology document (0 disables the journal)
+	private static volatile int journalCompactionThreshold = DEFAULT_JOURNAL_COMPACTION_THRESHOLD;
+
+	// The time (in seconds) the shutdown hook waits for a change in progress to finish before giving up on the snapshot
+	static final long SHUTDOWN_LOCK_TIMEOUT = 10;
+
+	// The time (in milliseconds) a change waits for other changes to join its group (0 to only group the changes already waiting)
+	private static volatile long groupCommitWindow = 0;
+
+	// The thread folding the journals into the SRKB ontology documents, created when first needed
+	private static ExecutorService compactor;
+
+	// The physical URI of the SRKB ontology
+	URI srkbOntologyPhysicalURI;
+
+	// The manager holding the imports closure of the SRKB ontology, as it was loaded
+	OWLOntologyManager manager;
+
+	// The manager holding the current copy of the SRKB ontology
+	OWLOntologyManager srkbManager;
+
+	// The format of the SRKB ontology document, used for saving the copies of the ontology
+	OWLOntologyFormat srkbOntologyFormat;
+
+	// The SRKB ontology (the current copy)
+	OWLOntology srkbOntology;
+
+	// The imports closure of the SRKB ontology (including the current copy of the SRKB ontology)
+	Set<OWLOntology> importsClosure;
+
+	// The manager holding the copy of the SRKB ontology replaced by the last change, kept to be reused by the next one (or null)
+	OWLOntologyManager spareManager;
+
+	// The copy of the SRKB ontology replaced by the last change (or null)
+	OWLOntology spareOntology;
+
+	// The axioms added by the last change, which must be added to the spare copy before it is reused
+	Set<OWLAxiom> spareAxiomsToAdd;
+
+	// The axioms removed by the last change, which must be removed from the spare copy before it is reused
+	Set<OWLAxiom> spareAxiomsToRemove;
+
+	// Set when the current copy of the SRKB ontology has been loaded to the reasoner of some view, and must never be changed
+	boolean srkbOntologyInReasoner = false;
+
+	// The number of open views of every copy of the SRKB ontology that has any (guarded by the extended views lock)
+	Map<OWLOntology, Integer> openViewCounts = new IdentityHashMap<OWLOntology, Integer>();
+
+	// The view of the classified imports closure, replaced (while holding the extended views lock) on every change
+	volatile SemanticRegistryKnowledgeBaseView baseView;
+
+	// The views of the imports closure extended with some other ontology, keyed by its physical URI
+	Map<String, SemanticRegistryKnowledgeBaseView> extendedViews;
+
+	// The modification times of the local ontology documents, used to detect changes made by other means
+	volatile Map<File, Long> documentTimestamps = new HashMap<File, Long>();
+
+	// The version of the knowledge base, incremented every time it is (re)classified
+	volatile long version = 0;
+
+	// Set when the ontology documents must be reloaded before the next view is opened
+	volatile boolean stale = true;
+
+	// Held while loading or changing the knowledge base (views are read without locking)
+	final ReentrantLock lock = new ReentrantLock();
+
+	// The journal of the changes made since the SRKB ontology document was last written (null if it is not a local file)
+	OntologyChangeJournal journal;
+
+	// The changes waiting to be committed, in the order they were requested (guarded by itself)
+	List<PendingChange> pendingChanges = new ArrayList<PendingChange>();
+
+	// Set while a compaction of the journal is waiting to run (guarded by the lock)
+	boolean compactionScheduled = false;
+
+	// The file keeping the snapshot of the classified hierarchy (null if the SRKB ontology document is not a local file)
+	File snapshotFile;
+
+	// The version of the knowledge base the snapshot was last written for, or restored from
+	volatile long snapshotVersion = -1;
+
+	// Set once the snapshot is arranged to be written when the process shuts down
+	boolean shutdownHookAdded = false;
+
+
+
+
+
+
+
+	/**
+	 * Creates a knowledge base for the SRKB ontology found at the given
+	 * physical URI. Nothing is loaded until the first view is opened.
+	 *
+	 * @param srkbOntologyPhysicalURI
+	 */
+	SemanticRegistryKnowledgeBase(URI srkbOntologyPhysicalURI)
+	{
+		this.srkbOntologyPhysicalURI = srkbOntologyPhysicalURI;
+
+		// Keep the journal and the snapshot next to the SRKB ontology document
+		if ("file".equalsIgnoreCase(srkbOntologyPhysicalURI.getScheme()))
+		{
+			File file = new File(srkbOntologyPhysicalURI);
+			this.journal = new OntologyChangeJournal(new File(file.getParentFile(), file.getName() + ".journal"));
+			this.snapshotFile = new File(file.getParentFile(), file.getName() + ".snapshot");
+		}
+
+		// Keep the most recently used extended views only
+		this.extendedViews = new LinkedHashMap<String, SemanticRegistryKnowledgeBaseView>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, SemanticRegistryKnowledgeBaseView> eldest)
+			{
+				return size() > MAX_EXTENDED_VIEWS;
+			}
+		};
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the process-wide knowledge base for the SRKB ontology found at
+	 * the given physical URI, creating it if this is the first time it is
+	 * requested.
+	 *
+	 * @param srkbOntologyPhysicalURI
+	 * @return
+	 */
+	public static SemanticRegistryKnowledgeBase getInstance(URI srkbOntologyPhysicalURI)
+	{
+		String key = srkbOntologyPhysicalURI.normalize().toString();
+
+		synchronized (instances)
+		{
+			SemanticRegistryKnowledgeBase kb = instances.get(key);
+			if (kb == null)
+			{
+				kb = new SemanticRegistryKnowledgeBase(srkbOntologyPhysicalURI);
+				instances.put(key, kb);
+			}
+			return kb;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of changes to the SRKB ontology that are journalled
+	 * before the journal is folded into the SRKB ontology document, from the
+	 * srkb_journal_compaction_threshold property of registry.properties (0
+	 * disables the journal, so that the document is written on every change),
+	 * and the time a change waits for other changes to be committed along
+	 * with it, from the srkb_group_commit_window property (in milliseconds).
+	 *
+	 * @param properties
+	 */
+	public static void configure(Properties properties)
+	{
+		try
+		{
+			if (properties.getProperty("srkb_journal_compaction_threshold") != null)
+				journalCompactionThreshold = Math.max(0, Integer.parseInt(properties.getProperty("srkb_journal_compaction_threshold").trim()));
+			if (properties.getProperty("srkb_group_commit_window") != null)
+				groupCommitWindow = Math.max(0, Long.parseLong(properties.getProperty("srkb_group_commit_window").trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid srkb_journal_compaction_threshold or srkb_group_commit_window property in registry.properties -the defaults will be used-");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Marks every knowledge base created so far as stale, so that its ontology
+	 * documents are reloaded and reclassified before the next view is opened.
+	 * To be used after an ontology of the imports closure (e.g. the EAI
+	 * ontology) has been modified by other means.
+	 */
+	public static void invalidateAll()
+	{
+		synchronized (instances)
+		{
+			for (SemanticRegistryKnowledgeBase kb : instances.values())
+			{
+				kb.invalidate();
+			}
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a read-only view of the classified SRKB, in which the SRKB
+	 * ontology also plays the role of the ontology in which RFPs are defined.
+	 * The view should be closed when it is no longer needed.
+	 *
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	public SemanticRegistryKnowledgeBaseView openView()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		return openView(null);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a read-only view of the classified SRKB, in which the ontology
+	 * found at the given physical URI plays the role of the ontology in which
+	 * RFPs are defined. If that ontology is not part of the imports closure of
+	 * the SRKB, it is loaded and classified together with the imports closure
+	 * the first time it is requested. The view is a snapshot of the current
+	 * version of the knowledge base, and should be closed when it is no longer
+	 * needed.
+	 *
+	 * @param rfpOntologyPhysicalURI the physical URI of the ontology in which
+	 * RFPs are defined, or null if they are defined in the SRKB ontology
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	public SemanticRegistryKnowledgeBaseView openView(URI rfpOntologyPhysicalURI)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Reload the ontology documents if they have been changed by other means
+		if (stale || isModifiedOnDisk())
+		{
+			lock.lock();
+			try
+			{
+				if (stale || isModifiedOnDisk())
+					load();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		// The views are never changed, so the current one can be handed out as it is
+		if (rfpOntologyPhysicalURI != null
+				&& !URIDictionary.getInstance().isSameURI(rfpOntologyPhysicalURI, srkbOntologyPhysicalURI))
+		{
+			return getExtendedView(rfpOntologyPhysicalURI);
+		}
+		synchronized (extendedViews)
+		{
+			return retain(baseView);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Counts the given view as open, so that its copy of the SRKB ontology is
+	 * not reused for a later change until the view is closed. Must be called
+	 * while holding the extended views lock, for a view of the current
+	 * version.
+	 *
+	 * @param view
+	 * @return the view
+	 */
+	private SemanticRegistryKnowledgeBaseView retain(SemanticRegistryKnowledgeBaseView view)
+	{
+		Integer count = openViewCounts.get(view.srkbOntology);
+		openViewCounts.put(view.srkbOntology, Integer.valueOf((count == null) ? 1 : count.intValue() + 1));
+		return view;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Counts the given view as closed. Called by the view itself.
+	 *
+	 * @param view
+	 */
+	void closeView(SemanticRegistryKnowledgeBaseView view)
+	{
+		synchronized (extendedViews)
+		{
+			Integer count = openViewCounts.get(view.srkbOntology);
+			if (count == null)
+				return;
+
+			if (count.intValue() > 1)
+				openViewCounts.put(view.srkbOntology, Integer.valueOf(count.intValue() - 1));
+			else
+				openViewCounts.remove(view.srkbOntology);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Adds and removes the given axioms to and from a copy of the SRKB
+	 * ontology, records the change in the journal (or saves the copy to the
+	 * physical URI of the SRKB ontology, if there is no journal), and
+	 * publishes the copy together with an updated copy of the classified
+	 * hierarchy. If the axioms only introduce or remove classes that nothing
+	 * else refers to, those classes are placed in or removed from the copied
+	 * hierarchy; otherwise the imports closure is reloaded and reclassified.
+	 * Views opened afterwards reflect the change, while views opened before it
+	 * are not affected. If the change cannot be recorded, nothing is
+	 * published. Once it has been recorded it is not reported as failed: if
+	 * the imports closure cannot be reclassified, the knowledge base is
+	 * reloaded from its documents when it is next used.
+	 *
+	 * The change is committed together with the other changes requested
+	 * while the knowledge base was busy (and within the group commit window),
+	 * so it may have been committed by another thread by the time this
+	 * returns. If a group cannot be committed as a whole (in which case none
+	 * of it has been recorded), its changes are committed one by one, so that
+	 * a change only fails on its own account.
+	 *
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	public void applyChanges(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		applyChanges(axiomsToAdd, axiomsToRemove, new HashMap<OWLClass, OWLClass>());
+	}
+
+
+
+
+
+
+
+	/**
+	 * Applies the given axioms as described in {@link #applyChanges(Set, Set)},
+	 * where the axioms removed and added for the given classes only differ in
+	 * the names of the classes (e.g. the AFP of a service that was classified
+	 * under a provisional key, and its data set classes). Those classes keep
+	 * their place in the copied hierarchy under their new names, instead of
+	 * being removed and placed again, so the change takes no reasoning.
+	 *
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @param renamedClasses the new class of every renamed class
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	public void applyChanges(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove, Map<OWLClass, OWLClass> renamedClasses)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		PendingChange change = new PendingChange(axiomsToAdd, axiomsToRemove, renamedClasses);
+		synchronized (pendingChanges)
+		{
+			pendingChanges.add(change);
+		}
+
+		lock.lock();
+		try
+		{
+			// Commit the changes waiting so far, unless this one has been committed by another thread meanwhile
+			if (!change.committed)
+				commitPendingChanges();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (change.error != null)
+			throw change.error;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Commits the changes waiting to be committed as a group, after waiting
+	 * for the group commit window for more changes to join the group. Must be
+	 * called while holding the lock.
+	 */
+	private void commitPendingChanges()
+	{
+		if (groupCommitWindow > 0)
+		{
+			try
+			{
+				Thread.sleep(groupCommitWindow);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		List<PendingChange> group;
+		synchronized (pendingChanges)
+		{
+			group = new ArrayList<PendingChange>(pendingChanges);
+			pendingChanges.clear();
+		}
+
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		try
+		{
+			// Work out the net effect of the changes, taking them in the order they were requested
+			Set<OWLAxiom> axiomsToAdd = new HashSet<OWLAxiom>();
+			Set<OWLAxiom> axiomsToRemove = new HashSet<OWLAxiom>();
+			Map<OWLClass, OWLClass> renamedClasses = new HashMap<OWLClass, OWLClass>();
+			for (PendingChange change : group)
+			{
+				renamedClasses.putAll(change.renamedClasses);
+				for (OWLAxiom axiom : change.axiomsToRemove)
+				{
+					if (!axiomsToAdd.remove(axiom))
+						axiomsToRemove.add(axiom);
+				}
+				for (OWLAxiom axiom : change.axiomsToAdd)
+				{
+					if (!axiomsToRemove.remove(axiom))
+						axiomsToAdd.add(axiom);
+				}
+			}
+
+			commit(axiomsToAdd, axiomsToRemove, renamedClasses);
+
+			if (group.size() > 1)
+			{
+				chron.stop();
+				System.out.println(group.size() + " changes committed to the SRKB as a group in " + chron);
+			}
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			if (group.size() == 1)
+			{
+				group.get(0).error = e;
+			}
+			else
+			{
+				System.out.println("The group of " + group.size() + " changes could not be committed: " + e.getMessage() + " -the changes will be committed one by one-");
+				for (PendingChange change : group)
+				{
+					try
+					{
+						commit(change.axiomsToAdd, change.axiomsToRemove, change.renamedClasses);
+					}
+					catch (SemanticRegistryMatchmakingException changeException)
+					{
+						change.error = changeException;
+					}
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// Do not let the other threads of the group believe that their changes were committed
+			for (PendingChange change : group)
+			{
+				change.error = new SemanticRegistryMatchmakingException("An error occured while committing changes to the SRKB: " + e);
+			}
+			throw e;
+		}
+		finally
+		{
+			for (PendingChange change : group)
+			{
+				change.committed = true;
+			}
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Applies the given axioms to a copy of the SRKB ontology, records them,
+	 * and publishes the copy together with an updated copy of the classified
+	 * hierarchy, as described in {@link #applyChanges(Set, Set, Map)}. Must
+	 * be called while holding the lock.
+	 *
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @param renamedClasses
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void commit(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove, Map<OWLClass, OWLClass> renamedClasses)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Make sure the changes are applied to the latest contents of the SRKB ontology
+		if (stale || isModifiedOnDisk())
+			load();
+
+		// Find out if the hierarchy can be updated without reclassifying the
+		// imports closure (this must be done before the changes are applied)
+		Set<OWLClass> removedClasses = new HashSet<OWLClass>();
+		Map<OWLClass, OWLDescription> newDefinitions = new HashMap<OWLClass, OWLDescription>();
+		Map<OWLClass, OWLDescription> newDescriptions = new HashMap<OWLClass, OWLDescription>();
+		boolean incremental = baseView.classifier.getChangeCount() < MAX_INCREMENTAL_CHANGES
+				&& IncrementalClassifier.getRemovedClasses(axiomsToRemove, srkbOntology, importsClosure, removedClasses)
+				&& IncrementalClassifier.getNewClasses(axiomsToAdd, importsClosure, baseView.getDataFactory(), baseView.classifier, newDefinitions, newDescriptions);
+
+		// Make the changes to a copy of the SRKB ontology, leaving the ontology of the open views untouched
+		OWLOntologyManager newSrkbManager = getChangeableCopy();
+		OWLOntology newSrkbOntology = newSrkbManager.getOntology(srkbOntology.getURI());
+
+		// Create a change object for every axiom to be added or removed
+		List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		for (OWLAxiom axiom : axiomsToRemove)
+		{
+			changes.add(new RemoveAxiom(newSrkbOntology, axiom));
+		}
+		for (OWLAxiom axiom : axiomsToAdd)
+		{
+			changes.add(new AddAxiom(newSrkbOntology, axiom));
+		}
+
+		// Apply the changes
+		try
+		{
+			newSrkbManager.applyChanges(changes);
+		}
+		catch (OWLOntologyChangeException e)
+		{
+			System.out.println("OWLOntologyChangeException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while applying changes to the SRKB ontology in memory");
+		}
+
+		// Place the new classes in a copy of the hierarchy of the base view before the changes are
+		// recorded, so that the work that may fail is done while they can still be rejected
+		// (if they cannot be placed, the imports closure is reclassified once they are recorded)
+		IncrementalClassifier baseClassifier = null;
+		if (incremental)
+			baseClassifier = updateBaseCopy(srkbOntology, newSrkbOntology,
+					removedClasses, newDefinitions, newDescriptions, renamedClasses, axiomsToAdd, axiomsToRemove);
+
+		// Record the changes in the journal, or else save the whole changed copy
+		// (nothing has been published yet, so the knowledge base is left as it was if this fails)
+		if (journal != null && journalCompactionThreshold > 0)
+		{
+			journal.append(axiomsToAdd, axiomsToRemove);
+			if (journal.getRecordCount() >= journalCompactionThreshold)
+				scheduleCompaction();
+		}
+		else
+		{
+			writeSRKBOntology(newSrkbManager, newSrkbOntology);
+		}
+
+		// The changed copy takes the place of the SRKB ontology in the imports closure
+		OWLOntologyManager oldSrkbManager = srkbManager;
+		OWLOntology oldSrkbOntology = srkbOntology;
+		Set<OWLOntology> newImportsClosure = new HashSet<OWLOntology>(importsClosure);
+		newImportsClosure.remove(oldSrkbOntology);
+		newImportsClosure.add(newSrkbOntology);
+		srkbManager = newSrkbManager;
+		srkbOntology = newSrkbOntology;
+		importsClosure = Collections.unmodifiableSet(newImportsClosure);
+
+		// Keep the replaced copy for the next change, unless it is the loaded ontology or a reasoner holds it
+		if (oldSrkbManager != manager && !srkbOntologyInReasoner)
+		{
+			spareManager = oldSrkbManager;
+			spareOntology = oldSrkbOntology;
+			spareAxiomsToAdd = new HashSet<OWLAxiom>(axiomsToAdd);
+			spareAxiomsToRemove = new HashSet<OWLAxiom>(axiomsToRemove);
+		}
+		srkbOntologyInReasoner = false;
+
+		// Publish the placed classes, or else reload and reclassify the imports closure. The changes
+		// have been recorded, so they are not reported as failed (nor recorded again by the caller)
+		// if this fails; the knowledge base is reloaded from its documents when it is next used
+		try
+		{
+			if (baseClassifier != null)
+				classifyIncrementally(baseClassifier, oldSrkbOntology, removedClasses, newDefinitions, newDescriptions, renamedClasses, axiomsToAdd, axiomsToRemove);
+			else
+				load();
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			System.out.println("The recorded changes could not be classified: " + e.getMessage() + " -the SRKB will be reloaded-");
+			stale = true;
+		}
+		catch (RuntimeException e)
+		{
+			System.out.println("An error occured while classifying the recorded changes: " + e + " -the SRKB will be reloaded-");
+			stale = true;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reloads the SRKB ontology and its imports closure from their physical
+	 * URIs and reclassifies them.
+	 *
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	public void refresh()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		lock.lock();
+		try
+		{
+			load();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Marks the knowledge base as stale, so that its ontology documents are
+	 * reloaded and reclassified before the next view is opened.
+	 */
+	public void invalidate()
+	{
+		stale = true;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the version of the knowledge base. The version changes every
+	 * time the knowledge base is reloaded or changed.
+	 *
+	 * @return
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Loads the SRKB ontology and its imports closure using a new ontology
+	 * manager, and classifies them, or restores their classified hierarchy
+	 * from the snapshot. Must be called while holding the lock.
+	 *
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void load()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Create a new manager for the SRKB ontology
+		OWLOntologyManager newManager = OWLManager.createOWLOntologyManager();
+
+		// Load the SRKB ontology from its physical URI (OWL file)
+		OWLOntology newSrkbOntology = null;
+		try
+		{
+			newSrkbOntology = newManager.loadOntologyFromPhysicalURI(srkbOntologyPhysicalURI);
+			System.out.println("SRKB ontology loaded from " + srkbOntologyPhysicalURI);
+		}
+		catch (OWLOntologyCreationException e1)
+		{
+			System.out.println("OWLOntologyCreationException: " + e1.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the SRKB Ontology from its physical URI (" + srkbOntologyPhysicalURI + ")");
+		}
+
+		// Apply the changes journalled since the SRKB ontology document was last written
+		int journalledChanges = 0;
+		if (journal != null)
+			journalledChanges = journal.replay(newManager, newSrkbOntology);
+
+		// Obtain the imports closure of the SRKB ontology
+		Set<OWLOntology> newImportsClosure = newManager.getImportsClosure(newSrkbOntology);
+
+		System.out.println("Ontologies contained in the SRKB ontology's import closure:");
+		for (OWLOntology ont : newImportsClosure)
+		{
+			System.out.println(ont.getURI());
+		}
+
+		// Replace the previously loaded ontologies, dropping the copy kept for the next change
+		manager = newManager;
+		srkbManager = newManager;
+		spareManager = null;
+		spareOntology = null;
+		spareAxiomsToAdd = null;
+		spareAxiomsToRemove = null;
+		srkbOntologyInReasoner = false;
+		srkbOntologyFormat = newManager.getOntologyFormat(newSrkbOntology);
+		srkbOntology = newSrkbOntology;
+		importsClosure = Collections.unmodifiableSet(newImportsClosure);
+		documentTimestamps = getDocumentTimestamps(manager, importsClosure);
+
+		// Restore the classified hierarchy from the snapshot if it was taken of the same documents, or else classify them
+		long checksum = getDocumentChecksum();
+		KnowledgeBaseSnapshot snapshot = null;
+		if (checksum != -1)
+			snapshot = KnowledgeBaseSnapshot.read(snapshotFile, checksum, manager.getOWLDataFactory(), srkbOntology);
+		classifyImportsClosure(snapshot);
+		stale = false;
+
+		// Take a snapshot of a new classification for the next start
+		if (snapshot != null)
+			snapshotVersion = version;
+		else if (checksum != -1)
+			scheduleSnapshot(baseView, checksum);
+
+		if (snapshotFile != null && !shutdownHookAdded)
+		{
+			Runtime.getRuntime().addShutdownHook(new Thread("srkb-shutdown")
+			{
+				public void run()
+				{
+					shutdown();
+				}
+			});
+			shutdownHookAdded = true;
+		}
+
+		// Fold the journal into the SRKB ontology document if it has grown long or is no longer to be used
+		if (journalledChanges > 0 && journalledChanges >= journalCompactionThreshold)
+			scheduleCompaction();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Classifies the imports closure with a new reasoner, or restores its
+	 * classified hierarchy from a snapshot (in which case the reasoner is
+	 * only loaded when it is first needed), replaces the base view, drops all
+	 * extended views, and increments the version. Must be called while
+	 * holding the lock.
+	 *
+	 * @param snapshot a snapshot taken of the loaded documents, or null
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void classifyImportsClosure(KnowledgeBaseSnapshot snapshot)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		IncrementalClassifier classifier;
+		if (snapshot != null)
+		{
+			// The reasoner must be given the ontologies as they are now, not as they will be when it is needed
+			final OWLOntologyManager loadedManager = manager;
+			final OWLOntology loadedSrkbOntology = srkbOntology;
+			final Set<OWLOntology> loadedImportsClosure = importsClosure;
+			classifier = new IncrementalClassifier(new Callable<OWLReasoner>()
+			{
+				public OWLReasoner call() throws Exception
+				{
+					return classify(loadedManager, loadedSrkbOntology, loadedImportsClosure, null);
+				}
+			}, manager.getOWLDataFactory(), snapshot.index, snapshot.descriptorTable);
+		}
+		else
+		{
+			classifier = new IncrementalClassifier(classify(manager, srkbOntology, importsClosure, null), manager.getOWLDataFactory());
+		}
+		prepare(classifier);
+
+		// The roles of the ontologies may have changed along with them
+		OntologyRoleResolver.getInstance().invalidate();
+
+		version++;
+		SemanticRegistryKnowledgeBaseView newBaseView = new SemanticRegistryKnowledgeBaseView(this, version, manager.getOWLDataFactory(),
+				srkbOntology, importsClosure, srkbOntology, classifier);
+
+		synchronized (extendedViews)
+		{
+			extendedViews.clear();
+			baseView = newBaseView;
+		}
+
+		System.out.println(((snapshot != null) ? "SRKB restored from snapshot" : "SRKB classified") + " (version " + version + ")");
+		System.out.println(URIDictionary.getInstance().getStatistics());
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the classified hierarchy of the base view, in which
+	 * the changed copy of the SRKB ontology takes the place of the old one,
+	 * with the given classes removed from and placed in it. Nothing is
+	 * published. Must be called while holding the lock.
+	 *
+	 * @param oldSrkbOntology the SRKB ontology before the change
+	 * @param newSrkbOntology the changed copy of the SRKB ontology
+	 * @param removedClasses
+	 * @param newDefinitions
+	 * @param newDescriptions
+	 * @param renamedClasses
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @return the copy, or null if the hierarchy could not be updated, in
+	 * which case the imports closure must be reclassified
+	 */
+	private IncrementalClassifier updateBaseCopy(
+			OWLOntology oldSrkbOntology,
+			OWLOntology newSrkbOntology,
+			Set<OWLClass> removedClasses,
+			Map<OWLClass, OWLDescription> newDefinitions,
+			Map<OWLClass, OWLDescription> newDescriptions,
+			Map<OWLClass, OWLClass> renamedClasses,
+			Set<OWLAxiom> axiomsToAdd,
+			Set<OWLAxiom> axiomsToRemove)
+	{
+		try
+		{
+			return updateCopy(baseView.classifier, oldSrkbOntology, newSrkbOntology,
+					removedClasses, newDefinitions, newDescriptions, renamedClasses, axiomsToAdd, axiomsToRemove);
+		}
+		catch (OWLReasonerException e)
+		{
+			System.out.println("OWLReasonerException: " + e.getCause() + " -the SRKB will be reclassified-");
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			System.out.println("An error occured while placing classes in the SRKB hierarchy: " + e.getMessage() + " -the SRKB will be reclassified-");
+			return null;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Publishes the given copy of the hierarchy of the base view, and copies
+	 * of the hierarchies of the extended views with the given classes removed
+	 * from and placed in them, in new views with an incremented version.
+	 * Extended views for which this fails are dropped. Must be called while
+	 * holding the lock, after the changed copy of the SRKB ontology has taken
+	 * the place of the old one.
+	 *
+	 * @param baseClassifier the updated copy of the hierarchy of the base view
+	 * @param oldSrkbOntology the SRKB ontology before the change
+	 * @param removedClasses
+	 * @param newDefinitions
+	 * @param newDescriptions
+	 * @param renamedClasses
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 */
+	private void classifyIncrementally(
+			IncrementalClassifier baseClassifier,
+			OWLOntology oldSrkbOntology,
+			Set<OWLClass> removedClasses,
+			Map<OWLClass, OWLDescription> newDefinitions,
+			Map<OWLClass, OWLDescription> newDescriptions,
+			Map<OWLClass, OWLClass> renamedClasses,
+			Set<OWLAxiom> axiomsToAdd,
+			Set<OWLAxiom> axiomsToRemove)
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		IncrementalClassifier oldBaseClassifier = baseView.classifier;
+		long newVersion = version + 1;
+		SemanticRegistryKnowledgeBaseView newBaseView = new SemanticRegistryKnowledgeBaseView(this, newVersion, baseView.getDataFactory(),
+				srkbOntology, importsClosure, srkbOntology, baseClassifier);
+
+		// Publish the new views together, so that an extended view is never newer or older than the base view
+		synchronized (extendedViews)
+		{
+			Iterator<Map.Entry<String, SemanticRegistryKnowledgeBaseView>> it = extendedViews.entrySet().iterator();
+			while (it.hasNext())
+			{
+				Map.Entry<String, SemanticRegistryKnowledgeBaseView> entry = it.next();
+				SemanticRegistryKnowledgeBaseView view = entry.getValue();
+
+				// Views with a reasoner of their own must be updated separately
+				IncrementalClassifier classifier = baseClassifier;
+				if (view.classifier != oldBaseClassifier)
+				{
+					try
+					{
+						classifier = updateCopy(view.classifier, oldSrkbOntology, srkbOntology,
+								removedClasses, newDefinitions, newDescriptions, renamedClasses, axiomsToAdd, axiomsToRemove);
+					}
+					catch (OWLReasonerException e)
+					{
+						System.out.println("OWLReasonerException: " + e.getCause() + " -the view will be reclassified when requested-");
+						it.remove();
+						continue;
+					}
+					catch (RuntimeException e)
+					{
+						System.out.println("An error occured while placing classes in the hierarchy of the view: " + e.getMessage() + " -the view will be reclassified when requested-");
+						it.remove();
+						continue;
+					}
+				}
+
+				OWLOntology rfpOntology = (view.getRFPOntology() == oldSrkbOntology) ? srkbOntology : view.getRFPOntology();
+				entry.setValue(new SemanticRegistryKnowledgeBaseView(this, newVersion, view.getDataFactory(),
+						srkbOntology, importsClosure, rfpOntology, classifier));
+			}
+
+			version = newVersion;
+			baseView = newBaseView;
+		}
+
+		chron.stop();
+		System.out.println("SRKB hierarchy updated incrementally in " + chron + " (version " + version + ")");
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the given classifier, in which the changed copy of the
+	 * SRKB ontology takes the place of the old one, with the given classes
+	 * renamed in, removed from and placed in its hierarchy. The renamed
+	 * classes are only removed and placed like the others if they cannot be
+	 * renamed in the copy (e.g. because they were classified by its reasoner).
+	 *
+	 * @param classifier
+	 * @param oldSrkbOntology
+	 * @param newSrkbOntology
+	 * @param removedClasses
+	 * @param newDefinitions
+	 * @param newDescriptions
+	 * @param renamedClasses
+	 * @param axiomsToAdd
+	 * @param axiomsToRemove
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	private IncrementalClassifier updateCopy(
+			IncrementalClassifier classifier,
+			OWLOntology oldSrkbOntology,
+			OWLOntology newSrkbOntology,
+			Set<OWLClass> removedClasses,
+			Map<OWLClass, OWLDescription> newDefinitions,
+			Map<OWLClass, OWLDescription> newDescriptions,
+			Map<OWLClass, OWLClass> renamedClasses,
+			Set<OWLAxiom> axiomsToAdd,
+			Set<OWLAxiom> axiomsToRemove)
+
+	throws OWLReasonerException
+	{
+		IncrementalClassifier copy = classifier.copy(oldSrkbOntology, newSrkbOntology);
+		copy.updateAssertedHierarchy(newSrkbOntology, axiomsToAdd, axiomsToRemove);
+
+		// The renamed classes keep their place, so only the other ones are removed and placed
+		// (the given sets are left as they are, since they are used for every view)
+		if (!renamedClasses.isEmpty() && copy.rename(renamedClasses, newDefinitions, newDescriptions))
+		{
+			removedClasses = new HashSet<OWLClass>(removedClasses);
+			removedClasses.removeAll(renamedClasses.keySet());
+			newDefinitions = new HashMap<OWLClass, OWLDescription>(newDefinitions);
+			newDefinitions.keySet().removeAll(renamedClasses.values());
+			newDescriptions = new HashMap<OWLClass, OWLDescription>(newDescriptions);
+			newDescriptions.keySet().removeAll(renamedClasses.values());
+		}
+
+		copy.retract(removedClasses);
+		copy.place(newDefinitions, newDescriptions);
+		copy.prepare(newSrkbOntology, classifier.descriptorTable);
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Builds the subsumption index and the AFP table of the given classifier
+	 * before it is published in a view, with the root classes of the AFP
+	 * table of the base view (the table is left to be built on request if
+	 * that has not been built yet). Must be called while holding the lock.
+	 *
+	 * @param classifier
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void prepare(IncrementalClassifier classifier)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		AdvertisementDescriptorTable rootClassTable = (baseView != null) ? baseView.classifier.descriptorTable : null;
+		try
+		{
+			classifier.prepare(srkbOntology, rootClassTable);
+		}
+		catch (OWLReasonerException e)
+		{
+			System.out.println("OWLReasonerException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while indexing the classified SRKB hierarchy");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the view in which the ontology found at the given physical URI
+	 * plays the role of the ontology in which RFPs are defined, loading and
+	 * classifying it if necessary. Creating a view takes the lock, since it
+	 * must be done for the current contents of the knowledge base.
+	 *
+	 * @param rfpOntologyPhysicalURI
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private SemanticRegistryKnowledgeBaseView getExtendedView(URI rfpOntologyPhysicalURI)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		String key = rfpOntologyPhysicalURI.normalize().toString();
+
+		// Get the RFP ontology, which is only downloaded and parsed again if its document has changed
+		OWLOntology rfpOntology = OntologyDocumentCache.getInstance().getOntology(rfpOntologyPhysicalURI);
+
+		SemanticRegistryKnowledgeBaseView view = getCurrentExtendedView(key, rfpOntology);
+		if (view != null)
+			return view;
+
+		lock.lock();
+		try
+		{
+			// Another thread may have created the view in the meantime
+			view = getCurrentExtendedView(key, rfpOntology);
+			if (view != null)
+				return view;
+
+			// Check if the RFP ontology is included in the imports closure
+			OWLOntology includedOntology = null;
+			URIDictionary dictionary = URIDictionary.getInstance();
+			for (OWLOntology ont : importsClosure)
+			{
+				if (dictionary.isSameURI(ont.getURI(), rfpOntology.getURI()))
+					includedOntology = ont;
+			}
+
+			if (includedOntology != null)
+			{
+				// The already classified imports closure can be used as it is
+				System.out.println("RFP Ontology included in the SRKB imports closure");
+				view = new SemanticRegistryKnowledgeBaseView(this, version, baseView.getDataFactory(),
+						srkbOntology, importsClosure, includedOntology, baseView.classifier);
+			}
+			else
+			{
+				// The RFP ontology must be classified together with the imports closure
+				System.out.println("RFP Ontology not included in the SRKB imports closure -will be loaded to the reasoner separately-");
+				OWLReasoner reasoner = classify(manager, srkbOntology, importsClosure, rfpOntology);
+				srkbOntologyInReasoner = true;
+				IncrementalClassifier classifier = new IncrementalClassifier(reasoner, baseView.getDataFactory());
+				prepare(classifier);
+				view = new SemanticRegistryKnowledgeBaseView(this, version, baseView.getDataFactory(),
+						srkbOntology, importsClosure, rfpOntology, classifier);
+			}
+
+			synchronized (extendedViews)
+			{
+				extendedViews.put(key, view);
+				return retain(view);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the extended view kept under the given key, if it can still be
+	 * used for the current version of the knowledge base and the given RFP
+	 * ontology, counting it as open.
+	 *
+	 * @param key
+	 * @param rfpOntology
+	 * @return the view, or null if it must be created
+	 */
+	private SemanticRegistryKnowledgeBaseView getCurrentExtendedView(String key, OWLOntology rfpOntology)
+	{
+		synchronized (extendedViews)
+		{
+			// Views with a reasoner of their own must be classified again if the RFP ontology has changed
+			SemanticRegistryKnowledgeBaseView view = extendedViews.get(key);
+			if (view != null && view.version == baseView.version
+					&& (view.classifier == baseView.classifier || view.getRFPOntology() == rfpOntology))
+				return retain(view);
+			return null;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Loads the imports closure (and optionally one more ontology) to a new
+	 * Pellet reasoner and classifies it.
+	 *
+	 * @param ontologyManager the manager holding the imports closure
+	 * @param ontology the SRKB ontology
+	 * @param closure the imports closure of the SRKB ontology
+	 * @param additionalOntology an ontology that is not part of the imports
+	 * closure but must be classified together with it, or null
+	 * @return
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private static OWLReasoner classify(
+			OWLOntologyManager ontologyManager,
+			OWLOntology ontology,
+			Set<OWLOntology> closure,
+			OWLOntology additionalOntology)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Create a Pellet reasoner instance
+		OWLReasoner reasoner = createReasoner(ontologyManager);
+
+		// The reasoner must keep the ontologies as they were when classified,
+		// since later changes are taken into account by the IncrementalClassifier
+		if (reasoner instanceof OWLOntologyChangeListener)
+			ontologyManager.removeOntologyChangeListener((OWLOntologyChangeListener) reasoner);
+
+		// Get the logger instance for pellet.taxonomy.Taxonomy
+		Logger logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.taxonomy.Taxonomy");
+		logger.setLevel(Level.OFF);
+
+		// Get the logger instance for pellet.KnowledgeBase
+		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.KnowledgeBase");
+		logger.setLevel(Level.OFF);
+
+		// Get the logger instance for pellet.ABox
+		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet.ABox");
+		logger.setLevel(Level.OFF);
+
+		// Get the logger instance for pellet
+		logger = Logger.getLogger("log4j.logger.org.mindswap.pellet");
+		logger.setLevel(Level.OFF);
+
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		// Load the additional ontology to Pellet
+		if (additionalOntology != null)
+		{
+			try
+			{
+				Set<OWLOntology> tmp = new HashSet<OWLOntology>();
+				tmp.add(additionalOntology);
+				reasoner.loadOntologies(tmp);
+			}
+			catch (OWLReasonerException e)
+			{
+				System.out.println("OWLReasonerException: " + e.getCause());
+				throw new SemanticRegistryMatchmakingException("Problem occured while loading ontologies to the reasoner");
+			}
+		}
+
+		// Load the ontologies from the imports closure to Pellet
+		try
+		{
+			reasoner.loadOntologies(closure);
+		}
+		catch (OWLReasonerException e)
+		{
+			System.out.println("OWLReasonerException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while trying to load the ontology import closure to the DL reasoner");
+		}
+
+		chron.stop();
+		System.out.println("The SRKB ontology and all directly or indirectly imported ontologies where loaded to the DL reasoner in " + chron);
+
+		// Classify the SRKB ontology and determine if it is inconsistent
+		chron.start();
+		try
+		{
+			reasoner.classify();
+		}
+		catch (OWLReasonerException e)
+		{
+			System.out.println("An error occured while trying to classify the SRKB ontology");
+			throw new SemanticRegistryMatchmakingException("An error occured while trying to classify the SRKB ontology");
+		}
+		catch (Exception e)
+		{
+			try
+			{
+				if (reasoner.isConsistent(ontology))
+				{
+					System.out.println("An error occured while trying to determine if the SRKB ontology is consistent. Message: " + e.getMessage());
+					throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
+				}
+				else
+				{
+					System.out.println("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between AFPs and RFPs.");
+					throw new SemanticRegistryMatchmakingException("The SRKB ontology is inconsistent. Cannot proceed with matchmaking between AFPs and RFPs.");
+				}
+			}
+			catch (OWLReasonerException e1)
+			{
+				System.out.println("An error occured while trying to determine if the SRKB ontology is consistent");
+				throw new SemanticRegistryMatchmakingException("An error occured while trying to determine if the SRKB ontology is consistent");
+			}
+		}
+
+		chron.stop();
+		System.out.println("The SRKB ontology was classified in " + chron);
+
+		return reasoner;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a manager holding a copy of the SRKB ontology to which changes
+	 * can be made while the open views keep using the current one. The copy
+	 * replaced by the last change is reused if no open view uses it any more,
+	 * which only takes repeating the last change on it; otherwise the whole
+	 * SRKB ontology is copied. Must be called while holding the lock.
+	 *
+	 * @return the manager holding the copy
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private OWLOntologyManager getChangeableCopy()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// The spare copy is taken whether it can be reused or not
+		OWLOntologyManager spare = spareManager;
+		OWLOntology ontology = spareOntology;
+		Set<OWLAxiom> axiomsToAdd = spareAxiomsToAdd;
+		Set<OWLAxiom> axiomsToRemove = spareAxiomsToRemove;
+		spareManager = null;
+		spareOntology = null;
+		spareAxiomsToAdd = null;
+		spareAxiomsToRemove = null;
+
+		if (spare == null)
+			return copySRKBOntology();
+
+		// Views of the previous version can no longer be opened, so the ones still open are all there are
+		synchronized (extendedViews)
+		{
+			if (openViewCounts.containsKey(ontology))
+				spare = null;
+		}
+		if (spare == null)
+			return copySRKBOntology();
+
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		// Bring the copy up to date by repeating the last change on it
+		List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+		for (OWLAxiom axiom : axiomsToRemove)
+		{
+			changes.add(new RemoveAxiom(ontology, axiom));
+		}
+		for (OWLAxiom axiom : axiomsToAdd)
+		{
+			changes.add(new AddAxiom(ontology, axiom));
+		}
+
+		try
+		{
+			spare.applyChanges(changes);
+		}
+		catch (OWLOntologyChangeException e)
+		{
+			System.out.println("OWLOntologyChangeException: " + e.getCause() + " -the SRKB ontology will be copied-");
+			return copySRKBOntology();
+		}
+
+		chron.stop();
+		System.out.println("SRKB ontology copy brought up to date in " + chron);
+
+		return spare;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Copies the SRKB ontology to a new ontology manager, so that changes can
+	 * be made to the copy while the open views keep using the original. Must
+	 * be called while holding the lock.
+	 *
+	 * @return the manager holding the copy
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private OWLOntologyManager copySRKBOntology()
+
+	throws SemanticRegistryMatchmakingException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		OWLOntologyManager newManager = OWLManager.createOWLOntologyManager();
+		try
+		{
+			OWLOntology copy = newManager.createOntology(srkbOntology.getURI());
+
+			List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+			for (OWLAxiom axiom : srkbOntology.getAxioms())
+			{
+				changes.add(new AddAxiom(copy, axiom));
+			}
+			newManager.applyChanges(changes);
+			newManager.setPhysicalURIForOntology(copy, srkbOntologyPhysicalURI);
+		}
+		catch (OWLOntologyCreationException e)
+		{
+			System.out.println("OWLOntologyCreationException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while copying the SRKB ontology in memory");
+		}
+		catch (OWLOntologyChangeException e)
+		{
+			System.out.println("OWLOntologyChangeException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while copying the SRKB ontology in memory");
+		}
+
+		chron.stop();
+		System.out.println("SRKB ontology copied in " + chron);
+
+		return newManager;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the given copy of the SRKB ontology to the SRKB ontology document
+	 * and resets the journal, whose changes the copy includes. Must be called
+	 * while holding the lock.
+	 *
+	 * @param ontologyManager the manager holding the copy
+	 * @param ontology the copy
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void writeSRKBOntology(OWLOntologyManager ontologyManager, OWLOntology ontology)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		saveSRKBOntology(ontologyManager, ontology);
+
+		// The SRKB ontology document has just been written, which must not be mistaken for a change made by other means
+		Map<File, Long> timestamps = new HashMap<File, Long>(documentTimestamps);
+		if ("file".equalsIgnoreCase(srkbOntologyPhysicalURI.getScheme()))
+		{
+			File file = new File(srkbOntologyPhysicalURI);
+			timestamps.put(file, Long.valueOf(file.lastModified()));
+		}
+		documentTimestamps = timestamps;
+
+		// The journalled changes must not be replayed on top of later ones
+		if (journal != null && journal.getRecordCount() > 0)
+			journal.reset();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Arranges for the journal to be folded into the SRKB ontology document
+	 * in the background. Must be called while holding the lock.
+	 */
+	private void scheduleCompaction()
+	{
+		if (compactionScheduled)
+			return;
+
+		compactionScheduled = true;
+		getCompactor().execute(new Runnable()
+		{
+			public void run()
+			{
+				compact();
+			}
+		});
+	}
+
+
+
+
+
+
+
+	/**
+	 * Folds the journal into the SRKB ontology document, by writing the
+	 * current copy of the SRKB ontology to the document. Changes are held back
+	 * while the document is written, but views can still be opened.
+	 */
+	void compact()
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		SemanticRegistryKnowledgeBaseView compactedView = null;
+		long checksum = -1;
+
+		lock.lock();
+		try
+		{
+			compactionScheduled = false;
+
+			// Make sure that changes made to the document by other means are not overwritten
+			if (stale || isModifiedOnDisk())
+				load();
+
+			if (journal == null || journal.getRecordCount() == 0)
+				return;
+
+			int journalledChanges = journal.getRecordCount();
+			writeSRKBOntology(srkbManager, srkbOntology);
+
+			chron.stop();
+			System.out.println(journalledChanges + " journalled changes folded into the SRKB ontology document in " + chron);
+
+			synchronized (extendedViews)
+			{
+				compactedView = retain(baseView);
+			}
+			checksum = getDocumentChecksum();
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			System.out.println("The journal of the SRKB ontology could not be compacted: " + e.getMessage() + " -it will be compacted after the next change-");
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		// The document now holds everything, so take a snapshot of the hierarchy that goes with it
+		if (compactedView != null)
+		{
+			if (checksum != -1)
+				writeSnapshot(compactedView, checksum);
+			compactedView.close();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Folds the journal into the SRKB ontology document and writes a snapshot
+	 * of the classified hierarchy, so that the next start is fast. Called when
+	 * the process shuts down. If a change is still in progress after a while
+	 * (e.g. a long classification), nothing is written: the journal is
+	 * replayed on the next start, and the snapshot is only a cache.
+	 */
+	void shutdown()
+	{
+		SemanticRegistryKnowledgeBaseView currentView = null;
+		long checksum = -1;
+
+		// Do not hold up the shutdown of the process behind a change that does not finish
+		try
+		{
+			if (!lock.tryLock(SHUTDOWN_LOCK_TIMEOUT, TimeUnit.SECONDS))
+			{
+				System.out.println("The SRKB is still being changed -no snapshot will be written, and the journal will be replayed on the next start-");
+				return;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		try
+		{
+			// Nothing can be written for documents that have been changed by other means
+			if (stale || isModifiedOnDisk())
+				return;
+
+			if (journal != null && journal.getRecordCount() > 0)
+				writeSRKBOntology(srkbManager, srkbOntology);
+
+			synchronized (extendedViews)
+			{
+				currentView = retain(baseView);
+			}
+			checksum = getDocumentChecksum();
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			System.out.println("The journal of the SRKB ontology could not be compacted: " + e.getMessage() + " -it will be replayed on the next start-");
+			synchronized (extendedViews)
+			{
+				currentView = retain(baseView);
+			}
+			checksum = getDocumentChecksum();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (currentView != null)
+		{
+			if (checksum != -1)
+				writeSnapshot(currentView, checksum);
+			currentView.close();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Arranges for a snapshot of the classified hierarchy of the given view
+	 * to be written in the background.
+	 *
+	 * @param view
+	 * @param checksum the checksum of the documents the view was created for
+	 */
+	private void scheduleSnapshot(final SemanticRegistryKnowledgeBaseView view, final long checksum)
+	{
+		getCompactor().execute(new Runnable()
+		{
+			public void run()
+			{
+				writeSnapshot(view, checksum);
+			}
+		});
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes a snapshot of the classified hierarchy of the given view,
+	 * building its subsumption index first if necessary, unless a snapshot
+	 * has already been written for the version of the view.
+	 *
+	 * @param view
+	 * @param checksum the checksum of the documents the view was created for
+	 */
+	synchronized void writeSnapshot(SemanticRegistryKnowledgeBaseView view, long checksum)
+	{
+		if (snapshotVersion == view.getVersion())
+			return;
+
+		try
+		{
+			SubsumptionIndex index = view.getSubsumptionIndex();
+
+			// The AFP table is only written if it has been built
+			AdvertisementDescriptorTable descriptorTable = view.classifier.descriptorTable;
+
+			KnowledgeBaseSnapshot.write(snapshotFile, checksum, index, descriptorTable);
+			snapshotVersion = view.getVersion();
+		}
+		catch (OWLReasonerException e)
+		{
+			System.out.println("OWLReasonerException: " + e.getCause() + " -no snapshot will be written-");
+		}
+		catch (IOException e)
+		{
+			System.out.println("The snapshot " + snapshotFile + " could not be written: " + e.getMessage());
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Computes the checksum of the ontology documents of the imports closure
+	 * and of the journal, which tells if a snapshot was taken of them. Must
+	 * be called while holding the lock.
+	 *
+	 * @return the checksum, or -1 if some document is not a local file
+	 */
+	private long getDocumentChecksum()
+	{
+		if (snapshotFile == null || documentTimestamps.size() != importsClosure.size())
+			return -1;
+
+		List<File> files = new ArrayList<File>(documentTimestamps.keySet());
+		files.add(journal.file);
+		try
+		{
+			return KnowledgeBaseSnapshot.getChecksum(files);
+		}
+		catch (IOException e)
+		{
+			System.out.println("IOException: " + e.getMessage());
+			return -1;
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the executor running the compactions of the journals
+	 */
+	private static synchronized ExecutorService getCompactor()
+	{
+		if (compactor == null)
+		{
+			compactor = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					// Compactions must not keep the container from shutting down
+					Thread thread = new Thread(runnable, "srkb-journal-compactor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return compactor;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Saves a copy of the SRKB ontology to the physical URI of the SRKB
+	 * ontology. A local file is first written next to the SRKB ontology
+	 * document and then renamed to it, so the document is never seen
+	 * half-written, and is left as it was if the ontology cannot be saved.
+	 *
+	 * @param ontologyManager the manager holding the copy
+	 * @param ontology the copy
+	 * @throws SemanticRegistryMatchmakingException
+	 */
+	private void saveSRKBOntology(OWLOntologyManager ontologyManager, OWLOntology ontology)
+
+	throws SemanticRegistryMatchmakingException
+	{
+		OWLOntologyFormat format = srkbOntologyFormat;
+		if (format == null)
+			format = new RDFXMLOntologyFormat();
+
+		try
+		{
+			if (!"file".equalsIgnoreCase(srkbOntologyPhysicalURI.getScheme()))
+			{
+				ontologyManager.saveOntology(ontology, format, srkbOntologyPhysicalURI);
+			}
+			else
+			{
+				File file = new File(srkbOntologyPhysicalURI);
+				File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+				ontologyManager.saveOntology(ontology, format, tempFile.toURI());
+
+				// Renaming does not replace an existing file on every platform
+				if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file)))
+				{
+					System.out.println("The SRKB ontology could not be moved from " + tempFile + " to " + file);
+					throw new SemanticRegistryMatchmakingException("An error occured while trying to save the SRKB ontology (" + ontology + ")");
+				}
+			}
+			System.out.println("SRKB ontology saved to " + srkbOntologyPhysicalURI);
+		}
+		catch (OWLOntologyStorageException e)
+		{
+			System.out.println("OWLOntologyStorageException: " + e.getCause());
+			throw new SemanticRegistryMatchmakingException("An error occured while trying to save the SRKB ontology (" + ontology + ")");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if any of the local ontology documents of the imports closure has
+	 * been modified since it was loaded.
+	 *
+	 * @return
+	 */
+	private boolean isModifiedOnDisk()
+	{
+		for (Map.Entry<File, Long> entry : documentTimestamps.entrySet())
+		{
+			if (entry.getKey().lastModified() != entry.getValue().longValue())
+				return true;
+		}
+		return false;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Records the modification time of every ontology document of the imports
+	 * closure that is stored in a local file.
+	 *
+	 * @param manager
+	 * @param ontologies
+	 * @return
+	 */
+	private static Map<File, Long> getDocumentTimestamps(OWLOntologyManager manager, Set<OWLOntology> ontologies)
+	{
+		Map<File, Long> timestamps = new HashMap<File, Long>();
+
+		for (OWLOntology ont : ontologies)
+		{
+			URI physicalURI = manager.getPhysicalURIForOntology(ont);
+			if (physicalURI != null && "file".equalsIgnoreCase(physicalURI.getScheme()))
+			{
+				File file = new File(physicalURI);
+				timestamps.put(file, Long.valueOf(file.lastModified()));
+			}
+		}
+		return timestamps;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param man
+	 * @return
+	 */
+	private static OWLReasoner createReasoner(OWLOntologyManager man)
+	{
+		try
+		{
+			// The reason for using reflection to create an instance of pellet
+			// is so that there is no compile time dependency (since the pellet
+			// libraries aren't contained in the OWL API repository). Normally,
+			// one would simply create an instance using the following incantation:
+			//
+			// OWLReasoner reasoner = new Reasoner()
+			//
+			// Where the full class name for Reasoner is
+			// org.mindswap.pellet.owlapi.Reasoner
+
+			String reasonerClassName = "org.mindswap.pellet.owlapi.Reasoner";
+			Class reasonerClass = Class.forName(reasonerClassName);
+			Constructor<OWLReasoner> con = reasonerClass.getConstructor(OWLOntologyManager.class);
+
+			return con.newInstance(man);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (InstantiationException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * A change to the SRKB ontology waiting to be committed.
+	 */
+	static class PendingChange
+	{
+		// The axioms to be added
+		Set<OWLAxiom> axiomsToAdd;
+
+		// The axioms to be removed
+		Set<OWLAxiom> axiomsToRemove;
+
+		// The new class of every class that the change renames
+		Map<OWLClass, OWLClass> renamedClasses;
+
+		// Set once the change has been committed, or has failed (guarded by the lock)
+		boolean committed = false;
+
+		// The reason the change failed, or null
+		SemanticRegistryMatchmakingException error;
+
+
+
+
+
+
+
+		/**
+		 * @param axiomsToAdd
+		 * @param axiomsToRemove
+		 * @param renamedClasses
+		 */
+		PendingChange(Set<OWLAxiom> axiomsToAdd, Set<OWLAxiom> axiomsToRemove, Map<OWLClass, OWLClass> renamedClasses)
+		{
+			this.axiomsToAdd = axiomsToAdd;
+			this.axiomsToRemove = axiomsToRemove;
+			this.renamedClasses = renamedClasses;
+		}
+	}
+
+
+
+
+
+
+
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.Set;
+
+import org.semanticweb.owl.inference.OWLReasonerException;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLOntology;
+
+/**
+ * A read-only view of a classified {@link SemanticRegistryKnowledgeBase}. A
+ * view is obtained through {@link SemanticRegistryKnowledgeBase#openView()}
+ * and is a snapshot of one version of the knowledge base: changes to the
+ * knowledge base are made to copies of the SRKB ontology and its classified
+ * hierarchy, which are handed out in new views, so the ontologies and the
+ * hierarchy behind a view never change while it is in use. The view only
+ * offers queries, so they are not modified by its users either.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class SemanticRegistryKnowledgeBaseView
+{
+	// The knowledge base this view belongs to
+	SemanticRegistryKnowledgeBase knowledgeBase;
+
+	// The version of the knowledge base this view was created for
+	long version;
+
+	// The data factory of the ontology manager holding the SRKB
+	OWLDataFactory factory;
+
+	// The SRKB ontology
+	OWLOntology srkbOntology;
+
+	// The imports closure of the SRKB ontology
+	Set<OWLOntology> importsClosure;
+
+	// The ontology in which the RFPs are defined
+	OWLOntology rfpOntology;
+
+	// The classifier answering subsumption queries
+	IncrementalClassifier classifier;
+
+
+
+
+
+
+
+	/**
+	 * @param knowledgeBase
+	 * @param version
+	 * @param factory
+	 * @param srkbOntology
+	 * @param importsClosure
+	 * @param rfpOntology
+	 * @param classifier
+	 */
+	SemanticRegistryKnowledgeBaseView(
+			SemanticRegistryKnowledgeBase knowledgeBase,
+			long version,
+			OWLDataFactory factory,
+			OWLOntology srkbOntology,
+			Set<OWLOntology> importsClosure,
+			OWLOntology rfpOntology,
+			IncrementalClassifier classifier)
+	{
+		this.knowledgeBase = knowledgeBase;
+		this.version = version;
+		this.factory = factory;
+		this.srkbOntology = srkbOntology;
+		this.importsClosure = importsClosure;
+		this.rfpOntology = rfpOntology;
+		this.classifier = classifier;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the version of the knowledge base this view was created for
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the data factory to be used for creating references to classes
+	 */
+	public OWLDataFactory getDataFactory()
+	{
+		return factory;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the SRKB ontology
+	 */
+	public OWLOntology getSRKBOntology()
+	{
+		return srkbOntology;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the (unmodifiable) imports closure of the SRKB ontology
+	 */
+	public Set<OWLOntology> getImportsClosure()
+	{
+		return importsClosure;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the ontology in which the RFPs are defined
+	 */
+	public OWLOntology getRFPOntology()
+	{
+		return rfpOntology;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the classes that subsume the given class, taking into account
+	 * the classes placed in the hierarchy since it was classified.
+	 *
+	 * @param owlClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public Set<Set<OWLClass>> getAncestorClasses(OWLClass owlClass)
+
+	throws OWLReasonerException
+	{
+		return classifier.getAncestorClasses(owlClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the classes that are subsumed by the given class, taking into
+	 * account the classes placed in the hierarchy since it was classified.
+	 *
+	 * @param owlClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public Set<Set<OWLClass>> getDescendantClasses(OWLClass owlClass)
+
+	throws OWLReasonerException
+	{
+		return classifier.getDescendantClasses(owlClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the subsumption index of the classified hierarchy, which allows
+	 * checking if a class is subsumed by another without querying the
+	 * reasoner.
+	 *
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public SubsumptionIndex getSubsumptionIndex()
+
+	throws OWLReasonerException
+	{
+		return classifier.getSubsumptionIndex();
+	}
+
+
+
+
+
+
+
+
+	/**
+	 * Returns the table of decoded AFPs of the SRKB ontology, whose class IDs
+	 * refer to the subsumption index of this view. The root classes are only
+	 * used if the table has not been built yet.
+	 *
+	 * @param afpRootClass
+	 * @param inputDataSetRootClass
+	 * @param outputDataSetRootClass
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	public AdvertisementDescriptorTable getAdvertisementDescriptorTable(
+			OWLClass afpRootClass,
+			OWLClass inputDataSetRootClass,
+			OWLClass outputDataSetRootClass)
+
+	throws OWLReasonerException
+	{
+		return classifier.getAdvertisementDescriptorTable(srkbOntology,
+				afpRootClass, inputDataSetRootClass, outputDataSetRootClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the asserted subclass relations of the given ontology, which
+	 * must be the SRKB ontology, one of its imports, or the RFP ontology of
+	 * this view.
+	 *
+	 * @param ontology
+	 * @return
+	 */
+	public AssertedHierarchy getAssertedHierarchy(OWLOntology ontology)
+	{
+		return classifier.getAssertedHierarchy(ontology);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Releases the view. Views hold no locks, but the copy of the SRKB
+	 * ontology they use is only reused for a later change once all of its
+	 * views are closed, so callers must close every view they open, exactly
+	 * once.
+	 */
+	public void close()
+	{
+		knowledgeBase.closeView(this);
+	}
+
+
+
+
+
+
+
+}
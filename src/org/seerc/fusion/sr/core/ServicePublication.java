@@ -0,0 +1,207 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+ package org.seerc.fusion.sr.core;
+
+
+/**
+ * One service description in a bulk publication request, together with the
+ * outcome of publishing it. The outcome is either the UUID key of the new
+ * businessService, or a message explaining why the service was not
+ * published. A failure of one service does not affect the rest.
+ * 
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class ServicePublication
+{
+	//provided by user
+	private String serviceSAWSDLURL;
+
+	//provided by user
+	private String serviceProviderUUID;
+
+	//provided by user (may be empty if a SAWSDL document is parsed)
+	private String serviceName;
+
+	//provided by user
+	private String serviceFreeTextDescription;
+
+	//provided by user (only when no SAWSDL document is parsed)
+	private String hasCategoryAnnotationURI;
+
+	//provided by user (only when no SAWSDL document is parsed)
+	private String[] hasInputAnnotationURIArray;
+
+	//provided by user (only when no SAWSDL document is parsed)
+	private String[] hasOutputAnnotationURIArray;
+
+	//generated once the service description has been validated
+	private UDDIServiceAdvertisement advertisement;
+
+	//assigned by the UDDI server once the service has been saved
+	private String serviceUUID;
+
+	//set if the service could not be published
+	private String errorMessage;
+
+	/**
+	 * @param serviceSAWSDLURL
+	 * @param serviceProviderUUID
+	 * @param serviceName
+	 * @param serviceFreeTextDescription
+	 */
+	public ServicePublication(String serviceSAWSDLURL, String serviceProviderUUID,
+			String serviceName, String serviceFreeTextDescription)
+	{
+		this.serviceSAWSDLURL = serviceSAWSDLURL;
+		this.serviceProviderUUID = serviceProviderUUID;
+		this.serviceName = serviceName;
+		this.serviceFreeTextDescription = serviceFreeTextDescription;
+	}
+
+	/**
+	 * @return the serviceSAWSDLURL
+	 */
+	public String getServiceSAWSDLURL()
+	{
+		return serviceSAWSDLURL;
+	}
+
+	/**
+	 * @return the serviceProviderUUID
+	 */
+	public String getServiceProviderUUID()
+	{
+		return serviceProviderUUID;
+	}
+
+	/**
+	 * @return the serviceName
+	 */
+	public String getServiceName()
+	{
+		return serviceName;
+	}
+
+	/**
+	 * @return the serviceFreeTextDescription
+	 */
+	public String getServiceFreeTextDescription()
+	{
+		return serviceFreeTextDescription;
+	}
+
+	/**
+	 * @return the hasCategoryAnnotationURI
+	 */
+	public String getHasCategoryAnnotationURI()
+	{
+		return hasCategoryAnnotationURI;
+	}
+
+	/**
+	 * @param hasCategoryAnnotationURI the hasCategoryAnnotationURI to set
+	 */
+	public void setHasCategoryAnnotationURI(String hasCategoryAnnotationURI)
+	{
+		this.hasCategoryAnnotationURI = hasCategoryAnnotationURI;
+	}
+
+	/**
+	 * @return the hasInputAnnotationURIArray
+	 */
+	public String[] getHasInputAnnotationURIArray()
+	{
+		return hasInputAnnotationURIArray;
+	}
+
+	/**
+	 * @param hasInputAnnotationURIArray the hasInputAnnotationURIArray to set
+	 */
+	public void setHasInputAnnotationURIArray(String[] hasInputAnnotationURIArray)
+	{
+		this.hasInputAnnotationURIArray = hasInputAnnotationURIArray;
+	}
+
+	/**
+	 * @return the hasOutputAnnotationURIArray
+	 */
+	public String[] getHasOutputAnnotationURIArray()
+	{
+		return hasOutputAnnotationURIArray;
+	}
+
+	/**
+	 * @param hasOutputAnnotationURIArray the hasOutputAnnotationURIArray to set
+	 */
+	public void setHasOutputAnnotationURIArray(String[] hasOutputAnnotationURIArray)
+	{
+		this.hasOutputAnnotationURIArray = hasOutputAnnotationURIArray;
+	}
+
+	/**
+	 * @return the advertisement
+	 */
+	UDDIServiceAdvertisement getAdvertisement()
+	{
+		return advertisement;
+	}
+
+	/**
+	 * @param advertisement the advertisement to set
+	 */
+	void setAdvertisement(UDDIServiceAdvertisement advertisement)
+	{
+		this.advertisement = advertisement;
+	}
+
+	/**
+	 * @return the serviceUUID, or null if the service was not published
+	 */
+	public String getServiceUUID()
+	{
+		return serviceUUID;
+	}
+
+	/**
+	 * @param serviceUUID the serviceUUID to set
+	 */
+	void setServiceUUID(String serviceUUID)
+	{
+		this.serviceUUID = serviceUUID;
+	}
+
+	/**
+	 * @return the errorMessage, or null if the service was published
+	 */
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	/**
+	 * @param errorMessage the errorMessage to set
+	 */
+	void setErrorMessage(String errorMessage)
+	{
+		this.errorMessage = errorMessage;
+	}
+	
+}
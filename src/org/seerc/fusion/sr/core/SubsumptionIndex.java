@@ -0,0 +1,654 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.seerc.fusion.sr.utils.Chronometer;
+import org.semanticweb.owl.inference.OWLReasonerException;
+import org.semanticweb.owl.model.OWLClass;
+import org.semanticweb.owl.model.OWLDataFactory;
+import org.semanticweb.owl.model.OWLOntology;
+
+/**
+ * A materialised view of the subsumption hierarchy computed by an
+ * {@link IncrementalClassifier}. Every named class is given a dense integer
+ * ID, and the ancestors and descendants of every class are kept as bitsets of
+ * class IDs, so that checking if a class is subsumed by another is a single
+ * bit test. The index is built once per classification and is kept up to
+ * date by the classifier as classes are placed or retracted.
+ *
+ * The bitsets returned by the index are shared and must not be modified.
+ * Copies of the index made for a new version of the knowledge base share
+ * the bitsets of the original, and only clone the bitsets they change. They
+ * also share the table of class IDs, to which IDs are only ever added: an
+ * ID given out by a later copy lies past the number of IDs of the earlier
+ * ones, and a class retracted by a later copy keeps its ID, which it gets
+ * back if it is placed again. The lists of classes and bitsets by ID are
+ * {@link VersionedArray}s, so a copy costs a fraction of the number of IDs
+ * instead of being proportional to it.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class SubsumptionIndex
+{
+	// The ID given to every class by this index or the indexes it shares the table with (which may be past the IDs of this one)
+	Map<OWLClass, Integer> classIds = new ConcurrentHashMap<OWLClass, Integer>();
+
+	// The indexed classes, by ID (null for IDs of retracted classes)
+	VersionedArray<OWLClass> classes = new VersionedArray<OWLClass>();
+
+	// The IDs of the ancestors of every class, by ID
+	VersionedArray<BitSet> ancestors = new VersionedArray<BitSet>();
+
+	// The IDs of the descendants of every class, by ID
+	VersionedArray<BitSet> descendants = new VersionedArray<BitSet>();
+
+	// The ID of owl:Thing
+	int thingId = -1;
+
+	// The number of indexed classes
+	int classCount = 0;
+
+	// The IDs of the classes whose bitsets belong to this index only, and can therefore be changed
+	BitSet ownedIds = new BitSet();
+
+	// An empty bitset, returned for classes that are not indexed
+	private static final BitSet EMPTY = new BitSet(0);
+
+
+
+
+
+
+
+	/**
+	 * Builds the index for all classes known to the given classifier.
+	 *
+	 * @param classifier
+	 * @return
+	 * @throws OWLReasonerException
+	 */
+	static SubsumptionIndex build(IncrementalClassifier classifier)
+
+	throws OWLReasonerException
+	{
+		// Create a chronometer to measure lapsed time
+		Chronometer chron = new Chronometer();
+		chron.start();
+
+		SubsumptionIndex index = new SubsumptionIndex();
+
+		// Collect the classes of the ontologies loaded to the reasoner, leaving
+		// out the retracted ones, and add the classes placed since then
+		Set<OWLClass> allClasses = new HashSet<OWLClass>();
+		allClasses.add(classifier.factory.getOWLThing());
+		for (OWLOntology ont : classifier.getReasoner().getLoadedOntologies())
+		{
+			allClasses.addAll(ont.getReferencedClasses());
+		}
+		allClasses.removeAll(classifier.retractedClasses);
+		allClasses.addAll(classifier.descriptions.keySet());
+
+		// Give every class an ID
+		for (OWLClass owlClass : allClasses)
+		{
+			if (!owlClass.isOWLNothing())
+				index.getOrCreateId(owlClass);
+		}
+		index.thingId = index.getId(classifier.factory.getOWLThing());
+
+		// Record the ancestors of every class, and turn them around to get the descendants
+		for (OWLClass owlClass : allClasses)
+		{
+			if (owlClass.isOWLNothing())
+				continue;
+
+			int classId = index.getId(owlClass);
+			for (Set<OWLClass> ancestorSet : classifier.getAncestorClasses(owlClass))
+			{
+				for (OWLClass ancestor : ancestorSet)
+				{
+					if (ancestor.isOWLNothing())
+						continue;
+
+					int ancestorId = index.getOrCreateId(ancestor);
+					index.ancestors.get(classId).set(ancestorId);
+					index.descendants.get(ancestorId).set(classId);
+				}
+			}
+		}
+
+		chron.stop();
+		System.out.println("Subsumption index built for " + index.getClassCount() + " classes in " + chron
+				+ " (approximately " + (index.getMemoryFootprint() / 1024) + " KB)");
+
+		return index;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Reads an index written by {@link #write(DataOutput)}.
+	 *
+	 * @param in
+	 * @param factory the data factory used for creating the classes
+	 * @return
+	 * @throws IOException
+	 */
+	static SubsumptionIndex read(DataInput in, OWLDataFactory factory)
+
+	throws IOException
+	{
+		SubsumptionIndex index = new SubsumptionIndex();
+
+		// The classes, by ID (keeping the IDs of retracted classes unused), whose
+		// URIs are also given to the URI dictionary, to have them ready for lookups
+		URIDictionary dictionary = URIDictionary.getInstance();
+		int classCount = in.readInt();
+		for (int id = 0; id < classCount; id++)
+		{
+			OWLClass owlClass = null;
+			if (in.readBoolean())
+			{
+				String uri = in.readUTF();
+				dictionary.getId(uri);
+				owlClass = factory.getOWLClass(URI.create(uri));
+				index.classIds.put(owlClass, Integer.valueOf(id));
+				index.classCount++;
+			}
+			index.classes.add(owlClass);
+			index.ancestors.add(new BitSet());
+			index.descendants.add(new BitSet());
+		}
+		index.ownedIds.set(0, classCount);
+		index.thingId = in.readInt();
+
+		// The ancestors of every class, turned around to get the descendants
+		for (int id = 0; id < classCount; id++)
+		{
+			int ancestorCount = in.readInt();
+			for (int i = 0; i < ancestorCount; i++)
+			{
+				int ancestorId = in.readInt();
+				if (ancestorId < 0 || ancestorId >= classCount)
+					throw new IOException("Invalid class ID " + ancestorId);
+				index.ancestors.get(id).set(ancestorId);
+				index.descendants.get(ancestorId).set(id);
+			}
+		}
+		return index;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Writes the index in a compact binary form: the URI of every class in
+	 * the order of the IDs, followed by the IDs of the ancestors of every
+	 * class (the descendants are not written, since they follow from the
+	 * ancestors).
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void write(DataOutput out)
+
+	throws IOException
+	{
+		out.writeInt(classes.size());
+		for (int id = 0; id < classes.size(); id++)
+		{
+			OWLClass owlClass = classes.get(id);
+			out.writeBoolean(owlClass != null);
+			if (owlClass != null)
+				out.writeUTF(owlClass.getURI().toString());
+		}
+		out.writeInt(thingId);
+
+		for (int id = 0; id < ancestors.size(); id++)
+		{
+			BitSet ancestorIds = ancestors.get(id);
+			out.writeInt(ancestorIds.cardinality());
+			for (int i = ancestorIds.nextSetBit(0); i >= 0; i = ancestorIds.nextSetBit(i + 1))
+			{
+				out.writeInt(i);
+			}
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the ID of the class, or -1 if the class is not indexed
+	 */
+	public int getId(OWLClass owlClass)
+	{
+		// The ID may have been given out by a later copy, or the class may have been retracted
+		Integer id = classIds.get(owlClass);
+		if (id == null || id.intValue() >= classes.size() || !owlClass.equals(classes.get(id.intValue())))
+			return -1;
+		return id.intValue();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param id
+	 * @return the class with the given ID, or null if there is none
+	 */
+	public OWLClass getOWLClass(int id)
+	{
+		return (id < 0 || id >= classes.size()) ? null : classes.get(id);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the IDs of the classes that subsume the given class (not including the class itself)
+	 */
+	public BitSet getAncestors(OWLClass owlClass)
+	{
+		int id = getId(owlClass);
+		return (id < 0) ? EMPTY : ancestors.get(id);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the IDs of the classes that are subsumed by the given class (not including the class itself)
+	 */
+	public BitSet getDescendants(OWLClass owlClass)
+	{
+		int id = getId(owlClass);
+		return (id < 0) ? EMPTY : descendants.get(id);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param id
+	 * @return the IDs of the classes that are subsumed by the class with the given ID
+	 */
+	public BitSet getDescendants(int id)
+	{
+		return (id < 0 || id >= descendants.size()) ? EMPTY : descendants.get(id);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if a class is the same as, or is subsumed by, another class.
+	 *
+	 * @param subClass
+	 * @param superClass
+	 * @return
+	 */
+	public boolean isSubsumedBy(OWLClass subClass, OWLClass superClass)
+	{
+		// Every class is subsumed by itself and by owl:Thing
+		if (subClass.equals(superClass) || superClass.isOWLThing())
+			return true;
+
+		int subClassId = getId(subClass);
+		int superClassId = getId(superClass);
+		if (subClassId < 0 || superClassId < 0)
+			return false;
+
+		return ancestors.get(subClassId).get(superClassId);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if the class with the given ID is the same as, or is subsumed
+	 * by, the class with the other given ID.
+	 *
+	 * @param subClassId
+	 * @param superClassId
+	 * @return false if either of the IDs is -1
+	 */
+	public boolean isSubsumedBy(int subClassId, int superClassId)
+	{
+		if (subClassId < 0 || superClassId < 0)
+			return false;
+
+		if (subClassId == superClassId || superClassId == thingId)
+			return true;
+
+		return ancestors.get(subClassId).get(superClassId);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the index that can be changed without affecting this
+	 * one. The table of class IDs is shared, and so are the bitsets until the
+	 * copy changes them.
+	 *
+	 * @return
+	 */
+	SubsumptionIndex copy()
+	{
+		SubsumptionIndex copy = new SubsumptionIndex();
+		copy.classIds = classIds;
+		copy.classes = classes.copy();
+		copy.ancestors = ancestors.copy();
+		copy.descendants = descendants.copy();
+		copy.thingId = thingId;
+		copy.classCount = classCount;
+
+		// The bitsets are now shared, so this index must clone them before changing them too
+		ownedIds = new BitSet();
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of indexed classes
+	 */
+	public int getClassCount()
+	{
+		return classCount;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns an estimate of the memory occupied by the index, in bytes.
+	 *
+	 * @return
+	 */
+	public long getMemoryFootprint()
+	{
+		// The bitsets (the words plus the object and array headers)
+		long bytes = 0;
+		for (int i = 0; i < classes.size(); i++)
+		{
+			bytes += ancestors.get(i).size() / 8 + 32;
+			bytes += descendants.get(i).size() / 8 + 32;
+		}
+
+		// The lists of classes and bitsets, and the map from classes to IDs
+		bytes += classes.size() * 3 * 8;
+		bytes += classCount * (32 + 16);
+
+		return bytes;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Adds a class that has been placed in the hierarchy, relating it to its
+	 * ancestors and descendants in the same way as the classifier does.
+	 *
+	 * @param owlClass
+	 * @param classAncestors
+	 * @param classDescendants
+	 */
+	void add(OWLClass owlClass, Set<OWLClass> classAncestors, Set<OWLClass> classDescendants)
+	{
+		int classId = getOrCreateId(owlClass);
+		unshare(classId);
+
+		BitSet ancestorIds = ancestors.get(classId);
+		for (OWLClass ancestor : classAncestors)
+		{
+			ancestorIds.set(getOrCreateId(ancestor));
+		}
+
+		BitSet descendantIds = descendants.get(classId);
+		for (OWLClass descendant : classDescendants)
+		{
+			descendantIds.set(getOrCreateId(descendant));
+		}
+
+		// The ancestors of the class now subsume the class and its descendants...
+		for (int i = ancestorIds.nextSetBit(0); i >= 0; i = ancestorIds.nextSetBit(i + 1))
+		{
+			unshare(i);
+			descendants.get(i).set(classId);
+			descendants.get(i).or(descendantIds);
+		}
+
+		// ...and the descendants of the class are subsumed by the class and its ancestors
+		for (int i = descendantIds.nextSetBit(0); i >= 0; i = descendantIds.nextSetBit(i + 1))
+		{
+			unshare(i);
+			ancestors.get(i).set(classId);
+			ancestors.get(i).or(ancestorIds);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Removes a class that has been retracted from the hierarchy. Its ID is
+	 * not given to any other class.
+	 *
+	 * @param owlClass
+	 */
+	void remove(OWLClass owlClass)
+	{
+		int classId = getId(owlClass);
+		if (classId < 0)
+			return;
+
+		BitSet ancestorIds = ancestors.get(classId);
+		for (int i = ancestorIds.nextSetBit(0); i >= 0; i = ancestorIds.nextSetBit(i + 1))
+		{
+			unshare(i);
+			descendants.get(i).clear(classId);
+		}
+
+		BitSet descendantIds = descendants.get(classId);
+		for (int i = descendantIds.nextSetBit(0); i >= 0; i = descendantIds.nextSetBit(i + 1))
+		{
+			unshare(i);
+			ancestors.get(i).clear(classId);
+		}
+
+		// The ID stays in the shared table, for the indexes in which the class is still indexed
+		classes.set(classId, null);
+		ancestors.set(classId, new BitSet(0));
+		descendants.set(classId, new BitSet(0));
+		ownedIds.set(classId);
+		classCount--;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if a class can be renamed with {@link #rename(OWLClass, OWLClass)},
+	 * i.e. if it is indexed and the new class has never been given an ID.
+	 *
+	 * @param owlClass
+	 * @param newClass
+	 * @return
+	 */
+	boolean canRename(OWLClass owlClass, OWLClass newClass)
+	{
+		return getId(owlClass) >= 0 && !classIds.containsKey(newClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Gives the ID of a class to a new class that takes its place in the
+	 * hierarchy, so that no bitset is changed. The old class keeps its ID in
+	 * the shared table, for the indexes in which it is still indexed, so it
+	 * must never be indexed again (which holds for AFPs under provisional
+	 * keys).
+	 *
+	 * @param owlClass
+	 * @param newClass
+	 */
+	void rename(OWLClass owlClass, OWLClass newClass)
+	{
+		int classId = getId(owlClass);
+		classIds.put(newClass, Integer.valueOf(classId));
+		classes.set(classId, newClass);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Replaces the bitsets of the class with the given ID with clones, if
+	 * they are shared with another copy of the index, so that they can be
+	 * changed.
+	 *
+	 * @param id
+	 */
+	private void unshare(int id)
+	{
+		if (ownedIds.get(id))
+			return;
+
+		ancestors.set(id, (BitSet) ancestors.get(id).clone());
+		descendants.set(id, (BitSet) descendants.get(id).clone());
+		ownedIds.set(id);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param owlClass
+	 * @return the ID of the class, which is assigned if the class is not yet indexed
+	 */
+	private int getOrCreateId(OWLClass owlClass)
+	{
+		int id = getId(owlClass);
+		if (id >= 0)
+			return id;
+
+		// A retracted class gets its ID back, which the copies it was retracted from still use for it
+		Integer retractedId = classIds.get(owlClass);
+		if (retractedId != null && retractedId.intValue() < classes.size() && classes.get(retractedId.intValue()) == null)
+		{
+			id = retractedId.intValue();
+			classes.set(id, owlClass);
+			ancestors.set(id, new BitSet());
+			descendants.set(id, new BitSet());
+			ownedIds.set(id);
+			classCount++;
+			return id;
+		}
+
+		id = classes.size();
+		classIds.put(owlClass, Integer.valueOf(id));
+		classes.add(owlClass);
+		ancestors.add(new BitSet());
+		descendants.add(new BitSet());
+		ownedIds.set(id);
+		classCount++;
+		return id;
+	}
+
+
+
+
+
+
+
+}
@@ -0,0 +1,426 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.seerc.fusion.sr.exceptions.SemanticRegistryAuthException;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryCommunicationException;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryException;
+
+/**
+ * Runs the UDDI calls of administrative and bulk operations side by side, on
+ * a bounded pool of threads shared by all handlers. The calls of an operation
+ * are handed over together, and the outcome of each one (its result, or the
+ * exception it raised) is collected under the key it was handed over with,
+ * typically a service UUID or the first key of a batch, so that a failed call
+ * does not prevent the outcome of the others from being reported.
+ *
+ * Every call is run by the pool and given at most the call timeout to
+ * complete, after which it is cancelled and reported as failed. As the UDDI
+ * transport cannot be interrupted while it waits for the server, the socket
+ * timeout of UDDITransportConfiguration is what actually ends a call that
+ * hangs; the call timeout lets the operation move on. Once the threads are
+ * busy and the queue is full, the thread that hands calls over waits for
+ * room, which keeps a large operation from queueing more work than the UDDI
+ * server can take.
+ *
+ * The pool can be set through the optional uddi_fanout_threads,
+ * uddi_fanout_queue_capacity and uddi_call_timeout (in seconds) properties of
+ * the registry.properties file.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class UDDIFanOutExecutor
+{
+	// The process-wide executor
+	private static final UDDIFanOutExecutor instance = new UDDIFanOutExecutor();
+
+	// The default number of threads that talk to the UDDI server
+	static final int DEFAULT_THREADS = 4;
+
+	// The default number of calls that may wait for a thread
+	static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+	// The default time a call is given to complete, in seconds
+	static final int DEFAULT_CALL_TIMEOUT = 60;
+
+	// The number of threads that talk to the UDDI server
+	int threads = DEFAULT_THREADS;
+
+	// The number of calls that may wait for a thread
+	int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+	// The time a call is given to complete, in seconds
+	int callTimeout = DEFAULT_CALL_TIMEOUT;
+
+	// The pool of threads, created when it is first needed
+	ThreadPoolExecutor executor;
+
+	// The room left for calls in the pool (running or queued)
+	Semaphore permits;
+
+
+
+
+
+
+
+	/**
+	 * The outcome of a call: its result, or the exception it raised
+	 *
+	 * @author Dimitrios Kourtesis
+	 *
+	 * @param <V>
+	 */
+	public static class Outcome<V>
+	{
+		// The result of the call, if it completed
+		V result;
+
+		// The exception raised by the call, if it failed
+		Exception failure;
+
+		Outcome(V result, Exception failure)
+		{
+			this.result = result;
+			this.failure = failure;
+		}
+
+		public boolean isSuccessful()
+		{
+			return failure == null;
+		}
+
+		public V getResult()
+		{
+			return result;
+		}
+
+		public Exception getFailure()
+		{
+			return failure;
+		}
+
+		/**
+		 * Throws the exception raised by the call, if it failed, as the
+		 * registry exception it stands for
+		 *
+		 * @throws SemanticRegistryAuthException
+		 * @throws SemanticRegistryCommunicationException
+		 * @throws SemanticRegistryException
+		 */
+		public void rethrowFailure()
+
+		throws SemanticRegistryAuthException,
+				SemanticRegistryCommunicationException,
+				SemanticRegistryException
+		{
+			if (failure == null)
+				return;
+			if (failure instanceof SemanticRegistryAuthException)
+				throw (SemanticRegistryAuthException) failure;
+			if (failure instanceof SemanticRegistryCommunicationException)
+				throw (SemanticRegistryCommunicationException) failure;
+			if (failure instanceof SemanticRegistryException)
+				throw (SemanticRegistryException) failure;
+			System.out.println("SemanticRegistryException occured!");
+			throw new SemanticRegistryException("An exception occured for unspecified reasons");
+		}
+	}
+
+
+
+
+
+
+
+	private UDDIFanOutExecutor()
+	{
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the process-wide executor
+	 *
+	 * @return
+	 */
+	public static UDDIFanOutExecutor getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads, the capacity of their queue and the call
+	 * timeout from the optional uddi_fanout_threads,
+	 * uddi_fanout_queue_capacity and uddi_call_timeout properties
+	 *
+	 * @param properties
+	 */
+	public void configure(Properties properties)
+	{
+		int threads = this.threads;
+		int queueCapacity = this.queueCapacity;
+		int callTimeout = this.callTimeout;
+
+		try
+		{
+			if (properties.getProperty("uddi_fanout_threads") != null)
+				threads = Integer.parseInt(properties.getProperty("uddi_fanout_threads").trim());
+			if (properties.getProperty("uddi_fanout_queue_capacity") != null)
+				queueCapacity = Integer.parseInt(properties.getProperty("uddi_fanout_queue_capacity").trim());
+			if (properties.getProperty("uddi_call_timeout") != null)
+				callTimeout = Integer.parseInt(properties.getProperty("uddi_call_timeout").trim());
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid uddi_fanout_threads, uddi_fanout_queue_capacity or uddi_call_timeout property in registry.properties -the defaults will be used-");
+			return;
+		}
+
+		configure(threads, queueCapacity, callTimeout);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads, the capacity of their queue and the call
+	 * timeout. If the pool changes, the calls already handed over are left
+	 * to complete on the old one.
+	 *
+	 * @param threads
+	 * @param queueCapacity
+	 * @param callTimeout in seconds
+	 */
+	public synchronized void configure(int threads, int queueCapacity, int callTimeout)
+	{
+		threads = Math.max(1, threads);
+		queueCapacity = Math.max(1, queueCapacity);
+
+		if ((threads != this.threads || queueCapacity != this.queueCapacity) && executor != null)
+		{
+			executor.shutdown();
+			executor = null;
+			permits = null;
+		}
+
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+		this.callTimeout = Math.max(1, callTimeout);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Runs the given calls side by side and waits for all of them to
+	 * complete, fail or time out. Calls are handed over only when there is
+	 * room for them in the pool, so the calling thread may wait before all
+	 * of them are running.
+	 *
+	 * @param calls the calls, by the key under which their outcome is reported
+	 * @return the outcome of every call, by the key it was handed over with
+	 * @throws SemanticRegistryException if interrupted while waiting
+	 */
+	public <K, V> Map<K, Outcome<V>> invokeAll(Map<K, ? extends Callable<V>> calls)
+
+	throws SemanticRegistryException
+	{
+		ThreadPoolExecutor executor = null;
+		Semaphore permits = null;
+		long timeout = 0;
+		synchronized (this)
+		{
+			executor = getExecutor();
+			permits = this.permits;
+			timeout = callTimeout;
+		}
+
+		Map<K, Outcome<V>> outcomes = new LinkedHashMap<K, Outcome<V>>();
+		Map<K, Future<V>> futures = new LinkedHashMap<K, Future<V>>();
+		for (Map.Entry<K, ? extends Callable<V>> call : calls.entrySet())
+		{
+			// Wait for room in the pool; the permit is given back when the call has run
+			try
+			{
+				permits.acquire();
+			}
+			catch (InterruptedException e)
+			{
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				System.out.println("SemanticRegistryException occured!");
+				throw new SemanticRegistryException("Interrupted while waiting for the UDDI server");
+			}
+
+			try
+			{
+				futures.put(call.getKey(), executor.submit(call.getValue()));
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The pool has been shut down by a change of configuration
+				permits.release();
+				outcomes.put(call.getKey(), new Outcome<V>(null,
+						new SemanticRegistryCommunicationException("The UDDI call could not be handed over")));
+			}
+		}
+
+		for (Map.Entry<K, Future<V>> future : futures.entrySet())
+		{
+			try
+			{
+				outcomes.put(future.getKey(), new Outcome<V>(future.getValue().get(timeout, TimeUnit.SECONDS), null));
+			}
+			catch (ExecutionException e)
+			{
+				Exception failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause()
+						: new SemanticRegistryException("An exception occured for unspecified reasons");
+				outcomes.put(future.getKey(), new Outcome<V>(null, failure));
+			}
+			catch (TimeoutException e)
+			{
+				future.getValue().cancel(true);
+				System.out.println("The UDDI call for " + future.getKey() + " timed out after " + timeout + " seconds");
+				outcomes.put(future.getKey(), new Outcome<V>(null,
+						new SemanticRegistryCommunicationException("The UDDI server did not respond in time")));
+			}
+			catch (InterruptedException e)
+			{
+				// Do not leave the remaining calls running for nobody
+				cancelAll(futures);
+				Thread.currentThread().interrupt();
+				System.out.println("SemanticRegistryException occured!");
+				throw new SemanticRegistryException("Interrupted while waiting for the UDDI server");
+			}
+		}
+
+		return outcomes;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Cancels the given calls
+	 *
+	 * @param futures
+	 */
+	private static <K, V> void cancelAll(Map<K, Future<V>> futures)
+	{
+		for (Future<V> future : futures.values())
+		{
+			future.cancel(true);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the time a call is given to complete, in seconds
+	 *
+	 * @return
+	 */
+	public synchronized int getCallTimeout()
+	{
+		return callTimeout;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the pool of threads, creating it (and the permits that bound
+	 * the calls it holds) if necessary.
+	 *
+	 * @return
+	 */
+	synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			final Semaphore permits = new Semaphore(threads + queueCapacity);
+			executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory()
+			{
+				private final AtomicInteger number = new AtomicInteger();
+
+				public Thread newThread(Runnable runnable)
+				{
+					// UDDI threads must not keep the container from shutting down
+					Thread thread = new Thread(runnable, "uddi-fanout-" + number.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			})
+			{
+				protected void afterExecute(Runnable runnable, Throwable failure)
+				{
+					// Also reached by calls cancelled before they started
+					permits.release();
+				}
+			};
+			this.permits = permits;
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+import org.uddi4j.client.UDDIProxy;
+
+/**
+ * Keeps the UDDI4j proxies of the registry alive across requests, instead of
+ * creating a new proxy for every handler. The proxies hold no connections
+ * of their own: the connections to the UDDI server are pooled and shared by
+ * the transport that UDDITransportConfiguration sets up for all of them.
+ * Every thread is given a proxy of its own for each pair of Inquiry and
+ * Publish API URLs, and gets the same proxy back for as long as it lives, so
+ * that the request threads of the container, as well as the indexing and
+ * fan-out threads of the registry, reuse their proxies from one request to
+ * the next while no proxy is ever used by two threads at once. The proxies
+ * of a thread are released when the thread ends.
+ *
+ * The number of threads that may keep proxies can be set through the
+ * optional uddi_proxy_pool_size property of the registry.properties file;
+ * threads beyond that number are given a new proxy every time.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class UDDIProxyPool
+{
+	// The process-wide pool
+	private static final UDDIProxyPool instance = new UDDIProxyPool();
+
+	// The default number of threads that may keep proxies
+	static final int DEFAULT_POOL_SIZE = 64;
+
+	// The number of threads that may keep proxies
+	int poolSize = DEFAULT_POOL_SIZE;
+
+	// The proxies of every thread, by Inquiry and Publish API URL (threads that end are dropped)
+	Map<Thread, Map<String, UDDIProxy>> proxies = new WeakHashMap<Thread, Map<String, UDDIProxy>>();
+
+	// The number of proxies handed out again, and created
+	long reused = 0;
+	long created = 0;
+
+
+
+
+
+
+
+	private UDDIProxyPool()
+	{
+		// Specify which of the 3 SOAP transports that UDDI4j supports should
+		// be used to talk to jUDDI (Apache Axis, Apache SOAP 2.2, HP SOAP)
+		System.setProperty("org.uddi4j.TransportClassName", "org.uddi4j.transport.ApacheAxisTransport");
+
+		// Have the proxies talk to the UDDI server through a transport that times out
+		UDDITransportConfiguration.install();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the process-wide pool
+	 *
+	 * @return
+	 */
+	public static UDDIProxyPool getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads that may keep proxies from the optional
+	 * uddi_proxy_pool_size property
+	 *
+	 * @param properties
+	 */
+	public void configure(Properties properties)
+	{
+		if (properties.getProperty("uddi_proxy_pool_size") == null)
+			return;
+
+		try
+		{
+			configure(Integer.parseInt(properties.getProperty("uddi_proxy_pool_size").trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid uddi_proxy_pool_size property in registry.properties -the default will be used-");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of threads that may keep proxies. The proxies already
+	 * kept are left alone.
+	 *
+	 * @param poolSize
+	 */
+	public synchronized void configure(int poolSize)
+	{
+		this.poolSize = Math.max(0, poolSize);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the proxy of the calling thread for the given URLs, creating
+	 * it if necessary
+	 *
+	 * @param inquiryURL
+	 * @param publishURL
+	 * @return
+	 * @throws MalformedURLException
+	 */
+	public synchronized UDDIProxy getProxy(String inquiryURL, String publishURL)
+
+	throws MalformedURLException
+	{
+		String key = inquiryURL + " " + publishURL;
+
+		Map<String, UDDIProxy> threadProxies = proxies.get(Thread.currentThread());
+		if (threadProxies != null && threadProxies.containsKey(key))
+		{
+			reused++;
+			return threadProxies.get(key);
+		}
+
+		UDDIProxy proxy = new UDDIProxy();
+		proxy.setInquiryURL(inquiryURL);
+		proxy.setPublishURL(publishURL);
+		created++;
+
+		// Keep the proxy, unless too many threads keep proxies already
+		if (threadProxies == null && proxies.size() < poolSize)
+		{
+			threadProxies = new HashMap<String, UDDIProxy>();
+			proxies.put(Thread.currentThread(), threadProxies);
+		}
+		if (threadProxies != null)
+			threadProxies.put(key, proxy);
+
+		return proxy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the number of threads that keep proxies
+	 *
+	 * @return
+	 */
+	public synchronized int getSize()
+	{
+		return proxies.size();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the number of proxies handed out again instead of being created
+	 *
+	 * @return
+	 */
+	public synchronized long getReusedCount()
+	{
+		return reused;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the number of proxies created
+	 *
+	 * @return
+	 */
+	public synchronized long getCreatedCount()
+	{
+		return created;
+	}
+}
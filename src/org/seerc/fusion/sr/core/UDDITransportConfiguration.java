@@ -0,0 +1,257 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.Properties;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.AxisProperties;
+import org.apache.axis.EngineConfiguration;
+import org.apache.axis.EngineConfigurationFactory;
+import org.apache.axis.MessageContext;
+import org.apache.axis.SimpleTargetedChain;
+import org.apache.axis.configuration.EngineConfigurationFactoryDefault;
+import org.apache.axis.configuration.SimpleProvider;
+import org.apache.axis.handlers.BasicHandler;
+import org.apache.axis.transport.http.CommonsHTTPSender;
+
+/**
+ * The Apache Axis client configuration through which UDDI4j talks to the
+ * UDDI server. UDDI4j gives no access to the Axis call behind a proxy, so
+ * this class is installed as the engine configuration factory of Axis, and
+ * hands every Axis service created on the client side the same
+ * configuration, whose HTTP transport bounds the time allowed for connecting
+ * to the server and for each read from it. Without it, a UDDI server that
+ * stops answering keeps the calling thread blocked in a socket read, which
+ * no interruption can end.
+ *
+ * The transport sends the calls through the Commons HttpClient sender of
+ * Axis, whose MultiThreadedHttpConnectionManager keeps the connections to
+ * the UDDI server open and shares them among all proxies and threads, so
+ * that a call does not open a new connection unless all pooled ones are in
+ * use. Since the configuration is shared, so is the single sender and its
+ * connection manager.
+ *
+ * The timeout can be set through the optional uddi_socket_timeout property
+ * (in seconds) of the registry.properties file, and the number of pooled
+ * connections through the optional uddi_http_connections property. The
+ * number of connections only takes effect if it is set before the first
+ * call to the UDDI server.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class UDDITransportConfiguration implements EngineConfigurationFactory
+{
+	/**
+	 * Sets the timeout of every call that passes through the transport
+	 */
+	static class TimeoutHandler extends BasicHandler
+	{
+		private static final long serialVersionUID = 1L;
+
+		public void invoke(MessageContext msgContext) throws AxisFault
+		{
+			// The HTTP sender uses the timeout of the message for connecting and
+			// for every read, instead of the defaults of its connection manager
+			msgContext.setTimeout(socketTimeout);
+		}
+	}
+
+	// The default time allowed for connecting to the UDDI server and for each read from it, in seconds
+	static final int DEFAULT_SOCKET_TIMEOUT = 60;
+
+	// The time allowed for connecting to the UDDI server and for each read from it, in milliseconds
+	static volatile int socketTimeout = DEFAULT_SOCKET_TIMEOUT * 1000;
+
+	// The default number of connections to the UDDI server kept open
+	static final int DEFAULT_CONNECTIONS = 20;
+
+	// The number of connections to the UDDI server kept open
+	static int connections = DEFAULT_CONNECTIONS;
+
+	// The client configuration shared by all UDDI proxies, created when it is first needed
+	private static SimpleProvider clientConfiguration;
+
+
+
+
+
+
+
+	/**
+	 * Makes Axis ask this class for its client configuration. Must be called
+	 * before the UDDI proxies are used.
+	 */
+	static void install()
+	{
+		System.setProperty(EngineConfigurationFactory.SYSTEM_PROPERTY_NAME, UDDITransportConfiguration.class.getName());
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the timeout from the given properties, if it is present.
+	 *
+	 * @param properties
+	 */
+	public static void configure(Properties properties)
+	{
+		try
+		{
+			if (properties.getProperty("uddi_socket_timeout") != null)
+				setSocketTimeout(Integer.parseInt(properties.getProperty("uddi_socket_timeout").trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid uddi_socket_timeout property in registry.properties -the default will be used-");
+		}
+
+		try
+		{
+			if (properties.getProperty("uddi_http_connections") != null)
+				setConnections(Integer.parseInt(properties.getProperty("uddi_http_connections").trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("Invalid uddi_http_connections property in registry.properties -the default will be used-");
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the time allowed for connecting to the UDDI server and for each
+	 * read from it. It applies to the calls made from then on.
+	 *
+	 * @param seconds (at least 1)
+	 */
+	public static void setSocketTimeout(int seconds)
+	{
+		socketTimeout = Math.max(1, seconds) * 1000;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Sets the number of connections to the UDDI server kept open. It has no
+	 * effect once the first call has been made.
+	 *
+	 * @param connections (at least 1)
+	 */
+	public static synchronized void setConnections(int connections)
+	{
+		if (clientConfiguration != null)
+		{
+			System.out.println("The UDDI connection pool has already been created -the number of connections will not change-");
+			return;
+		}
+		UDDITransportConfiguration.connections = Math.max(1, connections);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Called by Axis when looking for the factory of its engine
+	 * configuration.
+	 *
+	 * @param param the context of the engine (null on the client side)
+	 * @return a factory, or null if the engine is not a client
+	 */
+	public static EngineConfigurationFactory newFactory(Object param)
+	{
+		// Leave any Axis server to the factories that know about it
+		if (param != null)
+			return null;
+		return new UDDITransportConfiguration();
+	}
+
+
+
+
+
+
+
+	public EngineConfiguration getClientEngineConfig()
+	{
+		return getClientConfiguration();
+	}
+
+
+
+
+
+
+
+	public EngineConfiguration getServerEngineConfig()
+	{
+		return EngineConfigurationFactoryDefault.newFactory(null).getServerEngineConfig();
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the client configuration shared by all UDDI proxies, creating
+	 * it if necessary.
+	 *
+	 * @return
+	 */
+	static synchronized SimpleProvider getClientConfiguration()
+	{
+		if (clientConfiguration == null)
+		{
+			// The sender creates its connection manager from these properties.
+			// All connections go to the same UDDI server, so it may use them all
+			String timeout = String.valueOf(socketTimeout);
+			AxisProperties.setProperty("axis.http.client.maximum.total.connections", String.valueOf(connections));
+			AxisProperties.setProperty("axis.http.client.maximum.connections.per.host", String.valueOf(connections));
+			AxisProperties.setProperty("axis.http.client.connection.pool.timeout", timeout);
+			AxisProperties.setProperty("axis.http.client.connection.default.connection.timeout", timeout);
+			AxisProperties.setProperty("axis.http.client.connection.default.so.timeout", timeout);
+
+			// Both transports share the sender, and so the pooled connections
+			CommonsHTTPSender sender = new CommonsHTTPSender();
+			clientConfiguration = new SimpleProvider();
+			clientConfiguration.deployTransport("http", new SimpleTargetedChain(new TimeoutHandler(), sender, null));
+			clientConfiguration.deployTransport("https", new SimpleTargetedChain(new TimeoutHandler(), sender, null));
+		}
+		return clientConfiguration;
+	}
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A registry-wide dictionary that gives every URI a stable integer ID, so
+ * that URIs can be compared by ID instead of normalising them and comparing
+ * their string forms. URIs are normalised and case-folded before they are
+ * given an ID, which matches the case-insensitive comparisons used
+ * throughout the registry: two URIs get the same ID if and only if their
+ * normalised forms are equal ignoring case. The string forms seen so far are
+ * remembered, so looking up a URI that has been seen before does not
+ * allocate anything.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class URIDictionary
+{
+	// The process-wide dictionary
+	private static final URIDictionary instance = new URIDictionary();
+
+	// The ID of every string form looked up so far
+	Map<String, Integer> stringIds = new ConcurrentHashMap<String, Integer>();
+
+	// The ID of every normalised and case-folded URI
+	Map<String, Integer> keyIds = new HashMap<String, Integer>();
+
+	// The first string form of every URI, by ID
+	List<String> uris = new ArrayList<String>();
+
+	// The number of lookups answered from the string forms seen before
+	AtomicLong hits = new AtomicLong();
+
+	// The number of lookups that had to normalise the URI
+	AtomicLong misses = new AtomicLong();
+
+
+
+
+
+
+
+	/**
+	 * @return the process-wide dictionary
+	 */
+	public static URIDictionary getInstance()
+	{
+		return instance;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the ID of the given URI, assigning a new one if the URI has
+	 * not been seen before.
+	 *
+	 * @param uri
+	 * @return the ID of the URI, or -1 if the URI is null
+	 */
+	public int getId(String uri)
+	{
+		if (uri == null)
+			return -1;
+
+		Integer id = stringIds.get(uri);
+		if (id != null)
+		{
+			hits.incrementAndGet();
+			return id.intValue();
+		}
+
+		misses.incrementAndGet();
+		String key = getKey(uri);
+
+		synchronized (keyIds)
+		{
+			id = keyIds.get(key);
+			if (id == null)
+			{
+				id = Integer.valueOf(uris.size());
+				keyIds.put(key, id);
+				uris.add(uri);
+			}
+		}
+
+		stringIds.put(uri, id);
+		return id.intValue();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param uri
+	 * @return the ID of the URI, or -1 if the URI is null
+	 */
+	public int getId(URI uri)
+	{
+		return (uri == null) ? -1 : getId(uri.toString());
+	}
+
+
+
+
+
+
+
+	/**
+	 * @param id
+	 * @return the first string form seen for the URI with the given ID, or null
+	 */
+	public String getURI(int id)
+	{
+		synchronized (keyIds)
+		{
+			return (id < 0 || id >= uris.size()) ? null : uris.get(id);
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if two URIs are the same, once normalised and ignoring case.
+	 *
+	 * @param uri1
+	 * @param uri2
+	 * @return
+	 */
+	public boolean isSameURI(String uri1, String uri2)
+	{
+		if (uri1 == null || uri2 == null)
+			return uri1 == uri2;
+
+		return getId(uri1) == getId(uri2);
+	}
+
+
+
+
+
+
+
+	/**
+	 * Checks if two URIs are the same, once normalised and ignoring case.
+	 *
+	 * @param uri1
+	 * @param uri2
+	 * @return
+	 */
+	public boolean isSameURI(URI uri1, URI uri2)
+	{
+		if (uri1 == null || uri2 == null)
+			return uri1 == uri2;
+
+		return getId(uri1) == getId(uri2);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of distinct URIs in the dictionary
+	 */
+	public int getSize()
+	{
+		synchronized (keyIds)
+		{
+			return uris.size();
+		}
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of distinct string forms in the dictionary
+	 */
+	public int getStringCount()
+	{
+		return stringIds.size();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups answered without normalising the URI
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of lookups that had to normalise the URI
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return a summary of the size and hit statistics of the dictionary
+	 */
+	public String getStatistics()
+	{
+		return "URI dictionary: " + getSize() + " URIs, " + getStringCount() + " string forms, "
+				+ getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+
+
+
+
+
+
+	/**
+	 * Normalises and case-folds a URI. Strings that are not valid URIs are
+	 * only case-folded.
+	 *
+	 * @param uri
+	 * @return
+	 */
+	private static String getKey(String uri)
+	{
+		String normalised = uri;
+		try
+		{
+			normalised = new URI(uri).normalize().toString();
+		}
+		catch (URISyntaxException e)
+		{
+			// Compare the string as it is
+		}
+		return normalised.toLowerCase(Locale.ENGLISH);
+	}
+
+
+
+
+
+
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC),
+ * The University of Sheffield (http://www.seerc.org)
+ *
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+ package org.seerc.fusion.sr.core;
+
+import java.util.BitSet;
+
+/**
+ * An array of elements that is copied for every version of the knowledge
+ * base, but shares its elements with the version it was copied from. The
+ * elements are kept in chunks of CHUNK_SIZE, so a copy only copies the table
+ * of chunks, and a chunk is copied only the first time the copy changes (or
+ * appends) one of its elements. Once an array has been copied, neither the
+ * original nor the copy changes the shared chunks in place any more.
+ *
+ * Elements can only be appended, so an earlier version never sees the
+ * elements appended by a later one: they lie past its own size.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+class VersionedArray<E>
+{
+	// The number of elements in a chunk, as a power of two
+	static final int CHUNK_SHIFT = 8;
+
+	// The number of elements in a chunk
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	// The chunks of elements, the last of which may be partly used
+	Object[][] chunks = new Object[0][];
+
+	// The number of elements
+	int size = 0;
+
+	// The chunks that belong to this array only, and can therefore be changed in place
+	BitSet ownedChunks = new BitSet();
+
+
+
+
+
+
+
+	/**
+	 * @param index
+	 * @return the element at the given index
+	 */
+	@SuppressWarnings("unchecked")
+	E get(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+		return (E) chunks[index >> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+	}
+
+
+
+
+
+
+
+	/**
+	 * Replaces the element at the given index, copying its chunk first if it
+	 * is shared.
+	 *
+	 * @param index
+	 * @param element
+	 */
+	void set(int index, E element)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+		getOwnedChunk(index >> CHUNK_SHIFT)[index & (CHUNK_SIZE - 1)] = element;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Appends an element, adding a chunk if the last one is full.
+	 *
+	 * @param element
+	 */
+	void add(E element)
+	{
+		int chunk = size >> CHUNK_SHIFT;
+		if (chunk == chunks.length)
+		{
+			Object[][] newChunks = new Object[Math.max(4, chunks.length * 2)][];
+			System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+			chunks = newChunks;
+		}
+		if (chunks[chunk] == null)
+		{
+			chunks[chunk] = new Object[CHUNK_SIZE];
+			ownedChunks.set(chunk);
+		}
+
+		size++;
+		set(size - 1, element);
+	}
+
+
+
+
+
+
+
+	/**
+	 * @return the number of elements
+	 */
+	int size()
+	{
+		return size;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns a copy of the array that can be changed without affecting this
+	 * one. Only the table of chunks is copied.
+	 *
+	 * @return
+	 */
+	VersionedArray<E> copy()
+	{
+		VersionedArray<E> copy = new VersionedArray<E>();
+		copy.chunks = chunks.clone();
+		copy.size = size;
+
+		// The chunks are now shared, so this array must copy them before changing them too
+		ownedChunks = new BitSet();
+		return copy;
+	}
+
+
+
+
+
+
+
+	/**
+	 * Returns the chunk with the given number, replacing it with a copy
+	 * first if it is shared with another array.
+	 *
+	 * @param chunk
+	 * @return
+	 */
+	private Object[] getOwnedChunk(int chunk)
+	{
+		if (!ownedChunks.get(chunk))
+		{
+			chunks[chunk] = chunks[chunk].clone();
+			ownedChunks.set(chunk);
+		}
+		return chunks[chunk];
+	}
+}
@@ -0,0 +1,434 @@
+/**
+ * Copyright 2007-2013 South-East European Research Centre (SEERC), 
+ * The University of Sheffield (http://www.seerc.org)
+ * 
+ * Developed by Dimitrios Kourtesis (dkourtesis@seerc.org; d.kourtesis@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+ package org.seerc.fusion.sr.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.seerc.fusion.sr.core.OntologyDocumentCache;
+import org.seerc.fusion.sr.exceptions.SemanticRegistryMatchmakingException;
+import org.semanticweb.owl.model.OWLOntology;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tries the ontology document cache against a stand-in HTTP server running
+ * on localhost, which serves small ontology documents and answers
+ * conditional requests the way a real web server would.
+ *
+ * @author Dimitrios Kourtesis
+ *
+ */
+public class OntologyDocumentCacheTester
+{
+	/**
+	 * A document served by the stand-in server.
+	 */
+	static class Document
+	{
+		// The ontology document
+		String body;
+
+		// The ETag sent with the document, or null
+		String entityTag;
+
+		// The Last-Modified value sent with the document, or null
+		String lastModified;
+
+		// The time to wait before answering, in milliseconds
+		long delay = 0;
+
+		// The number of requests received for the document
+		int requests = 0;
+
+		// The number of requests answered with 304 (Not Modified)
+		int notModified = 0;
+	}
+
+	// The documents served by the stand-in server by path
+	static Map<String, Document> documents = new HashMap<String, Document>();
+
+	// The number of checks that failed
+	static int failures = 0;
+	
+	
+	
+	
+	
+	
+	
+	public static void main(String[] args) throws Exception
+	{
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				serve(exchange);
+			}
+		});
+		server.start();
+		String base = "http://localhost:" + server.getAddress().getPort();
+
+		try
+		{
+			testFullResponse(base);
+			testNotModifiedByEntityTag(base);
+			testNotModifiedByLastModified(base);
+			testTimeToLive(base);
+			testEviction(base);
+			testReadTimeout(base);
+			testRememberedFailure(base);
+		}
+		finally
+		{
+			server.stop(0);
+		}
+
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A document fetched once is answered from the cache while its time to
+	 * live has not passed.
+	 */
+	static void testFullResponse(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		Document doc = addDocument(base, "/full.owl", "\"v1\"", null);
+
+		OWLOntology first = cache.getOntology(new URI(base + "/full.owl"));
+		OWLOntology second = cache.getOntology(new URI(base + "/full.owl"));
+
+		check("200 response is parsed", first != null && first.getURI().toString().equals(base + "/full.owl"));
+		check("200 response is cached", first == second && doc.requests == 1);
+		check("200 response is counted", cache.getFetchCount() == 1 && cache.getHitCount() == 1);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A document whose ETag has not changed is kept on revalidation, and
+	 * downloaded again once it has.
+	 */
+	static void testNotModifiedByEntityTag(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setTimeToLive(0);
+		Document doc = addDocument(base, "/etag.owl", "\"v1\"", null);
+
+		OWLOntology first = cache.getOntology(new URI(base + "/etag.owl"));
+		OWLOntology second = cache.getOntology(new URI(base + "/etag.owl"));
+		check("304 by ETag keeps the ontology", first == second && doc.notModified == 1);
+		check("304 by ETag is counted", cache.getNotModifiedCount() == 1 && cache.getFetchCount() == 1);
+
+		doc.entityTag = "\"v2\"";
+		OWLOntology third = cache.getOntology(new URI(base + "/etag.owl"));
+		check("Changed ETag reloads the ontology", third != second && cache.getFetchCount() == 2);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A document whose Last-Modified value has not changed is kept on
+	 * revalidation, and downloaded again once it has.
+	 */
+	static void testNotModifiedByLastModified(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setTimeToLive(0);
+		Document doc = addDocument(base, "/lastmodified.owl", null, "Mon, 07 Jan 2013 10:00:00 GMT");
+
+		OWLOntology first = cache.getOntology(new URI(base + "/lastmodified.owl"));
+		OWLOntology second = cache.getOntology(new URI(base + "/lastmodified.owl"));
+		check("304 by Last-Modified keeps the ontology", first == second && doc.notModified == 1);
+
+		doc.lastModified = "Tue, 08 Jan 2013 10:00:00 GMT";
+		OWLOntology third = cache.getOntology(new URI(base + "/lastmodified.owl"));
+		check("Changed Last-Modified reloads the ontology", third != second && cache.getFetchCount() == 2);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A document is not revalidated before its time to live has passed, and
+	 * is revalidated once it has.
+	 */
+	static void testTimeToLive(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setTimeToLive(500);
+		Document doc = addDocument(base, "/ttl.owl", "\"v1\"", null);
+
+		cache.getOntology(new URI(base + "/ttl.owl"));
+		cache.getOntology(new URI(base + "/ttl.owl"));
+		check("Document is not revalidated within its time to live", doc.requests == 1);
+
+		Thread.sleep(700);
+		cache.getOntology(new URI(base + "/ttl.owl"));
+		check("Document is revalidated once its time to live has passed", doc.requests == 2 && doc.notModified == 1);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * The least recently used document is evicted once the cache is full.
+	 */
+	static void testEviction(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setMaxEntries(2);
+		Document a = addDocument(base, "/a.owl", "\"a\"", null);
+		Document b = addDocument(base, "/b.owl", "\"b\"", null);
+		addDocument(base, "/c.owl", "\"c\"", null);
+
+		cache.getOntology(new URI(base + "/a.owl"));
+		cache.getOntology(new URI(base + "/b.owl"));
+		// Use a again, so that b becomes the least recently used
+		cache.getOntology(new URI(base + "/a.owl"));
+		cache.getOntology(new URI(base + "/c.owl"));
+		check("Cache holds at most its maximum size", cache.getSize() == 2 && cache.getEvictionCount() == 1);
+
+		cache.getOntology(new URI(base + "/a.owl"));
+		check("Recently used document is kept", a.requests == 1);
+
+		cache.getOntology(new URI(base + "/b.owl"));
+		check("Least recently used document is evicted", b.requests == 2);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A server that does not answer in time makes the lookup fail instead of
+	 * blocking it.
+	 */
+	static void testReadTimeout(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setTimeouts(1000, 300);
+		Document doc = addDocument(base, "/slow.owl", "\"v1\"", null);
+		doc.delay = 2000;
+
+		long start = System.currentTimeMillis();
+		boolean failed = false;
+		try
+		{
+			cache.getOntology(new URI(base + "/slow.owl"));
+		}
+		catch (SemanticRegistryMatchmakingException e)
+		{
+			failed = true;
+		}
+		check("Slow server times out", failed && System.currentTimeMillis() - start < 2000);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * A document that could not be retrieved or revalidated is not asked for
+	 * again until the failure time to live has passed.
+	 */
+	static void testRememberedFailure(String base) throws Exception
+	{
+		OntologyDocumentCache cache = new OntologyDocumentCache();
+		cache.setTimeouts(1000, 300);
+		cache.setFailureTimeToLive(60 * 1000);
+		Document doc = addDocument(base, "/flaky.owl", "\"v1\"", null);
+		doc.delay = 2000;
+
+		for (int i = 0; i < 2; i++)
+		{
+			try
+			{
+				cache.getOntology(new URI(base + "/flaky.owl"));
+			}
+			catch (SemanticRegistryMatchmakingException e)
+			{
+				// Expected
+			}
+		}
+		check("Failed download is not retried straight away", doc.requests == 1 && cache.getFailureHitCount() == 1);
+
+		// Once the document has been loaded, a failed revalidation keeps the loaded ontology without retrying
+		cache.invalidate();
+		cache.setTimeToLive(0);
+		doc.delay = 0;
+		OWLOntology loaded = cache.getOntology(new URI(base + "/flaky.owl"));
+		doc.delay = 2000;
+		OWLOntology revalidated = cache.getOntology(new URI(base + "/flaky.owl"));
+		OWLOntology remembered = cache.getOntology(new URI(base + "/flaky.owl"));
+		check("Failed revalidation is not retried straight away", loaded == revalidated && loaded == remembered && doc.requests == 3);
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Adds a document to those served by the stand-in server, defining a
+	 * single class.
+	 */
+	static Document addDocument(String base, String path, String entityTag, String lastModified)
+	{
+		Document doc = new Document();
+		doc.body = "<?xml version=\"1.0\"?>\n"
+				+ "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"
+				+ "         xmlns:owl=\"http://www.w3.org/2002/07/owl#\"\n"
+				+ "         xml:base=\"" + base + path + "\">\n"
+				+ "  <owl:Ontology rdf:about=\"" + base + path + "\"/>\n"
+				+ "  <owl:Class rdf:about=\"" + base + path + "#TestRFP\"/>\n"
+				+ "</rdf:RDF>\n";
+		doc.entityTag = entityTag;
+		doc.lastModified = lastModified;
+		synchronized (documents)
+		{
+			documents.put(path, doc);
+		}
+		return doc;
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Answers a request the way a web server would, with 304 (Not Modified)
+	 * if the validators sent match those of the document.
+	 */
+	static void serve(HttpExchange exchange) throws IOException
+	{
+		Document doc = null;
+		synchronized (documents)
+		{
+			doc = documents.get(exchange.getRequestURI().getPath());
+		}
+		if (doc == null)
+		{
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+
+		doc.requests++;
+		if (doc.delay > 0)
+		{
+			try
+			{
+				Thread.sleep(doc.delay);
+			}
+			catch (InterruptedException e)
+			{
+				// Answer straight away
+			}
+		}
+
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+		boolean unchanged = (doc.entityTag != null && doc.entityTag.equals(ifNoneMatch))
+				|| (doc.entityTag == null && doc.lastModified != null && doc.lastModified.equals(ifModifiedSince));
+
+		if (doc.entityTag != null)
+			exchange.getResponseHeaders().set("ETag", doc.entityTag);
+		if (doc.lastModified != null)
+			exchange.getResponseHeaders().set("Last-Modified", doc.lastModified);
+
+		try
+		{
+			if (unchanged)
+			{
+				doc.notModified++;
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			byte[] body = doc.body.getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "application/rdf+xml");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+		catch (IOException e)
+		{
+			// The client gave up waiting
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+	
+	
+	
+	
+	
+	
+	
+	/**
+	 * Prints the outcome of a check.
+	 */
+	static void check(String description, boolean passed)
+	{
+		if (!passed)
+			failures++;
+		System.out.println((passed ? "PASS: " : "FAIL: ") + description);
+	}
+	
+}